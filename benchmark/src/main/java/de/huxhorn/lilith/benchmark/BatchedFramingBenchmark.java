@@ -0,0 +1,177 @@
+package de.huxhorn.lilith.benchmark;
+
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec;
+import de.huxhorn.lilith.engine.impl.eventproducer.BatchFrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.FrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventProtobufFrameDecoder;
+import de.huxhorn.lilith.sender.BatchedMessageWriteByteStrategy;
+import de.huxhorn.lilith.sender.MessageWriteByteStrategy;
+import de.huxhorn.lilith.sender.WriteByteStrategy;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares sending every event as its own GZIPed message with sending batches GZIPed as a whole.
+ *
+ * Options: -events=n, -batchSize=n, -rounds=n
+ */
+public class BatchedFramingBenchmark
+{
+	private static final int DEFAULT_EVENTS = 100_000;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final int DEFAULT_ROUNDS = 5;
+
+	private long time;
+	private long decodedEvents;
+
+	private static List<LoggingEvent> createEvents(int events)
+	{
+		List<LoggingEvent> result = new ArrayList<>(events);
+		for(int i = 0; i < events; i++)
+		{
+			LoggingEvent event = new LoggingEvent();
+			event.setLogger("de.huxhorn.lilith.benchmark.Logger" + (i % 10));
+			event.setLevel(LoggingEvent.Level.INFO);
+			event.setTimeStamp(System.currentTimeMillis());
+			event.setThreadInfo(new ThreadInfo(1L, "main", null, null));
+			event.setMessage(new Message("Processed request {} in {}ms.", new String[]{String.valueOf(i), String.valueOf(i % 250)}));
+			result.add(event);
+		}
+		return result;
+	}
+
+	private static byte[] write(List<LoggingEvent> events, LoggingEventProtobufCodec codec, WriteByteStrategy strategy, int batchSize)
+		throws IOException
+	{
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		DataOutputStream dataOutput = new DataOutputStream(output);
+		List<byte[]> batch = new ArrayList<>(batchSize);
+		for(LoggingEvent event : events)
+		{
+			batch.add(codec.encode(event));
+			if(batch.size() == batchSize)
+			{
+				strategy.writeBytes(dataOutput, batch);
+				batch.clear();
+			}
+		}
+		if(!batch.isEmpty())
+		{
+			strategy.writeBytes(dataOutput, batch);
+		}
+		dataOutput.flush();
+		return output.toByteArray();
+	}
+
+	private void read(byte[] data, FrameDecoder<LoggingEvent> frameDecoder)
+		throws IOException
+	{
+		DataInputStream dataInput = new DataInputStream(new ByteArrayInputStream(data));
+		byte[] buffer = new byte[8 * 1024];
+		while(dataInput.available() > 0)
+		{
+			int size = dataInput.readInt();
+			if(size > buffer.length)
+			{
+				buffer = new byte[size];
+			}
+			dataInput.readFully(buffer, 0, size);
+			frameDecoder.decode(buffer, 0, size, this::countEvent);
+		}
+		frameDecoder.close();
+	}
+
+	private void countEvent(LoggingEvent event)
+	{
+		if(event != null)
+		{
+			decodedEvents++;
+		}
+	}
+
+	private void startTest()
+	{
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, String action, long bytes, int events)
+	{
+		long expired = System.nanoTime() - time;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + action
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(events / seconds)
+				+ " || " + bytes
+				+ " || " + format.format((double) bytes / events) + " ||");
+	}
+
+	private void run(int events, int batchSize, int rounds)
+		throws IOException
+	{
+		List<LoggingEvent> loggingEvents = createEvents(events);
+		System.out.println("events=" + events + ", batchSize=" + batchSize + ", rounds=" + rounds);
+		System.out.println("|| name || action || seconds || events/s || bytes || bytes/event ||");
+		LoggingEventProtobufCodec compressingCodec = new LoggingEventProtobufCodec(true);
+		LoggingEventProtobufCodec uncompressedCodec = new LoggingEventProtobufCodec(false);
+		for(int i = 0; i < rounds; i++)
+		{
+			startTest();
+			byte[] perEvent = write(loggingEvents, compressingCodec, new MessageWriteByteStrategy(), batchSize);
+			stopTest("perEventCompressed", "write", perEvent.length, events);
+
+			decodedEvents = 0;
+			startTest();
+			read(perEvent, new LoggingEventProtobufFrameDecoder(true));
+			stopTest("perEventCompressed", "read", perEvent.length, (int) decodedEvents);
+
+			startTest();
+			byte[] batched = write(loggingEvents, uncompressedCodec, new BatchedMessageWriteByteStrategy(true), batchSize);
+			stopTest("batchedCompressed", "write", batched.length, events);
+
+			decodedEvents = 0;
+			startTest();
+			read(batched, new BatchFrameDecoder<>(new LoggingEventProtobufFrameDecoder(false)));
+			stopTest("batchedCompressed", "read", batched.length, (int) decodedEvents);
+		}
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+		throws IOException
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int batchSize = parseOption(args, "batchSize", DEFAULT_BATCH_SIZE);
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		new BatchedFramingBenchmark().run(events, batchSize, rounds);
+	}
+}
@@ -0,0 +1,168 @@
+package de.huxhorn.lilith.benchmark;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.engine.FileBufferFactory;
+import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
+import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.Flush;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares Lilith files with GZIPed events with block-compressed Lilith files, with and without dictionary.
+ *
+ * Options: -events=n, -blockSize=n, -rounds=n
+ */
+public class BlockCompressionBenchmark
+{
+	private static final int DEFAULT_EVENTS = 100_000;
+	private static final int DEFAULT_BLOCK_SIZE = 64;
+	private static final int DEFAULT_ROUNDS = 3;
+
+	private long time;
+	private long readEvents;
+
+	private static List<EventWrapper<LoggingEvent>> createEvents(int events)
+	{
+		List<EventWrapper<LoggingEvent>> result = new ArrayList<>(events);
+		for(int i = 0; i < events; i++)
+		{
+			LoggingEvent event = new LoggingEvent();
+			event.setLogger("de.huxhorn.lilith.benchmark.Logger" + (i % 10));
+			event.setLevel(LoggingEvent.Level.INFO);
+			event.setTimeStamp(System.currentTimeMillis());
+			event.setThreadInfo(new ThreadInfo(1L, "worker-" + (i % 4), null, null));
+			event.setMessage(new Message("Processed request {} in {}ms.", new String[]{String.valueOf(i), String.valueOf(i % 250)}));
+			EventWrapper<LoggingEvent> wrapper = new EventWrapper<>();
+			wrapper.setEvent(event);
+			result.add(wrapper);
+		}
+		return result;
+	}
+
+	private static Map<String, String> createMetaData(String compression, int blockSize, boolean dictionary)
+	{
+		Map<String, String> result = new HashMap<>();
+		result.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_LOGGING);
+		result.put(FileConstants.CONTENT_FORMAT_KEY, FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF);
+		result.put(FileConstants.COMPRESSION_KEY, compression);
+		result.put(FileConstants.BLOCK_SIZE_KEY, String.valueOf(blockSize));
+		if(dictionary)
+		{
+			result.put(FileConstants.DICTIONARY_KEY, FileConstants.DICTIONARY_VALUE_FIRST_BLOCK);
+		}
+		return result;
+	}
+
+	private void test(File folder, String name, Map<String, String> metaData, List<EventWrapper<LoggingEvent>> events)
+	{
+		File dataFile = new File(folder, name + FileConstants.FILE_EXTENSION);
+		File indexFile = new File(folder, name + FileConstants.INDEX_FILE_EXTENSION);
+		FileBufferFactory<LoggingEvent> fileBufferFactory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder), metaData);
+		FileBuffer<EventWrapper<LoggingEvent>> buffer = fileBufferFactory.createBuffer(dataFile, indexFile, metaData);
+
+		readEvents = events.size();
+		startTest();
+		for(int i = 0; i < events.size(); i += 100)
+		{
+			buffer.addAll(events.subList(i, Math.min(i + 100, events.size())));
+		}
+		Flush.flush(buffer);
+		stopTest(name, "write", dataFile.length());
+
+		FileBuffer<EventWrapper<LoggingEvent>> readBuffer = fileBufferFactory.createReadOnlyBuffer(dataFile, indexFile);
+		readEvents = 0;
+		startTest();
+		long size = readBuffer.getSize();
+		for(long i = 0; i < size; i++)
+		{
+			if(readBuffer.get(i) != null)
+			{
+				readEvents++;
+			}
+		}
+		stopTest(name, "read", dataFile.length());
+
+		if(!indexFile.delete() || !dataFile.delete())
+		{
+			System.out.println("Couldn't delete " + dataFile.getAbsolutePath() + "!");
+		}
+	}
+
+	private void startTest()
+	{
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, String action, long bytes)
+	{
+		long expired = System.nanoTime() - time;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + action
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(readEvents / seconds)
+				+ " || " + bytes
+				+ " || " + format.format((double) bytes / readEvents) + " ||");
+	}
+
+	private void run(int events, int blockSize, int rounds)
+		throws IOException
+	{
+		List<EventWrapper<LoggingEvent>> loggingEvents = createEvents(events);
+		File folder = Files.createTempDirectory("lilith-benchmark").toFile();
+		System.out.println("events=" + events + ", blockSize=" + blockSize + ", rounds=" + rounds);
+		System.out.println("|| name || action || seconds || events/s || bytes || bytes/event ||");
+		for(int i = 0; i < rounds; i++)
+		{
+			test(folder, "gzip", createMetaData(FileConstants.COMPRESSION_VALUE_GZIP, blockSize, false), loggingEvents);
+			test(folder, "blocks", createMetaData(FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS, blockSize, false), loggingEvents);
+			test(folder, "blocksDictionary", createMetaData(FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS, blockSize, true), loggingEvents);
+		}
+		if(!folder.delete())
+		{
+			System.out.println("Couldn't delete " + folder.getAbsolutePath() + "!");
+		}
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+		throws IOException
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int blockSize = parseOption(args, "blockSize", DEFAULT_BLOCK_SIZE);
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		new BlockCompressionBenchmark().run(events, blockSize, rounds);
+	}
+}
@@ -0,0 +1,242 @@
+package de.huxhorn.lilith.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.json.LoggingJsonDecoder;
+import de.huxhorn.lilith.data.logging.json.LoggingJsonEncoder;
+import de.huxhorn.lilith.data.logging.json.LoggingModule;
+import de.huxhorn.lilith.engine.json.eventproducer.LoggingEventJsonFrameDecoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the former ObjectMapper based JSON encoding and decoding with the streaming
+ * LoggingJsonEncoder, LoggingJsonDecoder and LoggingEventJsonFrameDecoder.
+ *
+ * Options: -events=n, -rounds=n, -compressed=0|1
+ */
+public class JsonCodecBenchmark
+{
+	private static final int DEFAULT_EVENTS = 100_000;
+	private static final int DEFAULT_ROUNDS = 5;
+	private static final int DEFAULT_COMPRESSED = 1;
+
+	private long time;
+
+	private static List<LoggingEvent> createEvents(int events)
+	{
+		ExtendedStackTraceElement[] stackTrace = new ExtendedStackTraceElement[20];
+		for(int i = 0; i < stackTrace.length; i++)
+		{
+			stackTrace[i] = new ExtendedStackTraceElement("de.huxhorn.lilith.benchmark.Caller" + i, "method" + i, "Caller" + i + ".java", i + 1);
+		}
+		List<LoggingEvent> result = new ArrayList<>(events);
+		for(int i = 0; i < events; i++)
+		{
+			LoggingEvent event = new LoggingEvent();
+			event.setLogger("de.huxhorn.lilith.benchmark.Logger" + (i % 10));
+			event.setLevel(i % 10 == 0 ? LoggingEvent.Level.ERROR : LoggingEvent.Level.INFO);
+			event.setTimeStamp(System.currentTimeMillis());
+			event.setSequenceNumber((long) i);
+			event.setThreadInfo(new ThreadInfo(1L, "main", null, null));
+			event.setMessage(new Message("Processed request {} in {}ms.", new String[]{String.valueOf(i), String.valueOf(i % 250)}));
+			event.setMdc(Collections.singletonMap("requestId", String.valueOf(i)));
+			event.setMarker(new Marker("Marker" + (i % 3)));
+			if(i % 10 == 0)
+			{
+				ThrowableInfo throwable = new ThrowableInfo();
+				throwable.setName("java.lang.IllegalStateException");
+				throwable.setMessage("Request " + i + " failed.");
+				throwable.setStackTrace(stackTrace);
+				event.setThrowable(throwable);
+			}
+			result.add(event);
+		}
+		return result;
+	}
+
+	/**
+	 * This is how LoggingJsonEncoder used to write events.
+	 */
+	private static List<byte[]> writeDatabind(List<LoggingEvent> events, ObjectMapper mapper, boolean compressed)
+		throws IOException
+	{
+		List<byte[]> result = new ArrayList<>(events.size());
+		for(LoggingEvent event : events)
+		{
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			try(OutputStream stream = compressed ? new GZIPOutputStream(output) : output)
+			{
+				mapper.writeValue(stream, event);
+			}
+			result.add(output.toByteArray());
+		}
+		return result;
+	}
+
+	private static List<byte[]> writeStreaming(List<LoggingEvent> events, LoggingJsonEncoder encoder)
+	{
+		List<byte[]> result = new ArrayList<>(events.size());
+		for(LoggingEvent event : events)
+		{
+			result.add(encoder.encode(event));
+		}
+		return result;
+	}
+
+	/**
+	 * This is how LoggingJsonDecoder used to read events.
+	 */
+	private static long readDatabind(List<byte[]> data, ObjectMapper mapper, boolean compressed)
+		throws IOException
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			InputStream input = new ByteArrayInputStream(bytes);
+			if(compressed)
+			{
+				input = new GZIPInputStream(input);
+			}
+			if(mapper.readValue(input, LoggingEvent.class) != null)
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static long readStreaming(List<byte[]> data, LoggingJsonDecoder decoder)
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			if(decoder.decode(bytes) != null)
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static long readFrames(List<byte[]> data, LoggingEventJsonFrameDecoder frameDecoder)
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			if(frameDecoder.decode(bytes, 0, bytes.length) != null)
+			{
+				result++;
+			}
+		}
+		frameDecoder.close();
+		return result;
+	}
+
+	private static long size(List<byte[]> data)
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			result += bytes.length;
+		}
+		return result;
+	}
+
+	private void startTest()
+	{
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, String action, long bytes, long events)
+	{
+		long expired = System.nanoTime() - time;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + action
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(events / seconds)
+				+ " || " + bytes
+				+ " || " + format.format((double) bytes / events) + " ||");
+	}
+
+	private void run(int events, int rounds, boolean compressed)
+		throws IOException
+	{
+		List<LoggingEvent> loggingEvents = createEvents(events);
+		System.out.println("events=" + events + ", rounds=" + rounds + ", compressed=" + compressed);
+		System.out.println("|| name || action || seconds || events/s || bytes || bytes/event ||");
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new LoggingModule());
+		mapper.registerModule(new AfterburnerModule());
+		LoggingJsonEncoder encoder = new LoggingJsonEncoder(compressed);
+		LoggingJsonDecoder decoder = new LoggingJsonDecoder(compressed);
+		for(int i = 0; i < rounds; i++)
+		{
+			startTest();
+			List<byte[]> databind = writeDatabind(loggingEvents, mapper, compressed);
+			stopTest("databind", "write", size(databind), events);
+
+			startTest();
+			List<byte[]> streaming = writeStreaming(loggingEvents, encoder);
+			stopTest("streaming", "write", size(streaming), events);
+
+			startTest();
+			long decoded = readDatabind(streaming, mapper, compressed);
+			stopTest("databind", "read", size(streaming), decoded);
+
+			startTest();
+			decoded = readStreaming(streaming, decoder);
+			stopTest("streaming", "read", size(streaming), decoded);
+
+			startTest();
+			decoded = readFrames(streaming, new LoggingEventJsonFrameDecoder(compressed));
+			stopTest("streamingFrames", "read", size(streaming), decoded);
+		}
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+		throws IOException
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		boolean compressed = parseOption(args, "compressed", DEFAULT_COMPRESSED) != 0;
+		new JsonCodecBenchmark().run(events, rounds, compressed);
+	}
+}
@@ -0,0 +1,178 @@
+package de.huxhorn.lilith.benchmark;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.protobuf.LoggingEventWrapperProtobufCodec;
+import java.lang.management.ManagementFactory;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares eager decoding of stored events with LazyLoggingEvent while filtering by level
+ * and while reading the columns shown in the table.
+ *
+ * Options: -events=n, -rounds=n, -compressed=0|1
+ */
+public class LazyDecodingBenchmark
+{
+	private static final int DEFAULT_EVENTS = 100_000;
+	private static final int DEFAULT_ROUNDS = 5;
+	private static final int DEFAULT_COMPRESSED = 0;
+
+	private final com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private long time;
+	private long allocated;
+
+	private static List<byte[]> createEvents(int events, LoggingEventWrapperProtobufCodec codec)
+	{
+		ExtendedStackTraceElement[] stackTrace = new ExtendedStackTraceElement[30];
+		for(int i = 0; i < stackTrace.length; i++)
+		{
+			stackTrace[i] = new ExtendedStackTraceElement("de.huxhorn.lilith.benchmark.Caller" + i, "method" + i, "Caller" + i + ".java", i + 1);
+		}
+		List<byte[]> result = new ArrayList<>(events);
+		for(int i = 0; i < events; i++)
+		{
+			LoggingEvent event = new LoggingEvent();
+			event.setLogger("de.huxhorn.lilith.benchmark.Logger" + (i % 10));
+			event.setLevel(i % 10 == 0 ? LoggingEvent.Level.ERROR : LoggingEvent.Level.INFO);
+			event.setTimeStamp(System.currentTimeMillis());
+			event.setThreadInfo(new ThreadInfo(1L, "main", null, null));
+			event.setMessage(new Message("Processed request {} in {}ms.", new String[]{String.valueOf(i), String.valueOf(i % 250)}));
+			Map<String, String> mdc = new HashMap<>();
+			mdc.put("requestId", String.valueOf(i));
+			mdc.put("user", "user" + (i % 100));
+			event.setMdc(mdc);
+			event.setNdc(new Message[]{new Message("ndc" + (i % 5))});
+			event.setMarker(new Marker("Marker" + (i % 3)));
+			event.setCallStack(stackTrace);
+			if(i % 10 == 0)
+			{
+				ThrowableInfo throwable = new ThrowableInfo();
+				throwable.setName("java.lang.IllegalStateException");
+				throwable.setMessage("Request " + i + " failed.");
+				throwable.setStackTrace(stackTrace);
+				event.setThrowable(throwable);
+			}
+			result.add(codec.encode(new EventWrapper<>(null, i, event)));
+		}
+		return result;
+	}
+
+	private static long filter(List<byte[]> data, LoggingEventWrapperProtobufCodec codec)
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			LoggingEvent event = codec.decode(bytes).getEvent();
+			if(event.getLevel() == LoggingEvent.Level.ERROR)
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private static long render(List<byte[]> data, LoggingEventWrapperProtobufCodec codec)
+	{
+		long result = 0;
+		for(byte[] bytes : data)
+		{
+			LoggingEvent event = codec.decode(bytes).getEvent();
+			result += event.getLevel().ordinal();
+			result += event.getLogger().length();
+			result += event.getMessage().getMessage().length();
+			if(event.getThrowable() != null)
+			{
+				result++;
+			}
+		}
+		return result;
+	}
+
+	private void startTest()
+	{
+		allocated = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, String action, int events)
+	{
+		long expired = System.nanoTime() - time;
+		long bytes = threadBean.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + action
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(events / seconds)
+				+ " || " + format.format((double) bytes / events) + " ||");
+	}
+
+	private void run(int events, int rounds, boolean compressed)
+	{
+		LoggingEventWrapperProtobufCodec eagerCodec = new LoggingEventWrapperProtobufCodec(compressed, false);
+		LoggingEventWrapperProtobufCodec lazyCodec = new LoggingEventWrapperProtobufCodec(compressed, true);
+		List<byte[]> data = createEvents(events, eagerCodec);
+		System.out.println("events=" + events + ", rounds=" + rounds + ", compressed=" + compressed);
+		System.out.println("|| name || action || seconds || events/s || allocated bytes/event ||");
+		long sink = 0;
+		for(int i = 0; i < rounds; i++)
+		{
+			startTest();
+			sink += filter(data, eagerCodec);
+			stopTest("eager", "filter", events);
+
+			startTest();
+			sink += filter(data, lazyCodec);
+			stopTest("lazy", "filter", events);
+
+			startTest();
+			sink += render(data, eagerCodec);
+			stopTest("eager", "render", events);
+
+			startTest();
+			sink += render(data, lazyCodec);
+			stopTest("lazy", "render", events);
+		}
+		System.out.println("checksum=" + sink);
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		boolean compressed = parseOption(args, "compressed", DEFAULT_COMPRESSED) != 0;
+		new LazyDecodingBenchmark().run(events, rounds, compressed);
+	}
+}
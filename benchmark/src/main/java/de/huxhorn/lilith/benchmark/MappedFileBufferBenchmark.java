@@ -0,0 +1,215 @@
+package de.huxhorn.lilith.benchmark;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.engine.FileBufferFactory;
+import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
+import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
+import de.huxhorn.lilith.engine.impl.mapped.MappedCodecFileBuffer;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compares reading a Lilith file using CodecFileBuffer with reading it using MappedCodecFileBuffer.
+ *
+ * Options: -events=n, -rangeSize=n, -compressed=0|1, -rounds=n
+ */
+public class MappedFileBufferBenchmark
+{
+	private static final int DEFAULT_EVENTS = 200_000;
+	private static final int DEFAULT_RANGE_SIZE = 1000;
+	private static final int DEFAULT_COMPRESSED = 0;
+	private static final int DEFAULT_ROUNDS = 5;
+
+	private long time;
+	private long readEvents;
+
+	private static void writeEvents(FileBuffer<EventWrapper<LoggingEvent>> buffer, int events)
+	{
+		List<EventWrapper<LoggingEvent>> batch = new ArrayList<>(1000);
+		for(int i = 0; i < events; i++)
+		{
+			LoggingEvent event = new LoggingEvent();
+			event.setLogger("de.huxhorn.lilith.benchmark.Logger" + (i % 10));
+			event.setLevel(LoggingEvent.Level.INFO);
+			event.setTimeStamp(System.currentTimeMillis());
+			event.setThreadInfo(new ThreadInfo(1L, "main", null, null));
+			event.setMessage(new Message("Processed request {} in {}ms.", new String[]{String.valueOf(i), String.valueOf(i % 250)}));
+			EventWrapper<LoggingEvent> wrapper = new EventWrapper<>();
+			wrapper.setEvent(event);
+			batch.add(wrapper);
+			if(batch.size() == 1000)
+			{
+				buffer.addAll(batch);
+				batch.clear();
+			}
+		}
+		if(!batch.isEmpty())
+		{
+			buffer.addAll(batch);
+		}
+	}
+
+	private static long[] createRandomIndices(int events)
+	{
+		Random random = new Random(17);
+		long[] result = new long[events];
+		for(int i = 0; i < events; i++)
+		{
+			result[i] = random.nextInt(events);
+		}
+		return result;
+	}
+
+	private void readSequential(Buffer<EventWrapper<LoggingEvent>> buffer)
+	{
+		long size = buffer.getSize();
+		for(long i = 0; i < size; i++)
+		{
+			countEvent(buffer.get(i));
+		}
+	}
+
+	private void readRandom(Buffer<EventWrapper<LoggingEvent>> buffer, long[] indices)
+	{
+		for(long index : indices)
+		{
+			countEvent(buffer.get(index));
+		}
+	}
+
+	private void readRanges(MappedCodecFileBuffer<EventWrapper<LoggingEvent>> buffer, int rangeSize)
+	{
+		long size = buffer.getSize();
+		for(long i = 0; i < size; i += rangeSize)
+		{
+			for(EventWrapper<LoggingEvent> current : buffer.getRange(i, rangeSize))
+			{
+				countEvent(current);
+			}
+		}
+	}
+
+	private void countEvent(EventWrapper<LoggingEvent> event)
+	{
+		if(event != null)
+		{
+			readEvents++;
+		}
+	}
+
+	private void startTest()
+	{
+		readEvents = 0;
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, String access)
+	{
+		long expired = System.nanoTime() - time;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + access
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(readEvents / seconds) + " ||");
+	}
+
+	private void run(int events, int rangeSize, boolean compressed, int rounds)
+		throws IOException
+	{
+		File folder = Files.createTempDirectory("lilith-benchmark").toFile();
+		File dataFile = new File(folder, "events" + FileConstants.FILE_EXTENSION);
+		File indexFile = new File(folder, "events" + FileConstants.INDEX_FILE_EXTENSION);
+		try
+		{
+			Map<String, String> metaData = new HashMap<>();
+			metaData.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_LOGGING);
+			metaData.put(FileConstants.CONTENT_FORMAT_KEY, FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF);
+			if(compressed)
+			{
+				metaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
+			}
+			FileBufferFactory<LoggingEvent> fileBufferFactory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder), metaData);
+			FileBuffer<EventWrapper<LoggingEvent>> codecFileBuffer = fileBufferFactory.createBuffer(dataFile, indexFile, metaData);
+			writeEvents(codecFileBuffer, events);
+			MappedCodecFileBuffer<EventWrapper<LoggingEvent>> mappedBuffer = (MappedCodecFileBuffer<EventWrapper<LoggingEvent>>) fileBufferFactory.createReadOnlyBuffer(dataFile, indexFile);
+			long[] indices = createRandomIndices(events);
+
+			System.out.println("events=" + events + ", rangeSize=" + rangeSize + ", compressed=" + compressed + ", rounds=" + rounds + ", bytes=" + dataFile.length());
+			System.out.println("|| name || access || seconds || events/s ||");
+			for(int i = 0; i < rounds; i++)
+			{
+				startTest();
+				readSequential(codecFileBuffer);
+				stopTest("codecFileBuffer", "sequential");
+
+				startTest();
+				readSequential(mappedBuffer);
+				stopTest("mapped", "sequential");
+
+				startTest();
+				readRanges(mappedBuffer, rangeSize);
+				stopTest("mapped", "range");
+
+				startTest();
+				readRandom(codecFileBuffer, indices);
+				stopTest("codecFileBuffer", "random");
+
+				startTest();
+				readRandom(mappedBuffer, indices);
+				stopTest("mapped", "random");
+			}
+			mappedBuffer.dispose();
+		}
+		finally
+		{
+			if(!indexFile.delete() || !dataFile.delete() || !folder.delete())
+			{
+				System.out.println("Couldn't delete " + folder.getAbsolutePath() + "!");
+			}
+		}
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+		throws IOException
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int rangeSize = parseOption(args, "rangeSize", DEFAULT_RANGE_SIZE);
+		boolean compressed = parseOption(args, "compressed", DEFAULT_COMPRESSED) != 0;
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		new MappedFileBufferBenchmark().run(events, rangeSize, compressed, rounds);
+	}
+}
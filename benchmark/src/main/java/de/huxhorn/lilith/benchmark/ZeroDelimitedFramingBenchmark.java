@@ -0,0 +1,170 @@
+package de.huxhorn.lilith.benchmark;
+
+import de.huxhorn.lilith.engine.impl.eventproducer.ZeroDelimitedFrameReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the former byte-by-byte framing of zero-delimited streams with ZeroDelimitedFrameReader.
+ *
+ * Options: -events=n, -frameSize=n, -rounds=n
+ */
+public class ZeroDelimitedFramingBenchmark
+{
+	private static final int DEFAULT_EVENTS = 200_000;
+	private static final int DEFAULT_FRAME_SIZE = 1024;
+	private static final int DEFAULT_ROUNDS = 5;
+
+	private long time;
+
+	private static byte[] createData(int events, int frameSize)
+	{
+		byte[] frame = new byte[frameSize];
+		byte[] pattern = "<event logger=\"de.huxhorn.lilith.Foo\" level=\"INFO\">message</event>".getBytes(StandardCharsets.UTF_8);
+		for(int i = 0; i < frameSize; i++)
+		{
+			frame[i] = pattern[i % pattern.length];
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream(events * (frameSize + 1));
+		for(int i = 0; i < events; i++)
+		{
+			output.write(frame, 0, frame.length);
+			output.write(0);
+		}
+		return output.toByteArray();
+	}
+
+	/**
+	 * This is how ZeroDelimitedEventProducer used to read frames.
+	 */
+	private static long readByteByByte(InputStream inputStream)
+		throws IOException
+	{
+		long result = 0;
+		DataInputStream dataInput = new DataInputStream(new BufferedInputStream(inputStream));
+		List<Byte> bytes = new ArrayList<>();
+		for(;;)
+		{
+			int readByte = dataInput.read();
+			if(readByte == -1)
+			{
+				return result;
+			}
+			if(readByte == 0)
+			{
+				if(!bytes.isEmpty())
+				{
+					byte[] frame = new byte[bytes.size()];
+					for(int i = 0; i < bytes.size(); i++)
+					{
+						frame[i] = bytes.get(i);
+					}
+					bytes.clear();
+					result += frame.length;
+				}
+			}
+			else
+			{
+				bytes.add((byte) readByte);
+			}
+		}
+	}
+
+	private static long readWithFrameReader(InputStream inputStream, boolean copy)
+		throws IOException
+	{
+		long result = 0;
+		ZeroDelimitedFrameReader frameReader = new ZeroDelimitedFrameReader(inputStream);
+		for(;;)
+		{
+			int frameLength = frameReader.readFrame();
+			if(frameLength < 0)
+			{
+				return result;
+			}
+			if(copy)
+			{
+				result += frameReader.copyFrame().length;
+			}
+			else
+			{
+				result += frameLength;
+			}
+		}
+	}
+
+	private void startTest()
+	{
+		time = System.nanoTime();
+	}
+
+	private void stopTest(String name, long bytes, int events)
+	{
+		long expired = System.nanoTime() - time;
+		double seconds = (double) expired / 1_000_000_000;
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols();
+		symbols.setGroupingSeparator(',');
+		symbols.setDecimalSeparator('.');
+		DecimalFormat format = new DecimalFormat("#,##0.0#", symbols);
+		System.out.println("|| " + name
+				+ " || " + format.format(seconds)
+				+ " || " + format.format(events / seconds)
+				+ " || " + format.format(bytes / seconds / (1024 * 1024)) + " ||");
+	}
+
+	private void run(int events, int frameSize, int rounds)
+		throws IOException
+	{
+		byte[] data = createData(events, frameSize);
+		System.out.println("events=" + events + ", frameSize=" + frameSize + ", rounds=" + rounds);
+		System.out.println("|| name || seconds || frames/s || MB/s ||");
+		for(int i = 0; i < rounds; i++)
+		{
+			startTest();
+			long bytes = readByteByByte(new ByteArrayInputStream(data));
+			stopTest("byteByByte", bytes, events);
+
+			startTest();
+			bytes = readWithFrameReader(new ByteArrayInputStream(data), true);
+			stopTest("frameReaderCopy", bytes, events);
+
+			startTest();
+			bytes = readWithFrameReader(new ByteArrayInputStream(data), false);
+			stopTest("frameReaderInPlace", bytes, events);
+		}
+	}
+
+	private static int parseOption(String[] args, String name, int defaultValue)
+	{
+		String prefix = "-" + name + "=";
+		if(args != null)
+		{
+			for(String current : args)
+			{
+				if(current.startsWith(prefix))
+				{
+					return Integer.parseInt(current.substring(prefix.length()));
+				}
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void main(String[] args)
+		throws IOException
+	{
+		int events = parseOption(args, "events", DEFAULT_EVENTS);
+		int frameSize = parseOption(args, "frameSize", DEFAULT_FRAME_SIZE);
+		int rounds = parseOption(args, "rounds", DEFAULT_ROUNDS);
+		new ZeroDelimitedFramingBenchmark().run(events, frameSize, rounds);
+	}
+}
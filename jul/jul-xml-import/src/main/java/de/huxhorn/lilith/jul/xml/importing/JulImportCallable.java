@@ -43,12 +43,26 @@ import de.huxhorn.sulky.buffers.AppendOperation;
 import de.huxhorn.sulky.formatting.ReplaceInvalidXmlCharacterReader;
 import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -57,6 +71,13 @@ import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Imports a java.util.logging XML file using a pipeline.
+ *
+ * The calling thread reads the file and splits it into chunks of records at the closing record tags.
+ * The chunks are parsed in parallel by a pool of parser threads. A single writer thread appends the
+ * parsed events to the buffer in file order using addAll.
+ */
 public class JulImportCallable
 	extends AbstractProgressingCallable<Long>
 {
@@ -71,20 +92,46 @@ public class JulImportCallable
 		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
 	}
 
+	static final int EVENTS_PER_CHUNK = 1000;
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	private static final Future<List<LoggingEvent>> END_OF_FILE = CompletableFuture.completedFuture(null);
+
 	private final Logger logger = LoggerFactory.getLogger(JulImportCallable.class);
 
+	private static final String OPENING_RECORD_TAG = "<record";
+	private static final String CLOSING_RECORD_TAG = "</record>";
+
 	private final File inputFile;
 	private final AppendOperation<EventWrapper<LoggingEvent>> buffer;
+	private final int parserThreads;
+	// stateless, shared by all parser threads
 	private final LoggingEventReader loggingEventReader;
-	private long result;
 
 	public JulImportCallable(File inputFile, AppendOperation<EventWrapper<LoggingEvent>> buffer)
 	{
+		this(inputFile, buffer, defaultParserThreads());
+	}
+
+	public JulImportCallable(File inputFile, AppendOperation<EventWrapper<LoggingEvent>> buffer, int parserThreads)
+	{
+		if(parserThreads <= 0)
+		{
+			throw new IllegalArgumentException("parserThreads must be greater than zero but was " + parserThreads + "!");
+		}
 		this.buffer = buffer;
 		this.inputFile = inputFile;
+		this.parserThreads = parserThreads;
 		loggingEventReader = new LoggingEventReader();
 	}
 
+	static int defaultParserThreads()
+	{
+		// leave one core to the reader and one to the writer
+		return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 2));
+	}
+
 	public AppendOperation<EventWrapper<LoggingEvent>> getBuffer()
 	{
 		return buffer;
@@ -96,8 +143,13 @@ public class JulImportCallable
 		return inputFile;
 	}
 
+	public int getParserThreads()
+	{
+		return parserThreads;
+	}
+
 	@Override
-	@SuppressWarnings({"PMD.AvoidInstantiatingObjectsInLoops", "PMD.CloseResource"})
+	@SuppressWarnings("PMD.CloseResource")
 	public Long call()
 		throws Exception
 	{
@@ -111,39 +163,124 @@ public class JulImportCallable
 		}
 		long fileSize = inputFile.length();
 		setNumberOfSteps(fileSize);
-		InputStream fis = Files.newInputStream(inputFile.toPath());
-		CountingInputStream cis = new CountingInputStream(fis);
 
-		String fileName=inputFile.getName().toLowerCase(Locale.US);
-		XMLStreamReader xmlStreamReader;
-		Reader reader;
-		if(fileName.endsWith(".gz"))
+		SourceIdentifier sourceIdentifier = new SourceIdentifier(inputFile.getAbsolutePath());
+		BlockingQueue<Future<List<LoggingEvent>>> parsedChunks = new ArrayBlockingQueue<>(2 * parserThreads);
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, new ImportThreadFactory("JulImport-Parser-"));
+		ExecutorService writer = Executors.newSingleThreadExecutor(new ImportThreadFactory("JulImport-Writer-"));
+		try(InputStream fis = Files.newInputStream(inputFile.toPath()))
 		{
-			reader = new InputStreamReader(new GZIPInputStream(cis), StandardCharsets.UTF_8);
+			Future<Long> written = writer.submit(() -> write(parsedChunks, sourceIdentifier));
+			CountingInputStream cis = new CountingInputStream(fis);
+			String fileName = inputFile.getName().toLowerCase(Locale.US);
+			Reader reader;
+			if(fileName.endsWith(".gz"))
+			{
+				reader = new InputStreamReader(new GZIPInputStream(cis), StandardCharsets.UTF_8);
+			}
+			else
+			{
+				reader = new InputStreamReader(cis, StandardCharsets.UTF_8);
+			}
+			split(reader, cis, parsers, parsedChunks, written);
+			enqueue(parsedChunks, END_OF_FILE, written);
+			return written.get();
 		}
-		else
+		finally
 		{
-			reader = new InputStreamReader(cis, StandardCharsets.UTF_8);
+			parsers.shutdownNow();
+			writer.shutdownNow();
 		}
+	}
 
-		xmlStreamReader = XML_INPUT_FACTORY.createXMLStreamReader(new ReplaceInvalidXmlCharacterReader(reader));
+	/**
+	 * Splits the input at the closing record tags and hands chunks of records to the parsers.
+	 */
+	private void split(Reader reader, CountingInputStream cis, ExecutorService parsers, BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<Long> written)
+		throws IOException, InterruptedException, ExecutionException
+	{
+		char[] chars = new char[READ_BUFFER_SIZE];
+		StringBuilder pending = new StringBuilder();
+		List<String> chunk = new ArrayList<>(EVENTS_PER_CHUNK);
+		int searchIndex = 0;
 		for(;;)
 		{
-			try
+			int read = reader.read(chars);
+			setCurrentStep(cis.getByteCount());
+			if(read < 0)
 			{
-				LoggingEvent event = loggingEventReader.read(xmlStreamReader);
-				setCurrentStep(cis.getByteCount());
-				if(event == null)
+				break;
+			}
+			pending.append(chars, 0, read);
+			int eventStart = 0;
+			for(;;)
+			{
+				int closeIndex = pending.indexOf(CLOSING_RECORD_TAG, searchIndex);
+				if(closeIndex < 0)
 				{
 					break;
 				}
-				result++;
-				EventWrapper<LoggingEvent> wrapper = new EventWrapper<>();
-				wrapper.setEvent(event);
-				SourceIdentifier sourceIdentifier = new SourceIdentifier(inputFile.getAbsolutePath());
-				EventIdentifier eventId = new EventIdentifier(sourceIdentifier, result);
-				wrapper.setEventIdentifier(eventId);
-				buffer.add(wrapper);
+				int endIndex = closeIndex + CLOSING_RECORD_TAG.length();
+				chunk.add(pending.substring(eventStart, endIndex));
+				eventStart = endIndex;
+				searchIndex = endIndex;
+				if(chunk.size() == EVENTS_PER_CHUNK)
+				{
+					submit(chunk, parsers, parsedChunks, written);
+					chunk = new ArrayList<>(EVENTS_PER_CHUNK); // NOPMD - AvoidInstantiatingObjectsInLoops
+				}
+			}
+			pending.delete(0, eventStart);
+			// the closing tag may be split between two reads
+			searchIndex = Math.max(0, pending.length() - CLOSING_RECORD_TAG.length() + 1);
+		}
+		// anything after the last closing tag can't be a complete record
+		if(!chunk.isEmpty())
+		{
+			submit(chunk, parsers, parsedChunks, written);
+		}
+	}
+
+	private void submit(List<String> chunk, ExecutorService parsers, BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<Long> written)
+		throws InterruptedException, ExecutionException
+	{
+		enqueue(parsedChunks, parsers.submit(() -> parse(chunk)), written);
+	}
+
+	/**
+	 * Waits until the writer accepts the parsed chunk, failing if the writer has stopped.
+	 */
+	private static void enqueue(BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<List<LoggingEvent>> parsedChunk, Future<Long> written)
+		throws InterruptedException, ExecutionException
+	{
+		while(!parsedChunks.offer(parsedChunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+		{
+			if(written.isDone())
+			{
+				written.get();
+				throw new IllegalStateException("Writer stopped before the end of the file!");
+			}
+		}
+	}
+
+	private List<LoggingEvent> parse(List<String> chunk)
+	{
+		List<LoggingEvent> result = new ArrayList<>(chunk.size());
+		for(String current : chunk)
+		{
+			// skips the XML declaration, DOCTYPE and opening log tag in front of the first record
+			int startIndex = current.indexOf(OPENING_RECORD_TAG);
+			if(startIndex < 0)
+			{
+				continue;
+			}
+			try
+			{
+				LoggingEvent event = readEvent(current.substring(startIndex));
+				if(event != null)
+				{
+					result.add(event);
+				}
 			}
 			catch(XMLStreamException ex)
 			{
@@ -153,4 +290,66 @@ public class JulImportCallable
 		return result;
 	}
 
+	private long write(BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, SourceIdentifier sourceIdentifier)
+		throws InterruptedException, ExecutionException
+	{
+		long result = 0;
+		for(;;)
+		{
+			Future<List<LoggingEvent>> parsedChunk = parsedChunks.take();
+			if(parsedChunk == END_OF_FILE)
+			{
+				return result;
+			}
+			List<LoggingEvent> events = parsedChunk.get();
+			if(events.isEmpty())
+			{
+				continue;
+			}
+			List<EventWrapper<LoggingEvent>> wrappers = new ArrayList<>(events.size()); // NOPMD - AvoidInstantiatingObjectsInLoops
+			for(LoggingEvent event : events)
+			{
+				result++;
+				EventWrapper<LoggingEvent> wrapper = new EventWrapper<>(); // NOPMD - AvoidInstantiatingObjectsInLoops
+				wrapper.setEvent(event);
+				wrapper.setEventIdentifier(new EventIdentifier(sourceIdentifier, result)); // NOPMD - AvoidInstantiatingObjectsInLoops
+				wrappers.add(wrapper);
+			}
+			buffer.addAll(wrappers);
+		}
+	}
+
+	private LoggingEvent readEvent(String eventStr)
+		throws XMLStreamException
+	{
+		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new ReplaceInvalidXmlCharacterReader(new StringReader(eventStr)));
+		try
+		{
+			return loggingEventReader.read(reader);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private static class ImportThreadFactory
+		implements ThreadFactory
+	{
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		ImportThreadFactory(String prefix)
+		{
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, prefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
@@ -41,6 +41,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -91,6 +93,50 @@ public class JulImportCallableTest
 		assertEquals(3, buffer.getList().size());
 	}
 
+	@Test
+	public void manyEventsAreImportedInOrder()
+		throws Exception
+	{
+		int eventCount = 3 * JulImportCallable.EVENTS_PER_CHUNK + 17;
+		createManyEventsFile(eventCount);
+		AppendOpStub buffer = new AppendOpStub();
+		JulImportCallable instance = new JulImportCallable(inputFile, buffer, 3);
+		long result = instance.call();
+		assertEquals(eventCount, result);
+		List<EventWrapper<LoggingEvent>> list = buffer.getList();
+		assertEquals(eventCount, list.size());
+		for(int i = 0; i < eventCount; i++)
+		{
+			EventWrapper<LoggingEvent> wrapper = list.get(i);
+			assertEquals(i + 1, wrapper.getEventIdentifier().getLocalId());
+			assertEquals(inputFile.getAbsolutePath(), wrapper.getEventIdentifier().getSourceIdentifier().getIdentifier());
+			assertEquals(Long.valueOf(i), wrapper.getEvent().getTimeStamp());
+			assertEquals("Message " + i, wrapper.getEvent().getMessage().getMessage());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parserThreadsMustBePositive()
+	{
+		new JulImportCallable(new File("foo"), new AppendOpStub(), 0);
+	}
+
+	private void createManyEventsFile(int eventCount)
+		throws IOException
+	{
+		inputFile = File.createTempFile("Import", "test");
+		try(Writer writer = Files.newBufferedWriter(inputFile.toPath(), StandardCharsets.UTF_8))
+		{
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n<!DOCTYPE log SYSTEM \"logger.dtd\">\n<log>\n");
+			for(int i = 0; i < eventCount; i++)
+			{
+				writer.write("<record>\n<millis>" + i + "</millis>\n<sequence>" + i + "</sequence>\n<logger>de.huxhorn.lilith.Foo</logger>\n");
+				writer.write("<level>INFO</level>\n<thread>10</thread>\n<message>Message " + i + "</message>\n</record>\n");
+			}
+			writer.write("</log>\n");
+		}
+	}
+
 	private void createTempFile(String resourceName)
 		throws IOException
 	{
@@ -133,7 +179,7 @@ public class JulImportCallableTest
 		@Override
 		public void addAll(List<EventWrapper<LoggingEvent>> elements)
 		{
-			throw new UnsupportedOperationException();
+			list.addAll(elements);
 		}
 
 		@Override
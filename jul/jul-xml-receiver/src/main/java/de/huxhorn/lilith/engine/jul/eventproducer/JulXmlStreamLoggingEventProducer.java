@@ -23,6 +23,7 @@ import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.engine.impl.eventproducer.AbstractEventProducer;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.ReceiverThreads;
 import de.huxhorn.lilith.jul.xml.LoggingEventReader;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import de.huxhorn.sulky.formatting.ReplaceInvalidXmlCharacterReader;
@@ -66,9 +67,7 @@ public class JulXmlStreamLoggingEventProducer
 	@Override
 	public void start()
 	{
-		Thread t = new Thread(new ReceiverRunnable(), getSourceIdentifier().toString() + "-Receiver");
-		t.setDaemon(true);
-		t.start();
+		ReceiverThreads.start(new ReceiverRunnable(), getSourceIdentifier().toString() + "-Receiver", true);
 	}
 
 	@Override
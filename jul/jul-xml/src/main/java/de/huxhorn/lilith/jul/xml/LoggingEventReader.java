@@ -35,6 +35,7 @@
 package de.huxhorn.lilith.jul.xml;
 
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Message;
 import de.huxhorn.lilith.data.logging.ThreadInfo;
@@ -176,7 +177,7 @@ public class LoggingEventReader
 					break;
 				}
 			}
-			return result;
+			return InternPool.internShared(result);
 		}
 		return null;
 	}
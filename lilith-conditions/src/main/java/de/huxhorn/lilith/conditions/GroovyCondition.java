@@ -174,6 +174,8 @@ public final class GroovyCondition
 		throws CloneNotSupportedException
 	{
 		GroovyCondition result = (GroovyCondition) super.clone();
+		// the clone must not share the script instance since it isn't thread-safe
+		result.groovyInstance = null;
 		result.setScriptFileName(result.scriptFileName);
 		return result;
 	}
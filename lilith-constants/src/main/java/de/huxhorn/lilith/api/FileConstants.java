@@ -27,6 +27,10 @@ public interface FileConstants
 	String FILE_EXTENSION = ".lilith";
 	String INDEX_FILE_EXTENSION = ".idx";
 	String ACTIVE_FILE_EXTENSION = ".active";
+	String TIME_INDEX_FILE_EXTENSION = ".tidx";
+	String FIELD_INDEX_FILE_EXTENSION = ".fidx";
+	String TEXT_INDEX_FILE_EXTENSION = ".nidx";
+	String CONTENT_STORE_FILE_EXTENSION = ".cstore";
 
 	String IDENTIFIER_KEY = "primaryIdentifier";
 	String SECONDARY_IDENTIFIER_KEY = "secondaryIdentifier";
@@ -40,4 +44,25 @@ public interface FileConstants
 
 	String COMPRESSION_KEY = "compression";
 	String COMPRESSION_VALUE_GZIP = "GZIP";
+	/**
+	 * Blocks of events are deflated together. The index contains block offset and position of every event.
+	 */
+	String COMPRESSION_VALUE_DEFLATE_BLOCKS = "DEFLATE_BLOCKS";
+
+	/**
+	 * The maximum number of events per block if compression is COMPRESSION_VALUE_DEFLATE_BLOCKS.
+	 */
+	String BLOCK_SIZE_KEY = "blockSize";
+
+	String DICTIONARY_KEY = "dictionary";
+	/**
+	 * The uncompressed first block is stored as preset dictionary of all blocks.
+	 */
+	String DICTIONARY_VALUE_FIRST_BLOCK = "firstBlock";
+
+	String DEDUPLICATION_KEY = "deduplication";
+	/**
+	 * Throwables and call stacks are stored once in the content store file, events only contain their hashes.
+	 */
+	String DEDUPLICATION_VALUE_CONTENT_HASH = "contentHash";
 }
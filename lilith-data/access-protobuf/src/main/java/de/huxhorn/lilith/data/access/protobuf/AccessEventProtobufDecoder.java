@@ -34,7 +34,7 @@
 
 package de.huxhorn.lilith.data.access.protobuf;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
 import de.huxhorn.lilith.data.access.AccessEvent;
 import de.huxhorn.lilith.data.access.protobuf.generated.AccessProto;
 import de.huxhorn.lilith.data.eventsource.LoggerContext;
@@ -70,33 +70,47 @@ public class AccessEventProtobufDecoder
 		{
 			return null;
 		}
-		AccessProto.AccessEvent parsedEvent = null;
 		if(!compressing)
 		{
-			try
-			{
-				parsedEvent = AccessProto.AccessEvent.parseFrom(bytes);
-			}
-			catch(InvalidProtocolBufferException e)
-			{
-				// ignore
-			}
+			return parse(bytes, 0, bytes.length);
+		}
+		AccessProto.AccessEvent parsedEvent = null;
+		try(ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+			GZIPInputStream gis = new GZIPInputStream(in))
+		{
+			parsedEvent = AccessProto.AccessEvent.parseFrom(gis);
 		}
-		else
+		catch(IOException e)
 		{
-			try(ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-				GZIPInputStream gis = new GZIPInputStream(in))
-			{
-				parsedEvent = AccessProto.AccessEvent.parseFrom(gis);
-			}
-			catch(IOException e)
-			{
-				// ignore
-			}
+			// ignore
 		}
 		return convert(parsedEvent);
 	}
 
+	/**
+	 * Decodes an uncompressed event from a part of the given buffer without copying it.
+	 *
+	 * @param bytes the buffer containing the event.
+	 * @param offset the offset of the event in the buffer.
+	 * @param length the length of the event.
+	 * @return the decoded event or null if the bytes could not be decoded.
+	 */
+	public static AccessEvent parse(byte[] bytes, int offset, int length)
+	{
+		if(bytes == null)
+		{
+			return null;
+		}
+		try
+		{
+			return convert(AccessProto.AccessEvent.parseFrom(CodedInputStream.newInstance(bytes, offset, length)));
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
 	public static AccessEvent convert(AccessProto.AccessEvent parsedEvent)
 	{
 		if(parsedEvent == null)
@@ -34,43 +34,545 @@
 
 package de.huxhorn.lilith.data.logging.json;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import de.huxhorn.lilith.data.eventsource.LoggerContext;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
 import de.huxhorn.sulky.codec.Decoder;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
+/**
+ * Reads LoggingEvents using a JsonParser.
+ *
+ * Accepts everything written by LoggingJsonEncoder or an ObjectMapper using LoggingModule.
+ * Unknown properties are skipped. All parsers share the field name symbol table of a single
+ * JsonFactory. This class is thread-safe.
+ */
 public class LoggingJsonDecoder
 	implements Decoder<LoggingEvent>
 {
+	private static final LoggingEvent.Level[] LEVELS = LoggingEvent.Level.values();
+
 	private final boolean compressing;
-	private final ObjectMapper mapper;
 
 	public LoggingJsonDecoder(boolean compressing)
 	{
 		this.compressing = compressing;
-		mapper = new ObjectMapper();
-		mapper.registerModule(new LoggingModule());
-		mapper.registerModule(new AfterburnerModule());
+	}
+
+	public boolean isCompressing()
+	{
+		return compressing;
 	}
 
 	@Override
 	public LoggingEvent decode(byte[] bytes)
 	{
-		try
+		if(bytes == null)
+		{
+			return null;
+		}
+		if(!compressing)
+		{
+			return parse(bytes, 0, bytes.length);
+		}
+		try(InputStream input = new GZIPInputStream(new ByteArrayInputStream(bytes)))
 		{
-			if(compressing)
+			try(JsonParser parser = LoggingJsonEncoder.JSON_FACTORY.createParser(input))
 			{
-				return mapper.readValue(new GZIPInputStream(new ByteArrayInputStream(bytes)), LoggingEvent.class);
+				return InternPool.internShared(readEvent(parser));
 			}
-			return mapper.readValue(new ByteArrayInputStream(bytes), LoggingEvent.class);
 		}
 		catch(IOException ex)
 		{
-			ex.printStackTrace(); // NOPMD
+			return null;
+		}
+	}
+
+	/**
+	 * Parses an uncompressed event.
+	 *
+	 * @param bytes the buffer containing the JSON.
+	 * @param offset the offset of the JSON in the buffer.
+	 * @param length the length of the JSON.
+	 * @return the decoded event or null if the bytes could not be decoded.
+	 */
+	public static LoggingEvent parse(byte[] bytes, int offset, int length)
+	{
+		if(bytes == null)
+		{
+			return null;
+		}
+		try(JsonParser parser = LoggingJsonEncoder.JSON_FACTORY.createParser(bytes, offset, length))
+		{
+			return InternPool.internShared(readEvent(parser));
+		}
+		catch(IOException ex)
+		{
+			return null;
+		}
+	}
+
+	private static LoggingEvent readEvent(JsonParser parser)
+		throws IOException
+	{
+		if(!startObject(parser, parser.nextToken()))
+		{
+			return null;
+		}
+		LoggingEvent result = new LoggingEvent();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			switch(name)
+			{
+				case "level":
+					result.setLevel(readLevel(parser, token));
+					break;
+				case "message":
+					result.setMessage(readMessage(parser, token));
+					break;
+				case "logger":
+					result.setLogger(readString(parser, token));
+					break;
+				case "throwable":
+					result.setThrowable(readThrowable(parser, token));
+					break;
+				case "callStack":
+					result.setCallStack(readStackTrace(parser, token));
+					break;
+				case "mdc":
+					result.setMdc(readStringMap(parser, token));
+					break;
+				case "ndc":
+					result.setNdc(readMessages(parser, token));
+					break;
+				case "marker":
+					result.setMarker(readMarker(parser, token));
+					break;
+				case "threadInfo":
+					result.setThreadInfo(readThreadInfo(parser, token));
+					break;
+				case "loggerContext":
+					result.setLoggerContext(readLoggerContext(parser, token));
+					break;
+				case "sequenceNumber":
+					result.setSequenceNumber(readLong(parser, token));
+					break;
+				case "timeStamp":
+					result.setTimeStamp(readLong(parser, token));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static LoggingEvent.Level readLevel(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(token == JsonToken.VALUE_NUMBER_INT)
+		{
+			int ordinal = parser.getIntValue();
+			if(ordinal >= 0 && ordinal < LEVELS.length)
+			{
+				return LEVELS[ordinal];
+			}
+			throw new JsonParseException(parser, "Invalid level " + ordinal + "!");
+		}
+		String level = readString(parser, token);
+		if(level == null)
+		{
+			return null;
+		}
+		try
+		{
+			return LoggingEvent.Level.valueOf(level);
+		}
+		catch(IllegalArgumentException ex)
+		{
+			throw new JsonParseException(parser, "Invalid level '" + level + "'!", ex);
+		}
+	}
+
+	private static Message readMessage(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		Message result = new Message();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "messagePattern":
+					result.setMessagePattern(readString(parser, valueToken));
+					break;
+				case "arguments":
+					result.setArguments(readStrings(parser, valueToken));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static Message[] readMessages(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startArray(parser, token))
+		{
+			return null;
+		}
+		List<Message> result = new ArrayList<>();
+		for(JsonToken current = parser.nextToken(); current != JsonToken.END_ARRAY; current = parser.nextToken())
+		{
+			result.add(readMessage(parser, current));
+		}
+		return result.toArray(Message.ARRAY_PROTOTYPE);
+	}
+
+	private static ThrowableInfo readThrowable(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		ThrowableInfo result = new ThrowableInfo();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "name":
+					result.setName(readString(parser, valueToken));
+					break;
+				case "message":
+					result.setMessage(readString(parser, valueToken));
+					break;
+				case "stackTrace":
+					result.setStackTrace(readStackTrace(parser, valueToken));
+					break;
+				case "omittedElements":
+					result.setOmittedElements(parser.getValueAsInt());
+					break;
+				case "suppressed":
+					result.setSuppressed(readThrowables(parser, valueToken));
+					break;
+				case "cause":
+					result.setCause(readThrowable(parser, valueToken));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static ThrowableInfo[] readThrowables(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startArray(parser, token))
+		{
+			return null;
+		}
+		List<ThrowableInfo> result = new ArrayList<>();
+		for(JsonToken current = parser.nextToken(); current != JsonToken.END_ARRAY; current = parser.nextToken())
+		{
+			result.add(readThrowable(parser, current));
+		}
+		return result.toArray(ThrowableInfo.ARRAY_PROTOTYPE);
+	}
+
+	private static ExtendedStackTraceElement[] readStackTrace(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startArray(parser, token))
+		{
+			return null;
+		}
+		List<ExtendedStackTraceElement> result = new ArrayList<>();
+		for(JsonToken current = parser.nextToken(); current != JsonToken.END_ARRAY; current = parser.nextToken())
+		{
+			result.add(readStackTraceElement(parser, current));
+		}
+		return result.toArray(ExtendedStackTraceElement.ARRAY_PROTOTYPE);
+	}
+
+	private static ExtendedStackTraceElement readStackTraceElement(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		ExtendedStackTraceElement result = new ExtendedStackTraceElement();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "className":
+					result.setClassName(readString(parser, valueToken));
+					break;
+				case "methodName":
+					result.setMethodName(readString(parser, valueToken));
+					break;
+				case "fileName":
+					result.setFileName(readString(parser, valueToken));
+					break;
+				case "lineNumber":
+					result.setLineNumber(parser.getValueAsInt());
+					break;
+				case "codeLocation":
+					result.setCodeLocation(readString(parser, valueToken));
+					break;
+				case "version":
+					result.setVersion(readString(parser, valueToken));
+					break;
+				case "exact":
+					result.setExact(parser.getValueAsBoolean());
+					break;
+				case "classLoaderName":
+					result.setClassLoaderName(readString(parser, valueToken));
+					break;
+				case "moduleName":
+					result.setModuleName(readString(parser, valueToken));
+					break;
+				case "moduleVersion":
+					result.setModuleVersion(readString(parser, valueToken));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static Marker readMarker(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		Marker result = new Marker();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "name":
+					String markerName = readString(parser, valueToken);
+					if(markerName == null)
+					{
+						throw new JsonParseException(parser, "Marker name must not be null!");
+					}
+					result.setName(markerName);
+					break;
+				case "references":
+					result.setReferences(readMarkers(parser, valueToken));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, Marker> readMarkers(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		Map<String, Marker> result = new LinkedHashMap<>();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			result.put(name, readMarker(parser, parser.nextToken()));
+		}
+		return result;
+	}
+
+	private static ThreadInfo readThreadInfo(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		ThreadInfo result = new ThreadInfo();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "id":
+					result.setId(readLong(parser, valueToken));
+					break;
+				case "name":
+					result.setName(readString(parser, valueToken));
+					break;
+				case "groupId":
+					result.setGroupId(readLong(parser, valueToken));
+					break;
+				case "groupName":
+					result.setGroupName(readString(parser, valueToken));
+					break;
+				case "priority":
+					result.setPriority(valueToken == JsonToken.VALUE_NULL ? null : parser.getValueAsInt());
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static LoggerContext readLoggerContext(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		LoggerContext result = new LoggerContext();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			switch(name)
+			{
+				case "name":
+					result.setName(readString(parser, valueToken));
+					break;
+				case "birthTime":
+					result.setBirthTime(readLong(parser, valueToken));
+					break;
+				case "properties":
+					result.setProperties(readStringMap(parser, valueToken));
+					break;
+				default:
+					parser.skipChildren();
+			}
+		}
+		return result;
+	}
+
+	private static Map<String, String> readStringMap(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startObject(parser, token))
+		{
+			return null;
+		}
+		Map<String, String> result = new LinkedHashMap<>();
+		while(parser.nextToken() == JsonToken.FIELD_NAME)
+		{
+			String name = parser.getCurrentName();
+			result.put(name, readString(parser, parser.nextToken()));
+		}
+		return result;
+	}
+
+	private static String[] readStrings(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(!startArray(parser, token))
+		{
+			return null;
+		}
+		List<String> result = new ArrayList<>();
+		for(JsonToken current = parser.nextToken(); current != JsonToken.END_ARRAY; current = parser.nextToken())
+		{
+			result.add(readString(parser, current));
+		}
+		return result.toArray(new String[0]);
+	}
+
+	private static String readString(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(token == JsonToken.VALUE_NULL)
+		{
+			return null;
+		}
+		if(!token.isScalarValue())
+		{
+			throw new JsonParseException(parser, "Expected a string but found " + token + "!");
+		}
+		return parser.getText();
+	}
+
+	private static Long readLong(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(token == JsonToken.VALUE_NULL)
+		{
+			return null;
+		}
+		return parser.getValueAsLong();
+	}
+
+	/**
+	 * Returns true if the token starts an object, false if it is null.
+	 */
+	private static boolean startObject(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(token == JsonToken.START_OBJECT)
+		{
+			return true;
+		}
+		if(token == JsonToken.VALUE_NULL)
+		{
+			return false;
+		}
+		throw new JsonParseException(parser, "Expected an object but found " + token + "!");
+	}
+
+	/**
+	 * Returns true if the token starts an array, false if it is null.
+	 */
+	private static boolean startArray(JsonParser parser, JsonToken token)
+		throws IOException
+	{
+		if(token == JsonToken.START_ARRAY)
+		{
+			return true;
+		}
+		if(token == JsonToken.VALUE_NULL)
+		{
+			return false;
 		}
-		return null;
+		throw new JsonParseException(parser, "Expected an array but found " + token + "!");
 	}
 }
@@ -34,22 +34,46 @@
 
 package de.huxhorn.lilith.data.logging.json;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import de.huxhorn.lilith.data.eventsource.LoggerContext;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
 import de.huxhorn.sulky.codec.Encoder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.zip.GZIPOutputStream;
 
+/**
+ * Writes LoggingEvents using a JsonGenerator.
+ *
+ * The output is identical to the one of an ObjectMapper using LoggingModule, i.e. properties are
+ * written in the same order and null values are omitted. Cyclic markers or throwables can't be
+ * encoded, like with databind. This class is thread-safe.
+ */
 public class LoggingJsonEncoder
 	implements Encoder<LoggingEvent>
 {
+	static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+			.disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+			.build();
+
 	private final boolean compressing;
 	private final boolean indenting;
 	private final boolean sortingProperties;
-	private final ObjectMapper mapper;
 
 	public LoggingJsonEncoder(boolean compressing)
 	{
@@ -58,16 +82,9 @@ public class LoggingJsonEncoder
 
 	public LoggingJsonEncoder(boolean compressing, boolean indenting, boolean sortingProperties)
 	{
-		mapper = new ObjectMapper();
-		mapper.registerModule(new LoggingModule());
-		mapper.registerModule(new AfterburnerModule());
-
 		this.compressing = compressing;
 		this.indenting = indenting;
 		this.sortingProperties = sortingProperties;
-
-		mapper.configure(SerializationFeature.INDENT_OUTPUT, indenting);
-		mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, sortingProperties);
 	}
 
 	public boolean isCompressing()
@@ -89,26 +106,283 @@ public class LoggingJsonEncoder
 	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
 	public byte[] encode(LoggingEvent event)
 	{
-
-		try(ByteArrayOutputStream output=new ByteArrayOutputStream())
+		try(ByteArrayOutputStream output = new ByteArrayOutputStream())
 		{
 			if(!compressing)
 			{
-				mapper.writeValue(output, event);
+				write(output, event);
 				return output.toByteArray();
 			}
-			try(GZIPOutputStream gzos=new GZIPOutputStream(output))
+			try(GZIPOutputStream gzos = new GZIPOutputStream(output))
 			{
-				mapper.writeValue(gzos, event);
-				gzos.flush();
-				gzos.close();
+				write(gzos, event);
+				gzos.finish();
 				return output.toByteArray();
 			}
 		}
 		catch(IOException ex)
 		{
-			ex.printStackTrace(); // NOPMD
+			return null;
+		}
+	}
+
+	private void write(OutputStream output, LoggingEvent event)
+		throws IOException
+	{
+		try(JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8))
+		{
+			if(indenting)
+			{
+				generator.useDefaultPrettyPrinter();
+			}
+			writeEvent(generator, event);
+		}
+	}
+
+	private void writeEvent(JsonGenerator generator, LoggingEvent event)
+		throws IOException
+	{
+		if(event == null)
+		{
+			generator.writeNull();
+			return;
+		}
+		generator.writeStartObject();
+		LoggingEvent.Level level = event.getLevel();
+		if(level != null)
+		{
+			generator.writeStringField("level", level.name());
+		}
+		Message message = event.getMessage();
+		if(message != null)
+		{
+			generator.writeFieldName("message");
+			writeMessage(generator, message);
+		}
+		writeStringField(generator, "logger", event.getLogger());
+		ThrowableInfo throwable = event.getThrowable();
+		if(throwable != null)
+		{
+			generator.writeFieldName("throwable");
+			writeThrowable(generator, throwable, newDejaVu());
+		}
+		writeStackTraceField(generator, "callStack", event.getCallStack());
+		writeStringMapField(generator, "mdc", event.getMdc());
+		Message[] ndc = event.getNdc();
+		if(ndc != null)
+		{
+			generator.writeArrayFieldStart("ndc");
+			for(Message current : ndc)
+			{
+				writeMessage(generator, current);
+			}
+			generator.writeEndArray();
+		}
+		Marker marker = event.getMarker();
+		if(marker != null)
+		{
+			generator.writeFieldName("marker");
+			writeMarker(generator, marker, newDejaVu());
+		}
+		ThreadInfo threadInfo = event.getThreadInfo();
+		if(threadInfo != null)
+		{
+			generator.writeObjectFieldStart("threadInfo");
+			writeNumberField(generator, "id", threadInfo.getId());
+			writeStringField(generator, "name", threadInfo.getName());
+			writeNumberField(generator, "groupId", threadInfo.getGroupId());
+			writeStringField(generator, "groupName", threadInfo.getGroupName());
+			Integer priority = threadInfo.getPriority();
+			if(priority != null)
+			{
+				generator.writeNumberField("priority", priority);
+			}
+			generator.writeEndObject();
+		}
+		LoggerContext loggerContext = event.getLoggerContext();
+		if(loggerContext != null)
+		{
+			generator.writeObjectFieldStart("loggerContext");
+			writeStringField(generator, "name", loggerContext.getName());
+			writeNumberField(generator, "birthTime", loggerContext.getBirthTime());
+			writeStringMapField(generator, "properties", loggerContext.getProperties());
+			generator.writeEndObject();
+		}
+		writeNumberField(generator, "sequenceNumber", event.getSequenceNumber());
+		writeNumberField(generator, "timeStamp", event.getTimeStamp());
+		generator.writeEndObject();
+	}
+
+	private static void writeMessage(JsonGenerator generator, Message message)
+		throws IOException
+	{
+		if(message == null)
+		{
+			generator.writeNull();
+			return;
+		}
+		generator.writeStartObject();
+		writeStringField(generator, "messagePattern", message.getMessagePattern());
+		String[] arguments = message.getArguments();
+		if(arguments != null)
+		{
+			generator.writeArrayFieldStart("arguments");
+			for(String current : arguments)
+			{
+				generator.writeString(current);
+			}
+			generator.writeEndArray();
+		}
+		generator.writeEndObject();
+	}
+
+	private static void writeThrowable(JsonGenerator generator, ThrowableInfo throwable, Set<Object> dejaVu)
+		throws IOException
+	{
+		if(throwable == null)
+		{
+			generator.writeNull();
+			return;
+		}
+		enter(generator, throwable, dejaVu);
+		generator.writeStartObject();
+		writeStringField(generator, "name", throwable.getName());
+		writeStringField(generator, "message", throwable.getMessage());
+		writeStackTraceField(generator, "stackTrace", throwable.getStackTrace());
+		generator.writeNumberField("omittedElements", throwable.getOmittedElements());
+		ThrowableInfo[] suppressed = throwable.getSuppressed();
+		if(suppressed != null)
+		{
+			generator.writeArrayFieldStart("suppressed");
+			for(ThrowableInfo current : suppressed)
+			{
+				writeThrowable(generator, current, dejaVu);
+			}
+			generator.writeEndArray();
+		}
+		ThrowableInfo cause = throwable.getCause();
+		if(cause != null)
+		{
+			generator.writeFieldName("cause");
+			writeThrowable(generator, cause, dejaVu);
+		}
+		generator.writeEndObject();
+		dejaVu.remove(throwable);
+	}
+
+	private static void writeStackTraceField(JsonGenerator generator, String fieldName, ExtendedStackTraceElement[] stackTrace)
+		throws IOException
+	{
+		if(stackTrace == null)
+		{
+			return;
+		}
+		generator.writeArrayFieldStart(fieldName);
+		for(ExtendedStackTraceElement current : stackTrace)
+		{
+			if(current == null)
+			{
+				generator.writeNull();
+				continue;
+			}
+			generator.writeStartObject();
+			writeStringField(generator, "className", current.getClassName());
+			writeStringField(generator, "methodName", current.getMethodName());
+			writeStringField(generator, "fileName", current.getFileName());
+			generator.writeNumberField("lineNumber", current.getLineNumber());
+			writeStringField(generator, "codeLocation", current.getCodeLocation());
+			writeStringField(generator, "version", current.getVersion());
+			generator.writeBooleanField("exact", current.isExact());
+			writeStringField(generator, "classLoaderName", current.getClassLoaderName());
+			writeStringField(generator, "moduleName", current.getModuleName());
+			writeStringField(generator, "moduleVersion", current.getModuleVersion());
+			generator.writeEndObject();
+		}
+		generator.writeEndArray();
+	}
+
+	private void writeMarker(JsonGenerator generator, Marker marker, Set<Object> dejaVu)
+		throws IOException
+	{
+		if(marker == null)
+		{
+			generator.writeNull();
+			return;
+		}
+		enter(generator, marker, dejaVu);
+		generator.writeStartObject();
+		writeStringField(generator, "name", marker.getName());
+		Map<String, Marker> references = marker.getReferences();
+		if(references != null)
+		{
+			generator.writeObjectFieldStart("references");
+			for(Map.Entry<String, Marker> current : sorted(references).entrySet())
+			{
+				generator.writeFieldName(current.getKey());
+				writeMarker(generator, current.getValue(), dejaVu);
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+		dejaVu.remove(marker);
+	}
+
+	private static Set<Object> newDejaVu()
+	{
+		return Collections.newSetFromMap(new IdentityHashMap<>());
+	}
+
+	/**
+	 * Adds the value to the values currently being written, failing if it's already contained.
+	 */
+	private static void enter(JsonGenerator generator, Object value, Set<Object> dejaVu)
+		throws JsonGenerationException
+	{
+		if(!dejaVu.add(value))
+		{
+			throw new JsonGenerationException("Cyclic reference to " + value.getClass().getSimpleName() + "!", generator);
+		}
+	}
+
+	private void writeStringMapField(JsonGenerator generator, String fieldName, Map<String, String> map)
+		throws IOException
+	{
+		if(map == null)
+		{
+			return;
+		}
+		generator.writeObjectFieldStart(fieldName);
+		for(Map.Entry<String, String> current : sorted(map).entrySet())
+		{
+			generator.writeStringField(current.getKey(), current.getValue());
+		}
+		generator.writeEndObject();
+	}
+
+	private <V> Map<String, V> sorted(Map<String, V> map)
+	{
+		if(sortingProperties)
+		{
+			return new TreeMap<>(map);
+		}
+		return map;
+	}
+
+	private static void writeStringField(JsonGenerator generator, String fieldName, String value)
+		throws IOException
+	{
+		if(value != null)
+		{
+			generator.writeStringField(fieldName, value);
+		}
+	}
+
+	private static void writeNumberField(JsonGenerator generator, String fieldName, Long value)
+		throws IOException
+	{
+		if(value != null)
+		{
+			generator.writeNumberField(fieldName, value);
 		}
-		return null;
 	}
 }
@@ -0,0 +1,219 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.data.logging.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import de.huxhorn.lilith.data.eventsource.LoggerContext;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Makes sure that the streaming codec is compatible with an ObjectMapper using LoggingModule.
+ */
+public class LoggingJsonCompatibilityTest
+{
+	private static LoggingEvent createEvent()
+	{
+		LoggingEvent event = new LoggingEvent();
+		event.setLogger("logger");
+		event.setLevel(LoggingEvent.Level.INFO);
+		event.setTimeStamp(1_234_567_890_000L);
+		event.setSequenceNumber(3L);
+		event.setMessage(new Message("pattern {} {}", new String[]{"\"quoted\"\n", null}));
+		ThreadInfo threadInfo = new ThreadInfo(1L, "main", 2L, "group");
+		threadInfo.setPriority(5);
+		event.setThreadInfo(threadInfo);
+		LoggerContext loggerContext = new LoggerContext();
+		loggerContext.setName("context");
+		loggerContext.setBirthTime(7L);
+		Map<String, String> properties = new HashMap<>();
+		properties.put("b", "1");
+		properties.put("a", "2");
+		loggerContext.setProperties(properties);
+		event.setLoggerContext(loggerContext);
+
+		ThrowableInfo cause = new ThrowableInfo();
+		cause.setName("java.lang.IllegalStateException");
+		ThrowableInfo throwable = new ThrowableInfo();
+		throwable.setName("java.lang.RuntimeException");
+		throwable.setMessage("message");
+		throwable.setOmittedElements(2);
+		throwable.setStackTrace(new ExtendedStackTraceElement[]{
+				new ExtendedStackTraceElement("Foo", "bar", "Foo.java", 17, "foo.jar", "1.0", true),
+		});
+		throwable.setCause(cause);
+		throwable.setSuppressed(new ThrowableInfo[]{cause});
+		event.setThrowable(throwable);
+
+		ExtendedStackTraceElement callStackElement = new ExtendedStackTraceElement("Caller", "call", null, ExtendedStackTraceElement.NATIVE_METHOD_LINE_NUMBER);
+		callStackElement.setClassLoaderName("app");
+		callStackElement.setModuleName("module");
+		callStackElement.setModuleVersion("9");
+		event.setCallStack(new ExtendedStackTraceElement[]{callStackElement});
+
+		Map<String, String> mdc = new HashMap<>();
+		mdc.put("z", "1");
+		mdc.put("k", null);
+		event.setMdc(mdc);
+		event.setNdc(new Message[]{new Message("ndc"), null});
+
+		Marker marker = new Marker("marker");
+		Marker reference = new Marker("reference");
+		reference.add(new Marker("nested"));
+		marker.add(reference);
+		event.setMarker(marker);
+		return event;
+	}
+
+	private static ObjectMapper createMapper(boolean indenting, boolean sortingProperties)
+	{
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule(new LoggingModule());
+		mapper.configure(SerializationFeature.INDENT_OUTPUT, indenting);
+		mapper.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, sortingProperties);
+		return mapper;
+	}
+
+	private static void assertSameOutput(LoggingEvent event, boolean indenting, boolean sortingProperties)
+		throws Exception
+	{
+		String expected = createMapper(indenting, sortingProperties).writeValueAsString(event);
+		byte[] bytes = new LoggingJsonEncoder(false, indenting, sortingProperties).encode(event);
+		assertEquals(expected, new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void fullEventIsWrittenLikeDatabind()
+		throws Exception
+	{
+		assertSameOutput(createEvent(), false, false);
+		assertSameOutput(createEvent(), true, true);
+	}
+
+	@Test
+	public void emptyEventIsWrittenLikeDatabind()
+		throws Exception
+	{
+		assertSameOutput(new LoggingEvent(), false, false);
+		assertSameOutput(new LoggingEvent(), true, true);
+	}
+
+	@Test
+	public void cyclicEventsAreNotEncoded()
+	{
+		LoggingEvent event = new LoggingEvent();
+		Marker marker = new Marker("marker");
+		Marker reference = new Marker("reference");
+		marker.add(reference);
+		reference.add(marker);
+		event.setMarker(marker);
+		assertNull(new LoggingJsonEncoder(false).encode(event));
+
+		event = new LoggingEvent();
+		ThrowableInfo throwable = new ThrowableInfo();
+		throwable.setCause(throwable);
+		event.setThrowable(throwable);
+		assertNull(new LoggingJsonEncoder(true).encode(event));
+	}
+
+	@Test
+	public void databindOutputIsRead()
+		throws Exception
+	{
+		LoggingEvent event = createEvent();
+		byte[] bytes = createMapper(true, false).writeValueAsBytes(event);
+
+		LoggingEvent read = new LoggingJsonDecoder(false).decode(bytes);
+
+		assertEquals(event, read);
+		assertArrayEquals(event.getCallStack(), read.getCallStack());
+		assertEquals(event.getThreadInfo().getPriority(), read.getThreadInfo().getPriority());
+	}
+
+	@Test
+	public void unknownPropertiesAreSkipped()
+	{
+		String json = "{\"unknown\":{\"a\":[1,2,{\"b\":null}]},\"level\":\"WARN\","
+				+ "\"message\":{\"message\":\"formatted\",\"messagePattern\":\"pattern\"},"
+				+ "\"callStack\":[{\"className\":\"Foo\",\"extendedString\":\"ignored\",\"lineNumber\":17}],\"timeStamp\":17}";
+
+		LoggingEvent read = LoggingJsonDecoder.parse(json.getBytes(StandardCharsets.UTF_8), 0, json.length());
+
+		LoggingEvent expected = new LoggingEvent();
+		expected.setLevel(LoggingEvent.Level.WARN);
+		expected.setMessage(new Message("pattern"));
+		ExtendedStackTraceElement element = new ExtendedStackTraceElement();
+		element.setClassName("Foo");
+		element.setLineNumber(17);
+		expected.setCallStack(new ExtendedStackTraceElement[]{element});
+		expected.setTimeStamp(17L);
+		assertEquals(expected, read);
+	}
+
+	@Test
+	public void partOfBufferIsParsed()
+	{
+		byte[] bytes = "xx{\"logger\":\"foo\"}yy".getBytes(StandardCharsets.UTF_8);
+
+		LoggingEvent read = LoggingJsonDecoder.parse(bytes, 2, bytes.length - 4);
+
+		assertEquals("foo", read.getLogger());
+	}
+
+	@Test
+	public void invalidInputIsNotDecoded()
+	{
+		LoggingJsonDecoder decoder = new LoggingJsonDecoder(false);
+		assertNull(decoder.decode(null));
+		assertNull(decoder.decode(new byte[0]));
+		assertNull(decoder.decode("{\"logger\":".getBytes(StandardCharsets.UTF_8)));
+		assertNull(decoder.decode("{\"level\":\"FATAL\"}".getBytes(StandardCharsets.UTF_8)));
+		assertNull(decoder.decode("{\"logger\":{}}".getBytes(StandardCharsets.UTF_8)));
+		assertNull(new LoggingJsonDecoder(true).decode("{}".getBytes(StandardCharsets.UTF_8)));
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging.protobuf;
+
+/**
+ * Stores content under its hash.
+ *
+ * Implementations must be thread-safe.
+ */
+public interface ContentStore
+{
+	/**
+	 * Returns the content stored under the given hash.
+	 *
+	 * @param hash the hash of the content.
+	 * @return the content or null if nothing is stored under the given hash.
+	 */
+	byte[] get(byte[] hash);
+
+	/**
+	 * Returns whether content is stored under the given hash.
+	 *
+	 * @param hash the hash of the content.
+	 * @return true if content is stored under the given hash.
+	 */
+	boolean contains(byte[] hash);
+
+	/**
+	 * Stores the content under the given hash unless content is already stored under it.
+	 *
+	 * @param hash the hash of the content.
+	 * @param content the content.
+	 * @return true if the content was stored, false if it was already stored before.
+	 */
+	boolean put(byte[] hash, byte[] content);
+}
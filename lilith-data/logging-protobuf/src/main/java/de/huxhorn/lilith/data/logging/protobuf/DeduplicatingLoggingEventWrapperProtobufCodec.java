@@ -0,0 +1,407 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging.protobuf;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.protobuf.generated.LoggingProto;
+import de.huxhorn.sulky.codec.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codec storing the throwable and the call stack of events only once in a ContentStore.
+ *
+ * An encoded event starts with a flags byte. It is followed by the hash of the throwable if FLAG_THROWABLE
+ * is set and by the hash of the call stack if FLAG_CALL_STACK is set. The rest is the event wrapper as
+ * encoded by LoggingEventWrapperProtobufCodec, just without the referenced throwable and call stack.
+ * A throwable or call stack that couldn't be stored in the ContentStore is kept inline instead.
+ *
+ * Throwables are stored as LoggingProto.Throwable, call stacks as LoggingProto.Throwable only containing
+ * the stack trace elements, both GZIPed if the codec is compressing. The hash is the SHA-256 of a type
+ * byte followed by the uncompressed content.
+ *
+ * Decoded throwables and call stacks are kept in an LRU cache so repeated references are resolved
+ * without reading and parsing them again. Events referencing the same content share those instances,
+ * so they must not be modified. All other fields are decoded lazily, see LazyLoggingEvent.
+ */
+public class DeduplicatingLoggingEventWrapperProtobufCodec
+	implements Codec<EventWrapper<LoggingEvent>>
+{
+	public static final int FLAG_THROWABLE = 1;
+	public static final int FLAG_CALL_STACK = 2;
+	public static final int HASH_SIZE = 32;
+	public static final int DEFAULT_CACHE_SIZE = 1000;
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private final boolean compressing;
+	private final ContentStore contentStore;
+	private final int cacheSize;
+	private final Map<ByteBuffer, Object> cache;
+	private final LongAdder cacheHits = new LongAdder();
+	private final LongAdder cacheMisses = new LongAdder();
+
+	public DeduplicatingLoggingEventWrapperProtobufCodec(boolean compressing, ContentStore contentStore)
+	{
+		this(compressing, contentStore, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param compressing whether events and content are GZIPed.
+	 * @param contentStore the store of throwables and call stacks.
+	 * @param cacheSize the maximum number of decoded throwables and call stacks kept in the cache.
+	 */
+	public DeduplicatingLoggingEventWrapperProtobufCodec(boolean compressing, ContentStore contentStore, int cacheSize)
+	{
+		if(cacheSize < 1)
+		{
+			throw new IllegalArgumentException("cacheSize must be greater than zero but was " + cacheSize + "!");
+		}
+		this.compressing = compressing;
+		this.contentStore = Objects.requireNonNull(contentStore, "contentStore must not be null!");
+		this.cacheSize = cacheSize;
+		this.cache = new LinkedHashMap<ByteBuffer, Object>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 3183651268744102587L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Object> eldest)
+			{
+				return size() > DeduplicatingLoggingEventWrapperProtobufCodec.this.cacheSize;
+			}
+		};
+	}
+
+	public boolean isCompressing()
+	{
+		return compressing;
+	}
+
+	public ContentStore getContentStore()
+	{
+		return contentStore;
+	}
+
+	@Override
+	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+	public byte[] encode(EventWrapper<LoggingEvent> wrapper)
+	{
+		LoggingProto.EventWrapper converted = LoggingEventWrapperProtobufEncoder.convert(wrapper);
+		if(converted == null)
+		{
+			return null;
+		}
+		byte[] throwableHash = null;
+		byte[] callStackHash = null;
+		if(converted.hasEvent())
+		{
+			LoggingProto.LoggingEvent event = converted.getEvent();
+			if(event.hasThrowable())
+			{
+				throwableHash = store(FLAG_THROWABLE, event.getThrowable());
+			}
+			if(event.getCallStackElementCount() > 0)
+			{
+				LoggingProto.Throwable callStack = LoggingProto.Throwable.newBuilder()
+						.addAllStackTraceElement(event.getCallStackElementList())
+						.build();
+				callStackHash = store(FLAG_CALL_STACK, callStack);
+			}
+			if(throwableHash != null || callStackHash != null)
+			{
+				LoggingProto.EventWrapper.Builder builder = converted.toBuilder();
+				if(throwableHash != null)
+				{
+					builder.getEventBuilder().clearThrowable();
+				}
+				if(callStackHash != null)
+				{
+					builder.getEventBuilder().clearCallStackElement();
+				}
+				converted = builder.build();
+			}
+		}
+		byte[] eventBytes = LoggingEventWrapperProtobufEncoder.toBytes(converted, compressing);
+		if(eventBytes == null)
+		{
+			return null;
+		}
+
+		int flags = 0;
+		int size = 1 + eventBytes.length;
+		if(throwableHash != null)
+		{
+			flags |= FLAG_THROWABLE;
+			size += HASH_SIZE;
+		}
+		if(callStackHash != null)
+		{
+			flags |= FLAG_CALL_STACK;
+			size += HASH_SIZE;
+		}
+		ByteBuffer result = ByteBuffer.allocate(size);
+		result.put((byte) flags);
+		if(throwableHash != null)
+		{
+			result.put(throwableHash);
+		}
+		if(callStackHash != null)
+		{
+			result.put(callStackHash);
+		}
+		result.put(eventBytes);
+		return result.array();
+	}
+
+	@Override
+	public EventWrapper<LoggingEvent> decode(byte[] bytes)
+	{
+		if(bytes == null || bytes.length == 0)
+		{
+			return null;
+		}
+		int flags = bytes[0];
+		if((flags & ~(FLAG_THROWABLE | FLAG_CALL_STACK)) != 0)
+		{
+			return null;
+		}
+		int offset = 1;
+		byte[] throwableHash = null;
+		byte[] callStackHash = null;
+		if((flags & FLAG_THROWABLE) != 0)
+		{
+			throwableHash = readHash(bytes, offset);
+			offset += HASH_SIZE;
+		}
+		if((flags & FLAG_CALL_STACK) != 0)
+		{
+			callStackHash = readHash(bytes, offset);
+			offset += HASH_SIZE;
+		}
+		if(offset > bytes.length)
+		{
+			return null;
+		}
+
+		EventWrapper<LoggingEvent> result = LoggingEventWrapperProtobufDecoder.parseLazily(bytes, offset, bytes.length - offset, compressing);
+		if(result == null)
+		{
+			return null;
+		}
+		LoggingEvent event = result.getEvent();
+		if(event != null)
+		{
+			if(throwableHash != null)
+			{
+				event.setThrowable((ThrowableInfo) resolve(throwableHash, FLAG_THROWABLE));
+			}
+			if(callStackHash != null)
+			{
+				event.setCallStack((ExtendedStackTraceElement[]) resolve(callStackHash, FLAG_CALL_STACK));
+			}
+		}
+		return result;
+	}
+
+	public long getCacheHits()
+	{
+		return cacheHits.sum();
+	}
+
+	public long getCacheMisses()
+	{
+		return cacheMisses.sum();
+	}
+
+	public void clearCache()
+	{
+		synchronized(cache)
+		{
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Stores the content in the content store.
+	 *
+	 * @return the hash of the content or null if it couldn't be stored. The content must be kept inline in that case.
+	 */
+	private byte[] store(int type, LoggingProto.Throwable content)
+	{
+		byte[] bytes = content.toByteArray();
+		byte[] hash = hash(type, bytes);
+		if(contentStore.contains(hash))
+		{
+			return hash;
+		}
+		if(contentStore.put(hash, compressing ? compress(bytes) : bytes) || contentStore.contains(hash))
+		{
+			// contains is true if another thread or instance stored the same content in the meantime.
+			return hash;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the throwable or call stack stored under the given hash.
+	 *
+	 * @return the resolved ThrowableInfo or ExtendedStackTraceElement[], null if it's missing in the content store.
+	 */
+	private Object resolve(byte[] hash, int type)
+	{
+		ByteBuffer key = ByteBuffer.wrap(hash);
+		Object result;
+		synchronized(cache)
+		{
+			result = cache.get(key);
+		}
+		if(result != null)
+		{
+			cacheHits.increment();
+			return result;
+		}
+		cacheMisses.increment();
+
+		byte[] content = contentStore.get(hash);
+		if(content == null)
+		{
+			return null;
+		}
+		ThrowableInfo throwable = LoggingEventProtobufDecoder.convert(parse(content));
+		if(throwable == null)
+		{
+			return null;
+		}
+		if(type == FLAG_THROWABLE)
+		{
+			result = throwable;
+		}
+		else
+		{
+			result = throwable.getStackTrace();
+		}
+		if(result != null)
+		{
+			synchronized(cache)
+			{
+				cache.put(key, result);
+			}
+		}
+		return result;
+	}
+
+	private LoggingProto.Throwable parse(byte[] content)
+	{
+		try
+		{
+			if(!compressing)
+			{
+				return LoggingProto.Throwable.parseFrom(content);
+			}
+			try(GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(content)))
+			{
+				return LoggingProto.Throwable.parseFrom(gis);
+			}
+		}
+		catch(IOException ex)
+		{
+			return null;
+		}
+	}
+
+	private static byte[] readHash(byte[] bytes, int offset)
+	{
+		if(offset + HASH_SIZE > bytes.length)
+		{
+			return null;
+		}
+		return Arrays.copyOfRange(bytes, offset, offset + HASH_SIZE);
+	}
+
+	private static byte[] hash(int type, byte[] bytes)
+	{
+		try
+		{
+			MessageDigest messageDigest = MessageDigest.getInstance(HASH_ALGORITHM);
+			messageDigest.update((byte) type);
+			return messageDigest.digest(bytes);
+		}
+		catch(NoSuchAlgorithmException ex)
+		{
+			throw new IllegalStateException(HASH_ALGORITHM + " isn't supported!", ex);
+		}
+	}
+
+	private static byte[] compress(byte[] bytes)
+	{
+		try(ByteArrayOutputStream out = new ByteArrayOutputStream())
+		{
+			try(GZIPOutputStream gos = new GZIPOutputStream(out))
+			{
+				gos.write(bytes);
+			}
+			return out.toByteArray();
+		}
+		catch(IOException ex)
+		{
+			throw new IllegalStateException("Failed to compress content!", ex);
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DeduplicatingLoggingEventWrapperProtobufCodec[compressing=" + compressing
+				+ ", contentStore=" + contentStore
+				+ ", cacheHits=" + getCacheHits()
+				+ ", cacheMisses=" + getCacheMisses()
+				+ "]";
+	}
+}
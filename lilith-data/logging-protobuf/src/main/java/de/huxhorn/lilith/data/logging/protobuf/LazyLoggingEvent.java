@@ -0,0 +1,466 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging.protobuf;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+import de.huxhorn.lilith.data.eventsource.LoggerContext;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.protobuf.generated.LoggingProto;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LoggingEvent keeping its protobuf encoding and converting a field only when its getter is called.
+ *
+ * Creating an instance collects the offsets of all fields in a single pass, skipping their content.
+ * Timestamp, level and sequence number are read during that pass. All other fields are converted on
+ * first access, so filtering on the level or rendering a few columns doesn't build throwables, call
+ * stacks, MDC, NDC or markers. The encoded bytes are released as soon as every field has been converted.
+ *
+ * Setting a field replaces its encoded value. Instances are serialized as plain LoggingEvent.
+ */
+public final class LazyLoggingEvent
+	extends LoggingEvent
+{
+	private static final long serialVersionUID = 4396474633722826352L;
+
+	private static final int TIME_STAMP = 1;
+	private static final int LOGGER_NAME = 2;
+	private static final int LEVEL = 3;
+	private static final int MESSAGE = 4;
+	private static final int THREAD_INFO = 5;
+	private static final int CALL_STACK_ELEMENT = 6;
+	private static final int THROWABLE = 7;
+	private static final int LOGGER_CONTEXT = 8;
+	private static final int MAPPED_DIAGNOSTIC_CONTEXT = 9;
+	private static final int NESTED_DIAGNOSTIC_CONTEXT = 10;
+	private static final int MARKER = 11;
+	private static final int SEQUENCE_NUMBER = 12;
+
+	private static final int LAZY_FIELDS = 1 << LOGGER_NAME
+			| 1 << MESSAGE
+			| 1 << THREAD_INFO
+			| 1 << CALL_STACK_ELEMENT
+			| 1 << THROWABLE
+			| 1 << LOGGER_CONTEXT
+			| 1 << MAPPED_DIAGNOSTIC_CONTEXT
+			| 1 << NESTED_DIAGNOSTIC_CONTEXT
+			| 1 << MARKER;
+
+	private transient byte[] bytes;
+	/**
+	 * Offset and length of every lazy field. The range of the call stack starts at the tag of its first
+	 * element and ends after its last element.
+	 */
+	private final transient int[] ranges = new int[2 * (SEQUENCE_NUMBER + 1)];
+	private final transient int encodedLength;
+	/**
+	 * Bit mask of the fields that haven't been converted, yet.
+	 */
+	private transient volatile int pending;
+
+	private LazyLoggingEvent(byte[] bytes, int encodedLength)
+	{
+		super();
+		this.bytes = bytes;
+		this.encodedLength = encodedLength;
+	}
+
+	/**
+	 * Creates a lazy event from a part of the given buffer. The buffer must not be modified afterwards.
+	 *
+	 * @param bytes the buffer containing the encoded LoggingProto.LoggingEvent.
+	 * @param offset the offset of the event in the buffer.
+	 * @param length the length of the event.
+	 * @return the lazy event or null if the bytes could not be decoded.
+	 */
+	public static LazyLoggingEvent parse(byte[] bytes, int offset, int length)
+	{
+		if(bytes == null)
+		{
+			return null;
+		}
+		LazyLoggingEvent result = new LazyLoggingEvent(bytes, length);
+		try
+		{
+			result.scan(offset, length);
+		}
+		catch(IOException ex)
+		{
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the length of the encoded event.
+	 */
+	public int getEncodedLength()
+	{
+		return encodedLength;
+	}
+
+	/**
+	 * @return true if all fields have been converted and the encoded bytes have been released.
+	 */
+	public boolean isResolved()
+	{
+		return pending == 0;
+	}
+
+	private void scan(int offset, int length)
+		throws IOException
+	{
+		int pendingFields = 0;
+		int callStackStart = -1;
+		int callStackEnd = -1;
+		CodedInputStream input = CodedInputStream.newInstance(bytes, offset, length);
+		for(;;)
+		{
+			int tagOffset = offset + input.getTotalBytesRead();
+			int tag = input.readTag();
+			if(tag == 0)
+			{
+				break;
+			}
+			int fieldNumber = WireFormat.getTagFieldNumber(tag);
+			int wireType = WireFormat.getTagWireType(tag);
+			if(wireType == WireFormat.WIRETYPE_VARINT && (fieldNumber == TIME_STAMP || fieldNumber == LEVEL || fieldNumber == SEQUENCE_NUMBER))
+			{
+				if(fieldNumber == TIME_STAMP)
+				{
+					super.setTimeStamp(input.readInt64());
+				}
+				else if(fieldNumber == LEVEL)
+				{
+					super.setLevel(LoggingEventProtobufDecoder.convert(LoggingProto.Level.forNumber(input.readEnum())));
+				}
+				else
+				{
+					super.setSequenceNumber(input.readInt64());
+				}
+			}
+			else if(wireType == WireFormat.WIRETYPE_LENGTH_DELIMITED && fieldNumber <= SEQUENCE_NUMBER && (LAZY_FIELDS & 1 << fieldNumber) != 0)
+			{
+				int fieldLength = input.readRawVarint32();
+				int fieldOffset = offset + input.getTotalBytesRead();
+				input.skipRawBytes(fieldLength);
+				if(fieldNumber == CALL_STACK_ELEMENT)
+				{
+					if(callStackStart < 0)
+					{
+						callStackStart = tagOffset;
+					}
+					callStackEnd = fieldOffset + fieldLength;
+				}
+				else
+				{
+					ranges[2 * fieldNumber] = fieldOffset;
+					ranges[2 * fieldNumber + 1] = fieldLength;
+				}
+				pendingFields |= 1 << fieldNumber;
+			}
+			else if(!input.skipField(tag))
+			{
+				break;
+			}
+		}
+		if(callStackStart >= 0)
+		{
+			ranges[2 * CALL_STACK_ELEMENT] = callStackStart;
+			ranges[2 * CALL_STACK_ELEMENT + 1] = callStackEnd - callStackStart;
+		}
+		if(pendingFields == 0)
+		{
+			bytes = null;
+		}
+		pending = pendingFields;
+	}
+
+	private void resolve(int fieldNumber)
+	{
+		if((pending & 1 << fieldNumber) != 0)
+		{
+			resolveField(fieldNumber);
+		}
+	}
+
+	private synchronized void resolveField(int fieldNumber)
+	{
+		int mask = 1 << fieldNumber;
+		if((pending & mask) == 0)
+		{
+			return;
+		}
+		int offset = ranges[2 * fieldNumber];
+		int length = ranges[2 * fieldNumber + 1];
+		try
+		{
+			switch(fieldNumber)
+			{
+				case LOGGER_NAME:
+					super.setLogger(InternPool.internShared(new String(bytes, offset, length, StandardCharsets.UTF_8)));
+					break;
+				case MESSAGE:
+					super.setMessage(LoggingEventProtobufDecoder.convert(LoggingProto.Message.parseFrom(input(offset, length))));
+					break;
+				case THREAD_INFO:
+					super.setThreadInfo(LoggingEventProtobufDecoder.convert(LoggingProto.ThreadInfo.parseFrom(input(offset, length))));
+					break;
+				case CALL_STACK_ELEMENT:
+					super.setCallStack(parseCallStack(offset, length));
+					break;
+				case THROWABLE:
+					super.setThrowable(LoggingEventProtobufDecoder.convert(LoggingProto.Throwable.parseFrom(input(offset, length))));
+					break;
+				case LOGGER_CONTEXT:
+					super.setLoggerContext(LoggingEventProtobufDecoder.convert(LoggingProto.LoggerContext.parseFrom(input(offset, length))));
+					break;
+				case MAPPED_DIAGNOSTIC_CONTEXT:
+					super.setMdc(LoggingEventProtobufDecoder.convert(LoggingProto.StringMap.parseFrom(input(offset, length))));
+					break;
+				case NESTED_DIAGNOSTIC_CONTEXT:
+					super.setNdc(LoggingEventProtobufDecoder.convert(LoggingProto.NestedDiagnosticContext.parseFrom(input(offset, length))));
+					break;
+				default: // MARKER
+					super.setMarker(LoggingEventProtobufDecoder.convert(LoggingProto.Marker.parseFrom(input(offset, length))));
+					break;
+			}
+		}
+		catch(IOException ex)
+		{
+			// ignore, the field stays null like it does for eagerly decoded events.
+		}
+		discard(mask);
+	}
+
+	private ExtendedStackTraceElement[] parseCallStack(int offset, int length)
+		throws IOException
+	{
+		List<ExtendedStackTraceElement> result = new ArrayList<>();
+		CodedInputStream input = input(offset, length);
+		for(;;)
+		{
+			int tag = input.readTag();
+			if(tag == 0)
+			{
+				break;
+			}
+			if(WireFormat.getTagFieldNumber(tag) == CALL_STACK_ELEMENT && WireFormat.getTagWireType(tag) == WireFormat.WIRETYPE_LENGTH_DELIMITED)
+			{
+				result.add(LoggingEventProtobufDecoder.convert(input.readMessage(LoggingProto.StackTraceElement.parser(), ExtensionRegistryLite.getEmptyRegistry())));
+			}
+			else if(!input.skipField(tag))
+			{
+				break;
+			}
+		}
+		return result.toArray(new ExtendedStackTraceElement[0]);
+	}
+
+	private CodedInputStream input(int offset, int length)
+	{
+		return CodedInputStream.newInstance(bytes, offset, length);
+	}
+
+	/**
+	 * Must be called while holding the lock of this instance.
+	 */
+	private void discard(int mask)
+	{
+		int remaining = pending & ~mask;
+		if(remaining == 0)
+		{
+			bytes = null;
+		}
+		pending = remaining;
+	}
+
+	@Override
+	public String getLogger()
+	{
+		resolve(LOGGER_NAME);
+		return super.getLogger();
+	}
+
+	@Override
+	public synchronized void setLogger(String logger)
+	{
+		discard(1 << LOGGER_NAME);
+		super.setLogger(logger);
+	}
+
+	@Override
+	public ThreadInfo getThreadInfo()
+	{
+		resolve(THREAD_INFO);
+		return super.getThreadInfo();
+	}
+
+	@Override
+	public synchronized void setThreadInfo(ThreadInfo threadInfo)
+	{
+		discard(1 << THREAD_INFO);
+		super.setThreadInfo(threadInfo);
+	}
+
+	@Override
+	public LoggerContext getLoggerContext()
+	{
+		resolve(LOGGER_CONTEXT);
+		return super.getLoggerContext();
+	}
+
+	@Override
+	public synchronized void setLoggerContext(LoggerContext loggerContext)
+	{
+		discard(1 << LOGGER_CONTEXT);
+		super.setLoggerContext(loggerContext);
+	}
+
+	@Override
+	public Message getMessage()
+	{
+		resolve(MESSAGE);
+		return super.getMessage();
+	}
+
+	@Override
+	public synchronized void setMessage(Message message)
+	{
+		discard(1 << MESSAGE);
+		super.setMessage(message);
+	}
+
+	@Override
+	public ThrowableInfo getThrowable()
+	{
+		resolve(THROWABLE);
+		return super.getThrowable();
+	}
+
+	@Override
+	public synchronized void setThrowable(ThrowableInfo throwable)
+	{
+		discard(1 << THROWABLE);
+		super.setThrowable(throwable);
+	}
+
+	@Override
+	public Map<String, String> getMdc()
+	{
+		resolve(MAPPED_DIAGNOSTIC_CONTEXT);
+		return super.getMdc();
+	}
+
+	@Override
+	public synchronized void setMdc(Map<String, String> mdc)
+	{
+		discard(1 << MAPPED_DIAGNOSTIC_CONTEXT);
+		super.setMdc(mdc);
+	}
+
+	@Override
+	public Message[] getNdc()
+	{
+		resolve(NESTED_DIAGNOSTIC_CONTEXT);
+		return super.getNdc();
+	}
+
+	@Override
+	public synchronized void setNdc(Message[] ndc)
+	{
+		discard(1 << NESTED_DIAGNOSTIC_CONTEXT);
+		super.setNdc(ndc);
+	}
+
+	@Override
+	public Marker getMarker()
+	{
+		resolve(MARKER);
+		return super.getMarker();
+	}
+
+	@Override
+	public synchronized void setMarker(Marker marker)
+	{
+		discard(1 << MARKER);
+		super.setMarker(marker);
+	}
+
+	@Override
+	public ExtendedStackTraceElement[] getCallStack()
+	{
+		resolve(CALL_STACK_ELEMENT);
+		return super.getCallStack();
+	}
+
+	@Override
+	public synchronized void setCallStack(ExtendedStackTraceElement[] callStack)
+	{
+		discard(1 << CALL_STACK_ELEMENT);
+		super.setCallStack(callStack);
+	}
+
+	private Object writeReplace()
+	{
+		LoggingEvent result = new LoggingEvent();
+		result.setLogger(getLogger());
+		result.setLevel(getLevel());
+		result.setMessage(getMessage());
+		result.setThrowable(getThrowable());
+		result.setCallStack(getCallStack());
+		result.setMdc(getMdc());
+		result.setNdc(getNdc());
+		result.setMarker(getMarker());
+		result.setThreadInfo(getThreadInfo());
+		result.setLoggerContext(getLoggerContext());
+		result.setSequenceNumber(getSequenceNumber());
+		result.setTimeStamp(getTimeStamp());
+		return result;
+	}
+}
@@ -34,8 +34,10 @@
 
 package de.huxhorn.lilith.data.logging.protobuf;
 
+import com.google.protobuf.CodedInputStream;
 import de.huxhorn.lilith.data.eventsource.LoggerContext;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Marker;
 import de.huxhorn.lilith.data.logging.Message;
@@ -50,7 +52,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
-class LoggingEventProtobufDecoder
+public class LoggingEventProtobufDecoder
 	implements Decoder<LoggingEvent>
 {
 	private final boolean compressing;
@@ -77,15 +79,12 @@ class LoggingEventProtobufDecoder
 		{
 			if(!compressing)
 			{
-				parsedEvent = LoggingProto.LoggingEvent.parseFrom(bytes);
+				return parse(bytes, 0, bytes.length);
 			}
-			else
+			try(ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+				GZIPInputStream gis = new GZIPInputStream(in))
 			{
-				try(ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-					GZIPInputStream gis = new GZIPInputStream(in))
-				{
-					parsedEvent = LoggingProto.LoggingEvent.parseFrom(gis);
-				}
+				parsedEvent = LoggingProto.LoggingEvent.parseFrom(gis);
 			}
 		}
 		catch(IOException e)
@@ -95,6 +94,30 @@ class LoggingEventProtobufDecoder
 		return convert(parsedEvent);
 	}
 
+	/**
+	 * Decodes an uncompressed event from a part of the given buffer without copying it.
+	 *
+	 * @param bytes the buffer containing the event.
+	 * @param offset the offset of the event in the buffer.
+	 * @param length the length of the event.
+	 * @return the decoded event or null if the bytes could not be decoded.
+	 */
+	public static LoggingEvent parse(byte[] bytes, int offset, int length)
+	{
+		if(bytes == null)
+		{
+			return null;
+		}
+		try
+		{
+			return convert(LoggingProto.LoggingEvent.parseFrom(CodedInputStream.newInstance(bytes, offset, length)));
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
 	public static Marker convert(LoggingProto.Marker marker)
 	{
 		if(marker == null)
@@ -107,7 +130,7 @@ class LoggingEventProtobufDecoder
 
 	private static Marker convert(LoggingProto.Marker marker, Map<String, Marker> markers)
 	{
-		String markerName = marker.getName();
+		String markerName = InternPool.internShared(marker.getName());
 
 		Marker result = markers.get(markerName);
 		if(result == null)
@@ -190,7 +213,7 @@ class LoggingEventProtobufDecoder
 			result.setExact(ste.getExact());
 		}
 
-		return result;
+		return InternPool.internShared(result);
 
 	}
 
@@ -205,7 +228,7 @@ class LoggingEventProtobufDecoder
 
 		if(throwable.hasThrowableClass())
 		{
-			result.setName(throwable.getThrowableClass());
+			result.setName(InternPool.internShared(throwable.getThrowableClass()));
 		}
 
 		if(throwable.hasMessage())
@@ -296,7 +319,7 @@ class LoggingEventProtobufDecoder
 		String threadName = null;
 		if(parsedThreadInfo.hasName())
 		{
-			threadName = parsedThreadInfo.getName();
+			threadName = InternPool.internShared(parsedThreadInfo.getName());
 		}
 		Long threadGroupId = null;
 		if(parsedThreadInfo.hasGroupId())
@@ -306,7 +329,7 @@ class LoggingEventProtobufDecoder
 		String threadGroupName = null;
 		if(parsedThreadInfo.hasGroupName())
 		{
-			threadGroupName = parsedThreadInfo.getGroupName();
+			threadGroupName = InternPool.internShared(parsedThreadInfo.getGroupName());
 		}
 		ThreadInfo result = new ThreadInfo(threadId, threadName, threadGroupId, threadGroupName);
 		if(parsedThreadInfo.hasPriority())
@@ -325,7 +348,7 @@ class LoggingEventProtobufDecoder
 		LoggerContext result = new LoggerContext();
 		if(loggerContext.hasName())
 		{
-			result.setName(loggerContext.getName());
+			result.setName(InternPool.internShared(loggerContext.getName()));
 		}
 		if(loggerContext.hasBirthTime())
 		{
@@ -351,7 +374,7 @@ class LoggingEventProtobufDecoder
 			List<LoggingProto.StringMapEntry> mdcList = stringMap.getEntryList();
 			for(LoggingProto.StringMapEntry current : mdcList)
 			{
-				String key = current.getKey();
+				String key = InternPool.internShared(current.getKey());
 				String value = null;
 				if(current.hasValue())
 				{
@@ -377,7 +400,7 @@ class LoggingEventProtobufDecoder
 		// handling loggerName
 		if(parsedEvent.hasLoggerName())
 		{
-			result.setLogger(parsedEvent.getLoggerName());
+			result.setLogger(InternPool.internShared(parsedEvent.getLoggerName()));
 		}
 
 		// handling sequence number
@@ -395,25 +418,7 @@ class LoggingEventProtobufDecoder
 		// handling level
 		if(parsedEvent.hasLevel())
 		{
-			LoggingProto.Level level = parsedEvent.getLevel();
-			switch(level)
-			{
-				case TRACE:
-					result.setLevel(LoggingEvent.Level.TRACE);
-					break;
-				case DEBUG:
-					result.setLevel(LoggingEvent.Level.DEBUG);
-					break;
-				case INFO:
-					result.setLevel(LoggingEvent.Level.INFO);
-					break;
-				case WARN:
-					result.setLevel(LoggingEvent.Level.WARN);
-					break;
-				default: // ERROR
-					result.setLevel(LoggingEvent.Level.ERROR);
-					break;
-			}
+			result.setLevel(convert(parsedEvent.getLevel()));
 		}
 
 		// handle LoggerContext
@@ -472,18 +477,49 @@ class LoggingEventProtobufDecoder
 		// handling NestedDiagnosticContext
 		if(parsedEvent.hasNestedDiagnosticContext())
 		{
-			LoggingProto.NestedDiagnosticContext parsedNdc = parsedEvent.getNestedDiagnosticContext();
-			int entryCount = parsedNdc.getEntryCount();
-			if(entryCount > 0)
-			{
-				List<LoggingProto.Message> entryList = parsedNdc.getEntryList();
-				Message[] ndc = new Message[entryCount];
-				for(int i = 0; i < entryCount; i++)
-				{
-					ndc[i] = convert(entryList.get(i));
-				}
-				result.setNdc(ndc);
-			}
+			result.setNdc(convert(parsedEvent.getNestedDiagnosticContext()));
+		}
+		return result;
+	}
+
+	public static LoggingEvent.Level convert(LoggingProto.Level level)
+	{
+		if(level == null)
+		{
+			return null;
+		}
+		switch(level)
+		{
+			case TRACE:
+				return LoggingEvent.Level.TRACE;
+			case DEBUG:
+				return LoggingEvent.Level.DEBUG;
+			case INFO:
+				return LoggingEvent.Level.INFO;
+			case WARN:
+				return LoggingEvent.Level.WARN;
+			default: // ERROR
+				return LoggingEvent.Level.ERROR;
+		}
+	}
+
+	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+	public static Message[] convert(LoggingProto.NestedDiagnosticContext parsedNdc)
+	{
+		if(parsedNdc == null)
+		{
+			return null;
+		}
+		int entryCount = parsedNdc.getEntryCount();
+		if(entryCount == 0)
+		{
+			return null;
+		}
+		List<LoggingProto.Message> entryList = parsedNdc.getEntryList();
+		Message[] result = new Message[entryCount];
+		for(int i = 0; i < entryCount; i++)
+		{
+			result[i] = convert(entryList.get(i));
 		}
 		return result;
 	}
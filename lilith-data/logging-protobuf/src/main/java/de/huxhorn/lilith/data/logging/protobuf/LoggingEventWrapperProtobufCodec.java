@@ -43,6 +43,15 @@ public class LoggingEventWrapperProtobufCodec
 {
 	public LoggingEventWrapperProtobufCodec(boolean compressing)
 	{
-		super(new LoggingEventWrapperProtobufEncoder(compressing), new LoggingEventWrapperProtobufDecoder(compressing));
+		this(compressing, false);
+	}
+
+	/**
+	 * @param compressing whether events are GZIPed.
+	 * @param lazy whether decoded events are LazyLoggingEvent instances converting fields on first access.
+	 */
+	public LoggingEventWrapperProtobufCodec(boolean compressing, boolean lazy)
+	{
+		super(new LoggingEventWrapperProtobufEncoder(compressing), new LoggingEventWrapperProtobufDecoder(compressing, lazy));
 	}
 }
@@ -34,7 +34,9 @@
 
 package de.huxhorn.lilith.data.logging.protobuf;
 
-import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
 import de.huxhorn.lilith.data.eventsource.EventIdentifier;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
@@ -42,17 +44,29 @@ import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.protobuf.generated.LoggingProto;
 import de.huxhorn.sulky.codec.Decoder;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.zip.GZIPInputStream;
 
 class LoggingEventWrapperProtobufDecoder
 	implements Decoder<EventWrapper<LoggingEvent>>
 {
+	private static final int EVENT_IDENTIFIER = 1;
+	private static final int EVENT = 2;
+	private static final int INFLATE_BUFFER_SIZE = 8192;
+
 	private final boolean compressing;
+	private final boolean lazy;
 
 	LoggingEventWrapperProtobufDecoder(boolean compressing)
+	{
+		this(compressing, false);
+	}
+
+	LoggingEventWrapperProtobufDecoder(boolean compressing, boolean lazy)
 	{
 		this.compressing = compressing;
+		this.lazy = lazy;
 	}
 
 	public boolean isCompressing()
@@ -60,6 +74,11 @@ class LoggingEventWrapperProtobufDecoder
 		return compressing;
 	}
 
+	public boolean isLazy()
+	{
+		return lazy;
+	}
+
 	@Override
 	public EventWrapper<LoggingEvent> decode(byte[] bytes)
 	{
@@ -67,21 +86,126 @@ class LoggingEventWrapperProtobufDecoder
 		{
 			return null;
 		}
+		if(lazy)
+		{
+			return parseLazily(bytes, 0, bytes.length, compressing);
+		}
+		return convert(parse(bytes, 0, bytes.length, compressing));
+	}
+
+	/**
+	 * Decodes an event wrapper from a part of the given buffer, containing a LazyLoggingEvent.
+	 *
+	 * The buffer must not be modified afterwards if it isn't compressed.
+	 *
+	 * @param bytes the buffer containing the event wrapper.
+	 * @param offset the offset of the event wrapper in the buffer.
+	 * @param length the length of the event wrapper.
+	 * @param compressing whether the event wrapper is GZIPed.
+	 * @return the decoded event wrapper or null if decoding failed.
+	 */
+	static EventWrapper<LoggingEvent> parseLazily(byte[] bytes, int offset, int length, boolean compressing)
+	{
+		try
+		{
+			if(compressing)
+			{
+				bytes = inflate(bytes, offset, length);
+				offset = 0;
+				length = bytes.length;
+			}
+			EventWrapper<LoggingEvent> result = new EventWrapper<>();
+			CodedInputStream input = CodedInputStream.newInstance(bytes, offset, length);
+			for(;;)
+			{
+				int tag = input.readTag();
+				if(tag == 0)
+				{
+					break;
+				}
+				int fieldNumber = WireFormat.getTagFieldNumber(tag);
+				if(WireFormat.getTagWireType(tag) != WireFormat.WIRETYPE_LENGTH_DELIMITED)
+				{
+					if(!input.skipField(tag))
+					{
+						break;
+					}
+				}
+				else if(fieldNumber == EVENT_IDENTIFIER)
+				{
+					result.setEventIdentifier(convert(input.readMessage(LoggingProto.EventIdentifier.parser(), ExtensionRegistryLite.getEmptyRegistry())));
+				}
+				else if(fieldNumber == EVENT)
+				{
+					int eventLength = input.readRawVarint32();
+					int eventOffset = offset + input.getTotalBytesRead();
+					input.skipRawBytes(eventLength);
+					LazyLoggingEvent event = LazyLoggingEvent.parse(bytes, eventOffset, eventLength);
+					if(event == null)
+					{
+						return null;
+					}
+					result.setEvent(event);
+				}
+				else if(!input.skipField(tag))
+				{
+					break;
+				}
+			}
+			return result;
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
+	private static byte[] inflate(byte[] bytes, int offset, int length)
+		throws IOException
+	{
+		try(GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(bytes, offset, length));
+			ByteArrayOutputStream out = new ByteArrayOutputStream(length * 4))
+		{
+			byte[] buffer = new byte[INFLATE_BUFFER_SIZE];
+			for(;;)
+			{
+				int read = gis.read(buffer);
+				if(read < 0)
+				{
+					break;
+				}
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * Parses an event wrapper from a part of the given buffer.
+	 *
+	 * @param bytes the buffer containing the event wrapper.
+	 * @param offset the offset of the event wrapper in the buffer.
+	 * @param length the length of the event wrapper.
+	 * @param compressing whether the event wrapper is GZIPed.
+	 * @return the parsed event wrapper or null if parsing failed.
+	 */
+	static LoggingProto.EventWrapper parse(byte[] bytes, int offset, int length, boolean compressing)
+	{
 		LoggingProto.EventWrapper parsedEvent = null;
 		if(!compressing)
 		{
 			try
 			{
-				parsedEvent = LoggingProto.EventWrapper.parseFrom(bytes);
+				parsedEvent = LoggingProto.EventWrapper.parseFrom(CodedInputStream.newInstance(bytes, offset, length));
 			}
-			catch(InvalidProtocolBufferException e)
+			catch(IOException e)
 			{
 				// ignore
 			}
 		}
 		else
 		{
-			try(ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+			try(ByteArrayInputStream in = new ByteArrayInputStream(bytes, offset, length);
 				GZIPInputStream gis = new GZIPInputStream(in))
 			{
 				parsedEvent = LoggingProto.EventWrapper.parseFrom(gis);
@@ -91,7 +215,7 @@ class LoggingEventWrapperProtobufDecoder
 				// ignore
 			}
 		}
-		return convert(parsedEvent);
+		return parsedEvent;
 	}
 
 	public static EventWrapper<LoggingEvent> convert(LoggingProto.EventWrapper parsedEvent)
@@ -63,7 +63,12 @@ class LoggingEventWrapperProtobufEncoder
 	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
 	public byte[] encode(EventWrapper<LoggingEvent> wrapper)
 	{
-		LoggingProto.EventWrapper converted = convert(wrapper);
+		return toBytes(convert(wrapper), compressing);
+	}
+
+	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+	static byte[] toBytes(LoggingProto.EventWrapper converted, boolean compressing)
+	{
 		if(converted == null)
 		{
 			return null;
@@ -0,0 +1,167 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging.protobuf;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.test.LoggingEventIOTestBase;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyLoggingEventIOTest
+	extends LoggingEventIOTestBase
+{
+	public LazyLoggingEventIOTest(Boolean logging)
+	{
+		super(logging);
+	}
+
+	@Override
+	protected void logUncompressedData(byte[] bytes)
+	{
+		// do nothing
+	}
+
+	@Override
+	public byte[] write(LoggingEvent event, boolean compressing)
+	{
+		LoggingEventWrapperProtobufCodec ser = new LoggingEventWrapperProtobufCodec(compressing, true);
+		return ser.encode(new EventWrapper<>(null, 17, event));
+	}
+
+	@Override
+	public LoggingEvent read(byte[] bytes, boolean compressing)
+	{
+		LoggingEventWrapperProtobufCodec des = new LoggingEventWrapperProtobufCodec(compressing, true);
+		EventWrapper<LoggingEvent> wrapper = des.decode(bytes);
+		assertEquals(17, wrapper.getLocalId());
+		assertTrue(wrapper.getEvent() instanceof LazyLoggingEvent);
+		return wrapper.getEvent();
+	}
+
+	private static LoggingEvent createEvent()
+	{
+		LoggingEvent event = new LoggingEvent();
+		event.setLogger("logger");
+		event.setLevel(LoggingEvent.Level.WARN);
+		event.setTimeStamp(1_234_567_890_000L);
+		event.setMessage(new Message("message"));
+		event.setMdc(Collections.singletonMap("key", "value"));
+		ThrowableInfo throwable = new ThrowableInfo();
+		throwable.setName("java.lang.RuntimeException");
+		throwable.setStackTrace(new ExtendedStackTraceElement[]{new ExtendedStackTraceElement("Foo", "bar", "Foo.java", 17)});
+		event.setThrowable(throwable);
+		event.setCallStack(new ExtendedStackTraceElement[]{
+				new ExtendedStackTraceElement("Caller", "call", "Caller.java", 1),
+				new ExtendedStackTraceElement("Caller", "call", "Caller.java", 2),
+		});
+		return event;
+	}
+
+	@Test
+	public void fieldsAreConvertedOnDemand()
+	{
+		LoggingEvent event = createEvent();
+		LazyLoggingEvent lazy = (LazyLoggingEvent) read(write(event, false), false);
+
+		assertEquals(LoggingEvent.Level.WARN, lazy.getLevel());
+		assertEquals(Long.valueOf(1_234_567_890_000L), lazy.getTimeStamp());
+		assertFalse(lazy.isResolved());
+		assertEquals("logger", lazy.getLogger());
+		assertEquals(new Message("message"), lazy.getMessage());
+		assertEquals(event.getMdc(), lazy.getMdc());
+		assertFalse(lazy.isResolved());
+		assertEquals(event.getThrowable(), lazy.getThrowable());
+		assertFalse(lazy.isResolved());
+		assertEquals(2, lazy.getCallStack().length);
+		assertTrue(lazy.isResolved());
+		assertEquals(event, lazy);
+		assertEquals(event.hashCode(), lazy.hashCode());
+	}
+
+	@Test
+	public void settersReplaceEncodedValues()
+	{
+		LazyLoggingEvent lazy = (LazyLoggingEvent) read(write(createEvent(), true), true);
+		ThrowableInfo throwable = new ThrowableInfo();
+		throwable.setName("other");
+
+		lazy.setThrowable(throwable);
+		lazy.setCallStack(null);
+		lazy.setLogger(null);
+
+		assertSame(throwable, lazy.getThrowable());
+		assertNull(lazy.getCallStack());
+		assertNull(lazy.getLogger());
+		assertNotNull(lazy.getMdc());
+	}
+
+	@Test
+	public void serializedAsLoggingEvent()
+		throws Exception
+	{
+		LoggingEvent event = createEvent();
+		LoggingEvent lazy = read(write(event, false), false);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try(ObjectOutputStream oos = new ObjectOutputStream(out))
+		{
+			oos.writeObject(lazy);
+		}
+		Object deserialized;
+		try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray())))
+		{
+			deserialized = ois.readObject();
+		}
+
+		assertEquals(LoggingEvent.class, deserialized.getClass());
+		assertEquals(event, deserialized);
+	}
+}
@@ -36,6 +36,7 @@ package de.huxhorn.lilith.data.logging.xml;
 
 import de.huxhorn.lilith.data.eventsource.LoggerContext;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Marker;
 import de.huxhorn.lilith.data.logging.Message;
@@ -81,7 +82,7 @@ public class LoggingEventReader
 		if(XMLStreamConstants.START_ELEMENT == type && LOGGING_EVENT_NODE.equals(reader.getLocalName()))
 		{
 			result = new LoggingEvent();
-			result.setLogger(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, LOGGER_ATTRIBUTE));
+			result.setLogger(InternPool.internShared(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, LOGGER_ATTRIBUTE)));
 			result
 				.setLevel(LoggingEvent.Level.valueOf(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, LEVEL_ATTRIBUTE)));
 
@@ -101,10 +102,10 @@ public class LoggingEventReader
 			}
 
 			{
-				String threadName = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, THREAD_NAME_ATTRIBUTE);
+				String threadName = InternPool.internShared(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, THREAD_NAME_ATTRIBUTE));
 				String threadIdStr = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, THREAD_ID_ATTRIBUTE);
-				String threadGroupName = StaxUtilities
-					.readAttributeValue(reader, NAMESPACE_URI, THREAD_GROUP_NAME_ATTRIBUTE);
+				String threadGroupName = InternPool.internShared(StaxUtilities
+					.readAttributeValue(reader, NAMESPACE_URI, THREAD_GROUP_NAME_ATTRIBUTE));
 				String threadGroupIdStr = StaxUtilities
 					.readAttributeValue(reader, NAMESPACE_URI, THREAD_GROUP_ID_ATTRIBUTE);
 				String threadPriorityStr = StaxUtilities
@@ -229,8 +230,8 @@ public class LoggingEventReader
 		{
 			result = new LoggerContext();
 
-			result.setName(StaxUtilities
-				.readAttributeValue(reader, NAMESPACE_URI, LOGGER_CONTEXT_NAME_ATTRIBUTE));
+			result.setName(InternPool.internShared(StaxUtilities
+				.readAttributeValue(reader, NAMESPACE_URI, LOGGER_CONTEXT_NAME_ATTRIBUTE)));
 
 			result
 				.setBirthTime(readTimeStamp(reader, LOGGER_CONTEXT_BIRTH_TIME_MILLIS_ATTRIBUTE, LOGGER_CONTEXT_BIRTH_TIME_ATTRIBUTE));
@@ -318,7 +319,7 @@ public class LoggingEventReader
 		int type = reader.getEventType();
 		if(XMLStreamConstants.START_ELEMENT == type && MARKER_NODE.equals(reader.getLocalName()))
 		{
-			String name = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, MARKER_NAME_ATTRIBUTE);
+			String name = InternPool.internShared(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, MARKER_NAME_ATTRIBUTE));
 			marker = new Marker(name);
 			markers.put(name, marker);
 			reader.nextTag();
@@ -406,7 +407,7 @@ public class LoggingEventReader
 		if(XMLStreamConstants.START_ELEMENT == type && STRING_MAP_ENTRY_NODE.equals(reader.getLocalName()))
 		{
 			StringMapEntry entry = new StringMapEntry();
-			entry.key = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, STRING_MAP_ENTRY_KEY_ATTRIBUTE);
+			entry.key = InternPool.internShared(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, STRING_MAP_ENTRY_KEY_ATTRIBUTE));
 			entry.value = StaxUtilities.readText(reader);
 			reader.require(XMLStreamConstants.END_ELEMENT, null, STRING_MAP_ENTRY_NODE);
 			reader.nextTag();
@@ -452,7 +453,7 @@ public class LoggingEventReader
 		if(XMLStreamConstants.START_ELEMENT == type && nodeName.equals(reader.getLocalName()))
 		{
 			ThrowableInfo throwable = new ThrowableInfo();
-			String name = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, THROWABLE_CLASS_NAME_ATTRIBUTE);
+			String name = InternPool.internShared(StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, THROWABLE_CLASS_NAME_ATTRIBUTE));
 			throwable.setName(name);
 			String omittedStr = StaxUtilities.readAttributeValue(reader, NAMESPACE_URI, OMITTED_ELEMENTS_ATTRIBUTE);
 			if(omittedStr != null)
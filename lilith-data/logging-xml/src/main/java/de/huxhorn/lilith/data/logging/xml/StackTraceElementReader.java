@@ -35,6 +35,7 @@
 package de.huxhorn.lilith.data.logging.xml;
 
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.sulky.stax.GenericStreamReader;
 import de.huxhorn.sulky.stax.StaxUtilities;
 import javax.xml.stream.XMLStreamConstants;
@@ -95,7 +96,7 @@ public class StackTraceElementReader
 			result.setClassLoaderName(classLoaderName);
 			result.setModuleName(moduleName);
 			result.setModuleVersion(moduleVersion);
-			return result;
+			return InternPool.internShared(result);
 		}
 		return null;
 	}
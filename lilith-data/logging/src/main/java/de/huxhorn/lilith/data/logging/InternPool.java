@@ -0,0 +1,388 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded, thread-safe pool of Strings and ExtendedStackTraceElements that are repeated in many events,
+ * e.g. logger names, thread names, MDC keys and stack frames.
+ *
+ * The pool consists of two generations. Values are added to the current generation. If the current
+ * generation is full, it becomes the previous generation and the former previous generation is dropped.
+ * Values found in the previous generation are moved to the current generation. This way, the pool
+ * keeps the values that are still in use without the need for an LRU list.
+ *
+ * Decoders and converters use the shared pool via the static internShared methods. Interning is
+ * disabled, i.e. these methods return their argument, unless a shared pool has been set.
+ *
+ * Pooled ExtendedStackTraceElement instances are shared by multiple events and must not be modified.
+ */
+public final class InternPool
+{
+	public static final int DEFAULT_MAX_SIZE = 100_000;
+
+	private static final int STRING_SIZE = 40;
+	private static final int STACK_TRACE_ELEMENT_SIZE = 56;
+
+	private static volatile InternPool shared;
+
+	private final int generationSize;
+	private final LongAdder lookups = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder savedBytes = new LongAdder();
+	private volatile ConcurrentMap<Object, Object> current = new ConcurrentHashMap<>();
+	private volatile ConcurrentMap<Object, Object> previous = new ConcurrentHashMap<>();
+
+	public InternPool()
+	{
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum number of pooled values.
+	 */
+	public InternPool(int maxSize)
+	{
+		if(maxSize < 1)
+		{
+			throw new IllegalArgumentException("maxSize must be greater than zero but was " + maxSize + "!");
+		}
+		this.generationSize = Math.max(1, maxSize / 2);
+	}
+
+	public static InternPool getShared()
+	{
+		return shared;
+	}
+
+	/**
+	 * Sets the pool used by decoders and converters.
+	 *
+	 * @param pool the pool, null disables interning.
+	 */
+	public static void setShared(InternPool pool)
+	{
+		shared = pool;
+	}
+
+	public static String internShared(String value)
+	{
+		InternPool pool = shared;
+		if(pool == null)
+		{
+			return value;
+		}
+		return pool.intern(value);
+	}
+
+	public static LoggingEvent internShared(LoggingEvent event)
+	{
+		InternPool pool = shared;
+		if(pool == null)
+		{
+			return event;
+		}
+		return pool.intern(event);
+	}
+
+	public static ExtendedStackTraceElement internShared(ExtendedStackTraceElement value)
+	{
+		InternPool pool = shared;
+		if(pool == null)
+		{
+			return value;
+		}
+		return pool.intern(value);
+	}
+
+	/**
+	 * Returns the pooled String equal to value, adding value to the pool if there is none.
+	 *
+	 * @param value the value.
+	 * @return the pooled String.
+	 */
+	public String intern(String value)
+	{
+		if(value == null)
+		{
+			return null;
+		}
+		Object existing = lookup(value);
+		if(existing != null)
+		{
+			hits.increment();
+			savedBytes.add(estimate(value));
+			return (String) existing;
+		}
+		return (String) add(value);
+	}
+
+	/**
+	 * Returns the pooled ExtendedStackTraceElement equal to value, adding value to the pool if there is none.
+	 *
+	 * The Strings of a value that is added are interned, too, i.e. value may be modified.
+	 *
+	 * @param value the value.
+	 * @return the pooled ExtendedStackTraceElement.
+	 */
+	public ExtendedStackTraceElement intern(ExtendedStackTraceElement value)
+	{
+		if(value == null)
+		{
+			return null;
+		}
+		Object existing = lookup(value);
+		if(existing != null)
+		{
+			hits.increment();
+			savedBytes.add(estimate(value));
+			return (ExtendedStackTraceElement) existing;
+		}
+		value.setClassName(intern(value.getClassName()));
+		value.setMethodName(intern(value.getMethodName()));
+		value.setFileName(intern(value.getFileName()));
+		value.setCodeLocation(intern(value.getCodeLocation()));
+		value.setVersion(intern(value.getVersion()));
+		value.setClassLoaderName(intern(value.getClassLoaderName()));
+		value.setModuleName(intern(value.getModuleName()));
+		value.setModuleVersion(intern(value.getModuleVersion()));
+		return (ExtendedStackTraceElement) add(value);
+	}
+
+	/**
+	 * Interns logger name, thread name, thread group name, MDC keys, throwable names and stack frames
+	 * of the given event in place.
+	 *
+	 * This is meant for decoders that can't intern these values while creating the event.
+	 *
+	 * @param event the event.
+	 * @return the given event.
+	 */
+	public LoggingEvent intern(LoggingEvent event)
+	{
+		if(event == null)
+		{
+			return null;
+		}
+		event.setLogger(intern(event.getLogger()));
+		ThreadInfo threadInfo = event.getThreadInfo();
+		if(threadInfo != null)
+		{
+			threadInfo.setName(intern(threadInfo.getName()));
+			threadInfo.setGroupName(intern(threadInfo.getGroupName()));
+		}
+		Map<String, String> mdc = event.getMdc();
+		if(mdc != null)
+		{
+			Map<String, String> internedMdc = new HashMap<>();
+			for(Map.Entry<String, String> entry : mdc.entrySet())
+			{
+				internedMdc.put(intern(entry.getKey()), entry.getValue());
+			}
+			event.setMdc(internedMdc);
+		}
+		internThrowable(event.getThrowable());
+		internStackTrace(event.getCallStack());
+		return event;
+	}
+
+	private void internThrowable(ThrowableInfo throwable)
+	{
+		if(throwable == null)
+		{
+			return;
+		}
+		throwable.setName(intern(throwable.getName()));
+		internStackTrace(throwable.getStackTrace());
+		ThrowableInfo[] suppressed = throwable.getSuppressed();
+		if(suppressed != null)
+		{
+			for(ThrowableInfo current : suppressed)
+			{
+				internThrowable(current);
+			}
+		}
+		internThrowable(throwable.getCause());
+	}
+
+	private void internStackTrace(ExtendedStackTraceElement[] stackTrace)
+	{
+		if(stackTrace == null)
+		{
+			return;
+		}
+		for(int i = 0; i < stackTrace.length; i++)
+		{
+			stackTrace[i] = intern(stackTrace[i]);
+		}
+	}
+
+	private Object lookup(Object value)
+	{
+		lookups.increment();
+		ConcurrentMap<Object, Object> currentGeneration = current;
+		Object result = currentGeneration.get(value);
+		if(result != null)
+		{
+			return result;
+		}
+		result = previous.get(value);
+		if(result != null)
+		{
+			// still in use, keep it
+			Object other = currentGeneration.putIfAbsent(result, result);
+			if(other != null)
+			{
+				return other;
+			}
+			rotateIfFull(currentGeneration);
+		}
+		return result;
+	}
+
+	private Object add(Object value)
+	{
+		ConcurrentMap<Object, Object> currentGeneration = current;
+		Object other = currentGeneration.putIfAbsent(value, value);
+		if(other != null)
+		{
+			// added concurrently
+			return other;
+		}
+		rotateIfFull(currentGeneration);
+		return value;
+	}
+
+	private void rotateIfFull(ConcurrentMap<Object, Object> currentGeneration)
+	{
+		if(currentGeneration.size() < generationSize)
+		{
+			return;
+		}
+		synchronized(this)
+		{
+			if(current == currentGeneration)
+			{
+				previous = currentGeneration;
+				current = new ConcurrentHashMap<>();
+			}
+		}
+	}
+
+	public synchronized void clear()
+	{
+		previous = new ConcurrentHashMap<>();
+		current = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @return the number of pooled values.
+	 */
+	public int getSize()
+	{
+		return current.size() + previous.size();
+	}
+
+	public long getLookups()
+	{
+		return lookups.sum();
+	}
+
+	public long getHits()
+	{
+		return hits.sum();
+	}
+
+	public double getHitRate()
+	{
+		long lookupCount = getLookups();
+		if(lookupCount == 0)
+		{
+			return 0;
+		}
+		return (double) getHits() / lookupCount;
+	}
+
+	/**
+	 * Returns the estimated number of bytes that have been saved by returning pooled values
+	 * instead of keeping the given ones.
+	 *
+	 * @return the estimated number of saved bytes.
+	 */
+	public long getSavedBytes()
+	{
+		return savedBytes.sum();
+	}
+
+	private static long estimate(String value)
+	{
+		if(value == null)
+		{
+			return 0;
+		}
+		return STRING_SIZE + 2L * value.length();
+	}
+
+	private static long estimate(ExtendedStackTraceElement value)
+	{
+		return STACK_TRACE_ELEMENT_SIZE
+				+ estimate(value.getClassName())
+				+ estimate(value.getMethodName())
+				+ estimate(value.getFileName())
+				+ estimate(value.getCodeLocation())
+				+ estimate(value.getVersion())
+				+ estimate(value.getClassLoaderName())
+				+ estimate(value.getModuleName())
+				+ estimate(value.getModuleVersion());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "InternPool[size=" + getSize()
+				+ ", lookups=" + getLookups()
+				+ ", hits=" + getHits()
+				+ ", hitRate=" + String.format(Locale.US, "%.1f%%", getHitRate() * 100)
+				+ ", savedBytes=" + getSavedBytes()
+				+ "]";
+	}
+}
@@ -38,6 +38,7 @@ import de.huxhorn.lilith.data.eventsource.LoggerContext;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * <p>Replacement for ch.qos.logback.classic.spi.LoggingEvent</p>
@@ -199,32 +200,42 @@ public class LoggingEvent
 		this.callStack = callStack;
 	}
 
+	/**
+	 * Compares all fields using their getters so that subclasses decoding fields lazily are equal
+	 * to LoggingEvent instances with the same values.
+	 */
 	@Override
 	public boolean equals(Object o)
 	{
 		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
+		if (!(o instanceof LoggingEvent)) return false;
 
 		LoggingEvent event = (LoggingEvent) o;
 
-		return level == event.level
-				&& (sequenceNumber != null ? sequenceNumber.equals(event.sequenceNumber) : event.sequenceNumber == null)
-				&& (timeStamp != null ? timeStamp.equals(event.timeStamp) : event.timeStamp == null)
-				&& (logger != null ? logger.equals(event.logger) : event.logger == null)
-				&& (loggerContext != null ? loggerContext.equals(event.loggerContext) : event.loggerContext == null)
-				&& (message != null ? message.equals(event.message) : event.message == null)
-				&& (threadInfo != null ? threadInfo.equals(event.threadInfo) : event.threadInfo == null)
-				&& Arrays.equals(callStack, event.callStack)
-				&& (marker != null ? marker.equals(event.marker) : event.marker == null)
-				&& (mdc != null ? mdc.equals(event.mdc) : event.mdc == null)
-				&& Arrays.equals(ndc, event.ndc)
-				&& (throwable != null ? throwable.equals(event.throwable) : event.throwable == null);
+		return getLevel() == event.getLevel()
+				&& Objects.equals(getSequenceNumber(), event.getSequenceNumber())
+				&& Objects.equals(getTimeStamp(), event.getTimeStamp())
+				&& Objects.equals(getLogger(), event.getLogger())
+				&& Objects.equals(getLoggerContext(), event.getLoggerContext())
+				&& Objects.equals(getMessage(), event.getMessage())
+				&& Objects.equals(getThreadInfo(), event.getThreadInfo())
+				&& Arrays.equals(getCallStack(), event.getCallStack())
+				&& Objects.equals(getMarker(), event.getMarker())
+				&& Objects.equals(getMdc(), event.getMdc())
+				&& Arrays.equals(getNdc(), event.getNdc())
+				&& Objects.equals(getThrowable(), event.getThrowable());
 	}
 
 	@Override
 	public int hashCode()
 	{
 		int result;
+		String logger = getLogger();
+		Long sequenceNumber = getSequenceNumber();
+		Level level = getLevel();
+		Message message = getMessage();
+		Long timeStamp = getTimeStamp();
+		ThreadInfo threadInfo = getThreadInfo();
 		result = (logger != null ? logger.hashCode() : 0);
 		result = 31 * result + (sequenceNumber != null ? sequenceNumber.hashCode() : 0);
 		result = 31 * result + (level != null ? level.hashCode() : 0);
@@ -238,18 +249,18 @@ public class LoggingEvent
 	public String toString()
 	{
 		return "LoggingEvent{" +
-				"logger='" + logger + '\'' +
-				", level=" + level +
-				", message=" + message +
-				", throwable=" + throwable +
-				", callStack=" + Arrays.toString(callStack) +
-				", mdc=" + mdc +
-				", ndc=" + Arrays.toString(ndc) +
-				", marker=" + marker +
-				", threadInfo=" + threadInfo +
-				", loggerContext=" + loggerContext +
-				", sequenceNumber=" + sequenceNumber +
-				", timeStamp=" + timeStamp +
+				"logger='" + getLogger() + '\'' +
+				", level=" + getLevel() +
+				", message=" + getMessage() +
+				", throwable=" + getThrowable() +
+				", callStack=" + Arrays.toString(getCallStack()) +
+				", mdc=" + getMdc() +
+				", ndc=" + Arrays.toString(getNdc()) +
+				", marker=" + getMarker() +
+				", threadInfo=" + getThreadInfo() +
+				", loggerContext=" + getLoggerContext() +
+				", sequenceNumber=" + getSequenceNumber() +
+				", timeStamp=" + getTimeStamp() +
 				'}';
 	}
 }
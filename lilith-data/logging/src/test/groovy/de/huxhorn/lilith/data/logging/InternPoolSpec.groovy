@@ -0,0 +1,165 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.data.logging
+
+import spock.lang.Specification
+
+class InternPoolSpec extends Specification {
+
+	def cleanup() {
+		InternPool.shared = null
+	}
+
+	private static String copy(String value) {
+		return new String(value.toCharArray())
+	}
+
+	private static ExtendedStackTraceElement createFrame(int lineNumber) {
+		return new ExtendedStackTraceElement(copy('de.huxhorn.Foo'), copy('bar'), copy('Foo.java'), lineNumber, copy('foo.jar'), copy('1.0'), true)
+	}
+
+	def 'equal Strings are pooled.'() {
+		given:
+		InternPool pool = new InternPool()
+		String first = copy('logger')
+		String second = copy('logger')
+
+		expect:
+		pool.intern(first).is(first)
+		pool.intern(second).is(first)
+		pool.size == 1
+		pool.lookups == 2
+		pool.hits == 1
+		pool.hitRate == 0.5d
+		pool.savedBytes == 40 + 2 * 'logger'.length()
+	}
+
+	def 'equal stack frames are pooled and the Strings of new frames are interned.'() {
+		given:
+		InternPool pool = new InternPool()
+		String className = pool.intern(copy('de.huxhorn.Foo'))
+		ExtendedStackTraceElement first = createFrame(17)
+
+		when:
+		ExtendedStackTraceElement pooled = pool.intern(first)
+
+		then:
+		pooled.is(first)
+		first.className.is(className)
+
+		when:
+		ExtendedStackTraceElement second = createFrame(17)
+		ExtendedStackTraceElement third = createFrame(18)
+
+		then:
+		pool.intern(second).is(first)
+		pool.intern(third).is(third)
+		third.className.is(className)
+		third.methodName.is(first.methodName)
+	}
+
+	def 'pool is bounded and keeps values that are still in use.'() {
+		given:
+		InternPool pool = new InternPool(10)
+		String used = pool.intern(copy('used'))
+
+		when:
+		for(int i = 0; i < 100; i++) {
+			pool.intern(copy('value ' + i))
+			if(i % 3 == 0) {
+				assert pool.intern(copy('used')).is(used)
+			}
+		}
+
+		then:
+		pool.size <= 10
+		pool.intern(copy('used')).is(used)
+		!pool.intern(copy('value 0')).is(null)
+	}
+
+	def 'values of an event are interned in place.'() {
+		given:
+		InternPool pool = new InternPool()
+		String logger = pool.intern(copy('logger'))
+		String key = pool.intern(copy('key'))
+		ExtendedStackTraceElement frame = pool.intern(createFrame(17))
+		LoggingEvent event = new LoggingEvent()
+		event.logger = copy('logger')
+		event.threadInfo = new ThreadInfo(1L, copy('main'), null, null)
+		event.mdc = [(copy('key')): 'value']
+		event.callStack = [createFrame(17)] as ExtendedStackTraceElement[]
+		ThrowableInfo cause = new ThrowableInfo(name: copy('java.lang.RuntimeException'), stackTrace: [createFrame(17)] as ExtendedStackTraceElement[])
+		event.throwable = new ThrowableInfo(name: copy('java.lang.RuntimeException'), cause: cause)
+
+		when:
+		LoggingEvent result = pool.intern(event)
+
+		then:
+		result.is(event)
+		event.logger.is(logger)
+		event.mdc.keySet().iterator().next().is(key)
+		event.mdc == [key: 'value']
+		event.callStack[0].is(frame)
+		event.throwable.cause.stackTrace[0].is(frame)
+		event.throwable.name.is(cause.name)
+	}
+
+	def 'shared pool is optional.'() {
+		given:
+		String first = copy('logger')
+		String second = copy('logger')
+
+		expect:
+		InternPool.internShared(first).is(first)
+		InternPool.internShared(second).is(second)
+
+		when:
+		InternPool.shared = new InternPool()
+
+		then:
+		InternPool.internShared(first).is(first)
+		InternPool.internShared(second).is(first)
+		InternPool.shared.hits == 1
+	}
+
+	def 'invalid maxSize is rejected.'() {
+		when:
+		new InternPool(0)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+}
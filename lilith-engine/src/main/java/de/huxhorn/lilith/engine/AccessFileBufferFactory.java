@@ -44,9 +44,9 @@ public class AccessFileBufferFactory
 		{
 			Map<String, String> data = metaData.getData();
 			String compressionStr = data.get(FileConstants.COMPRESSION_KEY);
+			// COMPRESSION_VALUE_DEFLATE_BLOCKS is handled by BlockCompressedFileBuffer, events are encoded uncompressed.
 			if(FileConstants.COMPRESSION_VALUE_GZIP.equals(compressionStr))
 			{
-				// TODO: support/handling of other compressions, e.g. Deflate
 				compressed = true;
 			}
 			format = data.get(FileConstants.CONTENT_FORMAT_KEY);
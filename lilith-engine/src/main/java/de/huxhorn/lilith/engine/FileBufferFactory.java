@@ -21,9 +21,13 @@ package de.huxhorn.lilith.engine;
 import de.huxhorn.lilith.api.FileConstants;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
+import de.huxhorn.lilith.engine.impl.blocks.BlockCompressedFileBuffer;
+import de.huxhorn.lilith.engine.impl.blocks.BlockFormat;
+import de.huxhorn.lilith.engine.impl.mapped.MappedCodecFileBuffer;
 import de.huxhorn.sulky.buffers.FileBuffer;
 import de.huxhorn.sulky.codec.Codec;
 import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer;
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
 import de.huxhorn.sulky.codec.filebuffer.FileHeader;
 import de.huxhorn.sulky.codec.filebuffer.MetaData;
 import java.io.File;
@@ -66,6 +70,21 @@ public abstract class FileBufferFactory<T extends Serializable>
 
 	public abstract Codec<EventWrapper<T>> resolveCodec(MetaData metaData);
 
+	/**
+	 * Returns the codec of the given data file.
+	 *
+	 * This default implementation simply calls resolveCodec(metaData). It has to be overridden by
+	 * factories supporting formats that store parts of the events next to the data file.
+	 *
+	 * @param metaData the meta data of the data file.
+	 * @param dataFile the data file.
+	 * @return the codec.
+	 */
+	public Codec<EventWrapper<T>> resolveCodec(MetaData metaData, File dataFile)
+	{
+		return resolveCodec(metaData);
+	}
+
 	public FileBuffer<EventWrapper<T>> createBuffer(SourceIdentifier si)
 	{
 		File dataFile = logFileFactory.getDataFile(si);
@@ -81,21 +100,123 @@ public abstract class FileBufferFactory<T extends Serializable>
 		return createBuffer(dataFile, indexFile, usedMetaData);
 	}
 
+	/**
+	 * Creates a buffer for the given files.
+	 *
+	 * The format of an existing file is defined by its header, the format of a new file by usedMetaData.
+	 * Files using COMPRESSION_VALUE_DEFLATE_BLOCKS are handled by BlockCompressedFileBuffer,
+	 * all other files by CodecFileBuffer.
+	 *
+	 * @param dataFile the data file.
+	 * @param indexFile the index file.
+	 * @param usedMetaData the meta data of a new file.
+	 * @return the buffer.
+	 */
 	public FileBuffer<EventWrapper<T>> createBuffer(File dataFile, File indexFile, Map<String, String> usedMetaData)
 	{
 		if(logger.isInfoEnabled()) logger.info("Creating buffer for dataFile '{}'.", dataFile.getAbsolutePath());
 
+		FileHeader existingHeader = readFileHeader(dataFile);
+		if(existingHeader == null ? BlockFormat.isBlockCompressed(usedMetaData) : BlockFormat.isBlockCompressed(existingHeader.getMetaData()))
+		{
+			return createBlockCompressedBuffer(dataFile, indexFile, usedMetaData);
+		}
+
 		CodecFileBuffer<EventWrapper<T>> result = new CodecFileBuffer<>(magicValue, false, usedMetaData, null, dataFile, indexFile);
 
 		FileHeader fileHeader = result.getFileHeader();
 		MetaData actualMetaData = fileHeader.getMetaData();
 
-		result.setCodec(resolveCodec(actualMetaData));
+		result.setCodec(resolveCodec(actualMetaData, dataFile));
 		if(logger.isDebugEnabled()) logger.debug("Created file buffer: {}", result);
 
 		return result;
 	}
 
+	public FileBuffer<EventWrapper<T>> createReadOnlyBuffer(SourceIdentifier si)
+	{
+		return createReadOnlyBuffer(logFileFactory.getDataFile(si), logFileFactory.getIndexFile(si));
+	}
+
+	/**
+	 * Creates a read-only, memory-mapped buffer for the given files.
+	 *
+	 * This is meant for sources that aren't written to anymore and for tools that only read.
+	 * If the file header can't be read, null is returned.
+	 *
+	 * @param dataFile the data file.
+	 * @param indexFile the index file.
+	 * @return the read-only buffer or null if the file header is missing or invalid.
+	 */
+	public FileBuffer<EventWrapper<T>> createReadOnlyBuffer(File dataFile, File indexFile)
+	{
+		if(logger.isInfoEnabled()) logger.info("Creating read-only buffer for dataFile '{}'.", dataFile.getAbsolutePath());
+
+		FileHeader existingHeader = readFileHeader(dataFile);
+		if(existingHeader != null && existingHeader.getMagicValue() == magicValue && BlockFormat.isBlockCompressed(existingHeader.getMetaData()))
+		{
+			// blocks are read and inflated as a whole so there's nothing to gain from mapping them.
+			return createBlockCompressedBuffer(dataFile, indexFile, null);
+		}
+
+		MappedCodecFileBuffer<EventWrapper<T>> result;
+		try
+		{
+			result = new MappedCodecFileBuffer<>(dataFile, indexFile);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't create read-only buffer for dataFile '{}'!", dataFile.getAbsolutePath(), ex);
+			return null;
+		}
+
+		FileHeader fileHeader = result.getFileHeader();
+		if(fileHeader.getMagicValue() != magicValue)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Invalid magic value 0x{} in dataFile '{}'!", Integer.toHexString(fileHeader.getMagicValue()), dataFile.getAbsolutePath());
+			return null;
+		}
+
+		result.setCodec(resolveCodec(fileHeader.getMetaData(), dataFile));
+		if(logger.isDebugEnabled()) logger.debug("Created read-only file buffer: {}", result);
+
+		return result;
+	}
+
+	private FileBuffer<EventWrapper<T>> createBlockCompressedBuffer(File dataFile, File indexFile, Map<String, String> usedMetaData)
+	{
+		BlockCompressedFileBuffer<EventWrapper<T>> result;
+		try
+		{
+			result = new BlockCompressedFileBuffer<>(magicValue, usedMetaData, null, dataFile, indexFile);
+		}
+		catch(IOException ex)
+		{
+			throw new IllegalStateException("Couldn't create block-compressed buffer for dataFile '" + dataFile.getAbsolutePath() + "'!", ex);
+		}
+		result.setCodec(resolveCodec(result.getFileHeader().getMetaData(), dataFile));
+		if(logger.isDebugEnabled()) logger.debug("Created block-compressed file buffer: {}", result);
+
+		return result;
+	}
+
+	private FileHeader readFileHeader(File dataFile)
+	{
+		if(!dataFile.isFile() || dataFile.length() == 0)
+		{
+			return null;
+		}
+		try
+		{
+			return new DefaultFileHeaderStrategy().readFileHeader(dataFile);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read file header of '{}'!", dataFile.getAbsolutePath(), ex);
+			return null;
+		}
+	}
+
 	public FileBuffer<EventWrapper<T>> createActiveBuffer(SourceIdentifier si)
 	{
 		FileBuffer<EventWrapper<T>> result = createBuffer(si);
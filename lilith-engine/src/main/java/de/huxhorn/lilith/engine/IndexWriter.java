@@ -0,0 +1,47 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.sulky.buffers.Buffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Appends events to an index file that is written next to the data file of a source.
+ *
+ * The writer must be informed about every event added to the data file, in the same order.
+ * Implementations are not required to be thread-safe.
+ */
+public interface IndexWriter
+	extends Closeable
+{
+	/**
+	 * Adds the events that have just been added to the buffer.
+	 *
+	 * @param events the events that have been added to the buffer.
+	 * @param buffer the buffer.
+	 * @param <T> the event type.
+	 * @throws IOException if writing fails.
+	 */
+	<T extends Serializable> void addAll(List<EventWrapper<T>> events, Buffer<EventWrapper<T>> buffer)
+		throws IOException;
+}
@@ -30,6 +30,14 @@ public interface LogFileFactory
 
 	File getActiveFile(SourceIdentifier sourceIdentifier);
 
+	File getTimeIndexFile(SourceIdentifier sourceIdentifier);
+
+	File getFieldIndexFile(SourceIdentifier sourceIdentifier);
+
+	File getTextIndexFile(SourceIdentifier sourceIdentifier);
+
+	File getContentStoreFile(SourceIdentifier sourceIdentifier);
+
 	String getDataFileExtension();
 
 	long getSizeOnDisk(SourceIdentifier sourceIdentifier);
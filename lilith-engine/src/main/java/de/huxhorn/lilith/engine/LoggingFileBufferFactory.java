@@ -21,9 +21,13 @@ package de.huxhorn.lilith.engine;
 import de.huxhorn.lilith.api.FileConstants;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.protobuf.ContentStore;
+import de.huxhorn.lilith.data.logging.protobuf.DeduplicatingLoggingEventWrapperProtobufCodec;
 import de.huxhorn.lilith.data.logging.protobuf.LoggingEventWrapperProtobufCodec;
+import de.huxhorn.lilith.engine.impl.contentstore.FileContentStore;
 import de.huxhorn.sulky.codec.Codec;
 import de.huxhorn.sulky.codec.filebuffer.MetaData;
+import java.io.File;
 import java.util.Map;
 
 public class LoggingFileBufferFactory
@@ -34,27 +38,50 @@ public class LoggingFileBufferFactory
 		super(logFileFactory, metaData);
 	}
 
+	/**
+	 * Returns the codec for the given meta data.
+	 *
+	 * Decoded events are LazyLoggingEvent instances, converting fields only when they are used.
+	 * Files using DEDUPLICATION_VALUE_CONTENT_HASH require resolveCodec(MetaData, File) instead.
+	 */
 	@Override
 	public Codec<EventWrapper<LoggingEvent>> resolveCodec(MetaData metaData)
+	{
+		return resolveCodec(metaData, null);
+	}
+
+	@Override
+	public Codec<EventWrapper<LoggingEvent>> resolveCodec(MetaData metaData, File dataFile)
 	{
 		boolean compressed = false;
+		boolean deduplicated = false;
 		String format = null;
 
 		if(metaData != null)
 		{
 			Map<String, String> data = metaData.getData();
 			String compressionStr = data.get(FileConstants.COMPRESSION_KEY);
+			// COMPRESSION_VALUE_DEFLATE_BLOCKS is handled by BlockCompressedFileBuffer, events are encoded uncompressed.
 			if(FileConstants.COMPRESSION_VALUE_GZIP.equals(compressionStr))
 			{
-				// TODO: support/handling of other compressions, e.g. Deflate
 				compressed = true;
 			}
+			deduplicated = FileConstants.DEDUPLICATION_VALUE_CONTENT_HASH.equals(data.get(FileConstants.DEDUPLICATION_KEY));
 			format = data.get(FileConstants.CONTENT_FORMAT_KEY);
 		}
 
 		if(FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF.equals(format))
 		{
-			return new LoggingEventWrapperProtobufCodec(compressed);
+			if(deduplicated)
+			{
+				if(dataFile == null)
+				{
+					throw new IllegalArgumentException("Deduplicated files require the data file to resolve the content store!");
+				}
+				ContentStore contentStore = new FileContentStore(FileContentStore.resolveContentStoreFile(dataFile));
+				return new DeduplicatingLoggingEventWrapperProtobufCodec(compressed, contentStore);
+			}
+			return new LoggingEventWrapperProtobufCodec(compressed, true);
 		}
 
 		throw new IllegalArgumentException("Unknown content format " + format + "!");
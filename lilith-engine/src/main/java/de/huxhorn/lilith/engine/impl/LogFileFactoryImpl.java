@@ -91,6 +91,34 @@ public class LogFileFactoryImpl
 		return new File(baseName + FileConstants.ACTIVE_FILE_EXTENSION);
 	}
 
+	@Override
+	public File getTimeIndexFile(SourceIdentifier sourceIdentifier)
+	{
+		String baseName = getBaseFileName(sourceIdentifier);
+		return new File(baseName + FileConstants.TIME_INDEX_FILE_EXTENSION);
+	}
+
+	@Override
+	public File getFieldIndexFile(SourceIdentifier sourceIdentifier)
+	{
+		String baseName = getBaseFileName(sourceIdentifier);
+		return new File(baseName + FileConstants.FIELD_INDEX_FILE_EXTENSION);
+	}
+
+	@Override
+	public File getTextIndexFile(SourceIdentifier sourceIdentifier)
+	{
+		String baseName = getBaseFileName(sourceIdentifier);
+		return new File(baseName + FileConstants.TEXT_INDEX_FILE_EXTENSION);
+	}
+
+	@Override
+	public File getContentStoreFile(SourceIdentifier sourceIdentifier)
+	{
+		String baseName = getBaseFileName(sourceIdentifier);
+		return new File(baseName + FileConstants.CONTENT_STORE_FILE_EXTENSION);
+	}
+
 	@Override
 	public String getDataFileExtension()
 	{
@@ -102,9 +130,17 @@ public class LogFileFactoryImpl
 	{
 		File indexFile = getIndexFile(sourceIdentifier);
 		File dataFile = getDataFile(sourceIdentifier);
+		File timeIndexFile = getTimeIndexFile(sourceIdentifier);
+		File fieldIndexFile = getFieldIndexFile(sourceIdentifier);
+		File textIndexFile = getTextIndexFile(sourceIdentifier);
+		File contentStoreFile = getContentStoreFile(sourceIdentifier);
 		long indexSize = indexFile.length();
 		long dataSize = dataFile.length();
-		return indexSize + dataSize;
+		long timeIndexSize = timeIndexFile.length();
+		long fieldIndexSize = fieldIndexFile.length();
+		long textIndexSize = textIndexFile.length();
+		long contentStoreSize = contentStoreFile.length();
+		return indexSize + dataSize + timeIndexSize + fieldIndexSize + textIndexSize + contentStoreSize;
 	}
 
 	@Override
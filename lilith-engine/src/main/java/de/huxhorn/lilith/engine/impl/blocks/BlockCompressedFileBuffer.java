@@ -0,0 +1,769 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.blocks;
+
+import de.huxhorn.sulky.buffers.BasicBufferIterator;
+import de.huxhorn.sulky.buffers.DisposeOperation;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.FlushOperation;
+import de.huxhorn.sulky.codec.Codec;
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
+import de.huxhorn.sulky.codec.filebuffer.FileHeader;
+import de.huxhorn.sulky.codec.filebuffer.FileHeaderStrategy;
+import de.huxhorn.sulky.codec.filebuffer.MetaData;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FileBuffer storing blocks of events deflated together, as described in BlockFormat.
+ *
+ * Added events are kept in memory until a block is full, flush is called or the oldest pending event is
+ * older than maxPendingMillis. The latter is checked by a shared scheduler so pending events are written
+ * even if no further events are added. Pending events are only visible to this buffer instance.
+ * The most recently used blocks are cached.
+ */
+public class BlockCompressedFileBuffer<E>
+	implements FileBuffer<E>, FlushOperation, DisposeOperation
+{
+	public static final long DEFAULT_MAX_PENDING_MILLIS = 5000;
+
+	private static final int INDEX_ENTRY_SIZE = 8;
+	private static final int CACHED_BLOCKS = 8;
+
+	private final Logger logger = LoggerFactory.getLogger(BlockCompressedFileBuffer.class);
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+	private final File dataFile;
+	private final File indexFile;
+	private final FileHeaderStrategy fileHeaderStrategy;
+	private final FileHeader fileHeader;
+	private final int blockSize;
+	private final boolean dictionaryEnabled;
+	private final List<byte[]> pending;
+	private final Map<Long, Block> blockCache;
+	private volatile Codec<E> codec;
+	private volatile byte[] dictionary;
+	private volatile boolean disposed;
+	private long maxPendingMillis;
+	private long pendingSince;
+	private boolean flushScheduled;
+	private Deflater deflater;
+
+	/**
+	 * Opens the given files, creating them if necessary.
+	 *
+	 * @param magicValue the magic value of the file.
+	 * @param preferredMetaData the meta data used if the file has to be created.
+	 * @param codec the codec of the events, may be set later.
+	 * @param dataFile the data file.
+	 * @param indexFile the index file.
+	 * @throws IOException if the file header couldn't be read or written.
+	 * @throws IllegalArgumentException if the file has a different magic value or isn't block-compressed.
+	 */
+	public BlockCompressedFileBuffer(int magicValue, Map<String, String> preferredMetaData, Codec<E> codec, File dataFile, File indexFile)
+		throws IOException
+	{
+		this.dataFile = Objects.requireNonNull(dataFile, "dataFile must not be null!");
+		this.indexFile = Objects.requireNonNull(indexFile, "indexFile must not be null!");
+		this.fileHeaderStrategy = new DefaultFileHeaderStrategy();
+		this.codec = codec;
+		FileHeader header = null;
+		if(dataFile.isFile() && dataFile.length() > 0)
+		{
+			header = fileHeaderStrategy.readFileHeader(dataFile);
+			if(header == null)
+			{
+				throw new IllegalArgumentException("Invalid file header in '" + dataFile.getAbsolutePath() + "'!");
+			}
+		}
+		if(header == null)
+		{
+			Map<String, String> metaData = preferredMetaData == null ? new HashMap<>() : new HashMap<>(preferredMetaData);
+			header = fileHeaderStrategy.writeFileHeader(dataFile, magicValue, metaData, false);
+			if(indexFile.isFile() && !indexFile.delete())
+			{
+				throw new IOException("Couldn't delete stale index file '" + indexFile.getAbsolutePath() + "'!");
+			}
+		}
+		if(header.getMagicValue() != magicValue)
+		{
+			throw new IllegalArgumentException("Expected magic value 0x" + Integer.toHexString(magicValue) + " but found 0x" + Integer.toHexString(header.getMagicValue()) + " in '" + dataFile.getAbsolutePath() + "'!");
+		}
+		MetaData metaData = header.getMetaData();
+		if(!BlockFormat.isBlockCompressed(metaData))
+		{
+			throw new IllegalArgumentException("File '" + dataFile.getAbsolutePath() + "' isn't block-compressed!");
+		}
+		this.fileHeader = header;
+		this.blockSize = BlockFormat.resolveBlockSize(metaData.getData());
+		this.dictionaryEnabled = BlockFormat.isDictionaryEnabled(metaData.getData());
+		this.pending = new ArrayList<>(blockSize);
+		this.blockCache = new LinkedHashMap<Long, Block>(CACHED_BLOCKS * 2, 0.75f, true)
+		{
+			private static final long serialVersionUID = -4312768216592462383L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Block> eldest)
+			{
+				return size() > CACHED_BLOCKS;
+			}
+		};
+		this.maxPendingMillis = DEFAULT_MAX_PENDING_MILLIS;
+	}
+
+	public FileHeader getFileHeader()
+	{
+		return fileHeader;
+	}
+
+	public Codec<E> getCodec()
+	{
+		return codec;
+	}
+
+	public void setCodec(Codec<E> codec)
+	{
+		this.codec = codec;
+	}
+
+	public int getBlockSize()
+	{
+		return blockSize;
+	}
+
+	public boolean isDictionaryEnabled()
+	{
+		return dictionaryEnabled;
+	}
+
+	public long getMaxPendingMillis()
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			return maxPendingMillis;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	public void setMaxPendingMillis(long maxPendingMillis)
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			this.maxPendingMillis = maxPendingMillis;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public File getDataFile()
+	{
+		return dataFile;
+	}
+
+	public File getIndexFile()
+	{
+		return indexFile;
+	}
+
+	@Override
+	public long getSize()
+	{
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try
+		{
+			return getStoredSize() + pending.size();
+		}
+		finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	private long getStoredSize()
+	{
+		return indexFile.length() / INDEX_ENTRY_SIZE;
+	}
+
+	@Override
+	public E get(long index)
+	{
+		if(disposed || index < 0)
+		{
+			return null;
+		}
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try
+		{
+			long storedSize = getStoredSize();
+			if(index >= storedSize)
+			{
+				long pendingIndex = index - storedSize;
+				if(pendingIndex < pending.size())
+				{
+					return decode(pending.get((int) pendingIndex));
+				}
+				return null;
+			}
+			long indexEntry;
+			try(RandomAccessFile indexRandomAccessFile = new RandomAccessFile(indexFile, "r"))
+			{
+				indexRandomAccessFile.seek(index * INDEX_ENTRY_SIZE);
+				indexEntry = indexRandomAccessFile.readLong();
+			}
+			Block block = resolveBlock(BlockFormat.blockOffset(indexEntry));
+			return decode(block.getEntry(BlockFormat.position(indexEntry)));
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read element {} of '{}'!", index, dataFile.getAbsolutePath(), ex);
+			return null;
+		}
+		finally
+		{
+			readLock.unlock();
+		}
+	}
+
+	private E decode(byte[] bytes)
+	{
+		if(bytes == null)
+		{
+			return null;
+		}
+		Codec<E> currentCodec = codec;
+		if(currentCodec == null)
+		{
+			throw new IllegalStateException("Codec has not been initialized!");
+		}
+		return currentCodec.decode(bytes);
+	}
+
+	private byte[] encode(E element)
+	{
+		if(element == null)
+		{
+			return null;
+		}
+		Codec<E> currentCodec = codec;
+		if(currentCodec == null)
+		{
+			throw new IllegalStateException("Codec has not been initialized!");
+		}
+		return currentCodec.encode(element);
+	}
+
+	private Block resolveBlock(long offset)
+		throws IOException
+	{
+		synchronized(blockCache)
+		{
+			Block result = blockCache.get(offset);
+			if(result != null)
+			{
+				return result;
+			}
+		}
+		Block result;
+		try(RandomAccessFile dataRandomAccessFile = new RandomAccessFile(dataFile, "r"))
+		{
+			BlockFormat.RecordHeader recordHeader = BlockFormat.readRecordHeader(dataRandomAccessFile, offset);
+			if(recordHeader == null || recordHeader.isDictionary())
+			{
+				throw new IOException("There is no block at offset " + offset + "!");
+			}
+			byte[] payload = readPayload(dataRandomAccessFile, recordHeader);
+			byte[] uncompressed = inflate(payload, recordHeader.getUncompressedLength(), resolveDictionary(dataRandomAccessFile));
+			result = Block.parse(uncompressed, recordHeader.getEntryCount());
+		}
+		synchronized(blockCache)
+		{
+			blockCache.put(offset, result);
+		}
+		return result;
+	}
+
+	private static byte[] readPayload(RandomAccessFile dataRandomAccessFile, BlockFormat.RecordHeader recordHeader)
+		throws IOException
+	{
+		byte[] result = new byte[recordHeader.getPayloadLength()];
+		dataRandomAccessFile.seek(recordHeader.getOffset() + BlockFormat.RECORD_HEADER_SIZE);
+		dataRandomAccessFile.readFully(result);
+		return result;
+	}
+
+	private byte[] resolveDictionary(RandomAccessFile dataRandomAccessFile)
+		throws IOException
+	{
+		if(!dictionaryEnabled)
+		{
+			return null;
+		}
+		byte[] result = dictionary;
+		if(result == null)
+		{
+			BlockFormat.RecordHeader recordHeader = BlockFormat.readRecordHeader(dataRandomAccessFile, fileHeader.getDataOffset());
+			if(recordHeader != null && recordHeader.isDictionary())
+			{
+				result = inflate(readPayload(dataRandomAccessFile, recordHeader), recordHeader.getUncompressedLength(), null);
+				dictionary = result;
+			}
+		}
+		return result;
+	}
+
+	private static byte[] inflate(byte[] payload, int uncompressedLength, byte[] dictionary)
+		throws IOException
+	{
+		byte[] result = new byte[uncompressedLength];
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(payload);
+			int length = 0;
+			while(length < uncompressedLength)
+			{
+				int count = inflater.inflate(result, length, uncompressedLength - length);
+				if(count == 0)
+				{
+					if(inflater.needsDictionary())
+					{
+						if(dictionary == null)
+						{
+							throw new IOException("Block needs a dictionary but the file doesn't contain one!");
+						}
+						inflater.setDictionary(dictionary);
+					}
+					else if(inflater.finished() || inflater.needsInput())
+					{
+						throw new IOException("Block is shorter than expected!");
+					}
+				}
+				length += count;
+			}
+		}
+		catch(DataFormatException ex)
+		{
+			throw new IOException("Block is corrupted!", ex);
+		}
+		finally
+		{
+			inflater.end();
+		}
+		return result;
+	}
+
+	private byte[] deflate(byte[] uncompressed, byte[] dictionary)
+	{
+		if(deflater == null)
+		{
+			deflater = new Deflater();
+		}
+		deflater.reset();
+		if(dictionary != null)
+		{
+			deflater.setDictionary(dictionary);
+		}
+		deflater.setInput(uncompressed);
+		deflater.finish();
+		ByteArrayOutputStream output = new ByteArrayOutputStream(uncompressed.length / 2 + 64);
+		byte[] chunk = new byte[8192];
+		while(!deflater.finished())
+		{
+			int count = deflater.deflate(chunk);
+			output.write(chunk, 0, count);
+		}
+		return output.toByteArray();
+	}
+
+	@Override
+	public void add(E element)
+	{
+		addAll(Collections.singletonList(element));
+	}
+
+	@Override
+	public void addAll(E[] elements)
+	{
+		addAll(Arrays.asList(elements));
+	}
+
+	@Override
+	public void addAll(List<E> elements)
+	{
+		if(elements == null || elements.isEmpty())
+		{
+			return;
+		}
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			long now = System.nanoTime();
+			for(E element : elements)
+			{
+				if(pending.isEmpty())
+				{
+					pendingSince = now;
+				}
+				pending.add(encode(element));
+				if(pending.size() >= blockSize)
+				{
+					writeBlock();
+				}
+			}
+			writeExpiredBlock(now);
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the pending elements if the oldest one is older than maxPendingMillis.
+	 * Otherwise, the check is scheduled for the time the oldest one expires.
+	 * Must be called while holding the write lock.
+	 */
+	private void writeExpiredBlock(long now)
+	{
+		if(pending.isEmpty())
+		{
+			return;
+		}
+		long maxPendingNanos = TimeUnit.MILLISECONDS.toNanos(maxPendingMillis);
+		long age = now - pendingSince;
+		if(age >= maxPendingNanos)
+		{
+			writeBlock();
+			return;
+		}
+		if(!flushScheduled && !disposed)
+		{
+			flushScheduled = true;
+			FlushSchedulerHolder.SCHEDULER.schedule(this::flushExpired, maxPendingNanos - age, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	private void flushExpired()
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			flushScheduled = false;
+			if(!disposed)
+			{
+				writeExpiredBlock(System.nanoTime());
+			}
+		}
+		catch(Throwable t)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while writing pending elements to '{}'!", dataFile.getAbsolutePath(), t);
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Writes the pending elements as one block. Must be called while holding the write lock.
+	 */
+	private void writeBlock()
+	{
+		List<byte[]> entries = new ArrayList<>(pending);
+		pending.clear();
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream output = new DataOutputStream(bytes);
+			for(byte[] current : entries)
+			{
+				if(current == null)
+				{
+					output.writeInt(-1);
+				}
+				else
+				{
+					output.writeInt(current.length);
+					output.write(current);
+				}
+			}
+			output.flush();
+			byte[] uncompressed = bytes.toByteArray();
+
+			long offset;
+			try(RandomAccessFile dataRandomAccessFile = new RandomAccessFile(dataFile, "rw"))
+			{
+				offset = dataRandomAccessFile.length();
+				byte[] currentDictionary = null;
+				if(dictionaryEnabled)
+				{
+					if(offset <= fileHeader.getDataOffset())
+					{
+						currentDictionary = Arrays.copyOfRange(uncompressed, Math.max(0, uncompressed.length - BlockFormat.MAX_DICTIONARY_SIZE), uncompressed.length);
+						writeRecord(dataRandomAccessFile, offset, BlockFormat.DICTIONARY_ENTRY_COUNT, deflate(currentDictionary, null), currentDictionary.length);
+						dictionary = currentDictionary;
+						offset = dataRandomAccessFile.length();
+					}
+					else
+					{
+						currentDictionary = resolveDictionary(dataRandomAccessFile);
+					}
+				}
+				writeRecord(dataRandomAccessFile, offset, entries.size(), deflate(uncompressed, currentDictionary), uncompressed.length);
+			}
+
+			ByteBuffer indexEntries = ByteBuffer.allocate(entries.size() * INDEX_ENTRY_SIZE);
+			for(int i = 0; i < entries.size(); i++)
+			{
+				indexEntries.putLong(BlockFormat.indexEntry(offset, i));
+			}
+			try(RandomAccessFile indexRandomAccessFile = new RandomAccessFile(indexFile, "rw"))
+			{
+				indexRandomAccessFile.seek(indexRandomAccessFile.length());
+				indexRandomAccessFile.write(indexEntries.array());
+			}
+
+			Block block = Block.parse(uncompressed, entries.size());
+			synchronized(blockCache)
+			{
+				blockCache.put(offset, block);
+			}
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't write {} elements to '{}'!", entries.size(), dataFile.getAbsolutePath(), ex);
+		}
+	}
+
+	private static void writeRecord(RandomAccessFile dataRandomAccessFile, long offset, int entryCount, byte[] payload, int uncompressedLength)
+		throws IOException
+	{
+		dataRandomAccessFile.seek(offset);
+		dataRandomAccessFile.writeInt(payload.length);
+		dataRandomAccessFile.writeInt(entryCount);
+		dataRandomAccessFile.writeInt(uncompressedLength);
+		dataRandomAccessFile.write(payload);
+	}
+
+	/**
+	 * Writes pending elements as a (possibly incomplete) block.
+	 */
+	@Override
+	public void flush()
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			if(!pending.isEmpty())
+			{
+				writeBlock();
+			}
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isFull()
+	{
+		return false;
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new BasicBufferIterator<>(this);
+	}
+
+	@Override
+	public void reset()
+	{
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			pending.clear();
+			synchronized(blockCache)
+			{
+				blockCache.clear();
+			}
+			dictionary = null;
+			indexFile.delete();
+			dataFile.delete();
+			fileHeaderStrategy.writeFileHeader(dataFile, fileHeader.getMagicValue(), fileHeader.getMetaData().getData(), false);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't write file header of '{}'!", dataFile.getAbsolutePath(), ex);
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public void dispose()
+	{
+		flush();
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try
+		{
+			disposed = true;
+			if(deflater != null)
+			{
+				deflater.end();
+				deflater = null;
+			}
+			synchronized(blockCache)
+			{
+				blockCache.clear();
+			}
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isDisposed()
+	{
+		return disposed;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BlockCompressedFileBuffer[fileHeader=" + fileHeader
+				+ ", dataFile=" + dataFile.getAbsolutePath()
+				+ ", indexFile=" + indexFile.getAbsolutePath()
+				+ ", blockSize=" + blockSize
+				+ ", dictionaryEnabled=" + dictionaryEnabled
+				+ ", codec=" + codec
+				+ "]";
+	}
+
+	private static final class Block
+	{
+		private final byte[] data;
+		private final int[] offsets;
+		private final int[] lengths;
+
+		private Block(byte[] data, int[] offsets, int[] lengths)
+		{
+			this.data = data;
+			this.offsets = offsets;
+			this.lengths = lengths;
+		}
+
+		static Block parse(byte[] data, int entryCount)
+			throws IOException
+		{
+			int[] offsets = new int[entryCount];
+			int[] lengths = new int[entryCount];
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			for(int i = 0; i < entryCount; i++)
+			{
+				if(buffer.remaining() < 4)
+				{
+					throw new IOException("Block is shorter than expected!");
+				}
+				int length = buffer.getInt();
+				offsets[i] = buffer.position();
+				lengths[i] = length;
+				if(length > 0)
+				{
+					if(length > buffer.remaining())
+					{
+						throw new IOException("Block is shorter than expected!");
+					}
+					buffer.position(buffer.position() + length);
+				}
+			}
+			return new Block(data, offsets, lengths);
+		}
+
+		byte[] getEntry(int position)
+			throws IOException
+		{
+			if(position >= offsets.length)
+			{
+				throw new IOException("Block doesn't contain position " + position + "!");
+			}
+			int length = lengths[position];
+			if(length < 0)
+			{
+				return null;
+			}
+			return Arrays.copyOfRange(data, offsets[position], offsets[position] + length);
+		}
+	}
+
+	private static final class FlushSchedulerHolder
+	{
+		static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "PendingBlockFlusher");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.blocks;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.sulky.codec.filebuffer.MetaData;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+/**
+ * The block-compressed format of Lilith files.
+ *
+ * The data file starts with the usual file header, followed by records.
+ * Record: int payload length, int entry count, int uncompressed length, followed by the payload.
+ * The payload of a block is deflated and contains entry count entries, each an int length followed by
+ * the encoded event. A length of -1 is a null event.
+ *
+ * If the file uses a dictionary, the first record is the deflated dictionary with an entry count of
+ * DICTIONARY_ENTRY_COUNT and all blocks are deflated using it as preset dictionary.
+ *
+ * The index file contains a long for every event, the offset of its block shifted left by POSITION_BITS
+ * combined with the position of the event inside of the block.
+ */
+public final class BlockFormat
+{
+	public static final int RECORD_HEADER_SIZE = 12;
+	public static final int DICTIONARY_ENTRY_COUNT = -1;
+	public static final int POSITION_BITS = 16;
+	public static final int MAX_BLOCK_SIZE = (1 << POSITION_BITS) - 1;
+	public static final int DEFAULT_BLOCK_SIZE = 64;
+	public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+	private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+
+	static
+	{
+		new BlockFormat(); // stfu, coverage
+	}
+
+	private BlockFormat() {}
+
+	public static boolean isBlockCompressed(MetaData metaData)
+	{
+		return metaData != null && isBlockCompressed(metaData.getData());
+	}
+
+	public static boolean isBlockCompressed(Map<String, String> metaData)
+	{
+		return metaData != null && FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS.equals(metaData.get(FileConstants.COMPRESSION_KEY));
+	}
+
+	/**
+	 * Returns the block size defined in the given meta data.
+	 *
+	 * @param metaData the meta data.
+	 * @return the block size or DEFAULT_BLOCK_SIZE if it's missing or invalid.
+	 */
+	public static int resolveBlockSize(Map<String, String> metaData)
+	{
+		String blockSizeStr = metaData == null ? null : metaData.get(FileConstants.BLOCK_SIZE_KEY);
+		if(blockSizeStr != null)
+		{
+			try
+			{
+				int result = Integer.parseInt(blockSizeStr);
+				if(result > 0 && result <= MAX_BLOCK_SIZE)
+				{
+					return result;
+				}
+			}
+			catch(NumberFormatException ex)
+			{
+				// ignore
+			}
+		}
+		return DEFAULT_BLOCK_SIZE;
+	}
+
+	public static boolean isDictionaryEnabled(Map<String, String> metaData)
+	{
+		return metaData != null && FileConstants.DICTIONARY_VALUE_FIRST_BLOCK.equals(metaData.get(FileConstants.DICTIONARY_KEY));
+	}
+
+	public static long indexEntry(long blockOffset, int position)
+	{
+		return blockOffset << POSITION_BITS | position;
+	}
+
+	public static long blockOffset(long indexEntry)
+	{
+		return indexEntry >>> POSITION_BITS;
+	}
+
+	public static int position(long indexEntry)
+	{
+		return (int) (indexEntry & POSITION_MASK);
+	}
+
+	/**
+	 * Reads the header of the record at the given offset.
+	 *
+	 * @param dataFile the data file.
+	 * @param offset the offset of the record.
+	 * @return the record header or null if the record isn't complete, yet.
+	 * @throws IOException if reading failed or the record is invalid.
+	 */
+	public static RecordHeader readRecordHeader(RandomAccessFile dataFile, long offset)
+		throws IOException
+	{
+		long fileSize = dataFile.length();
+		if(offset + RECORD_HEADER_SIZE > fileSize)
+		{
+			return null;
+		}
+		dataFile.seek(offset);
+		int payloadLength = dataFile.readInt();
+		int entryCount = dataFile.readInt();
+		int uncompressedLength = dataFile.readInt();
+		if(payloadLength < 0 || uncompressedLength < 0 || entryCount < DICTIONARY_ENTRY_COUNT || entryCount > MAX_BLOCK_SIZE)
+		{
+			throw new IOException("Invalid record at offset " + offset + "!");
+		}
+		RecordHeader result = new RecordHeader(offset, payloadLength, entryCount, uncompressedLength);
+		if(result.getEnd() > fileSize)
+		{
+			return null;
+		}
+		return result;
+	}
+
+	public static final class RecordHeader
+	{
+		private final long offset;
+		private final int payloadLength;
+		private final int entryCount;
+		private final int uncompressedLength;
+
+		RecordHeader(long offset, int payloadLength, int entryCount, int uncompressedLength)
+		{
+			this.offset = offset;
+			this.payloadLength = payloadLength;
+			this.entryCount = entryCount;
+			this.uncompressedLength = uncompressedLength;
+		}
+
+		public long getOffset()
+		{
+			return offset;
+		}
+
+		public int getPayloadLength()
+		{
+			return payloadLength;
+		}
+
+		public int getEntryCount()
+		{
+			return entryCount;
+		}
+
+		public int getUncompressedLength()
+		{
+			return uncompressedLength;
+		}
+
+		public boolean isDictionary()
+		{
+			return entryCount == DICTIONARY_ENTRY_COUNT;
+		}
+
+		public long getEnd()
+		{
+			return offset + RECORD_HEADER_SIZE + payloadLength;
+		}
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.contentstore;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.logging.protobuf.ContentStore;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only ContentStore file next to a Lilith data file.
+ *
+ * The file starts with a header consisting of MAGIC_VALUE and VERSION as ints.
+ * Every record consists of the hash length and content length as ints, followed by hash and content.
+ *
+ * The offsets of the records are kept in memory. Records appended by another instance, e.g. the one
+ * writing an active file, are found by scanning the rest of the file if a hash is unknown.
+ * A trailing record that is still being written is ignored.
+ */
+public final class FileContentStore
+	implements ContentStore
+{
+	public static final int MAGIC_VALUE = 0x43535452; // CSTR
+	public static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 8;
+	static final int RECORD_HEADER_SIZE = 8;
+
+	private final Logger logger = LoggerFactory.getLogger(FileContentStore.class);
+
+	private final File file;
+	private final Map<ByteBuffer, Long> recordOffsets = new HashMap<>();
+	private long scannedLength;
+
+	public FileContentStore(File file)
+	{
+		this.file = Objects.requireNonNull(file, "file must not be null!");
+	}
+
+	public static File resolveContentStoreFile(File dataFile)
+	{
+		String fileStr = dataFile.getAbsolutePath();
+		if(fileStr.toLowerCase(Locale.US).endsWith(FileConstants.FILE_EXTENSION))
+		{
+			fileStr = fileStr.substring(0, fileStr.length() - FileConstants.FILE_EXTENSION.length());
+		}
+		return new File(fileStr + FileConstants.CONTENT_STORE_FILE_EXTENSION);
+	}
+
+	public File getFile()
+	{
+		return file;
+	}
+
+	@Override
+	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+	public synchronized byte[] get(byte[] hash)
+	{
+		ByteBuffer key = ByteBuffer.wrap(hash);
+		if(!recordOffsets.containsKey(key) && !file.isFile())
+		{
+			return null;
+		}
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+		{
+			Long offset = recordOffsets.get(key);
+			if(offset == null)
+			{
+				scan(randomAccessFile);
+				offset = recordOffsets.get(key);
+				if(offset == null)
+				{
+					return null;
+				}
+			}
+			randomAccessFile.seek(offset);
+			int hashLength = randomAccessFile.readInt();
+			int contentLength = randomAccessFile.readInt();
+			randomAccessFile.seek(offset + RECORD_HEADER_SIZE + hashLength);
+			byte[] result = new byte[contentLength];
+			randomAccessFile.readFully(result);
+			return result;
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read content from '{}'!", file.getAbsolutePath(), ex);
+			return null;
+		}
+	}
+
+	@Override
+	public synchronized boolean contains(byte[] hash)
+	{
+		ByteBuffer key = ByteBuffer.wrap(hash);
+		if(recordOffsets.containsKey(key))
+		{
+			return true;
+		}
+		if(!file.isFile())
+		{
+			return false;
+		}
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+		{
+			scan(randomAccessFile);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read '{}'!", file.getAbsolutePath(), ex);
+		}
+		return recordOffsets.containsKey(key);
+	}
+
+	@Override
+	public synchronized boolean put(byte[] hash, byte[] content)
+	{
+		Objects.requireNonNull(hash, "hash must not be null!");
+		Objects.requireNonNull(content, "content must not be null!");
+		ByteBuffer key = ByteBuffer.wrap(hash.clone());
+		if(recordOffsets.containsKey(key))
+		{
+			return false;
+		}
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			scan(randomAccessFile);
+			if(recordOffsets.containsKey(key))
+			{
+				return false;
+			}
+			if(scannedLength == 0)
+			{
+				randomAccessFile.setLength(0);
+				randomAccessFile.writeInt(MAGIC_VALUE);
+				randomAccessFile.writeInt(VERSION);
+				scannedLength = HEADER_SIZE;
+			}
+			ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + hash.length + content.length);
+			record.putInt(hash.length);
+			record.putInt(content.length);
+			record.put(hash);
+			record.put(content);
+			long offset = scannedLength;
+			long end = offset + record.capacity();
+			randomAccessFile.seek(offset);
+			randomAccessFile.write(record.array());
+			if(randomAccessFile.length() > end)
+			{
+				// remove the remains of an incomplete record
+				randomAccessFile.setLength(end);
+			}
+			recordOffsets.put(key, offset);
+			scannedLength = end;
+			return true;
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't write content to '{}'!", file.getAbsolutePath(), ex);
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of records.
+	 */
+	public synchronized int getSize()
+	{
+		if(file.isFile())
+		{
+			try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+			{
+				scan(randomAccessFile);
+			}
+			catch(IOException ex)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Couldn't read '{}'!", file.getAbsolutePath(), ex);
+			}
+		}
+		return recordOffsets.size();
+	}
+
+	private void scan(RandomAccessFile randomAccessFile)
+		throws IOException
+	{
+		long fileLength = randomAccessFile.length();
+		if(scannedLength == 0)
+		{
+			if(fileLength < HEADER_SIZE)
+			{
+				return;
+			}
+			randomAccessFile.seek(0);
+			int magic = randomAccessFile.readInt();
+			if(magic != MAGIC_VALUE)
+			{
+				throw new IOException("Invalid magic value 0x" + Integer.toHexString(magic) + "!");
+			}
+			int version = randomAccessFile.readInt();
+			if(version != VERSION)
+			{
+				throw new IOException("Unsupported version " + version + "!");
+			}
+			scannedLength = HEADER_SIZE;
+		}
+		while(scannedLength + RECORD_HEADER_SIZE <= fileLength)
+		{
+			randomAccessFile.seek(scannedLength);
+			int hashLength = randomAccessFile.readInt();
+			int contentLength = randomAccessFile.readInt();
+			if(hashLength < 0 || contentLength < 0)
+			{
+				throw new IOException("Invalid record at offset " + scannedLength + "!");
+			}
+			long end = scannedLength + RECORD_HEADER_SIZE + hashLength + contentLength;
+			if(end > fileLength)
+			{
+				// the record is still being written
+				break;
+			}
+			byte[] hash = new byte[hashLength]; // NOPMD - AvoidInstantiatingObjectsInLoops
+			randomAccessFile.readFully(hash);
+			recordOffsets.put(ByteBuffer.wrap(hash), scannedLength);
+			scannedLength = end;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FileContentStore[file=" + file.getAbsolutePath() + "]";
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import de.huxhorn.lilith.data.access.AccessEvent;
+import de.huxhorn.lilith.data.access.protobuf.AccessEventProtobufDecoder;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes protobuf AccessEvents directly from the receive buffer.
+ *
+ * Compressed events are inflated into a buffer that is reused for every event.
+ */
+public class AccessEventProtobufFrameDecoder
+	implements SingleEventFrameDecoder<AccessEvent>
+{
+	private final Logger logger = LoggerFactory.getLogger(AccessEventProtobufFrameDecoder.class);
+
+	private final GzipFrameInflater inflater;
+
+	public AccessEventProtobufFrameDecoder(boolean compressing)
+	{
+		this.inflater = compressing ? new GzipFrameInflater() : null;
+	}
+
+	public boolean isCompressing()
+	{
+		return inflater != null;
+	}
+
+	@Override
+	public AccessEvent decode(byte[] buffer, int offset, int length)
+	{
+		if(inflater == null)
+		{
+			return AccessEventProtobufDecoder.parse(buffer, offset, length);
+		}
+		try
+		{
+			int inflatedLength = inflater.inflate(buffer, offset, length);
+			return AccessEventProtobufDecoder.parse(inflater.getBuffer(), 0, inflatedLength);
+		}
+		catch(IOException e)
+		{
+			if(logger.isDebugEnabled()) logger.debug("Exception while inflating {} bytes!", length, e);
+			return null;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if(inflater != null)
+		{
+			inflater.end();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AccessEventProtobufFrameDecoder[compressing=" + isCompressing() + "]";
+	}
+}
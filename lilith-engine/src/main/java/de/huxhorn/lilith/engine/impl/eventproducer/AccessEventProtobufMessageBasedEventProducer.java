@@ -19,7 +19,6 @@
 package de.huxhorn.lilith.engine.impl.eventproducer;
 
 import de.huxhorn.lilith.data.access.AccessEvent;
-import de.huxhorn.lilith.data.access.protobuf.AccessEventProtobufDecoder;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.sulky.buffers.AppendOperation;
@@ -30,6 +29,6 @@ public class AccessEventProtobufMessageBasedEventProducer
 {
 	public AccessEventProtobufMessageBasedEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<AccessEvent>> eventQueue, InputStream inputStream, boolean compressing)
 	{
-		super(sourceIdentifier, eventQueue, new AccessEventSourceIdentifierUpdater(), new AccessEventProtobufDecoder(compressing), inputStream, true);
+		super(sourceIdentifier, eventQueue, new AccessEventSourceIdentifierUpdater(), new AccessEventProtobufFrameDecoder(compressing), inputStream, true);
 	}
 }
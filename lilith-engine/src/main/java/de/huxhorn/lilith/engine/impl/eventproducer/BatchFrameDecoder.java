@@ -0,0 +1,125 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes frames containing a batch of events, as written by BatchedMessageWriteByteStrategy.
+ *
+ * A batch is the sequence of the contained events, each prefixed with its size as a four byte integer.
+ * The batch may be GZIPed as a whole, which is detected by the GZIP magic bytes.
+ * The events itself are decoded by the given event decoder.
+ *
+ * @param <T> the type of the events.
+ */
+public class BatchFrameDecoder<T extends Serializable>
+	implements FrameDecoder<T>
+{
+	private static final int LENGTH_SIZE = 4;
+
+	private final Logger logger = LoggerFactory.getLogger(BatchFrameDecoder.class);
+
+	private final SingleEventFrameDecoder<T> eventDecoder;
+	private GzipFrameInflater inflater;
+
+	public BatchFrameDecoder(SingleEventFrameDecoder<T> eventDecoder)
+	{
+		this.eventDecoder = Objects.requireNonNull(eventDecoder, "eventDecoder must not be null!");
+	}
+
+	@Override
+	public void decode(byte[] buffer, int offset, int length, Consumer<? super T> consumer)
+	{
+		byte[] batch = buffer;
+		int position = offset;
+		int end = offset + length;
+		if(isCompressed(buffer, offset, length))
+		{
+			if(inflater == null)
+			{
+				inflater = new GzipFrameInflater();
+			}
+			try
+			{
+				end = inflater.inflate(buffer, offset, length);
+			}
+			catch(IOException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Exception while inflating batch of {} bytes!", length, e);
+				consumer.accept(null);
+				return;
+			}
+			batch = inflater.getBuffer();
+			position = 0;
+		}
+
+		while(position < end)
+		{
+			int eventLength = -1;
+			if(end - position >= LENGTH_SIZE)
+			{
+				eventLength = readInt(batch, position);
+				position += LENGTH_SIZE;
+			}
+			if(eventLength < 0 || eventLength > end - position)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Ignoring rest of corrupt batch.");
+				consumer.accept(null);
+				return;
+			}
+			consumer.accept(eventDecoder.decode(batch, position, eventLength));
+			position += eventLength;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if(inflater != null)
+		{
+			inflater.end();
+		}
+		eventDecoder.close();
+	}
+
+	private static boolean isCompressed(byte[] buffer, int offset, int length)
+	{
+		return length >= 2 && (buffer[offset] & 0xff) == 0x1f && (buffer[offset + 1] & 0xff) == 0x8b;
+	}
+
+	private static int readInt(byte[] buffer, int position)
+	{
+		return ((buffer[position] & 0xff) << 24)
+				| ((buffer[position + 1] & 0xff) << 16)
+				| ((buffer[position + 2] & 0xff) << 8)
+				| (buffer[position + 3] & 0xff);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "BatchFrameDecoder[eventDecoder=" + eventDecoder + "]";
+	}
+}
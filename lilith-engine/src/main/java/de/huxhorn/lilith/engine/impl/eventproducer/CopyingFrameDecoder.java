@@ -0,0 +1,56 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import de.huxhorn.sulky.codec.Decoder;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Adapts a Decoder to the SingleEventFrameDecoder interface by copying every frame into an array of the exact size.
+ *
+ * @param <T> the type of the events.
+ */
+class CopyingFrameDecoder<T extends Serializable>
+	implements SingleEventFrameDecoder<T>
+{
+	private final Decoder<T> decoder;
+
+	CopyingFrameDecoder(Decoder<T> decoder)
+	{
+		this.decoder = Objects.requireNonNull(decoder, "decoder must not be null!");
+	}
+
+	@Override
+	public T decode(byte[] buffer, int offset, int length)
+	{
+		if(offset == 0 && length == buffer.length)
+		{
+			return decoder.decode(buffer);
+		}
+		return decoder.decode(Arrays.copyOfRange(buffer, offset, offset + length));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "CopyingFrameDecoder[decoder=" + decoder + "]";
+	}
+}
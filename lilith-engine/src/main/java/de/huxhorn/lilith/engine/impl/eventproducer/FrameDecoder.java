@@ -0,0 +1,57 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+/**
+ * Decodes the events contained in a part of a reusable receive buffer.
+ *
+ * In contrast to Decoder, a FrameDecoder may keep state like reusable buffers,
+ * so every connection uses its own instance. Instances are not required to be thread-safe.
+ *
+ * A frame may contain any number of events, see SingleEventFrameDecoder for frames
+ * containing exactly one event.
+ *
+ * @param <T> the type of the events.
+ */
+public interface FrameDecoder<T extends Serializable>
+{
+	/**
+	 * Decodes all events contained in the frame and passes them to the consumer.
+	 * The buffer must not be referenced after this method returned.
+	 *
+	 * Events that could not be decoded are passed as null.
+	 *
+	 * @param buffer the buffer containing the frame.
+	 * @param offset the offset of the frame in the buffer.
+	 * @param length the length of the frame.
+	 * @param consumer the consumer of the decoded events.
+	 */
+	void decode(byte[] buffer, int offset, int length, Consumer<? super T> consumer);
+
+	/**
+	 * Releases the resources of this decoder. It must not be used afterwards.
+	 */
+	default void close()
+	{
+		// nothing to release by default
+	}
+}
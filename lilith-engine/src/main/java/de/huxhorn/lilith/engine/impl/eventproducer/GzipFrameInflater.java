@@ -0,0 +1,234 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Inflates GZIP compressed frames into a reusable buffer.
+ *
+ * A single Inflater is reset and reused for every frame instead of creating a
+ * GZIPInputStream, and therefore a new Inflater, per frame.
+ *
+ * Instances are not thread-safe.
+ */
+public class GzipFrameInflater
+{
+	static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+	private static final int GZIP_MAGIC = 0x8b1f;
+	private static final int DEFLATED = 8;
+	private static final int HEADER_SIZE = 10;
+	private static final int TRAILER_SIZE = 8;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final int maxInflatedSize;
+	private final Inflater inflater;
+	private final CRC32 crc;
+	private byte[] buffer;
+
+	public GzipFrameInflater()
+	{
+		this(NioEventProducer.DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public GzipFrameInflater(int maxInflatedSize)
+	{
+		if(maxInflatedSize <= 0)
+		{
+			throw new IllegalArgumentException("maxInflatedSize must be greater than zero but was " + maxInflatedSize + "!");
+		}
+		this.maxInflatedSize = maxInflatedSize;
+		this.inflater = new Inflater(true);
+		this.crc = new CRC32();
+		this.buffer = new byte[INITIAL_BUFFER_SIZE];
+	}
+
+	/**
+	 * Inflates the given GZIP data into the buffer returned by getBuffer().
+	 *
+	 * The content of the buffer is only valid until the next call of this method.
+	 *
+	 * @param input the buffer containing the compressed frame.
+	 * @param offset the offset of the compressed frame.
+	 * @param length the length of the compressed frame.
+	 * @return the number of inflated bytes.
+	 * @throws IOException if the data is not valid GZIP data or inflates to more than the maximum size.
+	 */
+	public int inflate(byte[] input, int offset, int length)
+		throws IOException
+	{
+		if(buffer.length > MAX_RETAINED_BUFFER_SIZE)
+		{
+			// don't keep the memory of a single huge event for the lifetime of the connection
+			buffer = new byte[INITIAL_BUFFER_SIZE];
+		}
+		int end = offset + length;
+		int position = skipHeader(input, offset, end);
+
+		inflater.reset();
+		inflater.setInput(input, position, end - position);
+		int inflated = 0;
+		try
+		{
+			while(!inflater.finished())
+			{
+				if(inflated == buffer.length)
+				{
+					growBuffer();
+				}
+				int count = inflater.inflate(buffer, inflated, buffer.length - inflated);
+				if(count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					throw new EOFException("Unexpected end of GZIP data!");
+				}
+				inflated += count;
+			}
+		}
+		catch(DataFormatException e)
+		{
+			throw new ZipException("Invalid GZIP data: " + e.getMessage());
+		}
+
+		int trailer = end - inflater.getRemaining();
+		if(end - trailer < TRAILER_SIZE)
+		{
+			throw new EOFException("Unexpected end of GZIP trailer!");
+		}
+		crc.reset();
+		crc.update(buffer, 0, inflated);
+		if(readInt(input, trailer) != (int) crc.getValue())
+		{
+			throw new ZipException("Corrupt GZIP trailer, CRC mismatch!");
+		}
+		if(readInt(input, trailer + 4) != inflated)
+		{
+			throw new ZipException("Corrupt GZIP trailer, size mismatch!");
+		}
+		return inflated;
+	}
+
+	public byte[] getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Releases the native resources of the Inflater.
+	 */
+	public void end()
+	{
+		inflater.end();
+	}
+
+	private void growBuffer()
+		throws ZipException
+	{
+		if(buffer.length >= maxInflatedSize)
+		{
+			throw new ZipException("GZIP data inflates to more than " + maxInflatedSize + " bytes!");
+		}
+		int newLength = buffer.length * 2;
+		if(newLength < 0 || newLength > maxInflatedSize)
+		{
+			newLength = maxInflatedSize;
+		}
+		buffer = Arrays.copyOf(buffer, newLength);
+	}
+
+	private static int skipHeader(byte[] input, int offset, int end)
+		throws IOException
+	{
+		if(end - offset < HEADER_SIZE)
+		{
+			throw new EOFException("Unexpected end of GZIP header!");
+		}
+		if(readShort(input, offset) != GZIP_MAGIC)
+		{
+			throw new ZipException("Not in GZIP format!");
+		}
+		if((input[offset + 2] & 0xff) != DEFLATED)
+		{
+			throw new ZipException("Unsupported compression method!");
+		}
+		int flags = input[offset + 3] & 0xff;
+		int position = offset + HEADER_SIZE;
+		if((flags & FEXTRA) != 0)
+		{
+			checkAvailable(position, 2, end);
+			position += 2 + readShort(input, position);
+		}
+		if((flags & FNAME) != 0)
+		{
+			position = skipZeroTerminated(input, position, end);
+		}
+		if((flags & FCOMMENT) != 0)
+		{
+			position = skipZeroTerminated(input, position, end);
+		}
+		if((flags & FHCRC) != 0)
+		{
+			position += 2;
+		}
+		checkAvailable(position, 0, end);
+		return position;
+	}
+
+	private static int skipZeroTerminated(byte[] input, int position, int end)
+		throws EOFException
+	{
+		while(position < end)
+		{
+			if(input[position++] == 0)
+			{
+				return position;
+			}
+		}
+		throw new EOFException("Unexpected end of GZIP header!");
+	}
+
+	private static void checkAvailable(int position, int count, int end)
+		throws EOFException
+	{
+		if(position + count > end)
+		{
+			throw new EOFException("Unexpected end of GZIP header!");
+		}
+	}
+
+	private static int readShort(byte[] input, int position)
+	{
+		return (input[position] & 0xff) | ((input[position + 1] & 0xff) << 8);
+	}
+
+	private static int readInt(byte[] input, int position)
+	{
+		return readShort(input, position) | (readShort(input, position + 2) << 16);
+	}
+}
@@ -21,7 +21,6 @@ package de.huxhorn.lilith.engine.impl.eventproducer;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
-import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.InputStream;
 
@@ -30,6 +29,6 @@ public class LoggingEventProtobufMessageBasedEventProducer
 {
 	public LoggingEventProtobufMessageBasedEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, InputStream inputStream, boolean compressing)
 	{
-		super(sourceIdentifier, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingEventProtobufCodec(compressing), inputStream, true);
+		super(sourceIdentifier, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingEventProtobufFrameDecoder(compressing), inputStream, true);
 	}
 }
@@ -29,25 +29,46 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+/**
+ * Receives events prefixed with their size as a four byte integer. A size of zero is a heartbeat.
+ *
+ * Events are read into a receive buffer that is reused for all events of the connection.
+ * Only events bigger than MAX_RETAINED_BUFFER_SIZE are read into a buffer of their own.
+ *
+ * @param <T> the type of the events.
+ */
 public class MessageBasedEventProducer<T extends Serializable>
 	extends AbstractEventProducer<T>
 {
+	static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
 	private final Logger logger = LoggerFactory.getLogger(MessageBasedEventProducer.class);
 
 	private final DataInputStream dataInput;
-	private final Decoder<T> decoder;
+	private final FrameDecoder<T> frameDecoder;
+	private final Consumer<T> eventConsumer = this::addDecodedEvent;
 	private final AtomicLong heartbeatTimestamp;
 	private final boolean requiresHeartbeat;
+	private volatile ScheduledFuture<?> heartbeatObserver;
 
 	public MessageBasedEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, Decoder<T> decoder, InputStream inputStream, boolean requiresHeartbeat)
+	{
+		this(sourceIdentifier, eventQueue, sourceIdentifierUpdater, new CopyingFrameDecoder<>(decoder), inputStream, requiresHeartbeat);
+	}
+
+	public MessageBasedEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, FrameDecoder<T> frameDecoder, InputStream inputStream, boolean requiresHeartbeat)
 	{
 		super(sourceIdentifier, eventQueue, sourceIdentifierUpdater);
-		this.decoder = Objects.requireNonNull(decoder, "decoder must not be null!");
+		this.frameDecoder = Objects.requireNonNull(frameDecoder, "frameDecoder must not be null!");
 		this.dataInput = new DataInputStream(new BufferedInputStream(Objects.requireNonNull(inputStream, "inputStream must not be null!")));
 		this.heartbeatTimestamp = new AtomicLong(System.currentTimeMillis());
 		this.requiresHeartbeat = requiresHeartbeat;
@@ -58,15 +79,12 @@ public class MessageBasedEventProducer<T extends Serializable>
 	{
 		updateHeartbeatTimestamp();
 		String sourceIdentifierString=String.valueOf(getSourceIdentifier());
-		Thread t = new Thread(new ReceiverRunnable(getSourceIdentifier()), sourceIdentifierString + "-Receiver");
-		t.setDaemon(false);
-		t.start();
+		ReceiverThreads.start(new ReceiverRunnable(getSourceIdentifier()), sourceIdentifierString + "-Receiver", false);
 
 		if(requiresHeartbeat)
 		{
-			t = new Thread(new HeartbeatObserverRunnable(), sourceIdentifierString + "-HeartbeatObserver");
-			t.setDaemon(false);
-			t.start();
+			heartbeatObserver = ReceiverThreads.getHeartbeatScheduler()
+					.scheduleAtFixedRate(new HeartbeatObserverRunnable(), HeartbeatRunnable.HEARTBEAT_RATE, HeartbeatRunnable.HEARTBEAT_RATE, TimeUnit.MILLISECONDS);
 		}
 	}
 
@@ -80,10 +98,27 @@ public class MessageBasedEventProducer<T extends Serializable>
 		return System.currentTimeMillis() - heartbeatTimestamp.get();
 	}
 
+	private void addDecodedEvent(T event)
+	{
+		if(event == null)
+		{
+			if(logger.isInfoEnabled()) logger.info("Retrieved null!");
+		}
+		else
+		{
+			addEvent(event);
+		}
+	}
+
 	@Override
 	public void close()
 	{
 		if(logger.isInfoEnabled()) logger.info("Closing {} for source {}.", this.getClass().getName(), getSourceIdentifier());
+		ScheduledFuture<?> observer = heartbeatObserver;
+		if(observer != null)
+		{
+			observer.cancel(false);
+		}
 		if(dataInput != null)
 		{
 			try
@@ -97,30 +132,19 @@ public class MessageBasedEventProducer<T extends Serializable>
 		}
 	}
 
+	/**
+	 * Executed periodically by the shared heartbeat scheduler.
+	 */
 	private class HeartbeatObserverRunnable
 		implements Runnable
 	{
 		@Override
 		public void run()
 		{
-			for(;;)
+			if(getMillisSinceLastHeartbeat() > 2 * HeartbeatRunnable.HEARTBEAT_RATE)
 			{
-				try
-				{
-					Thread.sleep(HeartbeatRunnable.HEARTBEAT_RATE);
-					if(getMillisSinceLastHeartbeat() > 2 * HeartbeatRunnable.HEARTBEAT_RATE)
-					{
-						if(logger.isInfoEnabled()) logger.info("Closing receiver because heartbeat of {} was missing.", getSourceIdentifier());
-						close();
-						return;
-					}
-				}
-				catch(InterruptedException e)
-				{
-					if(logger.isInfoEnabled()) logger.info("Interrupted...", e);
-					close();
-					return;
-				}
+				if(logger.isInfoEnabled()) logger.info("Closing receiver because heartbeat of {} was missing.", getSourceIdentifier());
+				close();
 			}
 		}
 	}
@@ -130,6 +154,7 @@ public class MessageBasedEventProducer<T extends Serializable>
 	{
 		private final SourceIdentifier sourceIdentifier;
 		private static final String SOURCE_IDENTIFIER_MDC_KEY = "sourceIdentifier";
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
 
 		ReceiverRunnable(SourceIdentifier sourceIdentifier)
 		{
@@ -152,19 +177,11 @@ public class MessageBasedEventProducer<T extends Serializable>
 						updateHeartbeatTimestamp();
 						if(size > 0)
 						{
-							byte[] bytes = new byte[size]; // NOPMD - AvoidInstantiatingObjectsInLoops
+							byte[] bytes = obtainBuffer(size);
 							allocating = false;
-							dataInput.readFully(bytes);
-
-							T object = decoder.decode(bytes);
-							if(object == null)
-							{
-								if(logger.isInfoEnabled()) logger.info("Retrieved null!");
-							}
-							else
-							{
-								addEvent(object);
-							}
+							dataInput.readFully(bytes, 0, size);
+
+							frameDecoder.decode(bytes, 0, size, eventConsumer);
 						}
 						else
 						{
@@ -192,9 +209,24 @@ public class MessageBasedEventProducer<T extends Serializable>
 				}
 			}
 			close();
+			frameDecoder.close();
 			MDC.remove(SOURCE_IDENTIFIER_MDC_KEY); //this shouldn't be necessary but I don't care :p
 		}
 
+		private byte[] obtainBuffer(int size)
+		{
+			if(size <= buffer.length)
+			{
+				return buffer;
+			}
+			if(size > MAX_RETAINED_BUFFER_SIZE)
+			{
+				return new byte[size];
+			}
+			buffer = new byte[Math.min(Math.max(size, buffer.length * 2), MAX_RETAINED_BUFFER_SIZE)];
+			return buffer;
+		}
+
 		void skipBytes(long numberOfBytes, InputStream input)
 			throws IOException
 		{
@@ -0,0 +1,444 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
+import de.huxhorn.lilith.sender.HeartbeatRunnable;
+import de.huxhorn.sulky.buffers.AppendOperation;
+import de.huxhorn.sulky.codec.Decoder;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives events of a non-blocking SocketChannel registered at a NioReceiverGroup.
+ *
+ * The selector thread splits the received bytes into frames. The frames are decoded by the
+ * decoder executor of the group, one frame after the other, so the decoder doesn't need to be
+ * thread-safe. Reading is suspended while too many frames are waiting to be decoded.
+ *
+ * @param <T> the type of the events.
+ */
+public class NioEventProducer<T extends Serializable>
+	extends AbstractEventProducer<T>
+	implements NioReceiverGroup.ConnectionHandler
+{
+	public static final int DEFAULT_MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	private static final int MAX_PENDING_FRAMES = 1000;
+	private static final int LENGTH_SIZE = 4;
+
+	private final Logger logger = LoggerFactory.getLogger(NioEventProducer.class);
+
+	private final FrameDecoder<T> frameDecoder;
+	private final Consumer<T> eventConsumer = this::addDecodedEvent;
+	private final Framing framing;
+	private final boolean requiresHeartbeat;
+	private final NioReceiverGroup group;
+	private final SocketChannel channel;
+	private final Executor decoderExecutor;
+	private final int maxFrameSize;
+
+	private final AtomicLong heartbeatTimestamp;
+	private final Queue<byte[]> frames;
+	private final AtomicInteger pendingFrames;
+	private final AtomicBoolean decoding;
+	private final AtomicBoolean readingSuspended;
+	private volatile boolean endOfStream;
+	private volatile NioReceiverGroup.Connection connection;
+
+	// only accessed by the selector thread
+	private ByteBuffer buffer;
+	private int scannedBytes;
+	private int requiredCapacity;
+	private long bytesToSkip;
+	private boolean skipping;
+
+	// only accessed by the decoding task
+	private boolean endOfStreamAdded;
+
+	public NioEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, Decoder<T> decoder, Framing framing, boolean requiresHeartbeat, NioReceiverGroup group, SocketChannel channel)
+	{
+		this(sourceIdentifier, eventQueue, sourceIdentifierUpdater, decoder, framing, requiresHeartbeat, group, channel, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public NioEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, Decoder<T> decoder, Framing framing, boolean requiresHeartbeat, NioReceiverGroup group, SocketChannel channel, int maxFrameSize)
+	{
+		this(sourceIdentifier, eventQueue, sourceIdentifierUpdater, new CopyingFrameDecoder<>(decoder), framing, requiresHeartbeat, group, channel, maxFrameSize);
+	}
+
+	public NioEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, FrameDecoder<T> frameDecoder, Framing framing, boolean requiresHeartbeat, NioReceiverGroup group, SocketChannel channel)
+	{
+		this(sourceIdentifier, eventQueue, sourceIdentifierUpdater, frameDecoder, framing, requiresHeartbeat, group, channel, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public NioEventProducer(SourceIdentifier sourceIdentifier, AppendOperation<EventWrapper<T>> eventQueue, SourceIdentifierUpdater<T> sourceIdentifierUpdater, FrameDecoder<T> frameDecoder, Framing framing, boolean requiresHeartbeat, NioReceiverGroup group, SocketChannel channel, int maxFrameSize)
+	{
+		super(sourceIdentifier, eventQueue, sourceIdentifierUpdater);
+		this.frameDecoder = Objects.requireNonNull(frameDecoder, "frameDecoder must not be null!");
+		this.framing = Objects.requireNonNull(framing, "framing must not be null!");
+		this.group = Objects.requireNonNull(group, "group must not be null!");
+		this.channel = Objects.requireNonNull(channel, "channel must not be null!");
+		if(maxFrameSize <= 0)
+		{
+			throw new IllegalArgumentException("maxFrameSize must be greater than zero but was " + maxFrameSize + "!");
+		}
+		this.maxFrameSize = maxFrameSize;
+		this.requiresHeartbeat = requiresHeartbeat;
+		this.decoderExecutor = group.getDecoderExecutor();
+		this.heartbeatTimestamp = new AtomicLong(System.currentTimeMillis());
+		this.frames = new ConcurrentLinkedQueue<>();
+		this.pendingFrames = new AtomicInteger();
+		this.decoding = new AtomicBoolean();
+		this.readingSuspended = new AtomicBoolean();
+		this.buffer = ByteBuffer.allocate(Math.min(INITIAL_BUFFER_SIZE, maxFrameSize + LENGTH_SIZE));
+	}
+
+	@Override
+	public void start()
+	{
+		updateHeartbeatTimestamp();
+		try
+		{
+			group.register(channel, this);
+		}
+		catch(IOException e)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while registering channel of {}!", getSourceIdentifier(), e);
+			close();
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if(logger.isInfoEnabled()) logger.info("Closing {} for source {}.", this.getClass().getName(), getSourceIdentifier());
+		NioReceiverGroup.Connection current = connection;
+		if(current != null)
+		{
+			current.close();
+			return;
+		}
+		try
+		{
+			channel.close();
+		}
+		catch(IOException e)
+		{
+			// ignore
+		}
+	}
+
+	@Override
+	public void opened(NioReceiverGroup.Connection connection)
+	{
+		this.connection = connection;
+	}
+
+	@Override
+	public int read(SocketChannel channel)
+		throws IOException
+	{
+		int read = channel.read(buffer);
+		if(read <= 0)
+		{
+			return read;
+		}
+		updateHeartbeatTimestamp();
+		buffer.flip();
+		if(framing == Framing.LENGTH_PREFIXED)
+		{
+			readLengthPrefixedFrames();
+		}
+		else
+		{
+			readZeroDelimitedFrames();
+		}
+		buffer.compact();
+		if(!buffer.hasRemaining() || buffer.capacity() < requiredCapacity)
+		{
+			growBuffer(Math.max(requiredCapacity, buffer.capacity() + 1));
+		}
+		return read;
+	}
+
+	private void readLengthPrefixedFrames()
+	{
+		for(;;)
+		{
+			if(bytesToSkip > 0)
+			{
+				int skipped = (int) Math.min(bytesToSkip, buffer.remaining());
+				buffer.position(buffer.position() + skipped);
+				bytesToSkip -= skipped;
+				if(bytesToSkip > 0)
+				{
+					return;
+				}
+			}
+			if(buffer.remaining() < LENGTH_SIZE)
+			{
+				return;
+			}
+			int size = buffer.getInt(buffer.position());
+			if(size <= 0)
+			{
+				buffer.position(buffer.position() + LENGTH_SIZE);
+				if(logger.isDebugEnabled()) logger.debug("Received heartbeat from {}.", getSourceIdentifier());
+				continue;
+			}
+			if(size > maxFrameSize)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Skipping frame of {} bytes from {} because it exceeds the maximum frame size of {} bytes.", size, getSourceIdentifier(), maxFrameSize);
+				buffer.position(buffer.position() + LENGTH_SIZE);
+				bytesToSkip = size;
+				continue;
+			}
+			if(buffer.remaining() < LENGTH_SIZE + size)
+			{
+				requiredCapacity = LENGTH_SIZE + size;
+				return;
+			}
+			buffer.position(buffer.position() + LENGTH_SIZE);
+			byte[] frame = new byte[size]; // NOPMD - AvoidInstantiatingObjectsInLoops
+			buffer.get(frame);
+			addFrame(frame);
+		}
+	}
+
+	private void readZeroDelimitedFrames()
+	{
+		byte[] array = buffer.array();
+		int offset = buffer.arrayOffset();
+		int limit = buffer.limit();
+		int i = buffer.position() + scannedBytes;
+		while(i < limit)
+		{
+			if(array[offset + i] == 0)
+			{
+				int start = buffer.position();
+				int length = i - start;
+				if(skipping)
+				{
+					skipping = false;
+				}
+				else if(length > 0)
+				{
+					byte[] frame = new byte[length]; // NOPMD - AvoidInstantiatingObjectsInLoops
+					System.arraycopy(array, offset + start, frame, 0, length);
+					addFrame(frame);
+				}
+				buffer.position(i + 1);
+			}
+			i++;
+		}
+		scannedBytes = limit - buffer.position();
+		if(!skipping && scannedBytes > maxFrameSize)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Skipping frame from {} because it exceeds the maximum frame size of {} bytes.", getSourceIdentifier(), maxFrameSize);
+			skipping = true;
+		}
+		if(skipping)
+		{
+			buffer.position(limit);
+			scannedBytes = 0;
+		}
+	}
+
+	/**
+	 * Must be called while the buffer is in write mode.
+	 */
+	private void growBuffer(int requiredCapacity)
+	{
+		int maxCapacity = maxFrameSize + LENGTH_SIZE;
+		if(maxCapacity < 0)
+		{
+			// overflow
+			maxCapacity = Integer.MAX_VALUE;
+		}
+		int capacity = buffer.capacity();
+		if(capacity >= maxCapacity)
+		{
+			return;
+		}
+		int newCapacity = Math.max(requiredCapacity, capacity * 2);
+		if(newCapacity < 0 || newCapacity > maxCapacity)
+		{
+			newCapacity = maxCapacity;
+		}
+		ByteBuffer newBuffer = ByteBuffer.allocate(newCapacity);
+		buffer.flip();
+		newBuffer.put(buffer);
+		buffer = newBuffer;
+	}
+
+	private void addFrame(byte[] frame)
+	{
+		frames.add(frame);
+		if(pendingFrames.incrementAndGet() >= MAX_PENDING_FRAMES && readingSuspended.compareAndSet(false, true))
+		{
+			if(logger.isDebugEnabled()) logger.debug("Suspending reading from {}.", getSourceIdentifier());
+			NioReceiverGroup.Connection current = connection;
+			if(current != null)
+			{
+				current.suspendReading();
+			}
+		}
+		scheduleDecoding();
+	}
+
+	private void scheduleDecoding()
+	{
+		if(decoding.compareAndSet(false, true))
+		{
+			try
+			{
+				decoderExecutor.execute(this::decodeFrames);
+			}
+			catch(RejectedExecutionException e)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Couldn't decode frames of {} because the NioReceiverGroup has been closed.", getSourceIdentifier());
+				decoding.set(false);
+			}
+		}
+	}
+
+	private void decodeFrames()
+	{
+		for(;;)
+		{
+			// all frames are added before endOfStream is set, so they are decoded by the loop below.
+			boolean ended = endOfStream;
+			for(;;)
+			{
+				byte[] frame = frames.poll();
+				if(frame == null)
+				{
+					break;
+				}
+				int pending = pendingFrames.decrementAndGet();
+				if(pending <= MAX_PENDING_FRAMES / 2 && readingSuspended.compareAndSet(true, false))
+				{
+					if(logger.isDebugEnabled()) logger.debug("Resuming reading from {}.", getSourceIdentifier());
+					connection.resumeReading();
+				}
+				decode(frame);
+			}
+			if(ended && !endOfStreamAdded)
+			{
+				endOfStreamAdded = true;
+				frameDecoder.close();
+				addEvent(null);
+			}
+			decoding.set(false);
+			if(frames.isEmpty() && (endOfStreamAdded || !endOfStream))
+			{
+				return;
+			}
+			if(!decoding.compareAndSet(false, true))
+			{
+				return;
+			}
+		}
+	}
+
+	private void decode(byte[] frame)
+	{
+		try
+		{
+			frameDecoder.decode(frame, 0, frame.length, eventConsumer);
+		}
+		catch(Throwable e)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while decoding {} bytes from {}!", frame.length, getSourceIdentifier(), e);
+		}
+	}
+
+	private void addDecodedEvent(T event)
+	{
+		if(event == null)
+		{
+			if(logger.isInfoEnabled()) logger.info("Retrieved null!");
+		}
+		else
+		{
+			addEvent(event);
+		}
+	}
+
+	@Override
+	public boolean isAlive(long now)
+	{
+		if(requiresHeartbeat && now - heartbeatTimestamp.get() > 2 * HeartbeatRunnable.HEARTBEAT_RATE)
+		{
+			if(logger.isInfoEnabled()) logger.info("Closing receiver because heartbeat of {} was missing.", getSourceIdentifier());
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public void closed()
+	{
+		endOfStream = true;
+		scheduleDecoding();
+	}
+
+	private void updateHeartbeatTimestamp()
+	{
+		heartbeatTimestamp.set(System.currentTimeMillis());
+	}
+
+	@Override
+	public String toString()
+	{
+		return "NioEventProducer[sourceIdentifier=" + getSourceIdentifier() + ", framing=" + framing + "]";
+	}
+
+	/**
+	 * The framing of the received events.
+	 */
+	public enum Framing
+	{
+		/**
+		 * Each event is prefixed with its size as a four byte integer. A size of zero is a heartbeat.
+		 * This is the framing of MessageBasedEventProducer.
+		 */
+		LENGTH_PREFIXED,
+		/**
+		 * Each event is terminated by a zero byte.
+		 * This is the framing of ZeroDelimitedEventProducer.
+		 */
+		ZERO_DELIMITED
+	}
+}
@@ -0,0 +1,541 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives data of many connections using a few selector threads.
+ *
+ * Accepted connections are distributed round-robin to the selector threads.
+ * Decoding is supposed to be executed by the decoder executor so the selector threads are never
+ * busy with anything but reading.
+ */
+public class NioReceiverGroup
+	implements Closeable
+{
+	private static final long SELECT_TIMEOUT_MILLIS = 1000;
+	private static final long CHECK_INTERVAL_MILLIS = 1000;
+
+	private final Logger logger = LoggerFactory.getLogger(NioReceiverGroup.class);
+
+	private final SelectorLoop[] selectorLoops;
+	private final ExecutorService decoderExecutor;
+	private final ExecutorService blockingExecutor;
+	private final AtomicInteger nextSelectorLoop = new AtomicInteger();
+	private final AtomicLong acceptedConnections = new AtomicLong();
+	private final AtomicLong openConnections = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	private volatile boolean closed;
+
+	public NioReceiverGroup()
+	{
+		this(defaultSelectorThreads(), Runtime.getRuntime().availableProcessors());
+	}
+
+	public NioReceiverGroup(int selectorThreads, int decoderThreads)
+	{
+		if(selectorThreads <= 0)
+		{
+			throw new IllegalArgumentException("selectorThreads must be greater than zero but was " + selectorThreads + "!");
+		}
+		if(decoderThreads <= 0)
+		{
+			throw new IllegalArgumentException("decoderThreads must be greater than zero but was " + decoderThreads + "!");
+		}
+		decoderExecutor = Executors.newFixedThreadPool(decoderThreads, new DaemonThreadFactory("NioReceiver-Decoder-"));
+		blockingExecutor = Executors.newCachedThreadPool(new DaemonThreadFactory("NioReceiver-Blocking-"));
+		selectorLoops = new SelectorLoop[selectorThreads];
+		for(int i = 0; i < selectorThreads; i++)
+		{
+			try
+			{
+				selectorLoops[i] = new SelectorLoop(Selector.open()); // NOPMD - AvoidInstantiatingObjectsInLoops
+			}
+			catch(IOException e)
+			{
+				close();
+				throw new IllegalStateException("Failed to open selector!", e);
+			}
+			Thread t = new Thread(selectorLoops[i], "NioReceiver-Selector-" + i); // NOPMD - AvoidInstantiatingObjectsInLoops
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	static int defaultSelectorThreads()
+	{
+		return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+	}
+
+	public int getSelectorThreads()
+	{
+		return selectorLoops.length;
+	}
+
+	/**
+	 * Returns the executor that is supposed to decode received data.
+	 *
+	 * @return the decoder executor.
+	 */
+	public Executor getDecoderExecutor()
+	{
+		return decoderExecutor;
+	}
+
+	/**
+	 * Returns an executor for tasks that may block, e.g. the creation of a stream based EventProducer
+	 * for a protocol without framing.
+	 *
+	 * @return the blocking executor.
+	 */
+	public Executor getBlockingExecutor()
+	{
+		return blockingExecutor;
+	}
+
+	public long getAcceptedConnections()
+	{
+		return acceptedConnections.get();
+	}
+
+	public long getOpenConnections()
+	{
+		return openConnections.get();
+	}
+
+	public long getBytesRead()
+	{
+		return bytesRead.get();
+	}
+
+	/**
+	 * Starts accepting connections of the given channel.
+	 *
+	 * The acceptor is called by a selector thread and must not block.
+	 *
+	 * @param serverSocketChannel the bound channel.
+	 * @param acceptor receives accepted connections.
+	 * @throws IOException if the channel could not be configured.
+	 */
+	public void bind(ServerSocketChannel serverSocketChannel, Consumer<SocketChannel> acceptor)
+		throws IOException
+	{
+		Objects.requireNonNull(serverSocketChannel, "serverSocketChannel must not be null!");
+		Objects.requireNonNull(acceptor, "acceptor must not be null!");
+		serverSocketChannel.configureBlocking(false);
+		SelectorLoop loop = nextSelectorLoop();
+		loop.execute(() -> {
+			try
+			{
+				serverSocketChannel.register(loop.selector, SelectionKey.OP_ACCEPT, acceptor);
+			}
+			catch(ClosedChannelException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Failed to register {}!", serverSocketChannel, e);
+			}
+		});
+	}
+
+	/**
+	 * Registers an accepted connection.
+	 *
+	 * @param channel the connection.
+	 * @param handler the handler of the connection.
+	 * @throws IOException if the channel could not be configured.
+	 */
+	public void register(SocketChannel channel, ConnectionHandler handler)
+		throws IOException
+	{
+		Objects.requireNonNull(channel, "channel must not be null!");
+		Objects.requireNonNull(handler, "handler must not be null!");
+		channel.configureBlocking(false);
+		SelectorLoop loop = nextSelectorLoop();
+		Connection connection = new Connection(loop, channel, handler);
+		openConnections.incrementAndGet();
+		loop.execute(connection::register);
+	}
+
+	private SelectorLoop nextSelectorLoop()
+	{
+		if(closed)
+		{
+			throw new IllegalStateException("NioReceiverGroup has already been closed!");
+		}
+		return selectorLoops[Math.floorMod(nextSelectorLoop.getAndIncrement(), selectorLoops.length)];
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+		for(SelectorLoop current : selectorLoops)
+		{
+			if(current != null)
+			{
+				current.selector.wakeup();
+			}
+		}
+		decoderExecutor.shutdown();
+		blockingExecutor.shutdown();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "NioReceiverGroup[selectorThreads=" + selectorLoops.length
+				+ ", acceptedConnections=" + getAcceptedConnections()
+				+ ", openConnections=" + getOpenConnections()
+				+ ", bytesRead=" + getBytesRead()
+				+ "]";
+	}
+
+	/**
+	 * Handles the data of a single connection.
+	 *
+	 * All methods are called by the selector thread of the connection and must not block.
+	 */
+	public interface ConnectionHandler
+	{
+		/**
+		 * Called once after the connection has been registered.
+		 *
+		 * @param connection the connection.
+		 */
+		void opened(Connection connection);
+
+		/**
+		 * Called if the channel is readable.
+		 *
+		 * @param channel the channel.
+		 * @return the number of bytes read or -1 if the end of the stream has been reached.
+		 * @throws IOException in case of an error. The connection is closed.
+		 */
+		int read(SocketChannel channel)
+			throws IOException;
+
+		/**
+		 * Called periodically, e.g. to detect connections without heartbeat.
+		 *
+		 * @param now the current time in milliseconds.
+		 * @return false if the connection should be closed.
+		 */
+		boolean isAlive(long now);
+
+		/**
+		 * Called once after the connection has been closed.
+		 */
+		void closed();
+	}
+
+	/**
+	 * A registered connection.
+	 */
+	public final class Connection
+	{
+		private final SelectorLoop loop;
+		private final SocketChannel channel;
+		private final ConnectionHandler handler;
+		private SelectionKey key;
+		private boolean closed;
+
+		Connection(SelectorLoop loop, SocketChannel channel, ConnectionHandler handler)
+		{
+			this.loop = loop;
+			this.channel = channel;
+			this.handler = handler;
+		}
+
+		void register()
+		{
+			try
+			{
+				key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+				handler.opened(this);
+			}
+			catch(Throwable e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Failed to register {}!", channel, e);
+				closeNow();
+			}
+		}
+
+		void readable()
+		{
+			try
+			{
+				int read = handler.read(channel);
+				if(read < 0)
+				{
+					closeNow();
+					return;
+				}
+				bytesRead.addAndGet(read);
+			}
+			catch(Throwable e)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Exception ({}: '{}') while reading from {}. Closing connection...", e.getClass().getName(), e.getMessage(), channel, e);
+				closeNow();
+			}
+		}
+
+		/**
+		 * Stops reading from the channel. Must only be called by the handler, i.e. by the selector thread.
+		 */
+		public void suspendReading()
+		{
+			if(key != null && key.isValid())
+			{
+				key.interestOps(0);
+			}
+		}
+
+		/**
+		 * Resumes reading from the channel. May be called by any thread.
+		 */
+		public void resumeReading()
+		{
+			loop.execute(() -> {
+				if(key != null && key.isValid())
+				{
+					key.interestOps(SelectionKey.OP_READ);
+				}
+			});
+		}
+
+		/**
+		 * Closes the connection. May be called by any thread.
+		 */
+		public void close()
+		{
+			loop.execute(this::closeNow);
+		}
+
+		void closeNow()
+		{
+			if(closed)
+			{
+				return;
+			}
+			closed = true;
+			openConnections.decrementAndGet();
+			if(key != null)
+			{
+				key.cancel();
+			}
+			try
+			{
+				channel.close();
+			}
+			catch(IOException e)
+			{
+				// ignore
+			}
+			handler.closed();
+		}
+	}
+
+	private class SelectorLoop
+		implements Runnable
+	{
+		private final Selector selector;
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private long lastCheck;
+
+		SelectorLoop(Selector selector)
+		{
+			this.selector = selector;
+		}
+
+		void execute(Runnable task)
+		{
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run()
+		{
+			lastCheck = System.currentTimeMillis();
+			while(!closed)
+			{
+				try
+				{
+					selector.select(SELECT_TIMEOUT_MILLIS);
+					runTasks();
+					Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+					while(iterator.hasNext())
+					{
+						SelectionKey key = iterator.next();
+						iterator.remove();
+						if(!key.isValid())
+						{
+							continue;
+						}
+						Object attachment = key.attachment();
+						if(attachment instanceof Connection)
+						{
+							((Connection) attachment).readable();
+						}
+						else if(key.isAcceptable())
+						{
+							accept(key);
+						}
+					}
+					checkConnections();
+				}
+				catch(Throwable e)
+				{
+					if(logger.isWarnEnabled()) logger.warn("Exception in selector loop!", e);
+				}
+			}
+			for(SelectionKey key : selector.keys())
+			{
+				Object attachment = key.attachment();
+				if(attachment instanceof Connection)
+				{
+					((Connection) attachment).closeNow();
+				}
+			}
+			try
+			{
+				selector.close();
+			}
+			catch(IOException e)
+			{
+				// ignore
+			}
+		}
+
+		private void runTasks()
+		{
+			for(;;)
+			{
+				Runnable task = tasks.poll();
+				if(task == null)
+				{
+					return;
+				}
+				task.run();
+			}
+		}
+
+		@SuppressWarnings({"unchecked", "PMD.CloseResource"})
+		private void accept(SelectionKey key)
+		{
+			ServerSocketChannel serverSocketChannel = (ServerSocketChannel) key.channel();
+			Consumer<SocketChannel> acceptor = (Consumer<SocketChannel>) key.attachment();
+			for(;;)
+			{
+				SocketChannel channel;
+				try
+				{
+					channel = serverSocketChannel.accept();
+				}
+				catch(IOException e)
+				{
+					if(logger.isInfoEnabled()) logger.info("Exception while accepting connection on {}.", serverSocketChannel, e);
+					return;
+				}
+				if(channel == null)
+				{
+					return;
+				}
+				acceptedConnections.incrementAndGet();
+				try
+				{
+					acceptor.accept(channel);
+				}
+				catch(Throwable e)
+				{
+					if(logger.isInfoEnabled()) logger.info("Exception while accepting connection.", e);
+					try
+					{
+						channel.close();
+					}
+					catch(IOException ex)
+					{
+						// ignore
+					}
+				}
+			}
+		}
+
+		private void checkConnections()
+		{
+			long now = System.currentTimeMillis();
+			if(now - lastCheck < CHECK_INTERVAL_MILLIS)
+			{
+				return;
+			}
+			lastCheck = now;
+			for(SelectionKey key : selector.keys())
+			{
+				Object attachment = key.attachment();
+				if(attachment instanceof Connection)
+				{
+					Connection connection = (Connection) attachment;
+					if(!connection.handler.isAlive(now))
+					{
+						connection.closeNow();
+					}
+				}
+			}
+		}
+	}
+
+	private static class DaemonThreadFactory
+		implements ThreadFactory
+	{
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		DaemonThreadFactory(String prefix)
+		{
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, prefix + counter.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
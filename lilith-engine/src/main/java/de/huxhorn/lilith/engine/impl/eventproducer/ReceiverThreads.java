@@ -0,0 +1,175 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.lang.reflect.Method;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts the receiver threads of EventProducers.
+ *
+ * If virtual threads are enabled and supported by the running JVM, receivers are executed by
+ * virtual threads. Otherwise, a platform thread is started for every receiver.
+ *
+ * Virtual threads are resolved by reflection since Lilith is still compiled for Java 8.
+ */
+public final class ReceiverThreads
+{
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReceiverThreads.class);
+
+	private static final Method OF_VIRTUAL_METHOD;
+	private static final Method NAME_METHOD;
+	private static final Method UNSTARTED_METHOD;
+
+	private static final AtomicLong VIRTUAL_THREAD_COUNTER = new AtomicLong();
+	private static final AtomicLong PLATFORM_THREAD_COUNTER = new AtomicLong();
+
+	private static volatile boolean virtualThreadsEnabled;
+
+	static
+	{
+		Method ofVirtual = null;
+		Method name = null;
+		Method unstarted = null;
+		try
+		{
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			name = builderClass.getMethod("name", String.class);
+			unstarted = builderClass.getMethod("unstarted", Runnable.class);
+		}
+		catch(ReflectiveOperationException e)
+		{
+			ofVirtual = null;
+		}
+		OF_VIRTUAL_METHOD = ofVirtual;
+		NAME_METHOD = name;
+		UNSTARTED_METHOD = unstarted;
+	}
+
+	static
+	{
+		new ReceiverThreads(); // stfu, coverage
+	}
+
+	private ReceiverThreads() {}
+
+	/**
+	 * @return true if the running JVM supports virtual threads.
+	 */
+	public static boolean isVirtualThreadsSupported()
+	{
+		return OF_VIRTUAL_METHOD != null;
+	}
+
+	public static boolean isVirtualThreadsEnabled()
+	{
+		return virtualThreadsEnabled;
+	}
+
+	/**
+	 * Enables the execution of receivers by virtual threads. This is ignored if the running JVM does not support
+	 * virtual threads.
+	 *
+	 * @param virtualThreadsEnabled true to use virtual threads.
+	 */
+	public static void setVirtualThreadsEnabled(boolean virtualThreadsEnabled)
+	{
+		if(virtualThreadsEnabled && !isVirtualThreadsSupported())
+		{
+			if(LOGGER.isWarnEnabled()) LOGGER.warn("Virtual threads are not supported by Java {}. Using platform threads instead.", System.getProperty("java.version"));
+		}
+		ReceiverThreads.virtualThreadsEnabled = virtualThreadsEnabled;
+	}
+
+	/**
+	 * Starts a thread executing the given receiver.
+	 *
+	 * @param receiver the receiver.
+	 * @param name the name of the thread.
+	 * @param daemon whether a platform thread should be a daemon thread. Virtual threads are always daemon threads.
+	 * @return the started thread.
+	 */
+	public static Thread start(Runnable receiver, String name, boolean daemon)
+	{
+		Objects.requireNonNull(receiver, "receiver must not be null!");
+		Objects.requireNonNull(name, "name must not be null!");
+		if(virtualThreadsEnabled && isVirtualThreadsSupported())
+		{
+			try
+			{
+				Object builder = OF_VIRTUAL_METHOD.invoke(null);
+				builder = NAME_METHOD.invoke(builder, name);
+				Thread result = (Thread) UNSTARTED_METHOD.invoke(builder, receiver);
+				result.start();
+				VIRTUAL_THREAD_COUNTER.incrementAndGet();
+				return result;
+			}
+			catch(ReflectiveOperationException | RuntimeException e)
+			{
+				if(LOGGER.isWarnEnabled()) LOGGER.warn("Failed to start virtual thread. Using platform thread instead.", e);
+			}
+		}
+		Thread result = new Thread(receiver, name);
+		result.setDaemon(daemon);
+		result.start();
+		PLATFORM_THREAD_COUNTER.incrementAndGet();
+		return result;
+	}
+
+	/**
+	 * @return the number of virtual threads started so far.
+	 */
+	public static long getVirtualThreadCounter()
+	{
+		return VIRTUAL_THREAD_COUNTER.get();
+	}
+
+	/**
+	 * @return the number of platform threads started so far.
+	 */
+	public static long getPlatformThreadCounter()
+	{
+		return PLATFORM_THREAD_COUNTER.get();
+	}
+
+	/**
+	 * Returns the scheduler shared by all heartbeat observers.
+	 *
+	 * @return the heartbeat scheduler.
+	 */
+	static ScheduledExecutorService getHeartbeatScheduler()
+	{
+		return HeartbeatSchedulerHolder.SCHEDULER;
+	}
+
+	private static final class HeartbeatSchedulerHolder
+	{
+		static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "HeartbeatObserver");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+}
@@ -70,9 +70,7 @@ public class SerializableEventProducer<T extends Serializable>
 	@Override
 	public void start()
 	{
-		Thread t = new Thread(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver");
-		t.setDaemon(false);
-		t.start();
+		ReceiverThreads.start(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver", false);
 	}
 
 	private T postProcessEvent(Object o)
@@ -0,0 +1,55 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.Serializable;
+import java.util.function.Consumer;
+
+/**
+ * A FrameDecoder for frames containing exactly one event.
+ *
+ * @param <T> the type of the events.
+ */
+public interface SingleEventFrameDecoder<T extends Serializable>
+	extends FrameDecoder<T>
+{
+	/**
+	 * Decodes an event. The buffer must not be referenced after this method returned.
+	 *
+	 * @param buffer the buffer containing the frame.
+	 * @param offset the offset of the frame in the buffer.
+	 * @param length the length of the frame.
+	 * @return the decoded event or null if the frame could not be decoded.
+	 */
+	T decode(byte[] buffer, int offset, int length);
+
+	/**
+	 * Passes the result of decode(byte[], int, int) to the consumer.
+	 *
+	 * @param buffer the buffer containing the frame.
+	 * @param offset the offset of the frame in the buffer.
+	 * @param length the length of the frame.
+	 * @param consumer the consumer of the decoded event.
+	 */
+	@Override
+	default void decode(byte[] buffer, int offset, int length, Consumer<? super T> consumer)
+	{
+		consumer.accept(decode(buffer, offset, length));
+	}
+}
@@ -27,7 +27,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.net.SocketException;
-import java.util.ArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,9 +49,7 @@ public class ZeroDelimitedEventProducer<T extends Serializable>
 	@Override
 	public void start()
 	{
-		Thread t = new Thread(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver");
-		t.setDaemon(true);
-		t.start();
+		ReceiverThreads.start(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver", true);
 	}
 
 	@Override
@@ -79,41 +76,18 @@ public class ZeroDelimitedEventProducer<T extends Serializable>
 		{
 			try
 			{
-				ArrayList<Byte> bytes = new ArrayList<>();
+				ZeroDelimitedFrameReader frameReader = new ZeroDelimitedFrameReader(inputStream);
 				for (;;)
 				{
-					for (;;)
+					int frameLength = frameReader.readFrame();
+					if (frameLength < 0)
 					{
-						int readByte = inputStream.read();
-						if (readByte == -1)
-						{
-							if (logger.isDebugEnabled()) logger.debug("Read -1, stopping...");
-							addEvent(null);
-							return;
-						}
-						byte current = (byte) readByte;
-						if (current == 0)
-						{
-							break;
-						}
-						bytes.add(current);
-					}
-
-					if (!bytes.isEmpty())
-					{
-						byte[] ba = new byte[bytes.size()]; // NOPMD - AvoidInstantiatingObjectsInLoops
-						for (int i = 0; i < bytes.size(); i++)
-						{
-							ba[i] = bytes.get(i);
-						}
-						bytes.clear();
-						T event = decoder.decode(ba);
-						addEvent(event);
-					}
-					else
-					{
-						if (logger.isDebugEnabled()) logger.debug("bytes.size()==0!!");
+						if (logger.isDebugEnabled()) logger.debug("Read -1, stopping...");
+						addEvent(null);
+						return;
 					}
+					T event = decoder.decode(frameReader.copyFrame());
+					addEvent(event);
 				}
 			}
 			catch (SocketException e)
@@ -0,0 +1,194 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads frames terminated by a zero byte from an InputStream.
+ *
+ * The stream is read in bulk and frames are collected in a reusable buffer, i.e. reading a frame
+ * does not allocate any memory once the buffer has grown to the size of the biggest frame.
+ * Frames exceeding the maximum frame size are skipped. Empty frames are ignored.
+ *
+ * Instances are not thread-safe.
+ */
+public class ZeroDelimitedFrameReader
+{
+	public static final int DEFAULT_MAX_FRAME_SIZE = NioEventProducer.DEFAULT_MAX_FRAME_SIZE;
+
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+	private static final int INITIAL_FRAME_BUFFER_SIZE = 1024;
+
+	private final Logger logger = LoggerFactory.getLogger(ZeroDelimitedFrameReader.class);
+
+	private final InputStream inputStream;
+	private final int maxFrameSize;
+	private final byte[] readBuffer;
+	private int readPosition;
+	private int readLimit;
+
+	private byte[] frameBuffer;
+	private int frameLength;
+	private long skippedFrames;
+
+	public ZeroDelimitedFrameReader(InputStream inputStream)
+	{
+		this(inputStream, DEFAULT_MAX_FRAME_SIZE);
+	}
+
+	public ZeroDelimitedFrameReader(InputStream inputStream, int maxFrameSize)
+	{
+		this.inputStream = Objects.requireNonNull(inputStream, "inputStream must not be null!");
+		if(maxFrameSize <= 0)
+		{
+			throw new IllegalArgumentException("maxFrameSize must be greater than zero but was " + maxFrameSize + "!");
+		}
+		this.maxFrameSize = maxFrameSize;
+		this.readBuffer = new byte[READ_BUFFER_SIZE];
+		this.frameBuffer = new byte[Math.min(INITIAL_FRAME_BUFFER_SIZE, maxFrameSize)];
+	}
+
+	/**
+	 * Reads the next frame.
+	 *
+	 * The frame is available in getFrameBuffer() until the next call of this method.
+	 * An incomplete frame at the end of the stream is discarded.
+	 *
+	 * @return the length of the frame or -1 if the end of the stream has been reached.
+	 * @throws IOException if reading from the stream fails.
+	 */
+	public int readFrame()
+		throws IOException
+	{
+		frameLength = 0;
+		boolean skipping = false;
+		for(;;)
+		{
+			if(readPosition == readLimit)
+			{
+				int read = inputStream.read(readBuffer, 0, readBuffer.length);
+				if(read < 0)
+				{
+					frameLength = 0;
+					return -1;
+				}
+				readPosition = 0;
+				readLimit = read;
+				continue;
+			}
+
+			int end = readPosition;
+			while(end < readLimit && readBuffer[end] != 0)
+			{
+				end++;
+			}
+
+			int chunkLength = end - readPosition;
+			if(!skipping)
+			{
+				if(frameLength + chunkLength > maxFrameSize)
+				{
+					if(logger.isWarnEnabled()) logger.warn("Skipping frame because it exceeds the maximum frame size of {} bytes.", maxFrameSize);
+					skipping = true;
+					skippedFrames++;
+					frameLength = 0;
+				}
+				else
+				{
+					append(readPosition, chunkLength);
+				}
+			}
+
+			if(end == readLimit)
+			{
+				readPosition = readLimit;
+				continue;
+			}
+
+			// skip the delimiter
+			readPosition = end + 1;
+			if(skipping)
+			{
+				skipping = false;
+				continue;
+			}
+			if(frameLength > 0)
+			{
+				return frameLength;
+			}
+			if(logger.isDebugEnabled()) logger.debug("Ignoring empty frame.");
+		}
+	}
+
+	private void append(int offset, int length)
+	{
+		int required = frameLength + length;
+		if(required > frameBuffer.length)
+		{
+			int newLength = Math.max(required, frameBuffer.length * 2);
+			if(newLength < 0 || newLength > maxFrameSize)
+			{
+				newLength = maxFrameSize;
+			}
+			frameBuffer = Arrays.copyOf(frameBuffer, newLength);
+		}
+		System.arraycopy(readBuffer, offset, frameBuffer, frameLength, length);
+		frameLength = required;
+	}
+
+	/**
+	 * Returns the buffer containing the current frame, starting at index zero.
+	 * The buffer is reused, i.e. its content is only valid until the next call of readFrame().
+	 *
+	 * @return the buffer containing the current frame.
+	 */
+	public byte[] getFrameBuffer()
+	{
+		return frameBuffer;
+	}
+
+	public int getFrameLength()
+	{
+		return frameLength;
+	}
+
+	/**
+	 * @return a copy of the current frame.
+	 */
+	public byte[] copyFrame()
+	{
+		return Arrays.copyOf(frameBuffer, frameLength);
+	}
+
+	public long getSkippedFrames()
+	{
+		return skippedFrames;
+	}
+
+	public int getMaxFrameSize()
+	{
+		return maxFrameSize;
+	}
+}
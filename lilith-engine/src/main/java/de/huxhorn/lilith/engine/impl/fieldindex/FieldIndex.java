@@ -0,0 +1,380 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.fieldindex;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An inverted index of the level, logger, thread name, markers and MDC of the events in a Lilith file.
+ *
+ * The index consists of segments. Each segment covers a consecutive range of events and contains
+ * the posting lists, i.e. the ascending event indices, of every term occurring in that range.
+ * Segments are only ever appended so the index can be maintained incrementally.
+ *
+ * File format: int MAGIC_VALUE, int VERSION, followed by segments.
+ * Segment: int length of the rest of the segment, long first event, int event count, int term count,
+ * followed by term count times int length and UTF-8 bytes of the term, int posting count and the
+ * postings as varint deltas relative to the first event.
+ */
+public final class FieldIndex
+{
+	public static final int MAGIC_VALUE = 0x46494458; // FIDX
+	public static final int VERSION = 1;
+	public static final int DEFAULT_SEGMENT_SIZE = 1024;
+
+	public static final String LEVEL_PREFIX = "level:";
+	public static final String LOGGER_PREFIX = "logger:";
+	public static final String THREAD_NAME_PREFIX = "thread:";
+	public static final String MARKER_PREFIX = "marker:";
+	public static final String MDC_KEY_PREFIX = "mdcKey:";
+	public static final String MDC_ENTRY_PREFIX = "mdc:";
+
+	static final int HEADER_SIZE = 8;
+
+	private static final char MDC_SEPARATOR = '\u0000';
+
+	static
+	{
+		new FieldIndex(); // stfu, coverage
+	}
+
+	private FieldIndex() {}
+
+	public static File resolveFieldIndexFile(File dataFile)
+	{
+		String fileStr = dataFile.getAbsolutePath();
+		if(fileStr.toLowerCase(Locale.US).endsWith(FileConstants.FILE_EXTENSION))
+		{
+			fileStr = fileStr.substring(0, fileStr.length() - FileConstants.FILE_EXTENSION.length());
+		}
+		return new File(fileStr + FileConstants.FIELD_INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Returns the field index file of the given buffer or, in case of a FilteringBuffer, of its source buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the field index file or null if the buffer isn't backed by a file.
+	 */
+	public static File resolveFieldIndexFile(Buffer<?> buffer)
+	{
+		Buffer<?> sourceBuffer = FilteringBuffer.resolveSourceBuffer(buffer);
+		if(sourceBuffer instanceof FileBuffer)
+		{
+			File dataFile = ((FileBuffer<?>) sourceBuffer).getDataFile();
+			if(dataFile != null)
+			{
+				return resolveFieldIndexFile(dataFile);
+			}
+		}
+		return null;
+	}
+
+	public static String levelTerm(LoggingEvent.Level level)
+	{
+		return LEVEL_PREFIX + level.name();
+	}
+
+	public static String loggerTerm(String logger)
+	{
+		return LOGGER_PREFIX + logger;
+	}
+
+	public static String threadNameTerm(String threadName)
+	{
+		return THREAD_NAME_PREFIX + threadName;
+	}
+
+	public static String markerTerm(String markerName)
+	{
+		return MARKER_PREFIX + markerName;
+	}
+
+	public static String mdcKeyTerm(String key)
+	{
+		return MDC_KEY_PREFIX + key;
+	}
+
+	public static String mdcEntryTerm(String key, String value)
+	{
+		return MDC_ENTRY_PREFIX + key + MDC_SEPARATOR + value;
+	}
+
+	/**
+	 * Returns all terms of the given event.
+	 *
+	 * @param wrapper the event, may be null.
+	 * @return the terms of the event, never null.
+	 */
+	public static Set<String> resolveTerms(EventWrapper<?> wrapper)
+	{
+		if(wrapper == null)
+		{
+			return Collections.emptySet();
+		}
+		Serializable eventObj = wrapper.getEvent();
+		if(!(eventObj instanceof LoggingEvent))
+		{
+			return Collections.emptySet();
+		}
+		LoggingEvent event = (LoggingEvent) eventObj;
+		Set<String> result = new LinkedHashSet<>();
+		LoggingEvent.Level level = event.getLevel();
+		if(level != null)
+		{
+			result.add(levelTerm(level));
+		}
+		String logger = event.getLogger();
+		if(logger != null)
+		{
+			result.add(loggerTerm(logger));
+		}
+		ThreadInfo threadInfo = event.getThreadInfo();
+		if(threadInfo != null && threadInfo.getName() != null)
+		{
+			result.add(threadNameTerm(threadInfo.getName()));
+		}
+		Marker marker = event.getMarker();
+		if(marker != null)
+		{
+			for(String current : marker.collectMarkerNames())
+			{
+				result.add(markerTerm(current));
+			}
+		}
+		Map<String, String> mdc = event.getMdc();
+		if(mdc != null)
+		{
+			for(Map.Entry<String, String> entry : mdc.entrySet())
+			{
+				String key = entry.getKey();
+				if(key == null)
+				{
+					continue;
+				}
+				result.add(mdcKeyTerm(key));
+				String value = entry.getValue();
+				if(value != null)
+				{
+					result.add(mdcEntryTerm(key, value));
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of the given ascending posting lists.
+	 *
+	 * @param postingLists the posting lists.
+	 * @return the ascending union without duplicates.
+	 */
+	public static long[] union(List<long[]> postingLists)
+	{
+		int size = 0;
+		for(long[] current : postingLists)
+		{
+			size += current.length;
+		}
+		long[] result = new long[size];
+		int index = 0;
+		for(long[] current : postingLists)
+		{
+			System.arraycopy(current, 0, result, index, current.length);
+			index += current.length;
+		}
+		if(postingLists.size() <= 1)
+		{
+			return result;
+		}
+		Arrays.sort(result);
+		int count = 0;
+		for(int i = 0; i < result.length; i++)
+		{
+			if(count == 0 || result[count - 1] != result[i])
+			{
+				result[count++] = result[i];
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Returns the intersection of the given ascending posting lists.
+	 *
+	 * @param a the first posting list.
+	 * @param b the second posting list.
+	 * @return the ascending intersection.
+	 */
+	public static long[] intersect(long[] a, long[] b)
+	{
+		long[] result = new long[Math.min(a.length, b.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while(i < a.length && j < b.length)
+		{
+			if(a[i] < b[j])
+			{
+				i++;
+			}
+			else if(a[i] > b[j])
+			{
+				j++;
+			}
+			else
+			{
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return count == result.length ? result : Arrays.copyOf(result, count);
+	}
+
+	static boolean isHeaderValid(RandomAccessFile file)
+		throws IOException
+	{
+		if(file.length() < HEADER_SIZE)
+		{
+			return false;
+		}
+		file.seek(0);
+		return file.readInt() == MAGIC_VALUE && file.readInt() == VERSION;
+	}
+
+	/**
+	 * Reads the segment starting at the given offset.
+	 *
+	 * @return the segment or null if there is no complete segment at offset.
+	 */
+	static Segment readSegment(RandomAccessFile file, long offset, boolean readPostings)
+		throws IOException
+	{
+		long length = file.length();
+		if(offset + 4 > length)
+		{
+			return null;
+		}
+		file.seek(offset);
+		int segmentLength = file.readInt();
+		long end = offset + 4 + segmentLength;
+		if(segmentLength < 16 || end > length)
+		{
+			return null;
+		}
+		long firstEvent = file.readLong();
+		int eventCount = file.readInt();
+		if(firstEvent < 0 || eventCount <= 0)
+		{
+			return null;
+		}
+		Map<String, long[]> postings = null;
+		if(readPostings)
+		{
+			byte[] bytes = new byte[segmentLength - 12];
+			file.readFully(bytes);
+			DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+			int termCount = input.readInt();
+			postings = new HashMap<>(termCount * 2);
+			for(int i = 0; i < termCount; i++)
+			{
+				byte[] termBytes = new byte[input.readInt()]; // NOPMD - AvoidInstantiatingObjectsInLoops
+				input.readFully(termBytes);
+				int postingCount = input.readInt();
+				long[] values = new long[postingCount]; // NOPMD - AvoidInstantiatingObjectsInLoops
+				long previous = firstEvent;
+				for(int j = 0; j < postingCount; j++)
+				{
+					previous += readVarInt(input);
+					values[j] = previous;
+				}
+				postings.put(new String(termBytes, StandardCharsets.UTF_8), values); // NOPMD - AvoidInstantiatingObjectsInLoops
+			}
+		}
+		return new Segment(firstEvent, eventCount, end, postings);
+	}
+
+	static void writeVarInt(DataOutput output, int value)
+		throws IOException
+	{
+		while((value & ~0x7F) != 0)
+		{
+			output.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.writeByte(value);
+	}
+
+	static int readVarInt(DataInput input)
+		throws IOException
+	{
+		int result = 0;
+		for(int shift = 0; shift < 32; shift += 7)
+		{
+			int current = input.readUnsignedByte();
+			result |= (current & 0x7F) << shift;
+			if((current & 0x80) == 0)
+			{
+				return result;
+			}
+		}
+		throw new IOException("Malformed varint!");
+	}
+
+	static final class Segment
+	{
+		final long firstEvent;
+		final int eventCount;
+		final long end;
+		final Map<String, long[]> postings;
+
+		Segment(long firstEvent, int eventCount, long end, Map<String, long[]> postings)
+		{
+			this.firstEvent = firstEvent;
+			this.eventCount = eventCount;
+			this.end = end;
+			this.postings = postings;
+		}
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.fieldindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the posting lists of a FieldIndex file in memory.
+ *
+ * refresh reads segments appended since the last call. All methods are thread-safe.
+ */
+public final class FieldIndexReader
+{
+	private static final ConcurrentMap<File, SoftReference<FieldIndexReader>> READERS = new ConcurrentHashMap<>();
+
+	private final File fieldIndexFile;
+	private final NavigableMap<String, PostingList> postings;
+	private long eventCount;
+	private long offset;
+
+	private FieldIndexReader(File fieldIndexFile)
+	{
+		this.fieldIndexFile = fieldIndexFile;
+		this.postings = new TreeMap<>();
+		this.offset = FieldIndex.HEADER_SIZE;
+	}
+
+	/**
+	 * Returns an up-to-date reader of the given file, reusing a previously returned reader if possible.
+	 *
+	 * @param fieldIndexFile the field index file.
+	 * @return the reader or null if the file doesn't exist or can't be read.
+	 */
+	public static FieldIndexReader get(File fieldIndexFile)
+	{
+		Objects.requireNonNull(fieldIndexFile, "fieldIndexFile must not be null!");
+		if(!fieldIndexFile.isFile())
+		{
+			READERS.remove(fieldIndexFile);
+			return null;
+		}
+		SoftReference<FieldIndexReader> reference = READERS.get(fieldIndexFile);
+		FieldIndexReader result = reference == null ? null : reference.get();
+		if(result == null)
+		{
+			result = new FieldIndexReader(fieldIndexFile);
+			READERS.put(fieldIndexFile, new SoftReference<>(result));
+		}
+		try
+		{
+			result.refresh();
+			return result;
+		}
+		catch(IOException ex)
+		{
+			final Logger logger = LoggerFactory.getLogger(FieldIndexReader.class);
+			if(logger.isWarnEnabled()) logger.warn("Exception while reading field index {}!", fieldIndexFile.getAbsolutePath(), ex);
+			READERS.remove(fieldIndexFile);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the segments that have been appended since the last refresh.
+	 *
+	 * Everything is read again if the file has been truncated or rewritten in the meantime.
+	 *
+	 * @throws IOException if reading fails.
+	 */
+	public synchronized void refresh()
+		throws IOException
+	{
+		try(RandomAccessFile file = new RandomAccessFile(fieldIndexFile, "r"))
+		{
+			if(!FieldIndex.isHeaderValid(file))
+			{
+				clear();
+				return;
+			}
+			if(file.length() < offset)
+			{
+				clear();
+			}
+			for(;;)
+			{
+				FieldIndex.Segment segment = FieldIndex.readSegment(file, offset, true);
+				if(segment == null)
+				{
+					return;
+				}
+				if(segment.firstEvent != eventCount)
+				{
+					if(eventCount == 0)
+					{
+						// invalid
+						return;
+					}
+					// rewritten
+					clear();
+					continue;
+				}
+				for(Map.Entry<String, long[]> entry : segment.postings.entrySet())
+				{
+					postings.computeIfAbsent(entry.getKey(), key -> new PostingList()).addAll(entry.getValue());
+				}
+				eventCount += segment.eventCount;
+				offset = segment.end;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events covered by the index.
+	 *
+	 * Events with an index greater than or equal to the returned value aren't indexed.
+	 *
+	 * @return the number of events covered by the index.
+	 */
+	public synchronized long getEventCount()
+	{
+		return eventCount;
+	}
+
+	/**
+	 * Returns the ascending indices of all events containing the given term.
+	 *
+	 * @param term the term.
+	 * @return the posting list of term, empty if term is unknown.
+	 */
+	public synchronized long[] getPostings(String term)
+	{
+		PostingList result = postings.get(term);
+		if(result == null)
+		{
+			return new long[0];
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Returns all known terms starting with the given prefix, in ascending order.
+	 *
+	 * @param prefix the prefix.
+	 * @return the known terms starting with prefix.
+	 */
+	public synchronized List<String> getTerms(String prefix)
+	{
+		List<String> result = new ArrayList<>();
+		for(String current : postings.tailMap(prefix, true).keySet())
+		{
+			if(!current.startsWith(prefix))
+			{
+				break;
+			}
+			result.add(current);
+		}
+		return result;
+	}
+
+	private void clear()
+	{
+		postings.clear();
+		eventCount = 0;
+		offset = FieldIndex.HEADER_SIZE;
+	}
+
+	private static class PostingList
+	{
+		private long[] values = new long[4];
+		private int size;
+
+		void addAll(long[] added)
+		{
+			if(size + added.length > values.length)
+			{
+				values = Arrays.copyOf(values, Math.max(values.length * 2, size + added.length));
+			}
+			System.arraycopy(added, 0, values, size, added.length);
+			size += added.length;
+		}
+
+		long[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
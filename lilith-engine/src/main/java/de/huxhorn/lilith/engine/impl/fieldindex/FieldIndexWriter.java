@@ -0,0 +1,272 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.fieldindex;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.IndexWriter;
+import de.huxhorn.sulky.buffers.Buffer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Appends events to a FieldIndex file.
+ *
+ * Events are collected in memory and written as a segment as soon as segmentSize events have been
+ * added. flush and close write the remaining events as a smaller segment.
+ *
+ * The writer must be informed about every event added to the data file, in the same order.
+ * It is not thread-safe.
+ */
+public final class FieldIndexWriter
+	implements IndexWriter
+{
+	private final RandomAccessFile file;
+	private final int segmentSize;
+	private final Map<String, PostingList> pending;
+	private long eventCount;
+	private long segmentStart;
+
+	private FieldIndexWriter(RandomAccessFile file, int segmentSize)
+	{
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.pending = new TreeMap<>();
+	}
+
+	/**
+	 * Opens the field index of the given buffer, creating it if necessary.
+	 *
+	 * Events of the buffer that aren't contained in the index yet are added. Segments containing
+	 * events beyond the size of the buffer, e.g. because the buffer has been reset, are removed.
+	 *
+	 * @param fieldIndexFile the field index file.
+	 * @param buffer the buffer containing the events.
+	 * @param <T> the event type.
+	 * @return the writer.
+	 * @throws IOException if the file can't be read or written.
+	 */
+	public static <T extends Serializable> FieldIndexWriter open(File fieldIndexFile, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		return open(fieldIndexFile, buffer, FieldIndex.DEFAULT_SEGMENT_SIZE);
+	}
+
+	static <T extends Serializable> FieldIndexWriter open(File fieldIndexFile, Buffer<EventWrapper<T>> buffer, int segmentSize)
+		throws IOException
+	{
+		Objects.requireNonNull(fieldIndexFile, "fieldIndexFile must not be null!");
+		Objects.requireNonNull(buffer, "buffer must not be null!");
+		if(segmentSize <= 0)
+		{
+			throw new IllegalArgumentException("segmentSize must be greater than zero but was " + segmentSize + "!");
+		}
+		File parent = fieldIndexFile.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Couldn't create " + parent.getAbsolutePath() + "!");
+		}
+		RandomAccessFile file = new RandomAccessFile(fieldIndexFile, "rw");
+		try
+		{
+			if(!FieldIndex.isHeaderValid(file))
+			{
+				file.setLength(0);
+				file.writeInt(FieldIndex.MAGIC_VALUE);
+				file.writeInt(FieldIndex.VERSION);
+			}
+			FieldIndexWriter result = new FieldIndexWriter(file, segmentSize);
+			result.synchronize(buffer);
+			return result;
+		}
+		catch(IOException | RuntimeException ex)
+		{
+			file.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Adds events that have just been added to the given buffer.
+	 *
+	 * If the size of the buffer doesn't match, the index is synchronized with the content of the buffer instead.
+	 * A buffer that shrank has been reset in the meantime so the index is rewritten from scratch.
+	 *
+	 * @param events the events that have been added to the buffer.
+	 * @param buffer the buffer.
+	 * @param <T> the event type.
+	 * @throws IOException if writing fails.
+	 */
+	@Override
+	public <T extends Serializable> void addAll(List<EventWrapper<T>> events, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		if(size == eventCount + events.size())
+		{
+			addAll(events);
+			return;
+		}
+		if(size < eventCount + events.size())
+		{
+			// reset
+			file.setLength(FieldIndex.HEADER_SIZE);
+		}
+		synchronize(buffer);
+	}
+
+	public void addAll(List<? extends EventWrapper<?>> events)
+		throws IOException
+	{
+		for(EventWrapper<?> current : events)
+		{
+			add(current);
+		}
+	}
+
+	/**
+	 * Adds the event at index getEventCount() of the data file.
+	 *
+	 * @param event the event, may be null.
+	 * @throws IOException if writing fails.
+	 */
+	public void add(EventWrapper<?> event)
+		throws IOException
+	{
+		int offset = (int) (eventCount - segmentStart);
+		for(String term : FieldIndex.resolveTerms(event))
+		{
+			pending.computeIfAbsent(term, key -> new PostingList()).add(offset);
+		}
+		eventCount++;
+		if(eventCount - segmentStart >= segmentSize)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Writes all pending events as a segment.
+	 *
+	 * @throws IOException if writing fails.
+	 */
+	public void flush()
+		throws IOException
+	{
+		int count = (int) (eventCount - segmentStart);
+		if(count == 0)
+		{
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeLong(segmentStart);
+		output.writeInt(count);
+		output.writeInt(pending.size());
+		for(Map.Entry<String, PostingList> entry : pending.entrySet())
+		{
+			byte[] termBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+			output.writeInt(termBytes.length);
+			output.write(termBytes);
+			PostingList postings = entry.getValue();
+			output.writeInt(postings.size);
+			int previous = 0;
+			for(int i = 0; i < postings.size; i++)
+			{
+				FieldIndex.writeVarInt(output, postings.values[i] - previous);
+				previous = postings.values[i];
+			}
+		}
+		output.flush();
+		file.writeInt(bytes.size());
+		file.write(bytes.toByteArray());
+		pending.clear();
+		segmentStart = eventCount;
+	}
+
+	public long getEventCount()
+	{
+		return eventCount;
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private <T extends Serializable> void synchronize(Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		long offset = FieldIndex.HEADER_SIZE;
+		long indexed = 0;
+		for(;;)
+		{
+			FieldIndex.Segment segment = FieldIndex.readSegment(file, offset, false);
+			if(segment == null || segment.firstEvent != indexed || indexed + segment.eventCount > size)
+			{
+				break;
+			}
+			indexed += segment.eventCount;
+			offset = segment.end;
+		}
+		file.setLength(offset);
+		file.seek(offset);
+		pending.clear();
+		eventCount = indexed;
+		segmentStart = indexed;
+		for(long i = indexed; i < size; i++)
+		{
+			add(buffer.get(i));
+		}
+	}
+
+	private static class PostingList
+	{
+		private int[] values = new int[4];
+		private int size;
+
+		void add(int value)
+		{
+			if(size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+}
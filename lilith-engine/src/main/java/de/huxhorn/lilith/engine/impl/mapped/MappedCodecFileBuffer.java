@@ -0,0 +1,362 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.mapped;
+
+import de.huxhorn.sulky.buffers.BasicBufferIterator;
+import de.huxhorn.sulky.buffers.DisposeOperation;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.codec.Codec;
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
+import de.huxhorn.sulky.codec.filebuffer.FileHeader;
+import de.huxhorn.sulky.codec.filebuffer.FileHeaderStrategy;
+import de.huxhorn.sulky.codec.filebuffer.MetaData;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only FileBuffer reading the data and index files written by CodecFileBuffer using memory mapping.
+ *
+ * The mapping grows with the files so the files may still be appended to by another buffer.
+ * add and addAll aren't supported. reset deletes the files and rewrites the file header, just like
+ * CodecFileBuffer.reset does, but checks that the files have actually been cleared.
+ */
+public class MappedCodecFileBuffer<E>
+	implements FileBuffer<E>, DisposeOperation
+{
+	private static final int OFFSET_SIZE = 8;
+	private static final int LENGTH_SIZE = 4;
+	/**
+	 * Elements of sparse files are prefixed with their index.
+	 */
+	private static final int SPARSE_INDEX_SIZE = 8;
+
+	private final Logger logger = LoggerFactory.getLogger(MappedCodecFileBuffer.class);
+
+	private final File dataFile;
+	private final File indexFile;
+	private final FileHeaderStrategy fileHeaderStrategy;
+	private final FileHeader fileHeader;
+	private final MappedFile data;
+	private final MappedFile index;
+	private final int elementHeaderSize;
+	private volatile Codec<E> codec;
+	private volatile boolean disposed;
+
+	public MappedCodecFileBuffer(File dataFile, File indexFile)
+		throws IOException
+	{
+		this(dataFile, indexFile, new DefaultFileHeaderStrategy());
+	}
+
+	public MappedCodecFileBuffer(File dataFile, File indexFile, FileHeaderStrategy fileHeaderStrategy)
+		throws IOException
+	{
+		this(dataFile, indexFile, fileHeaderStrategy, MappedFile.DEFAULT_CHUNK_SIZE);
+	}
+
+	MappedCodecFileBuffer(File dataFile, File indexFile, FileHeaderStrategy fileHeaderStrategy, int chunkSize)
+		throws IOException
+	{
+		this.dataFile = Objects.requireNonNull(dataFile, "dataFile must not be null!");
+		this.indexFile = Objects.requireNonNull(indexFile, "indexFile must not be null!");
+		this.fileHeaderStrategy = Objects.requireNonNull(fileHeaderStrategy, "fileHeaderStrategy must not be null!");
+		this.fileHeader = fileHeaderStrategy.readFileHeader(dataFile);
+		if(fileHeader == null)
+		{
+			throw new IOException("Couldn't read file header of '" + dataFile.getAbsolutePath() + "'!");
+		}
+		MetaData metaData = fileHeader.getMetaData();
+		this.elementHeaderSize = metaData != null && metaData.isSparse() ? LENGTH_SIZE + SPARSE_INDEX_SIZE : LENGTH_SIZE;
+		this.data = new MappedFile(dataFile, chunkSize);
+		this.index = new MappedFile(indexFile, chunkSize);
+	}
+
+	public FileHeader getFileHeader()
+	{
+		return fileHeader;
+	}
+
+	public Codec<E> getCodec()
+	{
+		return codec;
+	}
+
+	public void setCodec(Codec<E> codec)
+	{
+		this.codec = codec;
+	}
+
+	@Override
+	public File getDataFile()
+	{
+		return dataFile;
+	}
+
+	public File getIndexFile()
+	{
+		return indexFile;
+	}
+
+	@Override
+	public long getSize()
+	{
+		if(disposed)
+		{
+			return 0;
+		}
+		try
+		{
+			// the data file is checked, too, because both files are replaced by reset
+			data.refresh();
+			return index.refresh() / OFFSET_SIZE;
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't map files of '{}'!", dataFile.getAbsolutePath(), ex);
+			return 0;
+		}
+	}
+
+	@Override
+	public E get(long index)
+	{
+		if(disposed || index < 0)
+		{
+			return null;
+		}
+		try
+		{
+			long position = index * OFFSET_SIZE;
+			if(position + OFFSET_SIZE > this.index.getLength() && index >= getSize())
+			{
+				return null;
+			}
+			return read(this.index.readLong(position));
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read element {} of '{}'!", index, dataFile.getAbsolutePath(), ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the elements in the range [startIndex, startIndex+count).
+	 *
+	 * The offsets of the whole range are read at once. The list is shorter than count if the buffer contains
+	 * fewer elements. It contains null for deleted or unreadable elements.
+	 *
+	 * @param startIndex the index of the first element.
+	 * @param count the maximum number of elements.
+	 * @return the elements of the range.
+	 */
+	public List<E> getRange(long startIndex, int count)
+	{
+		if(startIndex < 0)
+		{
+			throw new IllegalArgumentException("startIndex must not be negative but was " + startIndex + "!");
+		}
+		if(count < 0)
+		{
+			throw new IllegalArgumentException("count must not be negative but was " + count + "!");
+		}
+		long size = getSize();
+		if(startIndex >= size || count == 0)
+		{
+			return Collections.emptyList();
+		}
+		int actualCount = (int) Math.min(count, size - startIndex);
+		byte[] offsets = new byte[actualCount * OFFSET_SIZE];
+		try
+		{
+			this.index.read(startIndex * OFFSET_SIZE, offsets, 0, offsets.length);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't read offsets {}+{} of '{}'!", startIndex, actualCount, indexFile.getAbsolutePath(), ex);
+			return Collections.emptyList();
+		}
+		ByteBuffer offsetBuffer = ByteBuffer.wrap(offsets);
+		List<E> result = new ArrayList<>(actualCount);
+		for(int i = 0; i < actualCount; i++)
+		{
+			E element = null;
+			try
+			{
+				element = read(offsetBuffer.getLong());
+			}
+			catch(IOException ex)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Couldn't read element {} of '{}'!", startIndex + i, dataFile.getAbsolutePath(), ex);
+			}
+			result.add(element);
+		}
+		return result;
+	}
+
+	private E read(long offset)
+		throws IOException
+	{
+		if(disposed || offset < 0)
+		{
+			// negative offsets mark deleted elements of sparse files
+			return null;
+		}
+		Codec<E> currentCodec = codec;
+		if(currentCodec == null)
+		{
+			throw new IllegalStateException("Codec has not been initialized!");
+		}
+		int length = data.readInt(offset);
+		if(length < 0)
+		{
+			throw new IOException("Invalid element length " + length + " at offset " + offset + " of '" + dataFile.getAbsolutePath() + "'!");
+		}
+		return currentCodec.decode(data.readBytes(offset + elementHeaderSize, length));
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new BasicBufferIterator<>(this);
+	}
+
+	/**
+	 * Not supported.
+	 *
+	 * @param element ignored.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void add(E element)
+	{
+		throw new UnsupportedOperationException("MappedCodecFileBuffer is read-only!");
+	}
+
+	/**
+	 * Not supported.
+	 *
+	 * @param elements ignored.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void addAll(List<E> elements)
+	{
+		throw new UnsupportedOperationException("MappedCodecFileBuffer is read-only!");
+	}
+
+	/**
+	 * Not supported.
+	 *
+	 * @param elements ignored.
+	 * @throws UnsupportedOperationException always.
+	 */
+	@Override
+	public void addAll(E[] elements)
+	{
+		throw new UnsupportedOperationException("MappedCodecFileBuffer is read-only!");
+	}
+
+	@Override
+	public boolean isFull()
+	{
+		return true;
+	}
+
+	/**
+	 * Deletes the files and rewrites the file header.
+	 *
+	 * Chunks that are still mapped can prevent the deletion, e.g. on Windows, because Java 8 can't unmap
+	 * them explicitly. A file that can't be deleted is truncated instead. If that fails, too, the file
+	 * header isn't rewritten and the buffer keeps the remaining content. The mapping is reopened on the
+	 * next access in any case.
+	 */
+	@Override
+	public void reset()
+	{
+		data.release();
+		index.release();
+		// the index is cleared first so the buffer is empty even if the data file can't be cleared
+		if(!clear(indexFile) || !clear(dataFile))
+		{
+			return;
+		}
+		MetaData metaData = fileHeader.getMetaData();
+		try
+		{
+			fileHeaderStrategy.writeFileHeader(dataFile, fileHeader.getMagicValue(), metaData == null ? null : metaData.getData(), metaData != null && metaData.isSparse());
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't write file header of '{}'!", dataFile.getAbsolutePath(), ex);
+		}
+	}
+
+	private boolean clear(File file)
+	{
+		if(file.delete() || !file.exists())
+		{
+			return true;
+		}
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.setLength(0);
+			if(logger.isInfoEnabled()) logger.info("Truncated '{}' because it couldn't be deleted.", file.getAbsolutePath());
+			return true;
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't reset '{}'! The file is probably still mapped.", file.getAbsolutePath(), ex);
+			return false;
+		}
+	}
+
+	@Override
+	public void dispose()
+	{
+		disposed = true;
+		data.release();
+		index.release();
+	}
+
+	@Override
+	public boolean isDisposed()
+	{
+		return disposed;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "MappedCodecFileBuffer[fileHeader=" + fileHeader
+				+ ", dataFile=" + dataFile.getAbsolutePath()
+				+ ", indexFile=" + indexFile.getAbsolutePath()
+				+ ", codec=" + codec
+				+ "]";
+	}
+}
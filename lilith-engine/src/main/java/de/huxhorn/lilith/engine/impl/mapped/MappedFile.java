@@ -0,0 +1,325 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Read-only view of a growing file using memory-mapped chunks.
+ *
+ * Every chunk but the last one has exactly chunkSize bytes. The last chunk is remapped if the file grows.
+ * The mapping is dropped if the file shrinks or has been replaced by a different file. Reads that fault
+ * because the file has been truncated behind the back of the mapping throw an IOException.
+ * Reads are thread-safe, mapping is synchronized.
+ */
+final class MappedFile
+{
+	static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final MappedByteBuffer[] NO_CHUNKS = new MappedByteBuffer[0];
+
+	private final File file;
+	private final int chunkSize;
+	private volatile Mapping mapping;
+
+	MappedFile(File file)
+	{
+		this(file, DEFAULT_CHUNK_SIZE);
+	}
+
+	MappedFile(File file, int chunkSize)
+	{
+		this.file = Objects.requireNonNull(file, "file must not be null!");
+		if(chunkSize < 8)
+		{
+			throw new IllegalArgumentException("chunkSize must be at least 8 but was " + chunkSize + "!");
+		}
+		this.chunkSize = chunkSize;
+		this.mapping = new Mapping(NO_CHUNKS, 0, null);
+	}
+
+	File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Returns the number of mapped bytes without touching the file system.
+	 *
+	 * @return the number of mapped bytes.
+	 */
+	long getLength()
+	{
+		return mapping.length;
+	}
+
+	/**
+	 * Maps the current length of the file.
+	 *
+	 * @return the number of mapped bytes.
+	 * @throws IOException if mapping the file failed.
+	 */
+	synchronized long refresh()
+		throws IOException
+	{
+		Mapping current = mapping;
+		long length;
+		Object fileKey;
+		try
+		{
+			BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+			length = attributes.size();
+			fileKey = attributes.fileKey();
+		}
+		catch(NoSuchFileException ex)
+		{
+			length = 0;
+			fileKey = null;
+		}
+		boolean sameFile = current.fileKey == null || current.fileKey.equals(fileKey);
+		if(sameFile && length == current.length)
+		{
+			return length;
+		}
+		if(!sameFile || length < current.length)
+		{
+			// file has been truncated, deleted or replaced
+			current = new Mapping(NO_CHUNKS, 0, null);
+			if(length == 0)
+			{
+				mapping = current;
+				return 0;
+			}
+		}
+		int chunkCount = (int) ((length + chunkSize - 1) / chunkSize);
+		MappedByteBuffer[] chunks = Arrays.copyOf(current.chunks, chunkCount);
+		try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r"))
+		{
+			FileChannel channel = randomAccessFile.getChannel();
+			// the previously last chunk might be incomplete
+			int firstChunk = current.chunks.length == 0 ? 0 : current.chunks.length - 1;
+			for(int i = firstChunk; i < chunkCount; i++)
+			{
+				long start = (long) i * chunkSize;
+				long size = Math.min(chunkSize, length - start);
+				if(chunks[i] == null || chunks[i].capacity() != size)
+				{
+					chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size); // NOPMD - AvoidInstantiatingObjectsInLoops
+				}
+			}
+		}
+		mapping = new Mapping(chunks, length, fileKey);
+		return length;
+	}
+
+	/**
+	 * Drops the mapping. Java 8 can't unmap explicitly so the memory is released as soon as the chunks are
+	 * garbage-collected.
+	 */
+	synchronized void release()
+	{
+		mapping = new Mapping(NO_CHUNKS, 0, null);
+	}
+
+	int readInt(long position)
+		throws IOException
+	{
+		Mapping current = resolveMapping(position, 4);
+		int chunkIndex = (int) (position / chunkSize);
+		int offset = (int) (position % chunkSize);
+		MappedByteBuffer chunk = current.chunks[chunkIndex];
+		try
+		{
+			if(offset + 4 <= chunk.capacity())
+			{
+				return chunk.getInt(offset);
+			}
+			byte[] bytes = new byte[4];
+			read(current, position, bytes, 0, 4);
+			return ByteBuffer.wrap(bytes).getInt();
+		}
+		catch(InternalError ex)
+		{
+			throw staleMapping(current, position, 4, ex);
+		}
+	}
+
+	long readLong(long position)
+		throws IOException
+	{
+		Mapping current = resolveMapping(position, 8);
+		int chunkIndex = (int) (position / chunkSize);
+		int offset = (int) (position % chunkSize);
+		MappedByteBuffer chunk = current.chunks[chunkIndex];
+		try
+		{
+			if(offset + 8 <= chunk.capacity())
+			{
+				return chunk.getLong(offset);
+			}
+			byte[] bytes = new byte[8];
+			read(current, position, bytes, 0, 8);
+			return ByteBuffer.wrap(bytes).getLong();
+		}
+		catch(InternalError ex)
+		{
+			throw staleMapping(current, position, 8, ex);
+		}
+	}
+
+	void read(long position, byte[] bytes, int offset, int length)
+		throws IOException
+	{
+		Mapping current = resolveMapping(position, length);
+		try
+		{
+			read(current, position, bytes, offset, length);
+		}
+		catch(InternalError ex)
+		{
+			throw staleMapping(current, position, length, ex);
+		}
+	}
+
+	/**
+	 * Reads length bytes starting at position.
+	 *
+	 * The range is checked against the mapping before the array is allocated so a corrupted length
+	 * can't cause a huge allocation.
+	 *
+	 * @param position the position of the first byte.
+	 * @param length the number of bytes.
+	 * @return the bytes.
+	 * @throws IOException if the range exceeds the file or the file has been truncated.
+	 */
+	byte[] readBytes(long position, int length)
+		throws IOException
+	{
+		Mapping current = resolveMapping(position, length);
+		byte[] bytes = new byte[length];
+		try
+		{
+			read(current, position, bytes, 0, length);
+		}
+		catch(InternalError ex)
+		{
+			throw staleMapping(current, position, length, ex);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Accessing a mapped page beyond the end of a file that has been truncated by someone else raises
+	 * an InternalError instead of crashing the JVM. The mapping is dropped so the next access maps
+	 * the current length of the file.
+	 */
+	private IOException staleMapping(Mapping current, long position, int length, InternalError cause)
+	{
+		synchronized(this)
+		{
+			if(mapping == current)
+			{
+				mapping = new Mapping(NO_CHUNKS, 0, null);
+			}
+		}
+		return new IOException("Range " + position + "+" + length + " of file '" + file.getAbsolutePath() + "' isn't readable anymore! The file has been truncated.", cause);
+	}
+
+	private void read(Mapping current, long position, byte[] bytes, int offset, int length)
+	{
+		int remaining = length;
+		long filePosition = position;
+		int arrayOffset = offset;
+		while(remaining > 0)
+		{
+			int chunkIndex = (int) (filePosition / chunkSize);
+			int chunkOffset = (int) (filePosition % chunkSize);
+			ByteBuffer chunk = current.chunks[chunkIndex];
+			int count = Math.min(remaining, chunk.capacity() - chunkOffset);
+			copy(chunk, chunkOffset, bytes, arrayOffset, count);
+			remaining -= count;
+			filePosition += count;
+			arrayOffset += count;
+		}
+	}
+
+	/**
+	 * Copies using absolute gets instead of a bulk get. Java 8 turns a fault of a single access into an
+	 * InternalError but a faulting bulk copy crashes the JVM.
+	 */
+	private static void copy(ByteBuffer chunk, int chunkOffset, byte[] bytes, int arrayOffset, int count)
+	{
+		ByteBuffer target = ByteBuffer.wrap(bytes, arrayOffset, count);
+		int i = 0;
+		for(; i + 8 <= count; i += 8)
+		{
+			target.putLong(chunk.getLong(chunkOffset + i));
+		}
+		for(; i < count; i++)
+		{
+			target.put(chunk.get(chunkOffset + i));
+		}
+	}
+
+	private Mapping resolveMapping(long position, int length)
+		throws IOException
+	{
+		if(position < 0 || length < 0)
+		{
+			throw new IOException("Invalid range " + position + "+" + length + " in file '" + file.getAbsolutePath() + "'!");
+		}
+		long end = position + length;
+		Mapping current = mapping;
+		if(end <= current.length)
+		{
+			return current;
+		}
+		refresh();
+		current = mapping;
+		if(end <= current.length)
+		{
+			return current;
+		}
+		throw new IOException("Range " + position + "+" + length + " exceeds length " + current.length + " of file '" + file.getAbsolutePath() + "'!");
+	}
+
+	private static final class Mapping
+	{
+		private final MappedByteBuffer[] chunks;
+		private final long length;
+		private final Object fileKey;
+
+		private Mapping(MappedByteBuffer[] chunks, long length, Object fileKey)
+		{
+			this.chunks = chunks;
+			this.length = length;
+			this.fileKey = fileKey;
+		}
+	}
+}
@@ -0,0 +1,685 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager;
+
+import de.huxhorn.sulky.buffers.AppendOperation;
+import de.huxhorn.sulky.buffers.RemoveOperation;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue for many producers and a single consumer.
+ *
+ * Elements are stored in a ring of sequenced slots, i.e. adding and removing elements does not
+ * require a lock as long as the queue isn't full. The behavior in case of a full queue is defined
+ * by the OverflowPolicy. Removal of elements is also safe for multiple threads since DROP_OLDEST
+ * requires producers to remove the oldest element.
+ *
+ * SPILL_TO_DISK retains the order of elements: once spilling started, all further elements are
+ * spilled until the consumer removed the spilled elements. Spilled elements are read back in chunks of
+ * at most max(capacity, MIN_SPILL_CHUNK_SIZE) elements once the ring is empty, so removeAll returns
+ * them over several calls. Spilled elements that were read back but not yet returned are returned
+ * before any element added afterwards. The consumer only takes the spill lock if spilled elements exist.
+ *
+ * @param <E> the type of the elements. Null elements aren't supported.
+ */
+public class ConcurrentRingQueue<E extends Serializable>
+	implements AppendOperation<E>, RemoveOperation<E>
+{
+	private static final long BLOCKING_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+	static final int MIN_SPILL_CHUNK_SIZE = 1024;
+
+	private final Logger logger = LoggerFactory.getLogger(ConcurrentRingQueue.class);
+
+	private final int capacity;
+	private final int mask;
+	private final AtomicLongArray sequences;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLong enqueuePosition;
+	private final AtomicLong dequeuePosition;
+	private final OverflowPolicy overflowPolicy;
+	private final File spillDirectory;
+
+	private final AtomicLong droppedCounter;
+	private final AtomicLong spilledCounter;
+	private final AtomicLong blockedCounter;
+
+	private final Lock notFullLock;
+	private final Condition notFull;
+	private final AtomicLong waitingProducers;
+
+	private final Lock spillLock;
+	private final int spillChunkSize;
+	private final Deque<E> unspilled;
+	private volatile boolean spilling;
+	/**
+	 * Number of spilled elements that haven't been read back yet. Only changed while holding spillLock.
+	 */
+	private volatile int spillBacklog;
+	/**
+	 * Size of unspilled. Only changed while holding spillLock.
+	 */
+	private volatile int unspilledCount;
+	private File spillFile;
+	private DataOutputStream spillOutput;
+	private DataInputStream spillInput;
+
+	/**
+	 * Creates a queue that blocks producers if it is full.
+	 *
+	 * @param capacity the minimum capacity of the queue. The actual capacity is the next power of two.
+	 */
+	public ConcurrentRingQueue(int capacity)
+	{
+		this(capacity, OverflowPolicy.BLOCK, null);
+	}
+
+	/**
+	 * @param capacity the minimum capacity of the queue. The actual capacity is the next power of two.
+	 * @param overflowPolicy the policy in case of a full queue.
+	 * @param spillDirectory the directory used for spill files, required for SPILL_TO_DISK.
+	 */
+	public ConcurrentRingQueue(int capacity, OverflowPolicy overflowPolicy, File spillDirectory)
+	{
+		if(capacity <= 0)
+		{
+			throw new IllegalArgumentException("capacity must be greater than zero but was " + capacity + "!");
+		}
+		if(capacity > 1 << 30)
+		{
+			throw new IllegalArgumentException("capacity must not be greater than 2^30 but was " + capacity + "!");
+		}
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null!");
+		if(overflowPolicy == OverflowPolicy.SPILL_TO_DISK)
+		{
+			Objects.requireNonNull(spillDirectory, "spillDirectory must not be null if overflowPolicy is SPILL_TO_DISK!");
+		}
+		this.spillDirectory = spillDirectory;
+
+		int actualCapacity = Integer.highestOneBit(capacity);
+		if(actualCapacity < capacity)
+		{
+			actualCapacity = actualCapacity << 1;
+		}
+		this.capacity = actualCapacity;
+		this.mask = actualCapacity - 1;
+		this.sequences = new AtomicLongArray(actualCapacity);
+		for(int i = 0; i < actualCapacity; i++)
+		{
+			sequences.set(i, i);
+		}
+		this.elements = new AtomicReferenceArray<>(actualCapacity);
+		this.enqueuePosition = new AtomicLong();
+		this.dequeuePosition = new AtomicLong();
+		this.droppedCounter = new AtomicLong();
+		this.spilledCounter = new AtomicLong();
+		this.blockedCounter = new AtomicLong();
+		this.notFullLock = new ReentrantLock();
+		this.notFull = notFullLock.newCondition();
+		this.waitingProducers = new AtomicLong();
+		this.spillLock = new ReentrantLock();
+		this.unspilled = new ArrayDeque<>();
+		this.spillChunkSize = Math.max(actualCapacity, MIN_SPILL_CHUNK_SIZE);
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return the number of elements dropped because of DROP_OLDEST or DROP_NEWEST.
+	 */
+	public long getDroppedCounter()
+	{
+		return droppedCounter.get();
+	}
+
+	/**
+	 * @return the number of elements written to a spill file.
+	 */
+	public long getSpilledCounter()
+	{
+		return spilledCounter.get();
+	}
+
+	/**
+	 * @return the number of times a producer had to wait because of BLOCK.
+	 */
+	public long getBlockedCounter()
+	{
+		return blockedCounter.get();
+	}
+
+	/**
+	 * Returns the number of elements in the queue, including spilled elements.
+	 *
+	 * @return the number of elements in the queue.
+	 */
+	public int getAvailableElements()
+	{
+		long size = enqueuePosition.get() - dequeuePosition.get();
+		if(size < 0)
+		{
+			size = 0;
+		}
+		else if(size > capacity)
+		{
+			size = capacity;
+		}
+		return (int) size + spillBacklog + unspilledCount;
+	}
+
+	@Override
+	public void add(E element)
+	{
+		Objects.requireNonNull(element, "element must not be null!");
+		// spill decides whether spilling is still active while holding the lock.
+		if(spilling && spill(element))
+		{
+			return;
+		}
+		if(offer(element))
+		{
+			return;
+		}
+		switch(overflowPolicy)
+		{
+			case DROP_NEWEST:
+				droppedCounter.incrementAndGet();
+				return;
+			case DROP_OLDEST:
+				while(!offer(element))
+				{
+					if(poll() != null)
+					{
+						droppedCounter.incrementAndGet();
+					}
+				}
+				return;
+			case SPILL_TO_DISK:
+				if(!spill(element))
+				{
+					addBlocking(element);
+				}
+				return;
+			default:
+				addBlocking(element);
+		}
+	}
+
+	@Override
+	public void addAll(List<E> elements)
+	{
+		for(E current : elements)
+		{
+			add(current);
+		}
+	}
+
+	@Override
+	public void addAll(E[] elements)
+	{
+		for(E current : elements)
+		{
+			add(current);
+		}
+	}
+
+	@Override
+	public boolean isFull()
+	{
+		long position = enqueuePosition.get();
+		return sequences.get((int) (position & mask)) < position;
+	}
+
+	@Override
+	public E removeFirst()
+	{
+		E result = pollUnspilled();
+		if(result == null)
+		{
+			result = poll();
+		}
+		if(result == null && spilling && readSpilled())
+		{
+			result = pollUnspilled();
+		}
+		signalNotFull();
+		return result;
+	}
+
+	@Override
+	public List<E> removeAll()
+	{
+		List<E> result = new ArrayList<>();
+		drainTo(result, Integer.MAX_VALUE);
+		if(spilling && readSpilled())
+		{
+			spillLock.lock();
+			try
+			{
+				result.addAll(unspilled);
+				unspilled.clear();
+				unspilledCount = 0;
+			}
+			finally
+			{
+				spillLock.unlock();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes up to maxElements elements from the ring and adds them to the given collection.
+	 * Spilled elements are only read back by removeFirst and removeAll, but returned by this method
+	 * once they have been read back.
+	 *
+	 * @param collection the collection receiving the elements.
+	 * @param maxElements the maximum number of elements to remove.
+	 * @return the number of removed elements.
+	 */
+	public int drainTo(Collection<? super E> collection, int maxElements)
+	{
+		int count = 0;
+		while(count < maxElements)
+		{
+			E element = pollUnspilled();
+			if(element == null)
+			{
+				element = poll();
+			}
+			if(element == null)
+			{
+				break;
+			}
+			collection.add(element);
+			count++;
+		}
+		if(count > 0)
+		{
+			signalNotFull();
+		}
+		return count;
+	}
+
+	@Override
+	public void clear()
+	{
+		while(poll() != null)
+		{
+			// just drain
+		}
+		spillLock.lock();
+		try
+		{
+			if(spillBacklog > 0)
+			{
+				if(logger.isInfoEnabled()) logger.info("Discarding {} spilled elements.", spillBacklog);
+			}
+			closeSpillFile();
+			unspilled.clear();
+			unspilledCount = 0;
+		}
+		finally
+		{
+			spillLock.unlock();
+		}
+		signalNotFull();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return enqueuePosition.get() == dequeuePosition.get() && !spilling && unspilledCount == 0;
+	}
+
+	private boolean offer(E element)
+	{
+		for(;;)
+		{
+			long position = enqueuePosition.get();
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if(difference == 0)
+			{
+				if(enqueuePosition.compareAndSet(position, position + 1))
+				{
+					elements.lazySet(index, element);
+					// volatile write publishes the element to the consumer
+					sequences.set(index, position + 1);
+					return true;
+				}
+			}
+			else if(difference < 0)
+			{
+				// full
+				return false;
+			}
+			// otherwise, another producer claimed the slot. Retry.
+		}
+	}
+
+	private E poll()
+	{
+		for(;;)
+		{
+			long position = dequeuePosition.get();
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if(difference == 0)
+			{
+				if(dequeuePosition.compareAndSet(position, position + 1))
+				{
+					E result = elements.get(index);
+					elements.lazySet(index, null);
+					sequences.set(index, position + capacity);
+					return result;
+				}
+			}
+			else if(difference < 0)
+			{
+				// empty
+				return null;
+			}
+			// otherwise, another thread removed the element. Retry.
+		}
+	}
+
+	private void addBlocking(E element)
+	{
+		blockedCounter.incrementAndGet();
+		waitingProducers.incrementAndGet();
+		try
+		{
+			while(!offer(element))
+			{
+				notFullLock.lock();
+				try
+				{
+					if(isFull())
+					{
+						// timed wait to guard against a missed signal
+						notFull.awaitNanos(BLOCKING_WAIT_NANOS);
+					}
+				}
+				catch(InterruptedException e)
+				{
+					if(logger.isInfoEnabled()) logger.info("Interrupted while waiting for free space. Dropping element.");
+					droppedCounter.incrementAndGet();
+					Thread.currentThread().interrupt();
+					return;
+				}
+				finally
+				{
+					notFullLock.unlock();
+				}
+			}
+		}
+		finally
+		{
+			waitingProducers.decrementAndGet();
+		}
+	}
+
+	private void signalNotFull()
+	{
+		if(waitingProducers.get() > 0)
+		{
+			notFullLock.lock();
+			try
+			{
+				notFull.signalAll();
+			}
+			finally
+			{
+				notFullLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Writes the element to the spill file.
+	 *
+	 * If spilling isn't active, the element is added to the ring instead if it isn't full anymore.
+	 * Both is decided while holding the spill lock so spilling can't end in the meantime.
+	 *
+	 * @return false if spilling failed. The caller has to add the element to the ring instead.
+	 */
+	private boolean spill(E element)
+	{
+		spillLock.lock();
+		try
+		{
+			if(!spilling && offer(element))
+			{
+				// the consumer caught up in the meantime.
+				return true;
+			}
+			if(spillOutput == null)
+			{
+				if(spillDirectory.mkdirs())
+				{
+					if(logger.isDebugEnabled()) logger.debug("Created spill directory '{}'.", spillDirectory.getAbsolutePath());
+				}
+				spillFile = File.createTempFile("queue", ".spill", spillDirectory);
+				spillFile.deleteOnExit();
+				spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+				spillBacklog = 0;
+				if(logger.isInfoEnabled()) logger.info("Spilling queue elements to '{}'.", spillFile.getAbsolutePath());
+			}
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try(ObjectOutputStream oos = new ObjectOutputStream(bytes))
+			{
+				oos.writeObject(element);
+			}
+			spillOutput.writeInt(bytes.size());
+			bytes.writeTo(spillOutput);
+			spillBacklog++;
+			spilling = true;
+			spilledCounter.incrementAndGet();
+			return true;
+		}
+		catch(IOException e)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while spilling element to disk!", e);
+			return false;
+		}
+		finally
+		{
+			spillLock.unlock();
+		}
+	}
+
+	/**
+	 * Reads the next chunk of spilled elements back into unspilled. Must only be called by the consumer
+	 * if the ring is empty.
+	 *
+	 * The spill file is deleted and spilling ends as soon as all spilled elements have been read back.
+	 *
+	 * @return true if elements have been read back.
+	 */
+	private boolean readSpilled()
+	{
+		spillLock.lock();
+		try
+		{
+			if(spillOutput == null)
+			{
+				spilling = false;
+				return false;
+			}
+			int count = 0;
+			try
+			{
+				// producers keep appending to the file while it is read.
+				spillOutput.flush();
+				if(spillInput == null)
+				{
+					spillInput = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+				}
+				while(count < spillChunkSize && spillBacklog > 0)
+				{
+					byte[] bytes = new byte[spillInput.readInt()]; // NOPMD - AvoidInstantiatingObjectsInLoops
+					spillInput.readFully(bytes);
+					spillBacklog--;
+					try
+					{
+						unspilled.addLast(readElement(bytes));
+						count++;
+					}
+					catch(ClassNotFoundException e)
+					{
+						if(logger.isWarnEnabled()) logger.warn("Exception while reading spilled element! Dropping it.", e);
+						droppedCounter.incrementAndGet();
+					}
+				}
+			}
+			catch(IOException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Exception while reading spilled elements! Dropping {} elements.", spillBacklog, e);
+				droppedCounter.addAndGet(spillBacklog);
+				spillBacklog = 0;
+			}
+			if(spillBacklog == 0)
+			{
+				closeSpillFile();
+			}
+			unspilledCount = unspilled.size();
+			return count > 0;
+		}
+		finally
+		{
+			spillLock.unlock();
+		}
+	}
+
+	/**
+	 * Closes and deletes the spill file, dropping all elements that haven't been read back.
+	 * Must be called while holding spillLock.
+	 */
+	private void closeSpillFile()
+	{
+		if(spillOutput != null)
+		{
+			try
+			{
+				spillOutput.close();
+			}
+			catch(IOException e)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Exception while closing spill output!", e);
+			}
+		}
+		if(spillInput != null)
+		{
+			try
+			{
+				spillInput.close();
+			}
+			catch(IOException e)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Exception while closing spill input!", e);
+			}
+		}
+		if(spillFile != null && spillFile.delete())
+		{
+			if(logger.isDebugEnabled()) logger.debug("Deleted spill file '{}'.", spillFile.getAbsolutePath());
+		}
+		spillOutput = null;
+		spillInput = null;
+		spillFile = null;
+		spillBacklog = 0;
+		spilling = false;
+	}
+
+	private E pollUnspilled()
+	{
+		if(unspilledCount == 0)
+		{
+			// no need to lock, only the consumer adds unspilled elements.
+			return null;
+		}
+		spillLock.lock();
+		try
+		{
+			E result = unspilled.pollFirst();
+			unspilledCount = unspilled.size();
+			return result;
+		}
+		finally
+		{
+			spillLock.unlock();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private E readElement(byte[] bytes)
+		throws IOException, ClassNotFoundException
+	{
+		try(ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes)))
+		{
+			return (E) ois.readObject();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "ConcurrentRingQueue[capacity=" + capacity
+				+ ", overflowPolicy=" + overflowPolicy
+				+ ", availableElements=" + getAvailableElements()
+				+ ", dropped=" + getDroppedCounter()
+				+ ", spilled=" + getSpilledCounter()
+				+ ", blocked=" + getBlockedCounter()
+				+ "]";
+	}
+}
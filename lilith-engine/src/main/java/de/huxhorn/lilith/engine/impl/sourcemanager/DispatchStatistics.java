@@ -0,0 +1,399 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager;
+
+import de.huxhorn.lilith.engine.EventHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects statistics about the dispatching of events to the EventHandlers.
+ *
+ * All methods are thread-safe.
+ */
+public class DispatchStatistics
+{
+	/**
+	 * Bucket i of the batch size histogram contains batches of size [2^i, 2^(i+1)).
+	 * The last bucket contains all bigger batches.
+	 */
+	public static final int HISTOGRAM_BUCKETS = 17;
+
+	private final AtomicLongArray batchSizeHistogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+	private final AtomicLong queueDepth = new AtomicLong();
+	private final AtomicLong maxQueueDepth = new AtomicLong();
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicLong eventCount = new AtomicLong();
+	private final Map<EventHandler<?>, HandlerStatistics> handlerStatistics = new ConcurrentHashMap<>();
+
+	public void updateQueueDepth(long depth)
+	{
+		queueDepth.set(depth);
+		for(;;)
+		{
+			long max = maxQueueDepth.get();
+			if(depth <= max || maxQueueDepth.compareAndSet(max, depth))
+			{
+				return;
+			}
+		}
+	}
+
+	public long getQueueDepth()
+	{
+		return queueDepth.get();
+	}
+
+	public long getMaxQueueDepth()
+	{
+		return maxQueueDepth.get();
+	}
+
+	public void addBatch(int batchSize)
+	{
+		if(batchSize <= 0)
+		{
+			return;
+		}
+		batchCount.incrementAndGet();
+		eventCount.addAndGet(batchSize);
+		batchSizeHistogram.incrementAndGet(bucketIndex(batchSize));
+	}
+
+	public long getBatchCount()
+	{
+		return batchCount.get();
+	}
+
+	public long getEventCount()
+	{
+		return eventCount.get();
+	}
+
+	public long[] getBatchSizeHistogram()
+	{
+		long[] result = new long[HISTOGRAM_BUCKETS];
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++)
+		{
+			result[i] = batchSizeHistogram.get(i);
+		}
+		return result;
+	}
+
+	public void addHandlerExecution(EventHandler<?> handler, int batchSize, long nanos, boolean failed)
+	{
+		handlerStatistics.computeIfAbsent(handler, HandlerStatistics::new).add(batchSize, nanos, failed);
+	}
+
+	public void updateHandlerBacklog(EventHandler<?> handler, int pendingBatches)
+	{
+		handlerStatistics.computeIfAbsent(handler, HandlerStatistics::new).backlog.set(pendingBatches);
+	}
+
+	public void addHandlerOverflow(EventHandler<?> handler, int events)
+	{
+		handlerStatistics.computeIfAbsent(handler, HandlerStatistics::new).addOverflow(events);
+	}
+
+	public void addHandlerBlocked(EventHandler<?> handler, long nanos)
+	{
+		handlerStatistics.computeIfAbsent(handler, HandlerStatistics::new).addBlocked(nanos);
+	}
+
+	public List<HandlerStatistics> getHandlerStatistics()
+	{
+		List<HandlerStatistics> result = new ArrayList<>(handlerStatistics.values());
+		result.sort((o1, o2) -> o1.getName().compareTo(o2.getName()));
+		return result;
+	}
+
+	/**
+	 * Returns a copy of the current values. This instance isn't changed.
+	 *
+	 * @param currentQueueDepth the current depth of the queue, overriding the last recorded value of the copy.
+	 * @return a copy of the current values.
+	 */
+	public DispatchStatistics snapshot(long currentQueueDepth)
+	{
+		DispatchStatistics result = new DispatchStatistics();
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++)
+		{
+			result.batchSizeHistogram.set(i, batchSizeHistogram.get(i));
+		}
+		result.queueDepth.set(currentQueueDepth);
+		result.maxQueueDepth.set(Math.max(maxQueueDepth.get(), currentQueueDepth));
+		result.batchCount.set(batchCount.get());
+		result.eventCount.set(eventCount.get());
+		for(Map.Entry<EventHandler<?>, HandlerStatistics> entry : handlerStatistics.entrySet())
+		{
+			result.handlerStatistics.put(entry.getKey(), new HandlerStatistics(entry.getValue())); // NOPMD - AvoidInstantiatingObjectsInLoops
+		}
+		return result;
+	}
+
+	/**
+	 * Resets all counters to zero.
+	 *
+	 * The backlog of pipeline stages is retained since it describes the current state instead of a sum.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < HISTOGRAM_BUCKETS; i++)
+		{
+			batchSizeHistogram.set(i, 0);
+		}
+		queueDepth.set(0);
+		maxQueueDepth.set(0);
+		batchCount.set(0);
+		eventCount.set(0);
+		for(HandlerStatistics current : handlerStatistics.values())
+		{
+			current.reset();
+		}
+	}
+
+	static int bucketIndex(int batchSize)
+	{
+		int index = 31 - Integer.numberOfLeadingZeros(batchSize);
+		if(index >= HISTOGRAM_BUCKETS)
+		{
+			index = HISTOGRAM_BUCKETS - 1;
+		}
+		return index;
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder result = new StringBuilder();
+		result.append("queueDepth=").append(getQueueDepth())
+				.append(", maxQueueDepth=").append(getMaxQueueDepth())
+				.append(", batches=").append(getBatchCount())
+				.append(", events=").append(getEventCount())
+				.append('\n');
+		result.append("batchSizes={");
+		long[] histogram = getBatchSizeHistogram();
+		boolean first = true;
+		for(int i = 0; i < histogram.length; i++)
+		{
+			if(histogram[i] == 0)
+			{
+				continue;
+			}
+			if(!first)
+			{
+				result.append(", ");
+			}
+			first = false;
+			result.append(1 << i);
+			if(i == HISTOGRAM_BUCKETS - 1)
+			{
+				result.append('+');
+			}
+			else
+			{
+				result.append("..").append((1 << (i + 1)) - 1);
+			}
+			result.append('=').append(histogram[i]);
+		}
+		result.append("}\n");
+		for(HandlerStatistics current : getHandlerStatistics())
+		{
+			result.append(current).append('\n');
+		}
+		return result.toString();
+	}
+
+	public static class HandlerStatistics
+	{
+		private final String name;
+		private final AtomicLong executions = new AtomicLong();
+		private final AtomicLong failures = new AtomicLong();
+		private final AtomicLong events = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLong backlog = new AtomicLong();
+		private final AtomicLong overflows = new AtomicLong();
+		private final AtomicLong overflowEvents = new AtomicLong();
+		private final AtomicLong blocks = new AtomicLong();
+		private final AtomicLong blockedNanos = new AtomicLong();
+
+		HandlerStatistics(EventHandler<?> handler)
+		{
+			this.name = handler.getClass().getSimpleName();
+		}
+
+		HandlerStatistics(HandlerStatistics other)
+		{
+			this.name = other.name;
+			executions.set(other.executions.get());
+			failures.set(other.failures.get());
+			events.set(other.events.get());
+			totalNanos.set(other.totalNanos.get());
+			maxNanos.set(other.maxNanos.get());
+			backlog.set(other.backlog.get());
+			overflows.set(other.overflows.get());
+			overflowEvents.set(other.overflowEvents.get());
+			blocks.set(other.blocks.get());
+			blockedNanos.set(other.blockedNanos.get());
+		}
+
+		void reset()
+		{
+			executions.set(0);
+			failures.set(0);
+			events.set(0);
+			totalNanos.set(0);
+			maxNanos.set(0);
+			overflows.set(0);
+			overflowEvents.set(0);
+			blocks.set(0);
+			blockedNanos.set(0);
+		}
+
+		void addOverflow(int batchSize)
+		{
+			overflows.incrementAndGet();
+			overflowEvents.addAndGet(batchSize);
+		}
+
+		void addBlocked(long nanos)
+		{
+			blocks.incrementAndGet();
+			blockedNanos.addAndGet(nanos);
+		}
+
+		void add(int batchSize, long nanos, boolean failed)
+		{
+			executions.incrementAndGet();
+			if(failed)
+			{
+				failures.incrementAndGet();
+			}
+			events.addAndGet(batchSize);
+			totalNanos.addAndGet(nanos);
+			for(;;)
+			{
+				long max = maxNanos.get();
+				if(nanos <= max || maxNanos.compareAndSet(max, nanos))
+				{
+					return;
+				}
+			}
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public long getExecutions()
+		{
+			return executions.get();
+		}
+
+		public long getFailures()
+		{
+			return failures.get();
+		}
+
+		public long getEvents()
+		{
+			return events.get();
+		}
+
+		public long getTotalNanos()
+		{
+			return totalNanos.get();
+		}
+
+		public long getMaxNanos()
+		{
+			return maxNanos.get();
+		}
+
+		/**
+		 * Returns the number of batches waiting to be handled.
+		 *
+		 * This is always zero unless the handler is executed in its own pipeline stage.
+		 *
+		 * @return the number of batches waiting to be handled.
+		 */
+		public long getBacklog()
+		{
+			return backlog.get();
+		}
+
+		/**
+		 * Returns the number of batches that were coalesced because the pipeline stage was congested.
+		 *
+		 * @return the number of coalesced batches.
+		 */
+		public long getOverflows()
+		{
+			return overflows.get();
+		}
+
+		public long getOverflowEvents()
+		{
+			return overflowEvents.get();
+		}
+
+		/**
+		 * Returns how often the dispatcher had to wait because the overflow of the pipeline stage was full.
+		 *
+		 * @return the number of times the dispatcher was blocked.
+		 */
+		public long getBlocks()
+		{
+			return blocks.get();
+		}
+
+		public long getBlockedNanos()
+		{
+			return blockedNanos.get();
+		}
+
+		@Override
+		public String toString()
+		{
+			long executionCount = getExecutions();
+			long total = getTotalNanos();
+			long average = executionCount == 0 ? 0 : total / executionCount;
+			return "HandlerStatistics[name=" + name
+					+ ", executions=" + executionCount
+					+ ", failures=" + getFailures()
+					+ ", events=" + getEvents()
+					+ ", totalMillis=" + TimeUnit.NANOSECONDS.toMillis(total)
+					+ ", averageMicros=" + TimeUnit.NANOSECONDS.toMicros(average)
+					+ ", maxMicros=" + TimeUnit.NANOSECONDS.toMicros(getMaxNanos())
+					+ ", backlog=" + getBacklog()
+					+ ", overflows=" + getOverflows()
+					+ ", overflowEvents=" + getOverflowEvents()
+					+ ", blocks=" + getBlocks()
+					+ ", blockedMillis=" + TimeUnit.NANOSECONDS.toMillis(getBlockedNanos())
+					+ "]";
+		}
+	}
+}
@@ -20,28 +20,73 @@ package de.huxhorn.lilith.engine.impl.sourcemanager;
 
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.engine.EventHandler;
+import de.huxhorn.sulky.buffers.CircularBuffer;
 import de.huxhorn.sulky.buffers.RemoveOperation;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Removes events from the queue and dispatches them to the EventHandlers.
+ *
+ * The poller is waiting until either signal() is called or pollDelay milliseconds have passed.
+ * Producers that call signal() after adding an event therefore don't have to wait for the next
+ * poll. If maxLingerMillis is greater than zero, the poller waits up to that amount of time for
+ * more events to arrive until maxBatchSize events are available. Events are handed to the
+ * EventHandlers in batches of at most maxBatchSize events.
+ *
+ * If pipelined is true, every EventHandler is executed in its own HandlerStage so independent
+ * handlers are running concurrently. Each stage accepts up to pipelineCapacity batches. Further
+ * batches are coalesced by the stage, up to maxStageOverflowEvents events. Beyond that, the poller waits
+ * for the congested stage so events back up in the queue instead of the heap.
+ * Stages of replaced handlers are drained before the new stages are started so a handler is never
+ * executed by two stages at the same time. The stages are stopped when the poller is finished.
+ */
 public class EventPoller<T extends Serializable>
 	implements Runnable
 {
 	private static final int DEFAULT_POLL_INTERVAL = 1000;
+	public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+	public static final int DEFAULT_PIPELINE_CAPACITY = 16;
+	public static final int DEFAULT_MAX_STAGE_OVERFLOW_EVENTS = DEFAULT_PIPELINE_CAPACITY * DEFAULT_MAX_BATCH_SIZE;
 
 	private final Logger logger = LoggerFactory.getLogger(EventPoller.class);
 
 	private final RemoveOperation<EventWrapper<T>> queue;
 	private final int pollDelay;
+	private final AtomicLong pendingEvents;
+	private final Lock lock;
+	private final Condition eventsAvailable;
+	private final DispatchStatistics statistics;
+	private volatile int maxBatchSize;
+	private volatile int maxLingerMillis;
+	private volatile boolean pipelined;
+	private volatile int pipelineCapacity;
+	private volatile int maxStageOverflowEvents;
 	private List<EventHandler<T>> handlers;
+	private List<EventHandler<T>> stageHandlers;
+	private List<HandlerStage<T>> stages;
 
 	public EventPoller(RemoveOperation<EventWrapper<T>> queue, int pollDelay)
 	{
 		this.queue = Objects.requireNonNull(queue, "queue must not be null!");
 		this.pollDelay = pollDelay;
+		this.pendingEvents = new AtomicLong();
+		this.lock = new ReentrantLock();
+		this.eventsAvailable = lock.newCondition();
+		this.statistics = new DispatchStatistics();
+		this.maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+		this.pipelineCapacity = DEFAULT_PIPELINE_CAPACITY;
+		this.maxStageOverflowEvents = DEFAULT_MAX_STAGE_OVERFLOW_EVENTS;
 	}
 
 	public EventPoller(RemoveOperation<EventWrapper<T>> queue)
@@ -59,64 +104,328 @@ public class EventPoller<T extends Serializable>
 		this.handlers = handlers;
 	}
 
+	public int getMaxBatchSize()
+	{
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		if(maxBatchSize <= 0)
+		{
+			throw new IllegalArgumentException("maxBatchSize must be greater than zero but was " + maxBatchSize + "!");
+		}
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public int getMaxLingerMillis()
+	{
+		return maxLingerMillis;
+	}
+
+	public void setMaxLingerMillis(int maxLingerMillis)
+	{
+		if(maxLingerMillis < 0)
+		{
+			throw new IllegalArgumentException("maxLingerMillis must not be negative but was " + maxLingerMillis + "!");
+		}
+		this.maxLingerMillis = maxLingerMillis;
+	}
+
+	public boolean isPipelined()
+	{
+		return pipelined;
+	}
+
+	public void setPipelined(boolean pipelined)
+	{
+		this.pipelined = pipelined;
+	}
+
+	public int getPipelineCapacity()
+	{
+		return pipelineCapacity;
+	}
+
+	/**
+	 * Sets the number of batches that can be handed to a stage before further batches are coalesced.
+	 * Changes will only affect stages created afterwards, i.e. after handlers have been replaced.
+	 *
+	 * @param pipelineCapacity the capacity of each stage.
+	 */
+	public void setPipelineCapacity(int pipelineCapacity)
+	{
+		if(pipelineCapacity <= 0)
+		{
+			throw new IllegalArgumentException("pipelineCapacity must be greater than zero but was " + pipelineCapacity + "!");
+		}
+		this.pipelineCapacity = pipelineCapacity;
+	}
+
+	public int getMaxStageOverflowEvents()
+	{
+		return maxStageOverflowEvents;
+	}
+
+	/**
+	 * Sets the number of events a stage coalesces before the poller has to wait for it.
+	 * Changes will only affect stages created afterwards, i.e. after handlers have been replaced.
+	 *
+	 * @param maxStageOverflowEvents the maximum number of coalesced events of each stage.
+	 */
+	public void setMaxStageOverflowEvents(int maxStageOverflowEvents)
+	{
+		if(maxStageOverflowEvents <= 0)
+		{
+			throw new IllegalArgumentException("maxStageOverflowEvents must be greater than zero but was " + maxStageOverflowEvents + "!");
+		}
+		this.maxStageOverflowEvents = maxStageOverflowEvents;
+	}
+
+	public DispatchStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Returns the number of events currently waiting in the queue.
+	 *
+	 * If the queue isn't a CircularBuffer, the number of signals since the last drain is returned instead.
+	 *
+	 * @return the number of events currently waiting in the queue.
+	 */
+	public long getQueueDepth()
+	{
+		if(queue instanceof CircularBuffer)
+		{
+			return ((CircularBuffer) queue).getAvailableElements();
+		}
+		if(queue instanceof ConcurrentRingQueue)
+		{
+			return ((ConcurrentRingQueue) queue).getAvailableElements();
+		}
+		return pendingEvents.get();
+	}
+
+	/**
+	 * Must be called after an event has been added to the queue.
+	 */
+	public void signal()
+	{
+		long pending = pendingEvents.incrementAndGet();
+		if(pending == 1 || pending == maxBatchSize)
+		{
+			lock.lock();
+			try
+			{
+				eventsAvailable.signalAll();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
 	@Override
 	public void run()
+	{
+		try
+		{
+			poll();
+		}
+		finally
+		{
+			stopStages();
+		}
+	}
+
+	private void poll()
 	{
 		for(;;)
 		{
-			long pollTime = System.currentTimeMillis();
+			try
+			{
+				awaitEvents();
+			}
+			catch(InterruptedException e)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Interrupted...");
+				break;
+			}
+
+			pendingEvents.set(0);
 			List<EventWrapper<T>> events = queue.removeAll();
-			if(events != null)
+			if(events == null)
 			{
-				int eventCount = events.size();
-				if(eventCount > 0)
-				{
-					if(logger.isInfoEnabled()) logger.info("Consuming {} events.", eventCount);
-					long time = System.currentTimeMillis();
-					if(handlers != null)
-					{
-						for(EventHandler<T> handler : handlers)
-						{
-							try
-							{
-								handler.handle(events);
-								if(logger.isDebugEnabled()) logger.debug("Executed handler {}.", handler);
-							}
-							catch(Throwable t)
-							{
-								if(logger.isWarnEnabled()) logger.warn("Exception while executing event handler!", t);
-							}
-						}
-					}
-					time = System.currentTimeMillis() - time;
-					time = time / 1000;
-					if(time == 0)
-					{
-						time = 1;
-					}
-					int eventsPerSecond = (int) (eventCount / time);
-					if(logger.isInfoEnabled())
-					{
-						logger.info("Finished consuming {} events ({} events/sec).", eventCount, eventsPerSecond);
-					}
-				}
+				continue;
+			}
+			int eventCount = events.size();
+			statistics.updateQueueDepth(eventCount);
+			if(eventCount == 0)
+			{
+				continue;
+			}
+
+			if(logger.isDebugEnabled()) logger.debug("Consuming {} events.", eventCount);
+			long time = System.currentTimeMillis();
+			int batchSize = maxBatchSize;
+			for(int i = 0; i < eventCount; i += batchSize)
+			{
+				int end = Math.min(eventCount, i + batchSize);
+				List<EventWrapper<T>> batch = (i == 0 && end == eventCount) ? events : events.subList(i, end);
+				dispatch(batch);
+			}
+			time = System.currentTimeMillis() - time;
+			time = time / 1000;
+			if(time == 0)
+			{
+				time = 1;
+			}
+			int eventsPerSecond = (int) (eventCount / time);
+			if(logger.isDebugEnabled()) logger.debug("Finished consuming {} events ({} events/sec).", eventCount, eventsPerSecond);
+		}
+	}
+
+	/**
+	 * Waits until events are available or pollDelay has passed.
+	 * If events are available and maxLingerMillis is set, waits up to maxLingerMillis
+	 * for maxBatchSize events.
+	 */
+	private void awaitEvents()
+		throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			long remaining = TimeUnit.MILLISECONDS.toNanos(pollDelay);
+			while(pendingEvents.get() == 0 && remaining > 0)
+			{
+				remaining = eventsAvailable.awaitNanos(remaining);
+			}
+			if(pendingEvents.get() == 0)
+			{
+				// poll anyway, the queue might have been filled without signal.
+				return;
+			}
+
+			remaining = TimeUnit.MILLISECONDS.toNanos(maxLingerMillis);
+			while(pendingEvents.get() < maxBatchSize && remaining > 0)
+			{
+				remaining = eventsAvailable.awaitNanos(remaining);
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void dispatch(List<EventWrapper<T>> batch)
+	{
+		int batchSize = batch.size();
+		statistics.addBatch(batchSize);
+		List<EventHandler<T>> currentHandlers = handlers;
+		List<HandlerStage<T>> currentStages = resolveStages(currentHandlers);
+		if(currentStages != null)
+		{
+			List<EventWrapper<T>> shared = Collections.unmodifiableList(new ArrayList<>(batch));
+			for(HandlerStage<T> stage : currentStages)
+			{
+				stage.add(shared);
 			}
+			return;
+		}
+		if(currentHandlers == null)
+		{
+			return;
+		}
+		for(EventHandler<T> handler : currentHandlers)
+		{
+			boolean failed = false;
+			long start = System.nanoTime();
+			try
+			{
+				handler.handle(batch);
+				if(logger.isDebugEnabled()) logger.debug("Executed handler {}.", handler);
+			}
+			catch(Throwable t)
+			{
+				failed = true;
+				if(logger.isWarnEnabled()) logger.warn("Exception while executing event handler!", t);
+			}
+			statistics.addHandlerExecution(handler, batchSize, System.nanoTime() - start, failed);
+		}
+	}
 
-			pollTime = System.currentTimeMillis() - pollTime;
-			long sleepTime = pollDelay - pollTime;
-			if(sleepTime > 0)
+	/**
+	 * Returns the stages for the given handlers if pipelined, null otherwise.
+	 *
+	 * Stages of previous handlers are stopped and have handled all pending batches before new stages are started.
+	 */
+	private List<HandlerStage<T>> resolveStages(List<EventHandler<T>> currentHandlers)
+	{
+		boolean currentlyPipelined = pipelined && currentHandlers != null;
+		if(stages != null && (!currentlyPipelined || stageHandlers != currentHandlers)) // NOPMD - CompareObjectsWithEquals
+		{
+			stopStages();
+		}
+		if(!currentlyPipelined)
+		{
+			return null;
+		}
+		if(stages == null)
+		{
+			List<HandlerStage<T>> newStages = new ArrayList<>(currentHandlers.size());
+			for(EventHandler<T> handler : currentHandlers)
+			{
+				HandlerStage<T> stage = new HandlerStage<>(handler, pipelineCapacity, maxStageOverflowEvents, statistics); // NOPMD - AvoidInstantiatingObjectsInLoops
+				stage.start();
+				newStages.add(stage);
+				if(logger.isInfoEnabled()) logger.info("Started pipeline stage for {}.", handler);
+			}
+			stages = newStages;
+			stageHandlers = currentHandlers;
+		}
+		return stages;
+	}
+
+	/**
+	 * Stops the current stages, if any, and waits until they handled all pending batches.
+	 */
+	private void stopStages()
+	{
+		if(stages == null)
+		{
+			return;
+		}
+		for(HandlerStage<T> stage : stages)
+		{
+			stage.stop();
+		}
+		// waiting isn't interruptible so new stages never run concurrently to the old ones.
+		boolean interrupted = false;
+		for(HandlerStage<T> stage : stages)
+		{
+			for(;;)
 			{
-				if(logger.isInfoEnabled()) logger.info("Sleeping {} milliseconds.", sleepTime);
 				try
 				{
-					Thread.sleep(pollDelay);
+					stage.awaitTermination();
+					break;
 				}
 				catch(InterruptedException e)
 				{
-					if(logger.isDebugEnabled()) logger.debug("Interrupted...");
-					break;
+					interrupted = true;
 				}
 			}
 		}
+		if(interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if(logger.isInfoEnabled()) logger.info("Stopped {} pipeline stages.", stages.size());
+		stages = null;
+		stageHandlers = null;
 	}
 }
@@ -0,0 +1,277 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.EventHandler;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes a single EventHandler on its own thread.
+ *
+ * Batches are handed over using a bounded queue. If the queue is full, the batch is coalesced with all
+ * other batches that didn't fit into a single overflow batch that is handled as soon as the queue has
+ * been drained. A slow handler is therefore not stalling the dispatcher or the other stages for a while.
+ * The overflow batch is limited to maxOverflowEvents events, though. Adding a batch that doesn't fit
+ * anymore blocks until the overflow batch has been handled so the events back up in the event queue
+ * and its overflow policy takes effect.
+ * Batches are handled in the order they were added so the order of events per source is retained.
+ */
+class HandlerStage<T extends Serializable>
+	implements Runnable
+{
+	private static final List<?> END_OF_STAGE = new ArrayList<>(0);
+
+	private final Logger logger = LoggerFactory.getLogger(HandlerStage.class);
+
+	private final EventHandler<T> handler;
+	private final BlockingQueue<List<EventWrapper<T>>> batches;
+	private final DispatchStatistics statistics;
+	private final int maxOverflowEvents;
+	private final Object overflowLock = new Object();
+	private List<EventWrapper<T>> overflow;
+	private boolean finished;
+	private Thread thread;
+	private volatile boolean stopped;
+
+	HandlerStage(EventHandler<T> handler, int capacity, int maxOverflowEvents, DispatchStatistics statistics)
+	{
+		this.handler = Objects.requireNonNull(handler, "handler must not be null!");
+		this.statistics = Objects.requireNonNull(statistics, "statistics must not be null!");
+		if(maxOverflowEvents <= 0)
+		{
+			throw new IllegalArgumentException("maxOverflowEvents must be greater than zero but was " + maxOverflowEvents + "!");
+		}
+		this.batches = new ArrayBlockingQueue<>(capacity);
+		this.maxOverflowEvents = maxOverflowEvents;
+	}
+
+	EventHandler<T> getHandler()
+	{
+		return handler;
+	}
+
+	int getMaxOverflowEvents()
+	{
+		return maxOverflowEvents;
+	}
+
+	Thread start()
+	{
+		Thread t = new Thread(this, "EventHandler-" + handler.getClass().getSimpleName());
+		t.setDaemon(true);
+		synchronized(overflowLock)
+		{
+			thread = t;
+		}
+		t.start();
+		return t;
+	}
+
+	/**
+	 * Hands the batch to the stage.
+	 *
+	 * If the stage is congested, the batch is coalesced into the overflow batch. If the overflow batch
+	 * can't take the batch without exceeding maxOverflowEvents, this method waits until the overflow batch
+	 * has been handled. A batch is always accepted by an empty overflow batch, regardless of its size.
+	 *
+	 * @param batch the batch of events. It must not be changed afterwards.
+	 */
+	void add(List<EventWrapper<T>> batch)
+	{
+		synchronized(overflowLock)
+		{
+			// once there is an overflow, everything goes there until it has been handled to retain the order.
+			if(overflow == null && batches.offer(batch))
+			{
+				statistics.updateHandlerBacklog(handler, batches.size());
+				return;
+			}
+			if(overflow != null && overflow.size() + batch.size() > maxOverflowEvents)
+			{
+				awaitOverflowHandled();
+			}
+			if(overflow == null)
+			{
+				if(batches.offer(batch))
+				{
+					statistics.updateHandlerBacklog(handler, batches.size());
+					return;
+				}
+				overflow = new ArrayList<>(batch);
+			}
+			else
+			{
+				overflow.addAll(batch);
+			}
+			statistics.addHandlerOverflow(handler, batch.size());
+			statistics.updateHandlerBacklog(handler, batches.size() + 1);
+		}
+	}
+
+	/**
+	 * Waits until the current overflow batch has been taken by the stage. Must be called while holding overflowLock.
+	 *
+	 * If the stage has finished or the calling thread is interrupted, the method returns immediately and the
+	 * overflow batch may exceed maxOverflowEvents. Events are never dropped by the stage.
+	 */
+	private void awaitOverflowHandled()
+	{
+		long start = System.nanoTime();
+		try
+		{
+			while(overflow != null && !finished)
+			{
+				overflowLock.wait();
+			}
+		}
+		catch(InterruptedException e)
+		{
+			if(logger.isDebugEnabled()) logger.debug("Interrupted while waiting for stage of {}.", handler);
+			Thread.currentThread().interrupt();
+		}
+		statistics.addHandlerBlocked(handler, System.nanoTime() - start);
+	}
+
+	/**
+	 * Stops the stage after all previously added batches have been handled.
+	 *
+	 * This method doesn't wait for the stage to finish. Use awaitTermination for that.
+	 */
+	@SuppressWarnings("unchecked")
+	void stop()
+	{
+		stopped = true;
+		// only used to wake up the stage. If the queue is full, the stage isn't waiting anyway.
+		batches.offer((List<EventWrapper<T>>) END_OF_STAGE);
+	}
+
+	/**
+	 * Waits until the stage has handled all batches after stop has been called.
+	 *
+	 * @throws InterruptedException if the calling thread has been interrupted.
+	 */
+	void awaitTermination()
+		throws InterruptedException
+	{
+		Thread t;
+		synchronized(overflowLock)
+		{
+			t = thread;
+		}
+		if(t != null)
+		{
+			t.join();
+		}
+	}
+
+	/**
+	 * Returns the next queued batch or, if the queue is empty, the overflow batch.
+	 *
+	 * Both are checked while holding overflowLock. Otherwise, the queue could be refilled and a newer
+	 * overflow batch created between both checks, handling the overflow before the queued batches.
+	 */
+	private List<EventWrapper<T>> removeNext()
+	{
+		synchronized(overflowLock)
+		{
+			List<EventWrapper<T>> result = batches.poll();
+			if(result == null && overflow != null)
+			{
+				result = overflow;
+				overflow = null;
+				overflowLock.notifyAll();
+			}
+			return result;
+		}
+	}
+
+	private void finish()
+	{
+		synchronized(overflowLock)
+		{
+			finished = true;
+			overflowLock.notifyAll();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		try
+		{
+			handleBatches();
+		}
+		finally
+		{
+			finish();
+		}
+	}
+
+	private void handleBatches()
+	{
+		for(;;)
+		{
+			List<EventWrapper<T>> batch = removeNext();
+			if(batch == null)
+			{
+				if(stopped)
+				{
+					if(logger.isDebugEnabled()) logger.debug("Stopping stage of {}.", handler);
+					break;
+				}
+				try
+				{
+					batch = batches.take();
+				}
+				catch(InterruptedException e)
+				{
+					if(logger.isDebugEnabled()) logger.debug("Interrupted...");
+					break;
+				}
+			}
+			if(batch == END_OF_STAGE)
+			{
+				continue;
+			}
+			statistics.updateHandlerBacklog(handler, batches.size());
+
+			boolean failed = false;
+			long start = System.nanoTime();
+			try
+			{
+				handler.handle(batch);
+				if(logger.isDebugEnabled()) logger.debug("Executed handler {}.", handler);
+			}
+			catch(Throwable t)
+			{
+				failed = true;
+				if(logger.isWarnEnabled()) logger.warn("Exception while executing event handler!", t);
+			}
+			statistics.addHandlerExecution(handler, batch.size(), System.nanoTime() - start, failed);
+		}
+	}
+}
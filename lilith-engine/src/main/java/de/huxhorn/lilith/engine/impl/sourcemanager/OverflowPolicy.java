@@ -0,0 +1,42 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager;
+
+/**
+ * Defines what happens if an event is added to a full ConcurrentRingQueue.
+ */
+public enum OverflowPolicy
+{
+	/**
+	 * The producer waits until space is available.
+	 */
+	BLOCK,
+	/**
+	 * The oldest event in the queue is dropped to make room for the new event.
+	 */
+	DROP_OLDEST,
+	/**
+	 * The new event is dropped.
+	 */
+	DROP_NEWEST,
+	/**
+	 * The new event is written to a spill file and retrieved by the consumer after the queue has been drained.
+	 */
+	SPILL_TO_DISK
+}
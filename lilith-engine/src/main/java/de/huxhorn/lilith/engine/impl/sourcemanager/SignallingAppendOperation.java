@@ -0,0 +1,74 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.sulky.buffers.AppendOperation;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Wakes up the EventPoller after events have been appended to the wrapped queue.
+ */
+class SignallingAppendOperation<T extends Serializable>
+	implements AppendOperation<EventWrapper<T>>
+{
+	private final AppendOperation<EventWrapper<T>> queue;
+	private final EventPoller<T> eventPoller;
+
+	SignallingAppendOperation(AppendOperation<EventWrapper<T>> queue, EventPoller<T> eventPoller)
+	{
+		this.queue = Objects.requireNonNull(queue, "queue must not be null!");
+		this.eventPoller = Objects.requireNonNull(eventPoller, "eventPoller must not be null!");
+	}
+
+	@Override
+	public void add(EventWrapper<T> element)
+	{
+		queue.add(element);
+		eventPoller.signal();
+	}
+
+	@Override
+	public void addAll(List<EventWrapper<T>> elements)
+	{
+		queue.addAll(elements);
+		for(int i = 0; i < elements.size(); i++)
+		{
+			eventPoller.signal();
+		}
+	}
+
+	@Override
+	public void addAll(EventWrapper<T>[] elements)
+	{
+		queue.addAll(elements);
+		for(int i = 0; i < elements.length; i++)
+		{
+			eventPoller.signal();
+		}
+	}
+
+	@Override
+	public boolean isFull()
+	{
+		return queue.isFull();
+	}
+}
@@ -25,7 +25,8 @@ import de.huxhorn.lilith.engine.EventSource;
 import de.huxhorn.lilith.engine.EventSourceListener;
 import de.huxhorn.lilith.engine.EventSourceProducer;
 import de.huxhorn.lilith.engine.SourceManager;
-import de.huxhorn.sulky.buffers.BlockingCircularBuffer;
+import de.huxhorn.sulky.buffers.AppendOperation;
+import de.huxhorn.sulky.buffers.RemoveOperation;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.Serializable;
@@ -46,7 +47,7 @@ public class SourceManagerImpl<T extends Serializable>
 
 	private static final String NUMBER_OF_SOURCES = "numberOfSources";
 
-	private final BlockingCircularBuffer<EventWrapper<T>> queue;
+	private final AppendOperation<EventWrapper<T>> queue;
 	private final Set<EventSourceListener<T>> listeners;
 	private final PropertyChangeSupport changeSupport;
 	private final List<EventSource<T>> sources;
@@ -56,10 +57,17 @@ public class SourceManagerImpl<T extends Serializable>
 
 	private final List<EventSourceProducer<T>> eventSourceProducers;
 
-	public SourceManagerImpl(BlockingCircularBuffer<EventWrapper<T>> queue)
+	/**
+	 * Creates a SourceManager using the given queue, e.g. a BlockingCircularBuffer or a ConcurrentRingQueue.
+	 *
+	 * @param queue the queue receiving the events of all EventProducers.
+	 * @param <Q> the type of the queue.
+	 */
+	public <Q extends AppendOperation<EventWrapper<T>> & RemoveOperation<EventWrapper<T>>> SourceManagerImpl(Q queue)
 	{
-		this.queue = Objects.requireNonNull(queue, "queue must not be null!");
+		Objects.requireNonNull(queue, "queue must not be null!");
 		eventPoller = new EventPoller<>(queue, 100);
+		this.queue = new SignallingAppendOperation<>(queue, eventPoller);
 		eventProducersLock = new ReentrantLock();
 		eventProducers = new HashSet<>();
 		eventSourceProducers = new ArrayList<>();
@@ -222,6 +230,70 @@ public class SourceManagerImpl<T extends Serializable>
 	}
 
 
+	public int getMaxBatchSize()
+	{
+		return eventPoller.getMaxBatchSize();
+	}
+
+	public void setMaxBatchSize(int maxBatchSize)
+	{
+		eventPoller.setMaxBatchSize(maxBatchSize);
+	}
+
+	public int getMaxLingerMillis()
+	{
+		return eventPoller.getMaxLingerMillis();
+	}
+
+	public void setMaxLingerMillis(int maxLingerMillis)
+	{
+		eventPoller.setMaxLingerMillis(maxLingerMillis);
+	}
+
+	public boolean isPipelined()
+	{
+		return eventPoller.isPipelined();
+	}
+
+	/**
+	 * If pipelined, every EventHandler is executed concurrently on its own thread.
+	 *
+	 * @param pipelined whether or not EventHandlers should be executed in a pipeline.
+	 */
+	public void setPipelined(boolean pipelined)
+	{
+		eventPoller.setPipelined(pipelined);
+	}
+
+	public int getPipelineCapacity()
+	{
+		return eventPoller.getPipelineCapacity();
+	}
+
+	public void setPipelineCapacity(int pipelineCapacity)
+	{
+		eventPoller.setPipelineCapacity(pipelineCapacity);
+	}
+
+	/**
+	 * Returns a snapshot of the dispatch statistics including the current queue depth.
+	 * Calling this method doesn't change the collected statistics.
+	 *
+	 * @return a snapshot of the dispatch statistics.
+	 */
+	public DispatchStatistics getDispatchStatistics()
+	{
+		return eventPoller.getStatistics().snapshot(eventPoller.getQueueDepth());
+	}
+
+	/**
+	 * Resets the collected dispatch statistics, e.g. using "Reset statistics" in the Troubleshooting preferences.
+	 */
+	public void resetDispatchStatistics()
+	{
+		eventPoller.getStatistics().reset();
+	}
+
 	@Override
 	public void addEventSourceListener(EventSourceListener<T> listener)
 	{
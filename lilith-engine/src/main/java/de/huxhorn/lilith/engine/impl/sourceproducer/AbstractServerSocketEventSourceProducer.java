@@ -23,6 +23,7 @@ import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.engine.EventProducer;
 import de.huxhorn.lilith.engine.EventSourceProducer;
 import de.huxhorn.lilith.engine.SourceManager;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
@@ -33,6 +34,8 @@ import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -50,21 +53,52 @@ public abstract class AbstractServerSocketEventSourceProducer<T extends Serializ
 			.withZone(ZoneId.systemDefault());
 
 	private ServerSocket serverSocket;
+	private ServerSocketChannel serverSocketChannel;
 	private AppendOperation<EventWrapper<T>> queue;
 	private SourceManager<T> sourceManager;
 	private final int port;
+	private final NioReceiverGroup nioReceiverGroup;
 
 	public AbstractServerSocketEventSourceProducer(int port)
 		throws IOException
+	{
+		this(port, null);
+	}
+
+	/**
+	 * Creates a producer that accepts connections using the given NioReceiverGroup.
+	 *
+	 * Connections are handled by the EventProducer returned by createNioProducer. If it returns null,
+	 * the EventProducer returned by createProducer is used with a blocking stream instead.
+	 *
+	 * @param port the port.
+	 * @param nioReceiverGroup the NioReceiverGroup or null for blocking ServerSocket.
+	 * @throws IOException if the port could not be bound.
+	 */
+	public AbstractServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+		throws IOException
 	{
 		this.port = port;
+		this.nioReceiverGroup = nioReceiverGroup;
 		try
 		{
-			serverSocket = new ServerSocket(port);
+			if(nioReceiverGroup == null)
+			{
+				serverSocket = new ServerSocket(port);
+			}
+			else
+			{
+				serverSocketChannel = ServerSocketChannel.open();
+				serverSocketChannel.bind(new InetSocketAddress(port));
+			}
 		}
 		catch(BindException ex)
 		{
 			if(logger.isErrorEnabled()) logger.error("Couldn't start ServerSocket on port {}!", port);
+			if(serverSocketChannel != null)
+			{
+				serverSocketChannel.close();
+			}
 			throw ex;
 		}
 	}
@@ -102,6 +136,27 @@ public abstract class AbstractServerSocketEventSourceProducer<T extends Serializ
 	@SuppressWarnings("PMD.CloseResource")
 	public void run()
 	{
+		if(serverSocketChannel != null)
+		{
+			try
+			{
+				nioReceiverGroup.bind(serverSocketChannel, this::accept);
+				if(logger.isInfoEnabled()) logger.info("Accepting connections on port {} using {}.", port, nioReceiverGroup);
+			}
+			catch(IOException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Closing serverSocketChannel because of exception.", e);
+				try
+				{
+					serverSocketChannel.close();
+				}
+				catch(IOException e1)
+				{
+					if(logger.isInfoEnabled()) logger.info("Exception while closing serverSocketChannel.");
+				}
+			}
+			return;
+		}
 		for(;;)
 		{
 			Socket socket;
@@ -140,6 +195,41 @@ public abstract class AbstractServerSocketEventSourceProducer<T extends Serializ
 		}
 	}
 
+	private void accept(SocketChannel channel)
+	{
+		SourceIdentifier id = createSourceIdentifier(channel.socket());
+		EventProducer<T> producer = createNioProducer(id, queue, nioReceiverGroup, channel);
+		if(producer != null)
+		{
+			producer.start();
+			sourceManager.addEventProducer(producer);
+			return;
+		}
+
+		// protocol without framing, fall back to a blocking stream.
+		nioReceiverGroup.getBlockingExecutor().execute(() -> {
+			try
+			{
+				channel.configureBlocking(true);
+				EventProducer<T> blockingProducer = createProducer(id, queue, channel.socket().getInputStream());
+				blockingProducer.start();
+				sourceManager.addEventProducer(blockingProducer);
+			}
+			catch(Throwable e)
+			{
+				if(logger.isInfoEnabled()) logger.info("Exception while creating EventProducer.", e);
+				try
+				{
+					channel.close();
+				}
+				catch(IOException e1)
+				{
+					// ignore
+				}
+			}
+		});
+	}
+
 	private SourceIdentifier createSourceIdentifier(Socket socket)
 	{
 		SocketAddress address = socket.getRemoteSocketAddress();
@@ -164,4 +254,26 @@ public abstract class AbstractServerSocketEventSourceProducer<T extends Serializ
 	                                                AppendOperation<EventWrapper<T>> eventQueue,
 	                                                InputStream inputStream)
 		throws IOException;
+
+	/**
+	 * Creates an EventProducer for a non-blocking channel, usually a NioEventProducer.
+	 *
+	 * @param id the source identifier of the connection.
+	 * @param eventQueue the event queue.
+	 * @param nioReceiverGroup the NioReceiverGroup handling the channel.
+	 * @param channel the accepted, non-blocking channel.
+	 * @return the EventProducer or null if the protocol doesn't support NIO.
+	 */
+	protected EventProducer<T> createNioProducer(SourceIdentifier id,
+	                                             AppendOperation<EventWrapper<T>> eventQueue,
+	                                             NioReceiverGroup nioReceiverGroup,
+	                                             SocketChannel channel)
+	{
+		return null;
+	}
+
+	public boolean isNio()
+	{
+		return serverSocketChannel != null;
+	}
 }
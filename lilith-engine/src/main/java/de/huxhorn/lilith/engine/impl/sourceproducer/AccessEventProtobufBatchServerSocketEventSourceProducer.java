@@ -0,0 +1,77 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourceproducer;
+
+import de.huxhorn.lilith.data.access.AccessEvent;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
+import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.AccessEventProtobufFrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.AccessEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.BatchFrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.MessageBasedEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
+import de.huxhorn.sulky.buffers.AppendOperation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives batches of uncompressed protobuf AccessEvents. Every batch may be GZIPed as a whole.
+ */
+public class AccessEventProtobufBatchServerSocketEventSourceProducer
+	extends AbstractServerSocketEventSourceProducer<AccessEvent>
+{
+	public AccessEventProtobufBatchServerSocketEventSourceProducer(int port)
+		throws IOException
+	{
+		this(port, null);
+	}
+
+	public AccessEventProtobufBatchServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
+	}
+
+	@Override
+	protected EventProducer<AccessEvent> createProducer(SourceIdentifier id, AppendOperation<EventWrapper<AccessEvent>> eventQueue, InputStream inputStream)
+		throws IOException
+	{
+		return new MessageBasedEventProducer<>(id, eventQueue, new AccessEventSourceIdentifierUpdater(), createFrameDecoder(), inputStream, true);
+	}
+
+	@Override
+	protected EventProducer<AccessEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<AccessEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new AccessEventSourceIdentifierUpdater(), createFrameDecoder(), NioEventProducer.Framing.LENGTH_PREFIXED, true, nioReceiverGroup, channel);
+	}
+
+	private static BatchFrameDecoder<AccessEvent> createFrameDecoder()
+	{
+		return new BatchFrameDecoder<>(new AccessEventProtobufFrameDecoder(false));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AccessEventProtobufBatchServerSocketEventSourceProducer[port=" + getPort() + "]";
+	}
+}
@@ -22,10 +22,15 @@ import de.huxhorn.lilith.data.access.AccessEvent;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.AccessEventProtobufFrameDecoder;
 import de.huxhorn.lilith.engine.impl.eventproducer.AccessEventProtobufMessageBasedEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.AccessEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 
 public class AccessEventProtobufServerSocketEventSourceProducer
 	extends AbstractServerSocketEventSourceProducer<AccessEvent>
@@ -35,7 +40,13 @@ public class AccessEventProtobufServerSocketEventSourceProducer
 	public AccessEventProtobufServerSocketEventSourceProducer(int port, boolean compressing)
 		throws IOException
 	{
-		super(port);
+		this(port, compressing, null);
+	}
+
+	public AccessEventProtobufServerSocketEventSourceProducer(int port, boolean compressing, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
 		this.compressing = compressing;
 	}
 
@@ -46,6 +57,12 @@ public class AccessEventProtobufServerSocketEventSourceProducer
 		return new AccessEventProtobufMessageBasedEventProducer(id, eventQueue, inputStream, compressing);
 	}
 
+	@Override
+	protected EventProducer<AccessEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<AccessEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new AccessEventSourceIdentifierUpdater(), new AccessEventProtobufFrameDecoder(compressing), NioEventProducer.Framing.LENGTH_PREFIXED, true, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
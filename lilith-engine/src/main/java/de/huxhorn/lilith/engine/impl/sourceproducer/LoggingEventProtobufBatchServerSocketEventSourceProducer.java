@@ -0,0 +1,77 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourceproducer;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.BatchFrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventProtobufFrameDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.MessageBasedEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
+import de.huxhorn.sulky.buffers.AppendOperation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Receives batches of uncompressed protobuf LoggingEvents. Every batch may be GZIPed as a whole.
+ */
+public class LoggingEventProtobufBatchServerSocketEventSourceProducer
+	extends AbstractServerSocketEventSourceProducer<LoggingEvent>
+{
+	public LoggingEventProtobufBatchServerSocketEventSourceProducer(int port)
+		throws IOException
+	{
+		this(port, null);
+	}
+
+	public LoggingEventProtobufBatchServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
+	}
+
+	@Override
+	protected EventProducer<LoggingEvent> createProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, InputStream inputStream)
+		throws IOException
+	{
+		return new MessageBasedEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), createFrameDecoder(), inputStream, true);
+	}
+
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), createFrameDecoder(), NioEventProducer.Framing.LENGTH_PREFIXED, true, nioReceiverGroup, channel);
+	}
+
+	private static BatchFrameDecoder<LoggingEvent> createFrameDecoder()
+	{
+		return new BatchFrameDecoder<>(new LoggingEventProtobufFrameDecoder(false));
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LoggingEventProtobufBatchServerSocketEventSourceProducer[port=" + getPort() + "]";
+	}
+}
@@ -22,10 +22,15 @@ import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventProtobufFrameDecoder;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventProtobufMessageBasedEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 
 public class LoggingEventProtobufServerSocketEventSourceProducer
 	extends AbstractServerSocketEventSourceProducer<LoggingEvent>
@@ -35,7 +40,13 @@ public class LoggingEventProtobufServerSocketEventSourceProducer
 	public LoggingEventProtobufServerSocketEventSourceProducer(int port, boolean compressing)
 		throws IOException
 	{
-		super(port);
+		this(port, compressing, null);
+	}
+
+	public LoggingEventProtobufServerSocketEventSourceProducer(int port, boolean compressing, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
 		this.compressing = compressing;
 	}
 
@@ -46,6 +57,12 @@ public class LoggingEventProtobufServerSocketEventSourceProducer
 		return new LoggingEventProtobufMessageBasedEventProducer(id, eventQueue, inputStream, compressing);
 	}
 
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingEventProtobufFrameDecoder(compressing), NioEventProducer.Framing.LENGTH_PREFIXED, true, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
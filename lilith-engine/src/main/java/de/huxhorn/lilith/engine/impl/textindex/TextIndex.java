@@ -0,0 +1,338 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.textindex;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.eventsource.LoggerContext;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Marker;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThreadInfo;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A trigram index of the text of the events in a Lilith file.
+ *
+ * The index doesn't contain the trigrams themselves. Every trigram of a field is hashed into one of
+ * the buckets of a segment and every bucket contains a bit mask of the blocks of BLOCK_SIZE events
+ * containing at least one trigram hashed into that bucket. A block may contain a search string only
+ * if the buckets of all trigrams of the search string contain the block. Hash collisions only cause
+ * additional candidates, never missing ones.
+ *
+ * Field.EVENT contains all the text checked by EventContainsCondition, Field.MESSAGE the formatted
+ * message and Field.MESSAGE_PATTERN the message pattern. Only LoggingEvents are indexed.
+ *
+ * File format: int MAGIC_VALUE, int VERSION, followed by segments.
+ * Segment: int length of the rest of the segment, long first event, int event count, int bucket count,
+ * followed by bucket count longs containing the block masks.
+ */
+public final class TextIndex
+{
+	public static final int MAGIC_VALUE = 0x4E494458; // NIDX
+	public static final int VERSION = 1;
+	public static final int BLOCK_SIZE = 16;
+	public static final int SEGMENT_SIZE = BLOCK_SIZE * Long.SIZE;
+	public static final int DEFAULT_BUCKET_COUNT = 4096;
+	public static final int NGRAM_LENGTH = 3;
+
+	static final int HEADER_SIZE = 8;
+	static final int SEGMENT_HEADER_SIZE = 16;
+
+	public enum Field
+	{
+		EVENT,
+		MESSAGE,
+		MESSAGE_PATTERN
+	}
+
+	/**
+	 * Receives the text of an event.
+	 */
+	public interface TextConsumer
+	{
+		void accept(Field field, String text);
+	}
+
+	static
+	{
+		new TextIndex(); // stfu, coverage
+	}
+
+	private TextIndex() {}
+
+	public static File resolveTextIndexFile(File dataFile)
+	{
+		String fileStr = dataFile.getAbsolutePath();
+		if(fileStr.toLowerCase(Locale.US).endsWith(FileConstants.FILE_EXTENSION))
+		{
+			fileStr = fileStr.substring(0, fileStr.length() - FileConstants.FILE_EXTENSION.length());
+		}
+		return new File(fileStr + FileConstants.TEXT_INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Returns the text index file of the given buffer or, in case of a FilteringBuffer, of its source buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the text index file or null if the buffer isn't backed by a file.
+	 */
+	public static File resolveTextIndexFile(Buffer<?> buffer)
+	{
+		Buffer<?> sourceBuffer = FilteringBuffer.resolveSourceBuffer(buffer);
+		if(sourceBuffer instanceof FileBuffer)
+		{
+			File dataFile = ((FileBuffer<?>) sourceBuffer).getDataFile();
+			if(dataFile != null)
+			{
+				return resolveTextIndexFile(dataFile);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the hash of the trigram starting at the given index.
+	 *
+	 * @param field the field containing text.
+	 * @param text the text.
+	 * @param index the index of the first char of the trigram.
+	 * @return the hash of the trigram.
+	 */
+	static int hash(Field field, CharSequence text, int index)
+	{
+		int result = field.ordinal();
+		for(int i = index; i < index + NGRAM_LENGTH; i++)
+		{
+			result = result * 31 + text.charAt(i);
+		}
+		result *= 0x9E3779B9;
+		return result ^ (result >>> 16);
+	}
+
+	/**
+	 * Passes all text of the given event to consumer.
+	 *
+	 * The texts of Field.EVENT are exactly the ones checked by EventContainsCondition.
+	 *
+	 * @param wrapper the event, may be null.
+	 * @param consumer the consumer.
+	 */
+	public static void collectText(EventWrapper<?> wrapper, TextConsumer consumer)
+	{
+		if(wrapper == null)
+		{
+			return;
+		}
+		Serializable eventObj = wrapper.getEvent();
+		if(!(eventObj instanceof LoggingEvent))
+		{
+			return;
+		}
+		LoggingEvent event = (LoggingEvent) eventObj;
+		Message message = event.getMessage();
+		if(message != null)
+		{
+			String formatted = message.getMessage();
+			accept(consumer, Field.MESSAGE, formatted);
+			accept(consumer, Field.EVENT, formatted);
+			accept(consumer, Field.MESSAGE_PATTERN, message.getMessagePattern());
+		}
+		LoggerContext loggerContext = event.getLoggerContext();
+		if(loggerContext != null)
+		{
+			accept(consumer, Field.EVENT, loggerContext.getName());
+			collectMap(loggerContext.getProperties(), consumer);
+		}
+		accept(consumer, Field.EVENT, String.valueOf(event.getLevel()));
+		accept(consumer, Field.EVENT, event.getLogger());
+		collectStackTrace(event.getCallStack(), consumer);
+		collectThrowable(event.getThrowable(), consumer, new IdentityHashMap<>());
+		ThreadInfo threadInfo = event.getThreadInfo();
+		if(threadInfo != null)
+		{
+			accept(consumer, Field.EVENT, threadInfo.getName());
+			Long threadId = threadInfo.getId();
+			if(threadId != null)
+			{
+				accept(consumer, Field.EVENT, Long.toString(threadId));
+			}
+			Integer threadPriority = threadInfo.getPriority();
+			if(threadPriority != null)
+			{
+				accept(consumer, Field.EVENT, Integer.toString(threadPriority));
+			}
+			accept(consumer, Field.EVENT, threadInfo.getGroupName());
+			Long groupId = threadInfo.getGroupId();
+			if(groupId != null)
+			{
+				accept(consumer, Field.EVENT, Long.toString(groupId));
+			}
+		}
+		collectMap(event.getMdc(), consumer);
+		Marker marker = event.getMarker();
+		if(marker != null)
+		{
+			for(String current : marker.collectMarkerNames())
+			{
+				accept(consumer, Field.EVENT, current);
+			}
+		}
+		Message[] ndc = event.getNdc();
+		if(ndc != null)
+		{
+			for(Message current : ndc)
+			{
+				if(current != null)
+				{
+					accept(consumer, Field.EVENT, current.getMessage());
+					accept(consumer, Field.EVENT, current.getMessagePattern());
+				}
+			}
+		}
+	}
+
+	private static void collectMap(Map<String, String> map, TextConsumer consumer)
+	{
+		if(map == null)
+		{
+			return;
+		}
+		for(Map.Entry<String, String> entry : map.entrySet())
+		{
+			accept(consumer, Field.EVENT, entry.getKey());
+			accept(consumer, Field.EVENT, entry.getValue());
+		}
+	}
+
+	private static void collectThrowable(ThrowableInfo throwable, TextConsumer consumer, IdentityHashMap<ThrowableInfo, Object> dejaVu)
+	{
+		if(throwable == null || dejaVu.containsKey(throwable))
+		{
+			return;
+		}
+		dejaVu.put(throwable, null);
+		accept(consumer, Field.EVENT, throwable.getName());
+		accept(consumer, Field.EVENT, throwable.getMessage());
+		collectThrowable(throwable.getCause(), consumer, dejaVu);
+		ThrowableInfo[] suppressed = throwable.getSuppressed();
+		if(suppressed != null)
+		{
+			for(ThrowableInfo current : suppressed)
+			{
+				collectThrowable(current, consumer, dejaVu);
+			}
+		}
+		collectStackTrace(throwable.getStackTrace(), consumer);
+	}
+
+	private static void collectStackTrace(ExtendedStackTraceElement[] stackTrace, TextConsumer consumer)
+	{
+		if(stackTrace == null)
+		{
+			return;
+		}
+		for(ExtendedStackTraceElement current : stackTrace)
+		{
+			if(current != null)
+			{
+				accept(consumer, Field.EVENT, current.toString(true));
+			}
+		}
+	}
+
+	private static void accept(TextConsumer consumer, Field field, String text)
+	{
+		if(text != null && text.length() >= NGRAM_LENGTH)
+		{
+			consumer.accept(field, text);
+		}
+	}
+
+	static boolean isHeaderValid(RandomAccessFile file)
+		throws IOException
+	{
+		if(file.length() < HEADER_SIZE)
+		{
+			return false;
+		}
+		file.seek(0);
+		return file.readInt() == MAGIC_VALUE && file.readInt() == VERSION;
+	}
+
+	/**
+	 * Reads the header of the segment starting at the given offset.
+	 *
+	 * @return the segment or null if there is no complete segment at offset.
+	 */
+	static Segment readSegment(RandomAccessFile file, long offset)
+		throws IOException
+	{
+		long length = file.length();
+		if(offset + 4 + SEGMENT_HEADER_SIZE > length)
+		{
+			return null;
+		}
+		file.seek(offset);
+		int segmentLength = file.readInt();
+		long firstEvent = file.readLong();
+		int eventCount = file.readInt();
+		int bucketCount = file.readInt();
+		if(firstEvent < 0 || eventCount <= 0 || eventCount > SEGMENT_SIZE
+				|| bucketCount <= 0 || Integer.bitCount(bucketCount) != 1
+				|| segmentLength != SEGMENT_HEADER_SIZE + bucketCount * 8
+				|| offset + 4 + segmentLength > length)
+		{
+			return null;
+		}
+		return new Segment(firstEvent, eventCount, bucketCount, offset + 4 + SEGMENT_HEADER_SIZE);
+	}
+
+	static final class Segment
+	{
+		final long firstEvent;
+		final int eventCount;
+		final int bucketCount;
+		final long bucketOffset;
+
+		Segment(long firstEvent, int eventCount, int bucketCount, long bucketOffset)
+		{
+			this.firstEvent = firstEvent;
+			this.eventCount = eventCount;
+			this.bucketCount = bucketCount;
+			this.bucketOffset = bucketOffset;
+		}
+
+		long getEnd()
+		{
+			return bucketOffset + (long) bucketCount * 8;
+		}
+	}
+}
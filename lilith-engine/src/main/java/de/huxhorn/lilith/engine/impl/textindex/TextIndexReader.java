@@ -0,0 +1,222 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.textindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves candidate events of text searches using a TextIndex file.
+ *
+ * Only the segment headers are kept in memory. The buckets needed by a search are read from the file.
+ * refresh reads segment headers appended since the last call. All methods are thread-safe.
+ */
+public final class TextIndexReader
+{
+	private static final ConcurrentMap<File, SoftReference<TextIndexReader>> READERS = new ConcurrentHashMap<>();
+
+	private final File textIndexFile;
+	private final List<TextIndex.Segment> segments;
+	private long eventCount;
+	private long offset;
+
+	private TextIndexReader(File textIndexFile)
+	{
+		this.textIndexFile = textIndexFile;
+		this.segments = new ArrayList<>();
+		this.offset = TextIndex.HEADER_SIZE;
+	}
+
+	/**
+	 * Returns an up-to-date reader of the given file, reusing a previously returned reader if possible.
+	 *
+	 * @param textIndexFile the text index file.
+	 * @return the reader or null if the file doesn't exist or can't be read.
+	 */
+	public static TextIndexReader get(File textIndexFile)
+	{
+		Objects.requireNonNull(textIndexFile, "textIndexFile must not be null!");
+		if(!textIndexFile.isFile())
+		{
+			READERS.remove(textIndexFile);
+			return null;
+		}
+		SoftReference<TextIndexReader> reference = READERS.get(textIndexFile);
+		TextIndexReader result = reference == null ? null : reference.get();
+		if(result == null)
+		{
+			result = new TextIndexReader(textIndexFile);
+			READERS.put(textIndexFile, new SoftReference<>(result));
+		}
+		try
+		{
+			result.refresh();
+			return result;
+		}
+		catch(IOException ex)
+		{
+			final Logger logger = LoggerFactory.getLogger(TextIndexReader.class);
+			if(logger.isWarnEnabled()) logger.warn("Exception while reading text index {}!", textIndexFile.getAbsolutePath(), ex);
+			READERS.remove(textIndexFile);
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the segment headers that have been appended since the last refresh.
+	 *
+	 * Everything is read again if the file has been truncated or rewritten in the meantime.
+	 *
+	 * @throws IOException if reading fails.
+	 */
+	public synchronized void refresh()
+		throws IOException
+	{
+		try(RandomAccessFile file = new RandomAccessFile(textIndexFile, "r"))
+		{
+			if(!TextIndex.isHeaderValid(file))
+			{
+				clear();
+				return;
+			}
+			if(file.length() < offset)
+			{
+				clear();
+			}
+			for(;;)
+			{
+				TextIndex.Segment segment = TextIndex.readSegment(file, offset);
+				if(segment == null)
+				{
+					return;
+				}
+				if(segment.firstEvent != eventCount)
+				{
+					if(eventCount == 0)
+					{
+						// invalid
+						return;
+					}
+					// rewritten
+					clear();
+					continue;
+				}
+				segments.add(segment);
+				eventCount += segment.eventCount;
+				offset = segment.getEnd();
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of events covered by the index.
+	 *
+	 * Events with an index greater than or equal to the returned value aren't indexed.
+	 *
+	 * @return the number of events covered by the index.
+	 */
+	public synchronized long getEventCount()
+	{
+		return eventCount;
+	}
+
+	/**
+	 * Returns the ascending indices of all indexed events that may contain the given search string in field.
+	 *
+	 * @param field the field.
+	 * @param searchString the search string.
+	 * @return the candidates or null if the search string is too short to be resolved using the index.
+	 * @throws IOException if reading fails.
+	 */
+	public synchronized long[] getCandidates(TextIndex.Field field, String searchString)
+		throws IOException
+	{
+		Objects.requireNonNull(field, "field must not be null!");
+		if(searchString == null || searchString.length() < TextIndex.NGRAM_LENGTH)
+		{
+			return null;
+		}
+		int[] hashes = new int[searchString.length() - TextIndex.NGRAM_LENGTH + 1];
+		for(int i = 0; i < hashes.length; i++)
+		{
+			hashes[i] = TextIndex.hash(field, searchString, i);
+		}
+		long[] result = new long[64];
+		int size = 0;
+		ByteBuffer bucket = ByteBuffer.allocate(8);
+		try(RandomAccessFile file = new RandomAccessFile(textIndexFile, "r"))
+		{
+			FileChannel channel = file.getChannel();
+			for(TextIndex.Segment segment : segments)
+			{
+				int blocks = (segment.eventCount + TextIndex.BLOCK_SIZE - 1) / TextIndex.BLOCK_SIZE;
+				long mask = blocks == Long.SIZE ? -1L : (1L << blocks) - 1;
+				int bucketMask = segment.bucketCount - 1;
+				for(int i = 0; i < hashes.length && mask != 0; i++)
+				{
+					bucket.clear();
+					long position = segment.bucketOffset + (long) (hashes[i] & bucketMask) * 8;
+					while(bucket.hasRemaining())
+					{
+						if(channel.read(bucket, position + bucket.position()) < 0)
+						{
+							throw new IOException("Unexpected end of " + textIndexFile.getAbsolutePath() + "!");
+						}
+					}
+					mask &= bucket.getLong(0);
+				}
+				while(mask != 0)
+				{
+					int block = Long.numberOfTrailingZeros(mask);
+					mask &= mask - 1;
+					long start = segment.firstEvent + (long) block * TextIndex.BLOCK_SIZE;
+					long end = Math.min(start + TextIndex.BLOCK_SIZE, segment.firstEvent + segment.eventCount);
+					if(size + TextIndex.BLOCK_SIZE > result.length)
+					{
+						result = Arrays.copyOf(result, result.length * 2);
+					}
+					for(long current = start; current < end; current++)
+					{
+						result[size++] = current;
+					}
+				}
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	private void clear()
+	{
+		segments.clear();
+		eventCount = 0;
+		offset = TextIndex.HEADER_SIZE;
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.textindex;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.IndexWriter;
+import de.huxhorn.sulky.buffers.Buffer;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Appends events to a TextIndex file.
+ *
+ * Events are collected in memory and written as a segment as soon as TextIndex.SEGMENT_SIZE events
+ * have been added. flush and close write the remaining events as a smaller segment.
+ *
+ * The file is locked while the writer is open so only one writer can exist per file.
+ * The writer must be informed about every event added to the data file, in the same order.
+ * It is not thread-safe.
+ */
+public final class TextIndexWriter
+	implements IndexWriter
+{
+	private final RandomAccessFile file;
+	private final long[] buckets;
+	private final int bucketMask;
+	private long eventCount;
+	private long segmentStart;
+	private long blockBit;
+
+	private final TextIndex.TextConsumer consumer = this::addText;
+
+	private TextIndexWriter(RandomAccessFile file, int bucketCount)
+	{
+		this.file = file;
+		this.buckets = new long[bucketCount];
+		this.bucketMask = bucketCount - 1;
+	}
+
+	/**
+	 * Opens the text index of the given buffer, creating it if necessary.
+	 *
+	 * Events of the buffer that aren't contained in the index yet are added. Segments containing
+	 * events beyond the size of the buffer, e.g. because the buffer has been reset, are removed.
+	 *
+	 * @param textIndexFile the text index file.
+	 * @param buffer the buffer containing the events.
+	 * @param <T> the event type.
+	 * @return the writer.
+	 * @throws IOException if the file can't be read, written or is locked by another writer.
+	 */
+	public static <T extends Serializable> TextIndexWriter open(File textIndexFile, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		return open(textIndexFile, buffer, true);
+	}
+
+	/**
+	 * Opens the text index of the given buffer, creating it if necessary.
+	 *
+	 * Segments containing events beyond the size of the buffer are removed. If catchUp is false,
+	 * events of the buffer that aren't contained in the index yet, starting at getEventCount(),
+	 * must be added by the caller.
+	 *
+	 * @param textIndexFile the text index file.
+	 * @param buffer the buffer containing the events.
+	 * @param catchUp true, if events that aren't contained in the index yet should be added.
+	 * @param <T> the event type.
+	 * @return the writer.
+	 * @throws IOException if the file can't be read, written or is locked by another writer.
+	 */
+	public static <T extends Serializable> TextIndexWriter open(File textIndexFile, Buffer<EventWrapper<T>> buffer, boolean catchUp)
+		throws IOException
+	{
+		return open(textIndexFile, buffer, catchUp, TextIndex.DEFAULT_BUCKET_COUNT);
+	}
+
+	static <T extends Serializable> TextIndexWriter open(File textIndexFile, Buffer<EventWrapper<T>> buffer, boolean catchUp, int bucketCount)
+		throws IOException
+	{
+		Objects.requireNonNull(textIndexFile, "textIndexFile must not be null!");
+		Objects.requireNonNull(buffer, "buffer must not be null!");
+		if(bucketCount <= 0 || Integer.bitCount(bucketCount) != 1)
+		{
+			throw new IllegalArgumentException("bucketCount must be a power of two but was " + bucketCount + "!");
+		}
+		File parent = textIndexFile.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Couldn't create " + parent.getAbsolutePath() + "!");
+		}
+		RandomAccessFile file = new RandomAccessFile(textIndexFile, "rw");
+		try
+		{
+			FileLock lock;
+			try
+			{
+				lock = file.getChannel().tryLock();
+			}
+			catch(OverlappingFileLockException ex)
+			{
+				lock = null;
+			}
+			if(lock == null)
+			{
+				throw new IOException("Text index " + textIndexFile.getAbsolutePath() + " is already written by someone else!");
+			}
+			if(!TextIndex.isHeaderValid(file))
+			{
+				file.setLength(0);
+				file.writeInt(TextIndex.MAGIC_VALUE);
+				file.writeInt(TextIndex.VERSION);
+			}
+			TextIndexWriter result = new TextIndexWriter(file, bucketCount);
+			result.truncate(buffer.getSize());
+			if(catchUp)
+			{
+				result.catchUp(buffer);
+			}
+			return result;
+		}
+		catch(IOException | RuntimeException ex)
+		{
+			file.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Adds events that have just been added to the given buffer.
+	 *
+	 * If the size of the buffer doesn't match, the index is synchronized with the content of the buffer instead.
+	 * A buffer that shrank has been reset in the meantime so the index is rewritten from scratch.
+	 *
+	 * @param events the events that have been added to the buffer.
+	 * @param buffer the buffer.
+	 * @param <T> the event type.
+	 * @throws IOException if writing fails.
+	 */
+	@Override
+	public <T extends Serializable> void addAll(List<EventWrapper<T>> events, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		if(size == eventCount + events.size())
+		{
+			for(EventWrapper<T> current : events)
+			{
+				add(current);
+			}
+			return;
+		}
+		if(size < eventCount + events.size())
+		{
+			// reset
+			file.setLength(TextIndex.HEADER_SIZE);
+		}
+		truncate(size);
+		catchUp(buffer);
+	}
+
+	/**
+	 * Adds the event at index getEventCount() of the data file.
+	 *
+	 * @param event the event, may be null.
+	 * @throws IOException if writing fails.
+	 */
+	public void add(EventWrapper<?> event)
+		throws IOException
+	{
+		blockBit = 1L << ((eventCount - segmentStart) / TextIndex.BLOCK_SIZE);
+		TextIndex.collectText(event, consumer);
+		eventCount++;
+		if(eventCount - segmentStart >= TextIndex.SEGMENT_SIZE)
+		{
+			flush();
+		}
+	}
+
+	/**
+	 * Writes all pending events as a segment.
+	 *
+	 * @throws IOException if writing fails.
+	 */
+	public void flush()
+		throws IOException
+	{
+		int count = (int) (eventCount - segmentStart);
+		if(count == 0)
+		{
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + TextIndex.SEGMENT_HEADER_SIZE + buckets.length * 8);
+		DataOutputStream output = new DataOutputStream(bytes);
+		output.writeInt(TextIndex.SEGMENT_HEADER_SIZE + buckets.length * 8);
+		output.writeLong(segmentStart);
+		output.writeInt(count);
+		output.writeInt(buckets.length);
+		for(long current : buckets)
+		{
+			output.writeLong(current);
+		}
+		output.flush();
+		file.write(bytes.toByteArray());
+		Arrays.fill(buckets, 0);
+		segmentStart = eventCount;
+	}
+
+	public long getEventCount()
+	{
+		return eventCount;
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	private void addText(TextIndex.Field field, String text)
+	{
+		for(int i = 0; i <= text.length() - TextIndex.NGRAM_LENGTH; i++)
+		{
+			buckets[TextIndex.hash(field, text, i) & bucketMask] |= blockBit;
+		}
+	}
+
+	private void truncate(long size)
+		throws IOException
+	{
+		long offset = TextIndex.HEADER_SIZE;
+		long indexed = 0;
+		for(;;)
+		{
+			TextIndex.Segment segment = TextIndex.readSegment(file, offset);
+			if(segment == null || segment.firstEvent != indexed || indexed + segment.eventCount > size)
+			{
+				break;
+			}
+			indexed += segment.eventCount;
+			offset = segment.getEnd();
+		}
+		file.setLength(offset);
+		file.seek(offset);
+		Arrays.fill(buckets, 0);
+		eventCount = indexed;
+		segmentStart = indexed;
+	}
+
+	private <T extends Serializable> void catchUp(Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		for(long i = eventCount; i < size; i++)
+		{
+			add(buffer.get(i));
+		}
+	}
+}
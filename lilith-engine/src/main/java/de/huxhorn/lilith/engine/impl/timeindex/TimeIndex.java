@@ -0,0 +1,290 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.timeindex;
+
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.access.AccessEvent;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sparse timestamp index of a Lilith data file.
+ *
+ * The file starts with a header consisting of MAGIC_VALUE, VERSION and the interval as ints.
+ * It is followed by one long for every complete interval of events. Entry i contains the biggest
+ * timestamp of the events 0 to (i + 1) * interval - 1.
+ *
+ * Since those values never decrease, even if events arrived out of order, a binary search finds the
+ * interval containing the first event, in file order, with a timestamp at or after a given time.
+ */
+public final class TimeIndex
+{
+	public static final int MAGIC_VALUE = 0x54494458; // TIDX
+	public static final int VERSION = 1;
+	public static final int DEFAULT_INTERVAL = 256;
+	public static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+	static final int HEADER_SIZE = 12;
+
+	private static final DateTimeFormatter INPUT_FORMAT = new DateTimeFormatterBuilder()
+			.parseCaseInsensitive()
+			.append(DateTimeFormatter.ISO_LOCAL_DATE)
+			.optionalStart().appendLiteral('T').optionalEnd()
+			.optionalStart().appendLiteral(' ').optionalEnd()
+			.append(DateTimeFormatter.ISO_LOCAL_TIME)
+			.toFormatter(Locale.US);
+
+	static
+	{
+		new TimeIndex(); // stfu, coverage
+	}
+
+	private TimeIndex() {}
+
+	public static File resolveTimeIndexFile(File dataFile)
+	{
+		String fileStr = dataFile.getAbsolutePath();
+		if(fileStr.toLowerCase(Locale.US).endsWith(FileConstants.FILE_EXTENSION))
+		{
+			fileStr = fileStr.substring(0, fileStr.length() - FileConstants.FILE_EXTENSION.length());
+		}
+		return new File(fileStr + FileConstants.TIME_INDEX_FILE_EXTENSION);
+	}
+
+	/**
+	 * Returns the time index file of the given buffer or, in case of a FilteringBuffer, of its source buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @return the time index file or null if the buffer isn't backed by a file.
+	 */
+	public static File resolveTimeIndexFile(Buffer<?> buffer)
+	{
+		Buffer<?> sourceBuffer = FilteringBuffer.resolveSourceBuffer(buffer);
+		if(sourceBuffer instanceof FileBuffer)
+		{
+			File dataFile = ((FileBuffer<?>) sourceBuffer).getDataFile();
+			if(dataFile != null)
+			{
+				return resolveTimeIndexFile(dataFile);
+			}
+		}
+		return null;
+	}
+
+	public static long resolveTimestamp(EventWrapper<?> wrapper)
+	{
+		if(wrapper == null)
+		{
+			return NO_TIMESTAMP;
+		}
+		Serializable event = wrapper.getEvent();
+		Long result = null;
+		if(event instanceof LoggingEvent)
+		{
+			result = ((LoggingEvent) event).getTimeStamp();
+		}
+		else if(event instanceof AccessEvent)
+		{
+			result = ((AccessEvent) event).getTimeStamp();
+		}
+		return result == null ? NO_TIMESTAMP : result;
+	}
+
+	/**
+	 * Parses either milliseconds since epoch or a local date and time like 2021-12-24 14:03:27.123.
+	 *
+	 * @param input the input.
+	 * @return the parsed timestamp or null if input couldn't be parsed.
+	 */
+	public static Long parseTimestamp(String input)
+	{
+		if(input == null)
+		{
+			return null;
+		}
+		String trimmed = input.trim();
+		if(trimmed.isEmpty())
+		{
+			return null;
+		}
+		try
+		{
+			return Long.parseLong(trimmed);
+		}
+		catch(NumberFormatException ex)
+		{
+			// not millis
+		}
+		try
+		{
+			LocalDateTime dateTime = LocalDateTime.parse(trimmed, INPUT_FORMAT);
+			return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+		}
+		catch(DateTimeException ex)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the index of the first event, in buffer order, with a timestamp at or after the given one.
+	 *
+	 * If timeIndexFile is null or invalid, the buffer is searched from the start.
+	 *
+	 * @param buffer the buffer to search.
+	 * @param timeIndexFile the time index of the buffer, may be null.
+	 * @param timestamp the timestamp in milliseconds since epoch.
+	 * @param <T> the event type.
+	 * @return the index of the found event or -1 if no event was found.
+	 */
+	public static <T extends Serializable> long findFirstAtOrAfter(Buffer<EventWrapper<T>> buffer, File timeIndexFile, long timestamp)
+	{
+		long size = buffer.getSize();
+		long start = 0;
+		long end = size;
+		if(timeIndexFile != null && timeIndexFile.isFile())
+		{
+			try(RandomAccessFile file = new RandomAccessFile(timeIndexFile, "r"))
+			{
+				int interval = readInterval(file);
+				if(interval > 0)
+				{
+					long entries = Math.min((file.length() - HEADER_SIZE) / 8, size / interval);
+					long block = findBlock(file, entries, timestamp);
+					start = block * interval;
+					if(block < entries)
+					{
+						end = start + interval;
+					}
+				}
+			}
+			catch(IOException ex)
+			{
+				final Logger logger = LoggerFactory.getLogger(TimeIndex.class);
+				if(logger.isWarnEnabled()) logger.warn("Exception while reading time index {}!", timeIndexFile.getAbsolutePath(), ex);
+				start = 0;
+				end = size;
+			}
+		}
+		long result = scan(buffer, start, end, timestamp);
+		if(result < 0 && end < size)
+		{
+			// the buffer has changed since the index was written
+			result = scan(buffer, end, size, timestamp);
+		}
+		return result;
+	}
+
+	/**
+	 * Recreates the time index file of the given buffer.
+	 *
+	 * @param buffer the buffer.
+	 * @param timeIndexFile the time index file.
+	 * @param <T> the event type.
+	 * @throws IOException if writing fails.
+	 */
+	public static <T extends Serializable> void rebuild(Buffer<EventWrapper<T>> buffer, File timeIndexFile)
+		throws IOException
+	{
+		if(timeIndexFile.isFile() && !timeIndexFile.delete())
+		{
+			throw new IOException("Couldn't delete " + timeIndexFile.getAbsolutePath() + "!");
+		}
+		TimeIndexWriter.open(timeIndexFile, buffer).close();
+	}
+
+	/**
+	 * Returns the interval of the given time index or -1 if its header is invalid.
+	 */
+	static int readInterval(RandomAccessFile file)
+		throws IOException
+	{
+		if(file.length() < HEADER_SIZE)
+		{
+			return -1;
+		}
+		file.seek(0);
+		int magic = file.readInt();
+		int version = file.readInt();
+		int interval = file.readInt();
+		if(magic != MAGIC_VALUE || version != VERSION || interval <= 0)
+		{
+			return -1;
+		}
+		return interval;
+	}
+
+	static long readEntry(RandomAccessFile file, long entry)
+		throws IOException
+	{
+		file.seek(HEADER_SIZE + entry * 8);
+		return file.readLong();
+	}
+
+	/**
+	 * Returns the first block whose entry is at or after timestamp or entries if there is none.
+	 */
+	private static long findBlock(RandomAccessFile file, long entries, long timestamp)
+		throws IOException
+	{
+		long low = 0;
+		long high = entries;
+		while(low < high)
+		{
+			long middle = (low + high) >>> 1;
+			if(readEntry(file, middle) < timestamp)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static <T extends Serializable> long scan(Buffer<EventWrapper<T>> buffer, long start, long end, long timestamp)
+	{
+		for(long i = start; i < end; i++)
+		{
+			long current = resolveTimestamp(buffer.get(i));
+			if(current != NO_TIMESTAMP && current >= timestamp)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.impl.timeindex;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.IndexWriter;
+import de.huxhorn.sulky.buffers.Buffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Appends events to a TimeIndex file.
+ *
+ * The writer must be informed about every event added to the data file, in the same order.
+ * It is not thread-safe.
+ */
+public final class TimeIndexWriter
+	implements IndexWriter
+{
+	private final RandomAccessFile file;
+	private final int interval;
+	private long eventCount;
+	private long maxTimestamp;
+
+	private TimeIndexWriter(RandomAccessFile file, int interval)
+	{
+		this.file = file;
+		this.interval = interval;
+		this.maxTimestamp = TimeIndex.NO_TIMESTAMP;
+	}
+
+	/**
+	 * Opens the time index of the given buffer, creating it if necessary.
+	 *
+	 * Events of the buffer that aren't contained in the index yet are added. An index containing
+	 * more events than the buffer, e.g. because the buffer has been reset, is truncated.
+	 *
+	 * @param timeIndexFile the time index file.
+	 * @param buffer the buffer containing the events.
+	 * @param <T> the event type.
+	 * @return the writer.
+	 * @throws IOException if the file can't be read or written.
+	 */
+	public static <T extends Serializable> TimeIndexWriter open(File timeIndexFile, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		Objects.requireNonNull(timeIndexFile, "timeIndexFile must not be null!");
+		Objects.requireNonNull(buffer, "buffer must not be null!");
+		File parent = timeIndexFile.getAbsoluteFile().getParentFile();
+		if(parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Couldn't create " + parent.getAbsolutePath() + "!");
+		}
+		RandomAccessFile file = new RandomAccessFile(timeIndexFile, "rw");
+		try
+		{
+			int interval = TimeIndex.readInterval(file);
+			if(interval <= 0)
+			{
+				interval = TimeIndex.DEFAULT_INTERVAL;
+				file.setLength(0);
+				file.writeInt(TimeIndex.MAGIC_VALUE);
+				file.writeInt(TimeIndex.VERSION);
+				file.writeInt(interval);
+			}
+			TimeIndexWriter result = new TimeIndexWriter(file, interval);
+			result.synchronize(buffer);
+			return result;
+		}
+		catch(IOException | RuntimeException ex)
+		{
+			file.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Adds events that have just been added to the given buffer.
+	 *
+	 * If the size of the buffer doesn't match, the index is synchronized with the content of the buffer instead.
+	 * A buffer that shrank has been reset in the meantime so the index is rewritten from scratch.
+	 *
+	 * @param events the events that have been added to the buffer.
+	 * @param buffer the buffer.
+	 * @param <T> the event type.
+	 * @throws IOException if writing fails.
+	 */
+	@Override
+	public <T extends Serializable> void addAll(List<EventWrapper<T>> events, Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		if(size == eventCount + events.size())
+		{
+			addAll(events);
+			return;
+		}
+		if(size < eventCount + events.size())
+		{
+			// reset
+			file.setLength(TimeIndex.HEADER_SIZE);
+		}
+		synchronize(buffer);
+	}
+
+	public void addAll(List<? extends EventWrapper<?>> events)
+		throws IOException
+	{
+		for(EventWrapper<?> current : events)
+		{
+			add(current);
+		}
+	}
+
+	private <T extends Serializable> void synchronize(Buffer<EventWrapper<T>> buffer)
+		throws IOException
+	{
+		long size = buffer.getSize();
+		long entries = Math.min((file.length() - TimeIndex.HEADER_SIZE) / 8, size / interval);
+		if(entries > 0)
+		{
+			maxTimestamp = TimeIndex.readEntry(file, entries - 1);
+		}
+		else
+		{
+			maxTimestamp = TimeIndex.NO_TIMESTAMP;
+		}
+		long length = TimeIndex.HEADER_SIZE + entries * 8;
+		file.setLength(length);
+		file.seek(length);
+		eventCount = entries * interval;
+		for(long i = eventCount; i < size; i++)
+		{
+			add(buffer.get(i));
+		}
+	}
+
+	/**
+	 * Adds the event at index getEventCount() of the data file.
+	 *
+	 * @param event the event, may be null.
+	 * @throws IOException if writing fails.
+	 */
+	public void add(EventWrapper<?> event)
+		throws IOException
+	{
+		long timestamp = TimeIndex.resolveTimestamp(event);
+		if(timestamp > maxTimestamp)
+		{
+			maxTimestamp = timestamp;
+		}
+		eventCount++;
+		if(eventCount % interval == 0)
+		{
+			file.writeLong(maxTimestamp);
+		}
+	}
+
+	public long getEventCount()
+	{
+		return eventCount;
+	}
+
+	public int getInterval()
+	{
+		return interval;
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		file.close();
+	}
+}
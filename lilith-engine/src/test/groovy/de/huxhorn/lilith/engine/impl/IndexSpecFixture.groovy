@@ -0,0 +1,73 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.sulky.buffers.OverwritingCircularBuffer
+
+/**
+ * Event and buffer fixture shared by the index specs.
+ *
+ * Each spec supplies the factory for the LoggingEvent of a given value,
+ * the fixture wraps it and fills the buffer the index is built from.
+ */
+class IndexSpecFixture {
+	static final int BUFFER_CAPACITY = 10_000
+
+	private final Closure<LoggingEvent> eventFactory
+
+	IndexSpecFixture(Closure<LoggingEvent> eventFactory) {
+		this.eventFactory = Objects.requireNonNull(eventFactory, 'eventFactory must not be null!')
+	}
+
+	EventWrapper<LoggingEvent> createEvent(value) {
+		return new EventWrapper<LoggingEvent>(event: eventFactory.call(value))
+	}
+
+	List<EventWrapper<LoggingEvent>> createEvents(int from, int to) {
+		(from..<to).collect { createEvent(it) }
+	}
+
+	OverwritingCircularBuffer<EventWrapper<LoggingEvent>> createBuffer(int count) {
+		return createBuffer((0..<count).toList())
+	}
+
+	OverwritingCircularBuffer<EventWrapper<LoggingEvent>> createBuffer(List<?> values) {
+		OverwritingCircularBuffer<EventWrapper<LoggingEvent>> result = new OverwritingCircularBuffer<>(BUFFER_CAPACITY)
+		result.addAll(values.collect { createEvent(it) })
+		return result
+	}
+}
@@ -0,0 +1,334 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.blocks
+
+import de.huxhorn.lilith.api.FileConstants
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.engine.LoggingFileBufferFactory
+import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl
+import de.huxhorn.lilith.engine.impl.mapped.MappedCodecFileBuffer
+import de.huxhorn.sulky.codec.SerializableCodec
+import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+import spock.util.concurrent.PollingConditions
+
+class BlockCompressedFileBufferSpec extends Specification {
+	private static final int MAGIC_VALUE = 0x0B501E7E
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private File dataFile
+	private File indexFile
+
+	def setup() {
+		dataFile = new File(folder.root, 'events.lilith')
+		indexFile = new File(folder.root, 'events.idx')
+	}
+
+	private static Map<String, String> metaData(int blockSize, boolean dictionary) {
+		Map<String, String> result = [(FileConstants.COMPRESSION_KEY): FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS,
+									  (FileConstants.BLOCK_SIZE_KEY) : String.valueOf(blockSize)]
+		if(dictionary) {
+			result.put(FileConstants.DICTIONARY_KEY, FileConstants.DICTIONARY_VALUE_FIRST_BLOCK)
+		}
+		return result
+	}
+
+	private BlockCompressedFileBuffer<String> createBuffer(int blockSize = 10, boolean dictionary = false) {
+		return new BlockCompressedFileBuffer<String>(MAGIC_VALUE, metaData(blockSize, dictionary), new SerializableCodec<String>(), dataFile, indexFile)
+	}
+
+	private static List<String> createElements(int count) {
+		List<String> result = []
+		for(int i = 0; i < count; i++) {
+			result.add('de.huxhorn.lilith.Logger' + (i % 7) + ' processed request ' + i)
+		}
+		return result
+	}
+
+	@Unroll
+	def 'elements are written in blocks and can be read by another instance (dictionary: #dictionary).'() {
+		given:
+		def buffer = createBuffer(10, dictionary)
+		def elements = createElements(95)
+
+		when:
+		buffer.addAll(elements)
+
+		then: 'complete blocks are written, the rest is pending'
+		buffer.size == 95
+		indexFile.length() == 90 * 8
+		(0..<95).every { buffer.get(it) == elements[it] }
+
+		when:
+		buffer.flush()
+		def other = createBuffer(10, dictionary)
+
+		then:
+		indexFile.length() == 95 * 8
+		other.size == 95
+		other.iterator().collect() == elements
+		other.get(95) == null
+		other.get(-1) == null
+		other.dictionaryEnabled == dictionary
+
+		where:
+		dictionary << [false, true]
+	}
+
+	def 'the dictionary is the first record of the file.'() {
+		given:
+		def buffer = createBuffer(10, true)
+		buffer.addAll(createElements(30))
+		long dataOffset = buffer.fileHeader.dataOffset
+
+		when:
+		BlockFormat.RecordHeader first
+		BlockFormat.RecordHeader second
+		new RandomAccessFile(dataFile, 'r').withCloseable {
+			first = BlockFormat.readRecordHeader(it, dataOffset)
+			second = BlockFormat.readRecordHeader(it, first.end)
+		}
+
+		then:
+		first.dictionary
+		first.payloadLength < first.uncompressedLength
+		!second.dictionary
+		second.entryCount == 10
+		BlockFormat.blockOffset(new RandomAccessFile(indexFile, 'r').withCloseable { it.readLong() }) == second.offset
+	}
+
+	def 'a dictionary makes later blocks smaller.'() {
+		given:
+		def elements = createElements(1000)
+		File otherDataFile = new File(folder.root, 'dictionary.lilith')
+		File otherIndexFile = new File(folder.root, 'dictionary.idx')
+
+		when:
+		def plain = createBuffer(20, false)
+		plain.addAll(elements)
+		def withDictionary = new BlockCompressedFileBuffer<String>(MAGIC_VALUE, metaData(20, true), new SerializableCodec<String>(), otherDataFile, otherIndexFile)
+		withDictionary.addAll(elements)
+
+		then:
+		otherDataFile.length() < dataFile.length()
+		withDictionary.iterator().collect() == elements
+	}
+
+	def 'pending elements are written once they are older than maxPendingMillis.'() {
+		given:
+		def buffer = createBuffer(100)
+		buffer.maxPendingMillis = 0
+
+		when:
+		buffer.add('a')
+		buffer.addAll(['b', 'c'] as String[])
+
+		then:
+		indexFile.length() == 3 * 8
+		createBuffer(100).iterator().collect() == ['a', 'b', 'c']
+	}
+
+	def 'pending elements are written after maxPendingMillis even if no further elements are added.'() {
+		given:
+		def buffer = createBuffer(100)
+		buffer.maxPendingMillis = 200
+		def conditions = new PollingConditions(timeout: 5)
+
+		when:
+		buffer.addAll(['a', 'b'])
+
+		then:
+		indexFile.length() == 0
+		buffer.size == 2
+
+		and:
+		conditions.eventually {
+			assert indexFile.length() == 2 * 8
+		}
+		createBuffer(100).iterator().collect() == ['a', 'b']
+		buffer.iterator().collect() == ['a', 'b']
+	}
+
+	def 'null elements are supported.'() {
+		given:
+		def buffer = createBuffer(3)
+
+		when:
+		buffer.addAll(['a', null, 'c', null])
+		buffer.flush()
+		def other = createBuffer(3)
+
+		then:
+		other.size == 4
+		other.iterator().collect() == ['a', null, 'c', null]
+	}
+
+	def 'reset deletes all elements but keeps the file header.'() {
+		given:
+		def buffer = createBuffer(10, true)
+		buffer.addAll(createElements(25))
+		def header = buffer.fileHeader
+
+		when:
+		buffer.reset()
+
+		then:
+		buffer.size == 0
+		!indexFile.exists()
+		new DefaultFileHeaderStrategy().readFileHeader(dataFile) == header
+
+		when:
+		buffer.addAll(['x'] * 10)
+
+		then:
+		buffer.size == 10
+		createBuffer(10, true).iterator().collect() == ['x'] * 10
+	}
+
+	def 'dispose writes pending elements.'() {
+		given:
+		def buffer = createBuffer(10)
+		buffer.addAll(['a', 'b'])
+
+		when:
+		buffer.dispose()
+
+		then:
+		buffer.disposed
+		buffer.get(0) == null
+		createBuffer(10).iterator().collect() == ['a', 'b']
+	}
+
+	def 'files that are not block-compressed are rejected.'() {
+		given:
+		new CodecFileBuffer<String>(MAGIC_VALUE, false, [:], new SerializableCodec<String>(), dataFile, indexFile).add('a')
+
+		when:
+		createBuffer()
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	def 'files with a different magic value are rejected.'() {
+		given:
+		createBuffer().add('a')
+
+		when:
+		new BlockCompressedFileBuffer<String>(0x1234, metaData(10, false), new SerializableCodec<String>(), dataFile, indexFile)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	@Unroll
+	def 'indexEntry(#blockOffset, #position) is split correctly.'() {
+		when:
+		long entry = BlockFormat.indexEntry(blockOffset, position)
+
+		then:
+		BlockFormat.blockOffset(entry) == blockOffset
+		BlockFormat.position(entry) == position
+
+		where:
+		blockOffset          | position
+		0L                   | 0
+		44L                  | 17
+		(1L << 40) + 3       | BlockFormat.MAX_BLOCK_SIZE - 1
+		(1L << 47) - 1       | 1
+	}
+
+	@Unroll
+	def 'resolveBlockSize(#value) returns #expected.'() {
+		expect:
+		BlockFormat.resolveBlockSize(value == null ? [:] : [(FileConstants.BLOCK_SIZE_KEY): value]) == expected
+
+		where:
+		value     | expected
+		null      | BlockFormat.DEFAULT_BLOCK_SIZE
+		'foo'     | BlockFormat.DEFAULT_BLOCK_SIZE
+		'0'       | BlockFormat.DEFAULT_BLOCK_SIZE
+		'1'       | 1
+		'500'     | 500
+		'65535'   | 65535
+		'65536'   | BlockFormat.DEFAULT_BLOCK_SIZE
+	}
+
+	def 'FileBufferFactory creates the buffer matching the format of the file.'() {
+		given:
+		Map<String, String> gzipMetaData = [(FileConstants.CONTENT_TYPE_KEY)  : FileConstants.CONTENT_TYPE_VALUE_LOGGING,
+											(FileConstants.CONTENT_FORMAT_KEY): FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF,
+											(FileConstants.COMPRESSION_KEY)   : FileConstants.COMPRESSION_VALUE_GZIP]
+		Map<String, String> blockMetaData = new HashMap<>(gzipMetaData)
+		blockMetaData.putAll(metaData(10, true))
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), blockMetaData)
+		File gzipDataFile = new File(folder.root, 'gzip.lilith')
+		File gzipIndexFile = new File(folder.root, 'gzip.idx')
+		def event = new EventWrapper<LoggingEvent>(event: new LoggingEvent(logger: 'foo', message: null))
+
+		when:
+		def blockBuffer = factory.createBuffer(dataFile, indexFile, blockMetaData)
+		blockBuffer.addAll([event] * 25)
+		blockBuffer.flush()
+		def gzipBuffer = factory.createBuffer(gzipDataFile, gzipIndexFile, gzipMetaData)
+		gzipBuffer.add(event)
+
+		then:
+		blockBuffer instanceof BlockCompressedFileBuffer
+		gzipBuffer instanceof CodecFileBuffer
+
+		when: 'existing files keep their format'
+		def reopenedBlocks = factory.createBuffer(dataFile, indexFile, gzipMetaData)
+		def reopenedGzip = factory.createBuffer(gzipDataFile, gzipIndexFile, blockMetaData)
+		def readOnlyBlocks = factory.createReadOnlyBuffer(dataFile, indexFile)
+		def readOnlyGzip = factory.createReadOnlyBuffer(gzipDataFile, gzipIndexFile)
+
+		then:
+		reopenedBlocks instanceof BlockCompressedFileBuffer
+		reopenedGzip instanceof CodecFileBuffer
+		readOnlyBlocks instanceof BlockCompressedFileBuffer
+		readOnlyGzip instanceof MappedCodecFileBuffer
+		readOnlyBlocks.size == 25
+		readOnlyBlocks.get(24).event.logger == 'foo'
+		readOnlyGzip.get(0).event.logger == 'foo'
+	}
+}
@@ -0,0 +1,267 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.contentstore
+
+import de.huxhorn.lilith.api.FileConstants
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.ThrowableInfo
+import de.huxhorn.lilith.data.logging.protobuf.DeduplicatingLoggingEventWrapperProtobufCodec
+import de.huxhorn.lilith.engine.LoggingFileBufferFactory
+import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl
+import de.huxhorn.lilith.engine.impl.blocks.BlockFormat
+import de.huxhorn.sulky.buffers.Flush
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FileContentStoreSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private File dataFile
+	private File indexFile
+	private File storeFile
+
+	def setup() {
+		dataFile = new File(folder.root, 'events.lilith')
+		indexFile = new File(folder.root, 'events.idx')
+		storeFile = FileContentStore.resolveContentStoreFile(dataFile)
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes('UTF-8')
+	}
+
+	private static Map<String, String> metaData(boolean deduplicated, boolean blocks = false) {
+		Map<String, String> result = [(FileConstants.CONTENT_TYPE_KEY)  : FileConstants.CONTENT_TYPE_VALUE_LOGGING,
+									  (FileConstants.CONTENT_FORMAT_KEY): FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF,
+									  (FileConstants.COMPRESSION_KEY)   : FileConstants.COMPRESSION_VALUE_GZIP]
+		if(blocks) {
+			result.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS)
+			result.put(FileConstants.BLOCK_SIZE_KEY, String.valueOf(BlockFormat.DEFAULT_BLOCK_SIZE))
+		}
+		if(deduplicated) {
+			result.put(FileConstants.DEDUPLICATION_KEY, FileConstants.DEDUPLICATION_VALUE_CONTENT_HASH)
+		}
+		return result
+	}
+
+	private static ExtendedStackTraceElement[] createStackTrace(String prefix, int count) {
+		ExtendedStackTraceElement[] result = new ExtendedStackTraceElement[count]
+		for(int i = 0; i < count; i++) {
+			result[i] = new ExtendedStackTraceElement(prefix + '.Class' + i, 'method' + i, 'Class' + i + '.java', i + 1)
+		}
+		return result
+	}
+
+	private static List<EventWrapper<LoggingEvent>> createEvents(int count) {
+		List<EventWrapper<LoggingEvent>> result = []
+		for(int i = 0; i < count; i++) {
+			LoggingEvent event = new LoggingEvent(logger: 'foo', level: LoggingEvent.Level.ERROR, timeStamp: 1000L + i)
+			if(i % 10 != 9) {
+				ThrowableInfo cause = new ThrowableInfo(name: 'java.io.IOException', message: 'cause', stackTrace: createStackTrace('cause', 20))
+				event.throwable = new ThrowableInfo(name: 'java.lang.IllegalStateException', message: 'Failed ' + (i % 2), stackTrace: createStackTrace('de.huxhorn', 150), cause: cause)
+				event.callStack = createStackTrace('de.huxhorn.caller', 50)
+			}
+			result.add(new EventWrapper<LoggingEvent>(event: event, localId: i))
+		}
+		return result
+	}
+
+	def 'put stores content only once.'() {
+		given:
+		def store = new FileContentStore(storeFile)
+
+		expect:
+		!store.contains(bytes('hash1'))
+		store.get(bytes('hash1')) == null
+		store.put(bytes('hash1'), bytes('content1'))
+		store.put(bytes('hash2'), bytes(''))
+		!store.put(bytes('hash1'), bytes('other'))
+		store.contains(bytes('hash1'))
+		store.get(bytes('hash1')) == bytes('content1')
+		store.get(bytes('hash2')) == bytes('')
+		store.size == 2
+	}
+
+	def 'content written by another instance is found.'() {
+		given:
+		def writer = new FileContentStore(storeFile)
+		def reader = new FileContentStore(storeFile)
+		writer.put(bytes('hash1'), bytes('content1'))
+
+		expect:
+		reader.get(bytes('hash1')) == bytes('content1')
+		!reader.contains(bytes('hash2'))
+
+		when:
+		writer.put(bytes('hash2'), bytes('content2'))
+
+		then:
+		reader.contains(bytes('hash2'))
+		reader.get(bytes('hash2')) == bytes('content2')
+		!reader.put(bytes('hash2'), bytes('other'))
+		reader.size == 2
+	}
+
+	def 'an incomplete trailing record is ignored and replaced.'() {
+		given:
+		def writer = new FileContentStore(storeFile)
+		writer.put(bytes('hash1'), bytes('content1'))
+		long length = storeFile.length()
+		writer.put(bytes('hash2'), bytes('content2'))
+		new RandomAccessFile(storeFile, 'rw').withCloseable { it.setLength(storeFile.length() - 3) }
+
+		when:
+		def store = new FileContentStore(storeFile)
+
+		then:
+		store.get(bytes('hash1')) == bytes('content1')
+		store.get(bytes('hash2')) == null
+
+		when:
+		store.put(bytes('hash3'), bytes('content3'))
+
+		then:
+		storeFile.length() == length + FileContentStore.RECORD_HEADER_SIZE + 13
+		new FileContentStore(storeFile).get(bytes('hash3')) == bytes('content3')
+	}
+
+	def 'invalid file is not used.'() {
+		given:
+		storeFile.bytes = bytes('invalid content store')
+		def store = new FileContentStore(storeFile)
+
+		expect:
+		store.get(bytes('hash1')) == null
+		!store.put(bytes('hash1'), bytes('content1'))
+	}
+
+	@Unroll
+	def 'deduplicated events are served in full (blocks=#blocks).'() {
+		given:
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), metaData(true, blocks))
+		def events = createEvents(100)
+
+		when:
+		def buffer = factory.createBuffer(dataFile, indexFile, metaData(true, blocks))
+		buffer.addAll(events)
+		Flush.flush(buffer)
+
+		then:
+		buffer.codec instanceof DeduplicatingLoggingEventWrapperProtobufCodec
+		new FileContentStore(storeFile).size == 3
+		buffer.size == 100
+
+		when:
+		def readOnlyBuffer = factory.createReadOnlyBuffer(dataFile, indexFile)
+		def read = (0..<100).collect { readOnlyBuffer.get(it) }
+
+		then:
+		read == events
+		read[0].event.throwable.is(read[2].event.throwable)
+		read[0].event.callStack.is(read[1].event.callStack)
+		read[9].event.throwable == null
+		read[9].event.callStack == null
+		readOnlyBuffer.codec.cacheMisses == 3
+
+		where:
+		blocks << [false, true]
+	}
+
+	def 'deduplicated files are smaller.'() {
+		given:
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), metaData(false))
+		File plainDataFile = new File(folder.root, 'plain.lilith')
+		File plainIndexFile = new File(folder.root, 'plain.idx')
+		def events = createEvents(100)
+
+		when:
+		factory.createBuffer(dataFile, indexFile, metaData(true)).addAll(events)
+		factory.createBuffer(plainDataFile, plainIndexFile, metaData(false)).addAll(events)
+
+		then:
+		dataFile.length() + storeFile.length() < plainDataFile.length() / 5
+		!FileContentStore.resolveContentStoreFile(plainDataFile).exists()
+	}
+
+	def 'missing content store results in events without throwable.'() {
+		given:
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), metaData(true))
+		factory.createBuffer(dataFile, indexFile, metaData(true)).addAll(createEvents(2))
+		storeFile.delete()
+
+		when:
+		def event = factory.createReadOnlyBuffer(dataFile, indexFile).get(0).event
+
+		then:
+		event.logger == 'foo'
+		event.throwable == null
+		event.callStack == null
+	}
+
+	def 'events are stored inline if the content store fails.'() {
+		given:
+		storeFile.bytes = bytes('invalid content store')
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), metaData(true))
+		def events = createEvents(10)
+
+		when:
+		factory.createBuffer(dataFile, indexFile, metaData(true)).addAll(events)
+		def readOnlyBuffer = factory.createReadOnlyBuffer(dataFile, indexFile)
+		def read = (0..<10).collect { readOnlyBuffer.get(it) }
+
+		then:
+		read == events
+		readOnlyBuffer.codec.cacheMisses == 0
+	}
+
+	def 'resolveCodec without data file fails for deduplicated files.'() {
+		given:
+		def factory = new LoggingFileBufferFactory(new LogFileFactoryImpl(folder.root), metaData(true))
+		factory.createBuffer(dataFile, indexFile, metaData(true)).add(createEvents(1)[0])
+		def metaData = factory.createReadOnlyBuffer(dataFile, indexFile).fileHeader.metaData
+
+		when:
+		factory.resolveCodec(metaData)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.eventproducer
+
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Message
+import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec
+import de.huxhorn.lilith.sender.BatchedMessageWriteByteStrategy
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class BatchFrameDecoderSpec extends Specification {
+
+	@Unroll
+	def 'decodes batches written by BatchedMessageWriteByteStrategy with compressing=#compressing.'() {
+		setup:
+		List<LoggingEvent> events = (0..<count).collect { createEvent(it) }
+		LoggingEventProtobufCodec codec = new LoggingEventProtobufCodec(false)
+		List<byte[]> bytesList = events.collect { codec.encode(it) }
+		bytesList.add(1, new byte[0])
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		new BatchedMessageWriteByteStrategy(compressing).writeBytes(new DataOutputStream(out), bytesList)
+
+		BatchFrameDecoder<LoggingEvent> instance = new BatchFrameDecoder<>(new LoggingEventProtobufFrameDecoder(false))
+		List<LoggingEvent> decoded = []
+		int frameCount = 0
+
+		when:
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(out.toByteArray()))
+		while(input.available() > 0) {
+			int size = input.readInt()
+			byte[] frame = new byte[size]
+			input.readFully(frame)
+			instance.decode(frame, 0, size, { decoded.add(it) })
+			frameCount++
+		}
+
+		then:
+		decoded == events
+		frameCount == expectedFrameCount
+
+		cleanup:
+		instance.close()
+
+		where:
+		compressing | count  | expectedFrameCount
+		false       | 10     | 1
+		true        | 10     | 1
+		true        | 20_000 | 2
+	}
+
+	def 'only writes a heartbeat if there are no events.'() {
+		setup:
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+
+		when:
+		new BatchedMessageWriteByteStrategy(true).writeBytes(new DataOutputStream(out), [new byte[0], new byte[0]])
+
+		then:
+		out.toByteArray() == [0, 0, 0, 0] as byte[]
+	}
+
+	def 'passes null for corrupt batch.'() {
+		setup:
+		BatchFrameDecoder<LoggingEvent> instance = new BatchFrameDecoder<>(new LoggingEventProtobufFrameDecoder(false))
+		List<LoggingEvent> decoded = []
+
+		when:
+		instance.decode([0, 0, 0, 17, 1, 2] as byte[], 0, 6, { decoded.add(it) })
+
+		then:
+		decoded == [null]
+	}
+
+	private static LoggingEvent createEvent(int index) {
+		LoggingEvent result = new LoggingEvent()
+		result.logger = 'foo.Bar'
+		result.level = LoggingEvent.Level.INFO
+		result.timeStamp = 1_000_000L + index
+		result.message = new Message('Message number ' + index + ' of a rather chatty application.')
+		return result
+	}
+}
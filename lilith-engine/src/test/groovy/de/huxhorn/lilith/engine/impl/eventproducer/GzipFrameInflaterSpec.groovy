@@ -0,0 +1,126 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.eventproducer
+
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec
+import java.nio.charset.StandardCharsets
+import java.util.zip.GZIPOutputStream
+import java.util.zip.ZipException
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class GzipFrameInflaterSpec extends Specification {
+
+	def 'inflates consecutive frames at arbitrary offsets.'() {
+		setup:
+		GzipFrameInflater instance = new GzipFrameInflater()
+
+		expect:
+		for(String current : ['foo', '', 'x' * 100_000, 'bar']) {
+			byte[] compressed = gzip(current)
+			byte[] buffer = new byte[compressed.length + 7]
+			System.arraycopy(compressed, 0, buffer, 5, compressed.length)
+			int length = instance.inflate(buffer, 5, compressed.length)
+			assert new String(instance.buffer, 0, length, StandardCharsets.UTF_8) == current
+		}
+
+		cleanup:
+		instance.end()
+	}
+
+	def 'throws exception on corrupt CRC.'() {
+		setup:
+		GzipFrameInflater instance = new GzipFrameInflater()
+		byte[] compressed = gzip('foo')
+		compressed[compressed.length - 8] ^= 1
+
+		when:
+		instance.inflate(compressed, 0, compressed.length)
+
+		then:
+		thrown(ZipException)
+
+		cleanup:
+		instance.end()
+	}
+
+	def 'throws exception if frame inflates to more than the maximum size.'() {
+		setup:
+		GzipFrameInflater instance = new GzipFrameInflater(10_000)
+		byte[] compressed = gzip('x' * 10_001)
+
+		when:
+		instance.inflate(compressed, 0, compressed.length)
+
+		then:
+		thrown(ZipException)
+
+		cleanup:
+		instance.end()
+	}
+
+	@Unroll
+	def 'LoggingEventProtobufFrameDecoder decodes events with compressing=#compressing.'() {
+		setup:
+		LoggingEvent event = new LoggingEvent()
+		event.logger = 'foo.Bar'
+		event.level = LoggingEvent.Level.INFO
+		byte[] encoded = new LoggingEventProtobufCodec(compressing).encode(event)
+		byte[] buffer = new byte[encoded.length + 3]
+		System.arraycopy(encoded, 0, buffer, 3, encoded.length)
+		LoggingEventProtobufFrameDecoder instance = new LoggingEventProtobufFrameDecoder(compressing)
+
+		expect:
+		instance.decode(buffer, 3, encoded.length) == event
+		instance.decode(buffer, 3, encoded.length) == event
+		instance.decode(buffer, 0, encoded.length) == null
+
+		cleanup:
+		instance.close()
+
+		where:
+		compressing << [false, true]
+	}
+
+	private static byte[] gzip(String value) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream()
+		new GZIPOutputStream(out).withStream {
+			it.write(value.getBytes(StandardCharsets.UTF_8))
+		}
+		return out.toByteArray()
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Message
+import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec
+import de.huxhorn.lilith.engine.impl.sourcemanager.ConcurrentRingQueue
+import de.huxhorn.sulky.codec.Decoder
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+class NioEventProducerSpec extends Specification {
+	@AutoCleanup
+	NioReceiverGroup group = new NioReceiverGroup(2, 2)
+
+	@AutoCleanup
+	ServerSocketChannel serverChannel = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.loopbackAddress, 0))
+
+	ConcurrentRingQueue<EventWrapper<String>> queue = new ConcurrentRingQueue<>(1000)
+	List<EventWrapper<String>> received = []
+	PollingConditions conditions = new PollingConditions(timeout: 10)
+
+	static final Decoder<String> DECODER = { byte[] bytes -> new String(bytes, StandardCharsets.UTF_8) } as Decoder<String>
+
+	def 'length-prefixed frames are decoded in order.'() {
+		setup:
+		Socket client = connect(NioEventProducer.Framing.LENGTH_PREFIXED, 16)
+		DataOutputStream output = new DataOutputStream(client.outputStream)
+
+		when: 'frames, a heartbeat and an oversized frame are sent in small pieces'
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+		DataOutputStream data = new DataOutputStream(bytes)
+		writeFrame(data, 'foo')
+		data.writeInt(0)
+		writeFrame(data, 'this frame is too big')
+		writeFrame(data, 'bar')
+		bytes.toByteArray().toList().collate(5).each {
+			output.write(it as byte[])
+			output.flush()
+		}
+
+		then:
+		conditions.eventually {
+			assert events() == ['foo', 'bar']
+		}
+
+		when:
+		client.close()
+
+		then:
+		conditions.eventually {
+			assert events() == ['foo', 'bar', null]
+		}
+	}
+
+	def 'zero-delimited frames are decoded in order.'() {
+		setup:
+		Socket client = connect(NioEventProducer.Framing.ZERO_DELIMITED, 16)
+
+		when:
+		client.outputStream.write('foo\u0000\u0000this frame is too big\u0000bar\u0000ba'.getBytes(StandardCharsets.UTF_8))
+		client.outputStream.flush()
+
+		then:
+		conditions.eventually {
+			assert events() == ['foo', 'bar']
+		}
+
+		when:
+		client.outputStream.write('z\u0000'.getBytes(StandardCharsets.UTF_8))
+		client.outputStream.flush()
+
+		then:
+		conditions.eventually {
+			assert events() == ['foo', 'bar', 'baz']
+		}
+	}
+
+	def 'frames bigger than the initial buffer are received.'() {
+		setup:
+		Socket client = connect(NioEventProducer.Framing.LENGTH_PREFIXED, NioEventProducer.DEFAULT_MAX_FRAME_SIZE)
+		DataOutputStream output = new DataOutputStream(client.outputStream)
+		String big = 'x' * 100_000
+
+		when:
+		writeFrame(output, big)
+		writeFrame(output, 'foo')
+		output.flush()
+
+		then:
+		conditions.eventually {
+			assert events() == [big, 'foo']
+		}
+	}
+
+	def 'closing the producer closes the connection.'() {
+		setup:
+		Socket client = connect(NioEventProducer.Framing.LENGTH_PREFIXED, 16)
+		DataOutputStream output = new DataOutputStream(client.outputStream)
+		writeFrame(output, 'foo')
+		output.flush()
+		conditions.eventually {
+			assert events() == ['foo']
+		}
+
+		when:
+		producer.close()
+
+		then:
+		client.inputStream.read() == -1
+		conditions.eventually {
+			assert events() == ['foo', null]
+			assert group.openConnections == 0
+		}
+	}
+
+	def 'frames received together with the end of stream are decoded before the end of stream is signaled.'() {
+		setup:
+		ConcurrentRingQueue<EventWrapper<LoggingEvent>> loggingQueue = new ConcurrentRingQueue<>(1000)
+		ClosingAwareFrameDecoder frameDecoder = new ClosingAwareFrameDecoder()
+		LoggingEventProtobufCodec codec = new LoggingEventProtobufCodec(true)
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+		DataOutputStream data = new DataOutputStream(bytes)
+		for(int i = 0; i < 100; i++) {
+			LoggingEvent event = new LoggingEvent()
+			event.logger = 'foo.Bar'
+			event.level = LoggingEvent.Level.INFO
+			event.message = new Message('message ' + i)
+			byte[] encoded = codec.encode(event)
+			data.writeInt(encoded.length)
+			data.write(encoded)
+		}
+		Socket client = new Socket(InetAddress.loopbackAddress, serverChannel.socket().localPort)
+		SocketChannel channel = serverChannel.accept()
+		NioEventProducer<LoggingEvent> loggingProducer = new NioEventProducer<>(new SourceIdentifier('foo'), loggingQueue, null, frameDecoder, NioEventProducer.Framing.LENGTH_PREFIXED, false, group, channel)
+		List<EventWrapper<LoggingEvent>> loggingEvents = []
+
+		when: 'all frames and the end of stream are received before reading starts'
+		client.outputStream.write(bytes.toByteArray())
+		client.outputStream.flush()
+		client.close()
+		loggingProducer.start()
+
+		then:
+		conditions.eventually {
+			loggingEvents.addAll(loggingQueue.removeAll())
+			assert loggingEvents.size() == 101
+		}
+		loggingEvents*.event*.message*.message.take(100) == (0..<100).collect { 'message ' + it }
+		loggingEvents[100].event == null
+		frameDecoder.decodedAfterClose.get() == 0
+	}
+
+	NioEventProducer<String> producer
+
+	private Socket connect(NioEventProducer.Framing framing, int maxFrameSize) {
+		Socket client = new Socket(InetAddress.loopbackAddress, serverChannel.socket().localPort)
+		SocketChannel channel = serverChannel.accept()
+		producer = new NioEventProducer<>(new SourceIdentifier('foo'), queue, null, DECODER, framing, false, group, channel, maxFrameSize)
+		producer.start()
+		return client
+	}
+
+	private List<String> events() {
+		received.addAll(queue.removeAll())
+		return received*.event
+	}
+
+	private static void writeFrame(DataOutputStream output, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8)
+		output.writeInt(bytes.length)
+		output.write(bytes)
+	}
+
+	private static class ClosingAwareFrameDecoder
+		implements SingleEventFrameDecoder<LoggingEvent> {
+		final LoggingEventProtobufFrameDecoder delegate = new LoggingEventProtobufFrameDecoder(true)
+		final AtomicBoolean closed = new AtomicBoolean()
+		final AtomicInteger decodedAfterClose = new AtomicInteger()
+
+		@Override
+		LoggingEvent decode(byte[] buffer, int offset, int length) {
+			if(closed.get()) {
+				decodedAfterClose.incrementAndGet()
+			}
+			return delegate.decode(buffer, offset, length)
+		}
+
+		@Override
+		void close() {
+			closed.set(true)
+			delegate.close()
+		}
+	}
+}
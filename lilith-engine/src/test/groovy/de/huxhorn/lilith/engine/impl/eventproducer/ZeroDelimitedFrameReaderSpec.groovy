@@ -0,0 +1,112 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.eventproducer
+
+import java.nio.charset.StandardCharsets
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ZeroDelimitedFrameReaderSpec extends Specification {
+
+	@Unroll
+	def 'reads frames with maxFrameSize #maxFrameSize and #chunkSize bytes per read.'() {
+		setup:
+		ZeroDelimitedFrameReader instance = new ZeroDelimitedFrameReader(new ChunkedInputStream(bytes('foo\u0000\u0000bar\u0000too big\u0000baz\u0000inc'), chunkSize), maxFrameSize)
+
+		expect:
+		readFrames(instance) == expectedFrames
+		instance.skippedFrames == expectedSkipped
+
+		where:
+		maxFrameSize | chunkSize | expectedFrames                     | expectedSkipped
+		3            | 1         | ['foo', 'bar', 'baz']              | 1
+		3            | 2         | ['foo', 'bar', 'baz']              | 1
+		3            | 100       | ['foo', 'bar', 'baz']              | 1
+		100          | 1         | ['foo', 'bar', 'too big', 'baz']   | 0
+		100          | 100       | ['foo', 'bar', 'too big', 'baz']   | 0
+	}
+
+	def 'reads frames bigger than the read buffer.'() {
+		setup:
+		String big = 'x' * 100_000
+		ZeroDelimitedFrameReader instance = new ZeroDelimitedFrameReader(new ByteArrayInputStream(bytes(big + '\u0000foo\u0000')))
+
+		expect:
+		readFrames(instance) == [big, 'foo']
+	}
+
+	def 'copyFrame returns a copy of the current frame.'() {
+		setup:
+		ZeroDelimitedFrameReader instance = new ZeroDelimitedFrameReader(new ByteArrayInputStream(bytes('foo\u0000')))
+
+		when:
+		int length = instance.readFrame()
+
+		then:
+		length == 3
+		instance.frameLength == 3
+		new String(instance.copyFrame(), StandardCharsets.UTF_8) == 'foo'
+		instance.readFrame() == -1
+	}
+
+	private static List<String> readFrames(ZeroDelimitedFrameReader instance) {
+		List<String> result = []
+		for(;;) {
+			int length = instance.readFrame()
+			if(length < 0) {
+				return result
+			}
+			result.add(new String(instance.frameBuffer, 0, length, StandardCharsets.UTF_8))
+		}
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8)
+	}
+
+	private static class ChunkedInputStream extends ByteArrayInputStream {
+		private final int chunkSize
+
+		ChunkedInputStream(byte[] bytes, int chunkSize) {
+			super(bytes)
+			this.chunkSize = chunkSize
+		}
+
+		@Override
+		synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, chunkSize))
+		}
+	}
+}
@@ -0,0 +1,243 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.fieldindex
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.engine.impl.IndexSpecFixture
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Marker
+import de.huxhorn.lilith.data.logging.ThreadInfo
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class FieldIndexSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private static final IndexSpecFixture FIXTURE = new IndexSpecFixture(FieldIndexSpec.&createLoggingEvent)
+
+	private static LoggingEvent createLoggingEvent(int i) {
+		LoggingEvent event = new LoggingEvent()
+		event.level = LoggingEvent.Level.values()[i % 5]
+		event.logger = 'logger' + (i % 7)
+		event.threadInfo = new ThreadInfo(null, 'thread' + (i % 3), null, null)
+		if(i % 11 == 0) {
+			Marker marker = new Marker('parent')
+			marker.add(new Marker('child'))
+			event.marker = marker
+		}
+		event.mdc = [key: 'value' + (i % 2)]
+		return event
+	}
+
+	private static long[] expectedPostings(int count, Closure<Boolean> matches) {
+		(0..<count).findAll { matches(it) }.collect { (long) it } as long[]
+	}
+
+	def 'terms of an event.'() {
+		expect:
+		FieldIndex.resolveTerms(FIXTURE.createEvent(0)) == [
+				'level:TRACE',
+				'logger:logger0',
+				'thread:thread0',
+				'marker:parent',
+				'marker:child',
+				'mdcKey:key',
+				'mdc:key\u0000value0',
+		] as Set
+		FieldIndex.resolveTerms(null).isEmpty()
+		FieldIndex.resolveTerms(new EventWrapper<LoggingEvent>()).isEmpty()
+	}
+
+	def 'index contains the postings of all events.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(2500)
+		File fieldIndexFile = new File(folder.root, 'events.fidx')
+
+		when:
+		FieldIndexWriter.open(fieldIndexFile, buffer, 1000).close()
+		FieldIndexReader reader = FieldIndexReader.get(fieldIndexFile)
+
+		then:
+		reader.eventCount == 2500
+		reader.getPostings('level:INFO') == expectedPostings(2500) { it % 5 == 2 }
+		reader.getPostings('logger:logger3') == expectedPostings(2500) { it % 7 == 3 }
+		reader.getPostings('thread:thread1') == expectedPostings(2500) { it % 3 == 1 }
+		reader.getPostings('marker:child') == expectedPostings(2500) { it % 11 == 0 }
+		reader.getPostings('mdc:key\u0000value1') == expectedPostings(2500) { it % 2 == 1 }
+		reader.getPostings('mdcKey:key').length == 2500
+		reader.getPostings('logger:unknown').length == 0
+		reader.getTerms('logger:') == (0..<7).collect { 'logger:logger' + it }
+	}
+
+	def 'writer and reader follow a growing buffer.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(150)
+		File fieldIndexFile = new File(folder.root, 'events.fidx')
+		FieldIndexWriter writer = FieldIndexWriter.open(fieldIndexFile, buffer, 100)
+
+		expect: 'only complete segments are written'
+		writer.eventCount == 150
+		FieldIndexReader.get(fieldIndexFile).eventCount == 100
+
+		when:
+		List<EventWrapper<LoggingEvent>> added = FIXTURE.createEvents(150, 230)
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+		FieldIndexReader reader = FieldIndexReader.get(fieldIndexFile)
+
+		then:
+		reader.eventCount == 200
+		reader.getPostings('logger:logger3') == expectedPostings(200) { it % 7 == 3 }
+
+		when: 'the writer is closed, remaining events are flushed'
+		writer.close()
+		reader.refresh()
+
+		then:
+		reader.eventCount == 230
+		reader.getPostings('logger:logger3') == expectedPostings(230) { it % 7 == 3 }
+
+		when: 'events are added while the writer is closed'
+		buffer.addAll(FIXTURE.createEvents(230, 300))
+		writer = FieldIndexWriter.open(fieldIndexFile, buffer, 100)
+		writer.close()
+		reader.refresh()
+
+		then:
+		reader.eventCount == 300
+		reader.getPostings('logger:logger3') == expectedPostings(300) { it % 7 == 3 }
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'index is rewritten if the buffer was reset.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(500)
+		File fieldIndexFile = new File(folder.root, 'events.fidx')
+		FieldIndexWriter writer = FieldIndexWriter.open(fieldIndexFile, buffer, 100)
+		FieldIndexReader reader = FieldIndexReader.get(fieldIndexFile)
+
+		expect:
+		reader.eventCount == 500
+
+		when:
+		buffer.reset()
+		List<EventWrapper<LoggingEvent>> added = FIXTURE.createEvents(1, 251)
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+		writer.flush()
+		reader.refresh()
+
+		then:
+		writer.eventCount == 250
+		reader.eventCount == 250
+		reader.getPostings('logger:logger3') == expectedPostings(250) { (it + 1) % 7 == 3 }
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'segments beyond the size of the buffer are removed when opened.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(500)
+		File fieldIndexFile = new File(folder.root, 'events.fidx')
+		FieldIndexWriter.open(fieldIndexFile, buffer, 100).close()
+
+		when:
+		buffer.reset()
+		buffer.addAll(FIXTURE.createEvents(0, 250))
+		FieldIndexWriter writer = FieldIndexWriter.open(fieldIndexFile, buffer, 100)
+		writer.close()
+		FieldIndexReader reader = FieldIndexReader.get(fieldIndexFile)
+
+		then:
+		reader.eventCount == 250
+		reader.getPostings('logger:logger3') == expectedPostings(250) { it % 7 == 3 }
+	}
+
+	def 'incomplete segments are ignored.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(300)
+		File fieldIndexFile = new File(folder.root, 'events.fidx')
+		FieldIndexWriter.open(fieldIndexFile, buffer, 100).close()
+		byte[] bytes = fieldIndexFile.bytes
+
+		when:
+		fieldIndexFile.bytes = Arrays.copyOf(bytes, bytes.length - 1)
+		FieldIndexReader reader = FieldIndexReader.get(fieldIndexFile)
+
+		then:
+		reader.eventCount == 200
+
+		when:
+		fieldIndexFile.bytes = [1, 2, 3] as byte[]
+		reader.refresh()
+
+		then:
+		reader.eventCount == 0
+		reader.getPostings('logger:logger3').length == 0
+	}
+
+	def 'missing index returns no reader.'() {
+		expect:
+		FieldIndexReader.get(new File(folder.root, 'missing.fidx')) == null
+	}
+
+	def 'union and intersect.'() {
+		expect:
+		FieldIndex.union([[1L, 3L, 5L] as long[], [2L, 3L, 6L] as long[]]) == [1L, 2L, 3L, 5L, 6L] as long[]
+		FieldIndex.union([]) == [] as long[]
+		FieldIndex.intersect([1L, 3L, 5L, 7L] as long[], [2L, 3L, 7L, 8L] as long[]) == [3L, 7L] as long[]
+		FieldIndex.intersect([1L] as long[], [] as long[]) == [] as long[]
+	}
+
+	def 'varints.'() {
+		given:
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream()
+		DataOutputStream output = new DataOutputStream(bytes)
+		List<Integer> values = [0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE]
+
+		when:
+		values.each { FieldIndex.writeVarInt(output, it) }
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+
+		then:
+		values.collect { FieldIndex.readVarInt(input) } == values
+	}
+}
@@ -0,0 +1,311 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.mapped
+
+import de.huxhorn.sulky.codec.SerializableCodec
+import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MappedCodecFileBufferSpec extends Specification {
+	private static final int MAGIC_VALUE = 0x0B501E7E
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private File dataFile
+	private File indexFile
+
+	def setup() {
+		dataFile = new File(folder.root, 'events.lilith')
+		indexFile = new File(folder.root, 'events.index')
+	}
+
+	private CodecFileBuffer<String> createWriter(boolean sparse = false) {
+		return new CodecFileBuffer<String>(MAGIC_VALUE, sparse, [foo: 'bar'], new SerializableCodec<String>(), dataFile, indexFile)
+	}
+
+	private MappedCodecFileBuffer<String> createReader(int chunkSize = MappedFile.DEFAULT_CHUNK_SIZE) {
+		MappedCodecFileBuffer<String> result = new MappedCodecFileBuffer<>(dataFile, indexFile, new DefaultFileHeaderStrategy(), chunkSize)
+		result.codec = new SerializableCodec<String>()
+		return result
+	}
+
+	private static List<String> createElements(int count) {
+		List<String> result = []
+		for(int i = 0; i < count; i++) {
+			result.add('element-' + i + '-' + ('x' * (i % 37)))
+		}
+		return result
+	}
+
+	@Unroll
+	def 'reads the same elements as CodecFileBuffer with chunkSize #chunkSize.'() {
+		given:
+		def writer = createWriter()
+		def elements = createElements(500)
+		writer.addAll(elements)
+
+		when:
+		def reader = createReader(chunkSize)
+
+		then:
+		reader.fileHeader == writer.fileHeader
+		reader.fileHeader.metaData.data.foo == 'bar'
+		reader.size == 500
+		(0..<500).every { reader.get(it) == elements[it] }
+		reader.iterator().collect() == elements
+		reader.get(-1) == null
+		reader.get(500) == null
+
+		where:
+		chunkSize << [MappedFile.DEFAULT_CHUNK_SIZE, 8, 13, 1024]
+	}
+
+	def 'mapping grows with the files.'() {
+		given:
+		def writer = createWriter()
+		def elements = createElements(300)
+		writer.addAll(elements.subList(0, 100))
+		def reader = createReader(4096)
+
+		expect:
+		reader.size == 100
+		reader.get(99) == elements[99]
+		reader.get(100) == null
+
+		when:
+		writer.addAll(elements.subList(100, 300))
+
+		then:
+		reader.get(299) == elements[299]
+		reader.size == 300
+		reader.getRange(0, 300) == elements
+	}
+
+	@Unroll
+	def 'getRange(#start, #count) returns #expectedCount elements.'() {
+		given:
+		def writer = createWriter()
+		def elements = createElements(50)
+		writer.addAll(elements)
+		def reader = createReader(64)
+
+		when:
+		def range = reader.getRange(start, count)
+
+		then:
+		range.size() == expectedCount
+		range == elements.subList((int) Math.min(start, 50), (int) Math.min(start, 50) + expectedCount)
+
+		where:
+		start | count | expectedCount
+		0     | 0     | 0
+		0     | 10    | 10
+		45    | 10    | 5
+		49    | 1     | 1
+		50    | 1     | 0
+		100   | 10    | 0
+		0     | 1000  | 50
+	}
+
+	def 'getRange rejects negative arguments.'() {
+		given:
+		createWriter()
+		def reader = createReader()
+
+		when:
+		reader.getRange(-1, 10)
+
+		then:
+		thrown(IllegalArgumentException)
+
+		when:
+		reader.getRange(0, -1)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+
+	def 'deleted elements of sparse files are returned as null.'() {
+		given:
+		def writer = createWriter(true)
+		writer.addAll(['a', 'b', 'c'])
+		writer.set(1, null)
+		def reader = createReader()
+
+		expect:
+		reader.size == writer.size
+		reader.get(0) == 'a'
+		reader.get(1) == null
+		reader.get(2) == 'c'
+		reader.getRange(0, 3) == ['a', null, 'c']
+	}
+
+	def 'the buffer is read-only.'() {
+		given:
+		createWriter().add('a')
+		def reader = createReader()
+
+		expect:
+		reader.full
+
+		when:
+		reader.add('b')
+
+		then:
+		thrown(UnsupportedOperationException)
+
+		when:
+		reader.addAll(['b'])
+
+		then:
+		thrown(UnsupportedOperationException)
+
+		when:
+		reader.addAll(['b'] as String[])
+
+		then:
+		thrown(UnsupportedOperationException)
+		reader.size == 1
+	}
+
+	def 'reset deletes the elements but keeps the file header.'() {
+		given:
+		def writer = createWriter()
+		writer.addAll(createElements(10))
+		def reader = createReader()
+
+		expect:
+		reader.size == 10
+
+		when:
+		reader.reset()
+
+		then:
+		reader.size == 0
+		writer.size == 0
+		new DefaultFileHeaderStrategy().readFileHeader(dataFile) == reader.fileHeader
+
+		when:
+		writer.add('after reset')
+
+		then:
+		reader.size == 1
+		reader.get(0) == 'after reset'
+	}
+
+	def 'a replaced file is mapped again.'() {
+		given:
+		def writer = createWriter()
+		writer.addAll(['a', 'b'])
+		def reader = createReader()
+
+		expect:
+		reader.get(1) == 'b'
+
+		when:
+		writer.reset()
+		writer.addAll(['c', 'd', 'e'])
+
+		then:
+		reader.size == 3
+		reader.getRange(0, 3) == ['c', 'd', 'e']
+	}
+
+	def 'reset keeps the data file if the index file can not be cleared.'() {
+		given:
+		def writer = createWriter()
+		writer.addAll(['a', 'b'])
+		def reader = createReader()
+		long dataLength = dataFile.length()
+		indexFile.delete()
+		indexFile.mkdir()
+		new File(indexFile, 'blocker').createNewFile()
+
+		when:
+		reader.reset()
+
+		then:
+		noExceptionThrown()
+		indexFile.isDirectory()
+		dataFile.length() == dataLength
+	}
+
+	def 'reading a file truncated behind the mapping fails without crashing.'() {
+		given:
+		def writer = createWriter()
+		writer.add('x' * 100_000)
+		def reader = createReader()
+
+		expect:
+		reader.get(0).length() == 100_000
+
+		when:
+		new RandomAccessFile(dataFile, 'rw').withCloseable {
+			it.setLength(8192)
+		}
+
+		then:
+		reader.get(0) == null
+		reader.getRange(0, 1) == [null]
+	}
+
+	def 'disposed buffer is empty.'() {
+		given:
+		createWriter().addAll(['a', 'b'])
+		def reader = createReader()
+
+		when:
+		reader.dispose()
+
+		then:
+		reader.disposed
+		reader.size == 0
+		reader.get(0) == null
+		reader.getRange(0, 2) == []
+	}
+
+	def 'missing file header is rejected.'() {
+		when:
+		new MappedCodecFileBuffer<String>(dataFile, indexFile)
+
+		then:
+		thrown(IOException)
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ConcurrentRingQueueSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	@Unroll
+	def 'capacity #capacity is rounded up to #expected.'() {
+		expect:
+		new ConcurrentRingQueue<Integer>(capacity).capacity == expected
+
+		where:
+		capacity | expected
+		1        | 1
+		3        | 4
+		1000     | 1024
+		1024     | 1024
+	}
+
+	def 'removeAll returns elements in order.'() {
+		setup:
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(4)
+
+		when:
+		queue.addAll([1, 2, 3])
+
+		then:
+		queue.availableElements == 3
+		!queue.isEmpty()
+		!queue.isFull()
+		queue.removeAll() == [1, 2, 3]
+		queue.isEmpty()
+		queue.removeFirst() == null
+	}
+
+	def 'drainTo honors maxElements.'() {
+		setup:
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(8)
+		queue.addAll([1, 2, 3, 4, 5])
+		List<Integer> result = []
+
+		expect:
+		queue.drainTo(result, 2) == 2
+		result == [1, 2]
+		queue.removeAll() == [3, 4, 5]
+	}
+
+	def 'DROP_NEWEST drops and counts new elements.'() {
+		setup:
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2, OverflowPolicy.DROP_NEWEST, null)
+
+		when:
+		queue.addAll([1, 2, 3, 4])
+
+		then:
+		queue.isFull()
+		queue.droppedCounter == 2
+		queue.removeAll() == [1, 2]
+	}
+
+	def 'DROP_OLDEST drops and counts old elements.'() {
+		setup:
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2, OverflowPolicy.DROP_OLDEST, null)
+
+		when:
+		queue.addAll([1, 2, 3, 4])
+
+		then:
+		queue.droppedCounter == 2
+		queue.removeAll() == [3, 4]
+	}
+
+	def 'SPILL_TO_DISK retains all elements in order.'() {
+		setup:
+		File spillDirectory = new File(folder.root, 'spill')
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2, OverflowPolicy.SPILL_TO_DISK, spillDirectory)
+
+		when:
+		queue.addAll([1, 2, 3, 4, 5])
+
+		then:
+		queue.spilledCounter == 3
+		queue.droppedCounter == 0
+		queue.availableElements == 5
+
+		when:
+		List<Integer> result = queue.removeAll()
+
+		then:
+		result == [1, 2, 3, 4, 5]
+		queue.isEmpty()
+		spillDirectory.listFiles().length == 0
+
+		when: 'the queue is used again after spilling'
+		queue.addAll([6, 7])
+
+		then:
+		queue.spilledCounter == 3
+		queue.removeAll() == [6, 7]
+	}
+
+	def 'SPILL_TO_DISK reads spilled elements back in chunks.'() {
+		setup:
+		File spillDirectory = new File(folder.root, 'spill')
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2, OverflowPolicy.SPILL_TO_DISK, spillDirectory)
+		List<Integer> elements = (1..3000).toList()
+		queue.addAll(elements)
+
+		when:
+		List<Integer> result = queue.removeAll()
+
+		then: 'the ring and a single chunk of spilled elements are returned'
+		result == elements.subList(0, 2 + ConcurrentRingQueue.MIN_SPILL_CHUNK_SIZE)
+		queue.availableElements == 3000 - result.size()
+		spillDirectory.listFiles().length == 1
+
+		when: 'elements are added while spilled elements are still pending'
+		queue.addAll([3001, 3002])
+		while(!queue.isEmpty()) {
+			result.addAll(queue.removeAll())
+		}
+
+		then:
+		result == (1..3002).toList()
+		spillDirectory.listFiles().length == 0
+	}
+
+	def 'removeFirst retains the order of spilled and later elements.'() {
+		setup:
+		File spillDirectory = new File(folder.root, 'spill')
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2, OverflowPolicy.SPILL_TO_DISK, spillDirectory)
+		queue.addAll([1, 2, 3, 4, 5])
+
+		when:
+		List<Integer> result = [queue.removeFirst(), queue.removeFirst(), queue.removeFirst()]
+		queue.addAll([6, 7])
+
+		then:
+		result == [1, 2, 3]
+		queue.availableElements == 4
+
+		when:
+		Integer element
+		while((element = queue.removeFirst()) != null) {
+			result.add(element)
+		}
+
+		then:
+		result == [1, 2, 3, 4, 5, 6, 7]
+		queue.isEmpty()
+	}
+
+	def 'BLOCK waits until the consumer removed elements.'() {
+		setup:
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(2)
+		queue.addAll([1, 2])
+		CountDownLatch latch = new CountDownLatch(1)
+		Thread producer = new Thread({
+			queue.add(3)
+			latch.countDown()
+		})
+
+		when:
+		producer.start()
+
+		then:
+		!latch.await(100, TimeUnit.MILLISECONDS)
+
+		when:
+		List<Integer> first = queue.removeAll()
+
+		then:
+		latch.await(10, TimeUnit.SECONDS)
+		first == [1, 2]
+		queue.removeAll() == [3]
+		queue.blockedCounter == 1
+		queue.droppedCounter == 0
+	}
+
+	def 'multiple producers lose no elements.'() {
+		setup:
+		int producerCount = 4
+		int elementCount = 10_000
+		ConcurrentRingQueue<Integer> queue = new ConcurrentRingQueue<>(64)
+		List<Thread> producers = (0..<producerCount).collect { int producer ->
+			new Thread({
+				for(int i = 0; i < elementCount; i++) {
+					queue.add(producer * elementCount + i)
+				}
+			})
+		}
+		List<Integer> result = []
+
+		when:
+		producers*.start()
+		while(producers.any { it.alive } || !queue.isEmpty()) {
+			result.addAll(queue.removeAll())
+		}
+
+		then:
+		result.size() == producerCount * elementCount
+		(0..<producerCount).every { int producer ->
+			List<Integer> produced = result.findAll { it >= producer * elementCount && it < (producer + 1) * elementCount }
+			produced == (producer * elementCount..<(producer + 1) * elementCount).toList()
+		}
+	}
+}
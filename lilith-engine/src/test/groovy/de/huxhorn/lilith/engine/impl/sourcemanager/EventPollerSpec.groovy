@@ -0,0 +1,355 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.engine.impl.sourcemanager
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier
+import de.huxhorn.lilith.engine.EventHandler
+import de.huxhorn.sulky.buffers.BlockingCircularBuffer
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.function.IntBinaryOperator
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+class EventPollerSpec extends Specification {
+	def 'signal wakes up the poller before the poll delay has passed.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		CountDownLatch latch = new CountDownLatch(1)
+		poller.setEventHandlers([{ events -> latch.countDown() } as EventHandler<Integer>])
+		Thread thread = new Thread(poller)
+		thread.start()
+
+		when:
+		queue.add(new EventWrapper<Integer>(new SourceIdentifier('foo'), 1, 17))
+		poller.signal()
+
+		then:
+		latch.await(10, TimeUnit.SECONDS)
+
+		cleanup:
+		thread.interrupt()
+	}
+
+	def 'events are dispatched in batches of at most maxBatchSize.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		poller.setMaxBatchSize(2)
+		List<List<Integer>> batches = new CopyOnWriteArrayList<>()
+		CountDownLatch latch = new CountDownLatch(3)
+		poller.setEventHandlers([{ events ->
+			batches.add(events*.event)
+			latch.countDown()
+		} as EventHandler<Integer>])
+		SourceIdentifier sourceIdentifier = new SourceIdentifier('foo')
+		for(int i = 1; i <= 5; i++) {
+			queue.add(new EventWrapper<Integer>(sourceIdentifier, i, i))
+		}
+		Thread thread = new Thread(poller)
+
+		when:
+		thread.start()
+		poller.signal()
+
+		then:
+		latch.await(10, TimeUnit.SECONDS)
+		batches == [[1, 2], [3, 4], [5]]
+		poller.statistics.batchCount == 3
+		poller.statistics.eventCount == 5
+		new PollingConditions(timeout: 10).eventually {
+			assert poller.statistics.handlerStatistics.size() == 1
+			assert poller.statistics.handlerStatistics[0].events == 5
+		}
+
+		cleanup:
+		thread.interrupt()
+	}
+
+	def 'a blocked handler does not stall other handlers if pipelined.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		poller.setPipelined(true)
+		poller.setMaxBatchSize(1)
+		CountDownLatch blocker = new CountDownLatch(1)
+		CountDownLatch latch = new CountDownLatch(3)
+		List<Integer> received = new CopyOnWriteArrayList<>()
+		poller.setEventHandlers([
+				{ events -> blocker.await() } as EventHandler<Integer>,
+				{ events -> throw new IllegalStateException('failing handler') } as EventHandler<Integer>,
+				{ events ->
+					received.addAll(events*.event)
+					latch.countDown()
+				} as EventHandler<Integer>,
+		])
+		SourceIdentifier sourceIdentifier = new SourceIdentifier('foo')
+		for(int i = 1; i <= 3; i++) {
+			queue.add(new EventWrapper<Integer>(sourceIdentifier, i, i))
+		}
+		Thread thread = new Thread(poller)
+
+		when:
+		thread.start()
+		poller.signal()
+
+		then:
+		latch.await(10, TimeUnit.SECONDS)
+		received == [1, 2, 3]
+
+		cleanup:
+		blocker.countDown()
+		thread.interrupt()
+	}
+
+	def 'a congested stage coalesces batches instead of blocking the poller.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		poller.setPipelined(true)
+		poller.setPipelineCapacity(1)
+		poller.setMaxBatchSize(1)
+		CountDownLatch blocker = new CountDownLatch(1)
+		CountDownLatch fastLatch = new CountDownLatch(10)
+		List<Integer> slowReceived = new CopyOnWriteArrayList<>()
+		List<Integer> fastReceived = new CopyOnWriteArrayList<>()
+		EventHandler<Integer> slowHandler = { events ->
+			blocker.await()
+			slowReceived.addAll(events*.event)
+		} as EventHandler<Integer>
+		poller.setEventHandlers([
+				slowHandler,
+				{ events ->
+					fastReceived.addAll(events*.event)
+					events.size().times { fastLatch.countDown() }
+				} as EventHandler<Integer>,
+		])
+		SourceIdentifier sourceIdentifier = new SourceIdentifier('foo')
+		for(int i = 1; i <= 10; i++) {
+			queue.add(new EventWrapper<Integer>(sourceIdentifier, i, i))
+		}
+		Thread thread = new Thread(poller)
+
+		when:
+		thread.start()
+		poller.signal()
+
+		then:
+		fastLatch.await(10, TimeUnit.SECONDS)
+		fastReceived == (1..10).toList()
+
+		when:
+		blocker.countDown()
+
+		then:
+		new PollingConditions(timeout: 10).eventually {
+			assert slowReceived == (1..10).toList()
+		}
+		poller.statistics.handlerStatistics.find { it.overflows > 0 } != null
+
+		cleanup:
+		blocker.countDown()
+		thread.interrupt()
+	}
+
+	def 'stages are stopped if the poller is interrupted.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		poller.setPipelined(true)
+		List<Thread> stageThreads = new CopyOnWriteArrayList<>()
+		CountDownLatch latch = new CountDownLatch(1)
+		poller.setEventHandlers([{ events ->
+			stageThreads.add(Thread.currentThread())
+			latch.countDown()
+		} as EventHandler<Integer>])
+		queue.add(new EventWrapper<Integer>(new SourceIdentifier('foo'), 1, 17))
+		Thread thread = new Thread(poller)
+		thread.start()
+		poller.signal()
+		latch.await(10, TimeUnit.SECONDS)
+
+		when:
+		thread.interrupt()
+		thread.join(10_000)
+
+		then:
+		!thread.isAlive()
+		stageThreads.size() == 1
+		new PollingConditions(timeout: 10).eventually {
+			assert !stageThreads[0].isAlive()
+		}
+	}
+
+	def 'a stage blocks the caller once its overflow is full.'() {
+		setup:
+		DispatchStatistics statistics = new DispatchStatistics()
+		SourceIdentifier sourceIdentifier = new SourceIdentifier('foo')
+		List<Integer> received = new CopyOnWriteArrayList<>()
+		CountDownLatch started = new CountDownLatch(1)
+		CountDownLatch blocker = new CountDownLatch(1)
+		EventHandler<Integer> handler = { events ->
+			started.countDown()
+			blocker.await()
+			received.addAll(events*.event)
+		} as EventHandler<Integer>
+		HandlerStage<Integer> stage = new HandlerStage<>(handler, 1, 2, statistics)
+		stage.start()
+		stage.add([new EventWrapper<Integer>(sourceIdentifier, 1, 1)])
+		started.await(10, TimeUnit.SECONDS)
+		for(int i = 2; i <= 4; i++) {
+			stage.add([new EventWrapper<Integer>(sourceIdentifier, i, i)])
+		}
+		Thread producer = new Thread({ stage.add([new EventWrapper<Integer>(sourceIdentifier, 5, 5)]) } as Runnable)
+
+		when:
+		producer.start()
+
+		then:
+		new PollingConditions(timeout: 10).eventually {
+			assert producer.state == Thread.State.WAITING
+		}
+
+		when:
+		blocker.countDown()
+		producer.join(10_000)
+		stage.stop()
+		stage.awaitTermination()
+
+		then:
+		!producer.isAlive()
+		received == (1..5).toList()
+		statistics.handlerStatistics[0].blocks == 1
+		statistics.handlerStatistics[0].overflowEvents == 2
+
+		cleanup:
+		blocker.countDown()
+	}
+
+	def 'stages of replaced handlers are drained before new stages are started.'() {
+		setup:
+		BlockingCircularBuffer<EventWrapper<Integer>> queue = new BlockingCircularBuffer<>(100)
+		EventPoller<Integer> poller = new EventPoller<>(queue, 60_000)
+		poller.setPipelined(true)
+		AtomicInteger active = new AtomicInteger()
+		AtomicInteger maxActive = new AtomicInteger()
+		List<Integer> received = new CopyOnWriteArrayList<>()
+		CountDownLatch started = new CountDownLatch(1)
+		CountDownLatch blocker = new CountDownLatch(1)
+		EventHandler<Integer> handler = { events ->
+			maxActive.accumulateAndGet(active.incrementAndGet(), { a, b -> Math.max(a, b) } as IntBinaryOperator)
+			started.countDown()
+			blocker.await()
+			received.addAll(events*.event)
+			active.decrementAndGet()
+		} as EventHandler<Integer>
+		poller.setEventHandlers([handler])
+		SourceIdentifier sourceIdentifier = new SourceIdentifier('foo')
+		Thread thread = new Thread(poller)
+		thread.start()
+		queue.add(new EventWrapper<Integer>(sourceIdentifier, 1, 1))
+		poller.signal()
+		started.await(10, TimeUnit.SECONDS)
+
+		when:
+		poller.setEventHandlers([handler])
+		queue.add(new EventWrapper<Integer>(sourceIdentifier, 2, 2))
+		poller.signal()
+		Thread.sleep(200)
+		blocker.countDown()
+
+		then:
+		new PollingConditions(timeout: 10).eventually {
+			assert received == [1, 2]
+		}
+		maxActive.get() == 1
+
+		cleanup:
+		blocker.countDown()
+		thread.interrupt()
+	}
+
+	def 'batch size histogram buckets.'() {
+		expect:
+		DispatchStatistics.bucketIndex(size) == bucket
+
+		where:
+		size    | bucket
+		1       | 0
+		2       | 1
+		3       | 1
+		4       | 2
+		1000    | 9
+		1 << 20 | DispatchStatistics.HISTOGRAM_BUCKETS - 1
+	}
+
+	def 'snapshot does not change statistics and reset clears them.'() {
+		setup:
+		DispatchStatistics statistics = new DispatchStatistics()
+		EventHandler<Integer> handler = { events -> } as EventHandler<Integer>
+		statistics.updateQueueDepth(5)
+		statistics.addBatch(3)
+		statistics.addHandlerExecution(handler, 3, 1000, false)
+
+		when:
+		DispatchStatistics snapshot = statistics.snapshot(17)
+
+		then:
+		snapshot.queueDepth == 17
+		snapshot.maxQueueDepth == 17
+		snapshot.batchCount == 1
+		snapshot.eventCount == 3
+		snapshot.handlerStatistics*.executions == [1L]
+		statistics.queueDepth == 5
+		statistics.maxQueueDepth == 5
+
+		when:
+		statistics.reset()
+
+		then:
+		statistics.queueDepth == 0
+		statistics.maxQueueDepth == 0
+		statistics.batchCount == 0
+		statistics.eventCount == 0
+		statistics.batchSizeHistogram.every { it == 0 }
+		statistics.handlerStatistics*.executions == [0L]
+		snapshot.batchCount == 1
+		snapshot.handlerStatistics*.executions == [1L]
+	}
+}
@@ -0,0 +1,305 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.textindex
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.engine.impl.IndexSpecFixture
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Marker
+import de.huxhorn.lilith.data.logging.Message
+import de.huxhorn.lilith.data.logging.ThreadInfo
+import de.huxhorn.lilith.data.logging.ThrowableInfo
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TextIndexSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private static final IndexSpecFixture FIXTURE = new IndexSpecFixture(TextIndexSpec.&createLoggingEvent)
+
+	private static LoggingEvent createLoggingEvent(int i) {
+		LoggingEvent event = new LoggingEvent()
+		event.level = LoggingEvent.Level.INFO
+		event.logger = 'logger' + (i % 7)
+		event.message = new Message('Request {} took {}ms.', ['request' + i, String.valueOf(i % 100)] as String[])
+		event.threadInfo = new ThreadInfo(null, 'thread' + (i % 3), null, null)
+		if(i % 50 == 0) {
+			ThrowableInfo throwable = new ThrowableInfo(name: 'java.lang.IllegalStateException', message: 'failure' + i)
+			throwable.stackTrace = [new ExtendedStackTraceElement('com.example.Worker' + (i % 4), 'process', 'Worker.java', 17)] as ExtendedStackTraceElement[]
+			event.throwable = throwable
+		}
+		if(i % 11 == 0) {
+			event.marker = new Marker('audit')
+		}
+		event.mdc = [user: 'user' + (i % 13)]
+		return event
+	}
+
+	private static boolean contains(EventWrapper<?> event, TextIndex.Field field, String searchString) {
+		boolean result = false
+		TextIndex.collectText(event, { TextIndex.Field currentField, String text ->
+			if(currentField == field && text.contains(searchString)) {
+				result = true
+			}
+		} as TextIndex.TextConsumer)
+		return result
+	}
+
+	private static List<Long> matching(List<EventWrapper<LoggingEvent>> events, TextIndex.Field field, String searchString) {
+		(0..<events.size()).findAll { contains(events[it], field, searchString) }.collect { (long) it }
+	}
+
+	@Unroll
+	'candidates of #field containing "#searchString" include all matching events.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(3000)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter.open(textIndexFile, buffer).close()
+		TextIndexReader reader = TextIndexReader.get(textIndexFile)
+		List<Long> expected = matching(buffer.toList(), field, searchString)
+
+		when:
+		long[] candidates = reader.getCandidates(field, searchString)
+
+		then:
+		reader.eventCount == 3000
+		candidates.toList().containsAll(expected)
+		candidates.toList() == candidates.toList().sort()
+		candidates.length <= maxCandidates
+
+		where:
+		field                           | searchString                      | maxCandidates
+		TextIndex.Field.EVENT           | 'request1234'                     | 16
+		TextIndex.Field.EVENT           | 'IllegalStateException'           | 60 * 16
+		TextIndex.Field.EVENT           | 'com.example.Worker3.process'     | 15 * 16
+		TextIndex.Field.EVENT           | 'audit'                           | 3000
+		TextIndex.Field.EVENT           | 'user12'                          | 3000
+		TextIndex.Field.EVENT           | 'unknown'                         | 32
+		TextIndex.Field.MESSAGE         | 'request2999 took'                | 16
+		TextIndex.Field.MESSAGE         | 'logger3'                         | 32
+		TextIndex.Field.MESSAGE_PATTERN | 'took {}ms'                       | 3000
+		TextIndex.Field.MESSAGE_PATTERN | 'request1'                        | 32
+	}
+
+	def 'text is collected like EventContainsCondition checks it.'() {
+		given:
+		LoggingEvent event = FIXTURE.createEvent(0).event
+		event.ndc = [new Message('ndc {}', ['value'] as String[])] as Message[]
+		event.threadInfo = new ThreadInfo(4711L, 'main', 1234L, 'group')
+		event.threadInfo.priority = 5
+		Map<TextIndex.Field, List<String>> texts = [:].withDefault { [] }
+
+		when:
+		TextIndex.collectText(new EventWrapper<LoggingEvent>(event: event), { TextIndex.Field field, String text ->
+			texts[field].add(text)
+		} as TextIndex.TextConsumer)
+
+		then:
+		texts[TextIndex.Field.MESSAGE] == ['Request request0 took 0ms.']
+		texts[TextIndex.Field.MESSAGE_PATTERN] == ['Request {} took {}ms.']
+		texts[TextIndex.Field.EVENT] as Set == [
+				'Request request0 took 0ms.',
+				'INFO',
+				'logger0',
+				'java.lang.IllegalStateException',
+				'failure0',
+				'com.example.Worker0.process(Worker.java:17)',
+				'main',
+				'4711',
+				'group',
+				'1234',
+				'user',
+				'user0',
+				'audit',
+				'ndc value',
+				'ndc {}',
+		] as Set
+	}
+
+	def 'short search strings can not be resolved.'() {
+		given:
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter.open(textIndexFile, FIXTURE.createBuffer(10)).close()
+		TextIndexReader reader = TextIndexReader.get(textIndexFile)
+
+		expect:
+		reader.getCandidates(TextIndex.Field.EVENT, 'ab') == null
+		reader.getCandidates(TextIndex.Field.EVENT, null) == null
+	}
+
+	def 'writer and reader follow a growing buffer.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(1500)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter writer = TextIndexWriter.open(textIndexFile, buffer)
+
+		expect: 'only complete segments are written'
+		writer.eventCount == 1500
+		TextIndexReader.get(textIndexFile).eventCount == TextIndex.SEGMENT_SIZE
+
+		when:
+		List<EventWrapper<LoggingEvent>> added = FIXTURE.createEvents(1500, 2100)
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+		TextIndexReader reader = TextIndexReader.get(textIndexFile)
+
+		then:
+		reader.eventCount == 2 * TextIndex.SEGMENT_SIZE
+		reader.getCandidates(TextIndex.Field.EVENT, 'request2000').toList().contains(2000L)
+
+		when: 'the writer is closed, remaining events are flushed'
+		writer.close()
+		reader.refresh()
+
+		then:
+		reader.eventCount == 2100
+		reader.getCandidates(TextIndex.Field.EVENT, 'request2099').toList().contains(2099L)
+
+		when: 'events are added while the writer is closed'
+		buffer.addAll(FIXTURE.createEvents(2100, 2200))
+		writer = TextIndexWriter.open(textIndexFile, buffer)
+		writer.close()
+		reader.refresh()
+
+		then:
+		reader.eventCount == 2200
+		reader.getCandidates(TextIndex.Field.EVENT, 'request2199').toList().contains(2199L)
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'events are added by the caller if catchUp is false.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(100)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter.open(textIndexFile, FIXTURE.createBuffer(40)).close()
+
+		when:
+		TextIndexWriter writer = TextIndexWriter.open(textIndexFile, buffer, false)
+
+		then:
+		writer.eventCount == 40
+
+		when:
+		for(long i = writer.eventCount; i < buffer.size; i++) {
+			writer.add(buffer.get(i))
+		}
+		writer.close()
+
+		then:
+		TextIndexReader.get(textIndexFile).eventCount == 100
+	}
+
+	def 'index is rewritten if the buffer was reset.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(2048)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter writer = TextIndexWriter.open(textIndexFile, buffer)
+		TextIndexReader reader = TextIndexReader.get(textIndexFile)
+
+		expect:
+		reader.eventCount == 2048
+
+		when:
+		buffer.reset()
+		List<EventWrapper<LoggingEvent>> added = FIXTURE.createEvents(5000, 5100)
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+		writer.flush()
+		reader.refresh()
+
+		then:
+		writer.eventCount == 100
+		reader.eventCount == 100
+		reader.getCandidates(TextIndex.Field.EVENT, 'request5042').toList().contains(42L)
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'incomplete segments are ignored.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(300)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter writer = TextIndexWriter.open(textIndexFile, buffer, true, 64)
+		writer.flush()
+		buffer.addAll(FIXTURE.createEvents(300, 400))
+		writer.addAll(FIXTURE.createEvents(300, 400), buffer)
+		writer.close()
+		byte[] bytes = textIndexFile.bytes
+
+		when:
+		textIndexFile.bytes = Arrays.copyOf(bytes, bytes.length - 1)
+		TextIndexReader reader = TextIndexReader.get(textIndexFile)
+
+		then:
+		reader.eventCount == 300
+
+		when:
+		textIndexFile.bytes = [1, 2, 3] as byte[]
+		reader.refresh()
+
+		then:
+		reader.eventCount == 0
+		reader.getCandidates(TextIndex.Field.EVENT, 'request1').length == 0
+	}
+
+	def 'only one writer can be open at a time.'() {
+		given:
+		def buffer = FIXTURE.createBuffer(10)
+		File textIndexFile = new File(folder.root, 'events.nidx')
+		TextIndexWriter writer = TextIndexWriter.open(textIndexFile, buffer)
+
+		when:
+		TextIndexWriter.open(textIndexFile, buffer)
+
+		then:
+		thrown(IOException)
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'missing index returns no reader.'() {
+		expect:
+		TextIndexReader.get(new File(folder.root, 'missing.nidx')) == null
+	}
+}
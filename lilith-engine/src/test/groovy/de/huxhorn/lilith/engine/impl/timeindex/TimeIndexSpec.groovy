@@ -0,0 +1,202 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package de.huxhorn.lilith.engine.impl.timeindex
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.engine.impl.IndexSpecFixture
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import java.time.LocalDateTime
+import java.time.ZoneId
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class TimeIndexSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private static final IndexSpecFixture FIXTURE = new IndexSpecFixture({ Long timeStamp -> new LoggingEvent(timeStamp: timeStamp) })
+
+	private static long linearSearch(List<Long> timeStamps, long timeStamp) {
+		for(int i = 0; i < timeStamps.size(); i++) {
+			Long current = timeStamps[i]
+			if(current != null && current >= timeStamp) {
+				return i
+			}
+		}
+		return -1
+	}
+
+	def 'time index file is resolved next to the data file.'() {
+		expect:
+		TimeIndex.resolveTimeIndexFile(new File('/foo/bar.lilith')) == new File('/foo/bar.tidx')
+		TimeIndex.resolveTimeIndexFile(new File('/foo/bar')) == new File('/foo/bar.tidx')
+	}
+
+	@Unroll
+	def 'parseTimestamp("#input") returns #expected.'() {
+		expect:
+		TimeIndex.parseTimestamp(input) == expected
+
+		where:
+		input                     | expected
+		null                      | null
+		''                        | null
+		'foo'                     | null
+		'1234'                    | 1234L
+		' 1234 '                  | 1234L
+		'2021-12-24T14:03:27'     | LocalDateTime.of(2021, 12, 24, 14, 3, 27).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+		'2021-12-24 14:03:27.123' | LocalDateTime.of(2021, 12, 24, 14, 3, 27, 123_000_000).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+	}
+
+	def 'index finds the same event as a linear search even if events are out of order.'() {
+		given:
+		Random random = new Random(17)
+		List<Long> timeStamps = []
+		for(int i = 0; i < 2000; i++) {
+			// roughly ascending with some jitter and some missing timestamps
+			timeStamps.add(i % 97 == 0 ? null : (long) (i * 10 + random.nextInt(300)))
+		}
+		def buffer = FIXTURE.createBuffer(timeStamps)
+		File timeIndexFile = new File(folder.root, 'events.tidx')
+
+		when:
+		TimeIndexWriter.open(timeIndexFile, buffer).close()
+
+		then:
+		timeIndexFile.length() == TimeIndex.HEADER_SIZE + 8 * (2000 / TimeIndex.DEFAULT_INTERVAL as int)
+
+		and:
+		[-1L, 0L, 5L, 1234L, 5000L, 10_000L, 19_990L, 20_300L, 30_000L].each {
+			assert TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, it) == linearSearch(timeStamps, it)
+		}
+	}
+
+	def 'missing or invalid index falls back to a linear search.'() {
+		given:
+		List<Long> timeStamps = (0..<1000).collect { (long) it * 2 }
+		def buffer = FIXTURE.createBuffer(timeStamps)
+		File timeIndexFile = new File(folder.root, 'events.tidx')
+
+		expect:
+		TimeIndex.findFirstAtOrAfter(buffer, null, 777) == 389
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 777) == 389
+
+		when:
+		timeIndexFile.bytes = [1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16] as byte[]
+
+		then:
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 777) == 389
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 2000) == -1
+	}
+
+	def 'writer catches up with the buffer when reopened.'() {
+		given:
+		List<Long> timeStamps = (0..<600).collect { (long) it }
+		def buffer = FIXTURE.createBuffer(timeStamps)
+		File timeIndexFile = new File(folder.root, 'events.tidx')
+		TimeIndexWriter writer = TimeIndexWriter.open(timeIndexFile, buffer)
+
+		when: 'events are added while the writer is open'
+		List<EventWrapper<LoggingEvent>> added = (600..<700).collect { FIXTURE.createEvent((long) it) }
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+
+		then:
+		writer.eventCount == 700
+
+		when: 'events are added while the writer is closed'
+		writer.close()
+		buffer.addAll((700..<1000).collect { FIXTURE.createEvent((long) it) })
+		writer = TimeIndexWriter.open(timeIndexFile, buffer)
+
+		then:
+		writer.eventCount == 1000
+		timeIndexFile.length() == TimeIndex.HEADER_SIZE + 8 * 3
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 900) == 900
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'writer rewrites the index if the buffer was reset.'() {
+		given:
+		def buffer = FIXTURE.createBuffer((0..<1000).collect { (long) it })
+		File timeIndexFile = new File(folder.root, 'events.tidx')
+		TimeIndexWriter writer = TimeIndexWriter.open(timeIndexFile, buffer)
+
+		when:
+		buffer.reset()
+		List<EventWrapper<LoggingEvent>> added = (0..<300).collect { FIXTURE.createEvent((long) 5000 + it) }
+		buffer.addAll(added)
+		writer.addAll(added, buffer)
+
+		then:
+		writer.eventCount == 300
+		timeIndexFile.length() == TimeIndex.HEADER_SIZE + 8
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 5100) == 100
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 5280) == 280
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 10) == 0
+
+		cleanup:
+		writer?.close()
+	}
+
+	def 'index entries beyond the size of the buffer are ignored.'() {
+		given:
+		def buffer = FIXTURE.createBuffer((0..<1000).collect { (long) it })
+		File timeIndexFile = new File(folder.root, 'events.tidx')
+		TimeIndexWriter.open(timeIndexFile, buffer).close()
+
+		when:
+		buffer.reset()
+		buffer.addAll((0..<100).collect { FIXTURE.createEvent((long) 5000 + it) })
+
+		then:
+		TimeIndex.findFirstAtOrAfter(buffer, timeIndexFile, 5050) == 50
+
+		when:
+		TimeIndexWriter writer = TimeIndexWriter.open(timeIndexFile, buffer)
+
+		then:
+		writer.eventCount == 100
+		timeIndexFile.length() == TimeIndex.HEADER_SIZE
+
+		cleanup:
+		writer?.close()
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.engine.json.eventproducer;
+
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.json.LoggingJsonDecoder;
+import de.huxhorn.lilith.engine.impl.eventproducer.GzipFrameInflater;
+import de.huxhorn.lilith.engine.impl.eventproducer.SingleEventFrameDecoder;
+import java.io.IOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decodes JSON LoggingEvents directly from the receive buffer using a streaming parser.
+ *
+ * Compressed events are inflated into a buffer that is reused for every event.
+ */
+public class LoggingEventJsonFrameDecoder
+	implements SingleEventFrameDecoder<LoggingEvent>
+{
+	private final Logger logger = LoggerFactory.getLogger(LoggingEventJsonFrameDecoder.class);
+
+	private final GzipFrameInflater inflater;
+
+	public LoggingEventJsonFrameDecoder(boolean compressing)
+	{
+		this.inflater = compressing ? new GzipFrameInflater() : null;
+	}
+
+	public boolean isCompressing()
+	{
+		return inflater != null;
+	}
+
+	@Override
+	public LoggingEvent decode(byte[] buffer, int offset, int length)
+	{
+		if(inflater == null)
+		{
+			return LoggingJsonDecoder.parse(buffer, offset, length);
+		}
+		try
+		{
+			int inflatedLength = inflater.inflate(buffer, offset, length);
+			return LoggingJsonDecoder.parse(inflater.getBuffer(), 0, inflatedLength);
+		}
+		catch(IOException e)
+		{
+			if(logger.isDebugEnabled()) logger.debug("Exception while inflating {} bytes!", length, e);
+			return null;
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		if(inflater != null)
+		{
+			inflater.end();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "LoggingEventJsonFrameDecoder[compressing=" + isCompressing() + "]";
+	}
+}
@@ -24,11 +24,15 @@ import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.json.LoggingJsonCodec;
 import de.huxhorn.lilith.engine.EventProducer;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.lilith.engine.impl.eventproducer.ZeroDelimitedEventProducer;
 import de.huxhorn.lilith.engine.impl.sourceproducer.AbstractServerSocketEventSourceProducer;
+import de.huxhorn.lilith.engine.json.eventproducer.LoggingEventJsonFrameDecoder;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 
 public class LilithJsonStreamLoggingServerSocketEventSourceProducer
 	extends AbstractServerSocketEventSourceProducer<LoggingEvent>
@@ -36,7 +40,13 @@ public class LilithJsonStreamLoggingServerSocketEventSourceProducer
 	public LilithJsonStreamLoggingServerSocketEventSourceProducer(int port)
 		throws IOException
 	{
-		super(port);
+		this(port, null);
+	}
+
+	public LilithJsonStreamLoggingServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
 	}
 
 	@Override
@@ -46,6 +56,12 @@ public class LilithJsonStreamLoggingServerSocketEventSourceProducer
 		return new ZeroDelimitedEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingJsonCodec(false), inputStream);
 	}
 
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingEventJsonFrameDecoder(false), NioEventProducer.Framing.ZERO_DELIMITED, false, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
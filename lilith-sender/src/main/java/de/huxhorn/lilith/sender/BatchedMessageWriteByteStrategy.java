@@ -0,0 +1,174 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Combines all events that are sent at once into batched messages.
+ *
+ * Every message is written as an int containing the length of the message followed by the message,
+ * like MessageWriteByteStrategy does. A length of zero is a heartbeat.
+ *
+ * The content of a message is the sequence of the contained events, each written as an int containing
+ * the length of the event followed by the event. If compressing is enabled, the content is GZIPed as
+ * a whole, which compresses much better than GZIPing every event on its own. The events itself should
+ * therefore be uncompressed.
+ *
+ * Receivers detect compressed messages by the GZIP magic bytes. An uncompressed message starts with the
+ * length of its first event and would need an event of more than 500MB to start with the same bytes.
+ *
+ * Instances are stateless and thread-safe.
+ */
+public class BatchedMessageWriteByteStrategy
+	implements WriteByteStrategy
+{
+	/**
+	 * The maximum number of uncompressed bytes contained in a single message (1MB).
+	 * Bigger batches are split into multiple messages.
+	 */
+	public static final int MAX_BATCH_BYTES = 1024 * 1024;
+
+	private static final int LENGTH_SIZE = 4;
+
+	private final boolean compressing;
+
+	public BatchedMessageWriteByteStrategy()
+	{
+		this(true);
+	}
+
+	public BatchedMessageWriteByteStrategy(boolean compressing)
+	{
+		this.compressing = compressing;
+	}
+
+	public boolean isCompressing()
+	{
+		return compressing;
+	}
+
+	/**
+	 * Writes the given bytes as a batch containing a single event.
+	 *
+	 * @param dataOutputStream the stream the bytes will be written to.
+	 * @param bytes            the bytes that are written
+	 * @throws java.io.IOException if an exception is thrown while writing the bytes.
+	 */
+	@Override
+	public void writeBytes(DataOutputStream dataOutputStream, byte[] bytes)
+		throws IOException
+	{
+		writeBytes(dataOutputStream, Collections.singletonList(bytes));
+	}
+
+	/**
+	 * Writes all events contained in bytesList as few messages as possible.
+	 * Empty byte arrays, i.e. heartbeats, are only written if bytesList does not contain any events.
+	 *
+	 * @param dataOutputStream the stream the bytes will be written to.
+	 * @param bytesList        the byte arrays that are written
+	 * @throws java.io.IOException if an exception is thrown while writing the bytes.
+	 */
+	@Override
+	public void writeBytes(DataOutputStream dataOutputStream, List<byte[]> bytesList)
+		throws IOException
+	{
+		ByteArrayOutputStream batch = null;
+		DataOutputStream batchOutput = null;
+		int batchBytes = 0;
+		boolean heartbeat = false;
+		for(byte[] current : bytesList)
+		{
+			if(current == null)
+			{
+				continue;
+			}
+			if(current.length == 0)
+			{
+				heartbeat = true;
+				continue;
+			}
+			if(batchOutput != null && batchBytes + LENGTH_SIZE + current.length > MAX_BATCH_BYTES)
+			{
+				writeBatch(dataOutputStream, batch, batchOutput);
+				batchOutput = null;
+			}
+			if(batchOutput == null)
+			{
+				batch = new ByteArrayOutputStream(); // NOPMD - AvoidInstantiatingObjectsInLoops
+				batchOutput = createBatchOutput(batch);
+				batchBytes = 0;
+			}
+			batchOutput.writeInt(current.length);
+			batchOutput.write(current);
+			batchBytes += LENGTH_SIZE + current.length;
+		}
+		if(batchOutput != null)
+		{
+			writeBatch(dataOutputStream, batch, batchOutput);
+		}
+		else if(heartbeat)
+		{
+			dataOutputStream.writeInt(0);
+		}
+	}
+
+	@SuppressWarnings("PMD.CloseResource")
+	private DataOutputStream createBatchOutput(ByteArrayOutputStream batch)
+		throws IOException
+	{
+		OutputStream output = batch;
+		if(compressing)
+		{
+			output = new GZIPOutputStream(batch);
+		}
+		return new DataOutputStream(output);
+	}
+
+	private static void writeBatch(DataOutputStream dataOutputStream, ByteArrayOutputStream batch, DataOutputStream batchOutput)
+		throws IOException
+	{
+		batchOutput.close();
+		dataOutputStream.writeInt(batch.size());
+		batch.writeTo(dataOutputStream);
+	}
+}
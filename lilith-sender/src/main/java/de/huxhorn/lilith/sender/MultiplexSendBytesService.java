@@ -41,6 +41,13 @@ import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
+/**
+ * Sends the same bytes to multiple hosts.
+ *
+ * The OverflowPolicy is applied while bytes are added to the queue shared by all hosts, i.e. in the
+ * logging thread. The queues of the individual hosts are always blocking so every host receives
+ * the same events.
+ */
 public class MultiplexSendBytesService
 	implements SendBytesService
 {
@@ -54,8 +61,12 @@ public class MultiplexSendBytesService
 	private final Set<SimpleSendBytesService> senderServices;
 	private final BlockingQueue<byte[]> eventBytes;
 
+	private final SendStatistics statistics;
+
 	private Thread dispatcherThread;
 	private boolean debug;
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private volatile int dropLevel;
 
 	public MultiplexSendBytesService(String name, List<String> remoteHostsList, int port, WriteByteStrategy writeByteStrategy, long reconnectionDelay, int queueSize)
 	{
@@ -68,6 +79,48 @@ public class MultiplexSendBytesService
 
 		this.senderServices = new HashSet<>();
 		this.eventBytes = new ArrayBlockingQueue<>(queueSize, true);
+		this.statistics = new SendStatistics();
+		this.statistics.addQueue(eventBytes);
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * Defines what happens if bytes should be sent while the queue is full. The default is BLOCK.
+	 *
+	 * @param overflowPolicy the overflow policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+	{
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null!");
+	}
+
+	public int getDropLevel()
+	{
+		return dropLevel;
+	}
+
+	/**
+	 * Events with a level below dropLevel are dropped by OverflowPolicy.DROP_BELOW_LEVEL if the queue is full.
+	 *
+	 * @param dropLevel the drop level.
+	 */
+	public void setDropLevel(int dropLevel)
+	{
+		this.dropLevel = dropLevel;
+	}
+
+	/**
+	 * Returns the statistics of this service, including the statistics of the services of all hosts.
+	 *
+	 * @return the statistics of this service.
+	 */
+	public SendStatistics getStatistics()
+	{
+		return statistics;
 	}
 
 	public boolean isDebug()
@@ -109,6 +162,7 @@ public class MultiplexSendBytesService
 			reconnectionDelay,
 			SimpleSendBytesService.DEFAULT_POLL_INTERVAL);
 		service.setDebug(debug);
+		service.setStatistics(statistics);
 		return service;
 	}
 
@@ -121,6 +175,7 @@ public class MultiplexSendBytesService
 			for(SimpleSendBytesService current : senderServices)
 			{
 				current.shutDown();
+				current.releaseStatistics();
 			}
 			senderServices.clear();
 			eventBytes.clear();
@@ -138,10 +193,16 @@ public class MultiplexSendBytesService
 
 	@Override
 	public void sendBytes(byte[] serialized)
+	{
+		sendBytes(serialized, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void sendBytes(byte[] serialized, int level)
 	{
 		try
 		{
-			eventBytes.put(serialized);
+			OverflowPolicies.offer(eventBytes, serialized, level, overflowPolicy, dropLevel, statistics);
 		}
 		catch(InterruptedException e)
 		{
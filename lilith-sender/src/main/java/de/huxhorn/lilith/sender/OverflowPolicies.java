@@ -0,0 +1,99 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender;
+
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Offers events to a bounded queue according to an OverflowPolicy.
+ */
+final class OverflowPolicies
+{
+	static
+	{
+		new OverflowPolicies(); // stfu, coverage
+	}
+
+	private OverflowPolicies()
+	{
+	}
+
+	/**
+	 * Adds bytes to the queue.
+	 *
+	 * @param queue the queue.
+	 * @param bytes the bytes to add.
+	 * @param level the level of the event, only used by DROP_BELOW_LEVEL.
+	 * @param policy the policy applied if the queue is full.
+	 * @param dropLevel events with a level below this value are dropped by DROP_BELOW_LEVEL.
+	 * @param statistics the statistics counting dropped events.
+	 * @throws InterruptedException if the thread was interrupted while waiting for room in the queue.
+	 */
+	static void offer(BlockingQueue<byte[]> queue, byte[] bytes, int level, OverflowPolicy policy, int dropLevel, SendStatistics statistics)
+		throws InterruptedException
+	{
+		Objects.requireNonNull(policy, "policy must not be null!");
+		if(queue.offer(bytes))
+		{
+			return;
+		}
+		switch(policy)
+		{
+			case DROP_NEWEST:
+				statistics.addDropped();
+				return;
+			case DROP_OLDEST:
+				while(!queue.offer(bytes))
+				{
+					if(queue.poll() != null)
+					{
+						statistics.addDropped();
+					}
+				}
+				return;
+			case DROP_BELOW_LEVEL:
+				if(level < dropLevel)
+				{
+					statistics.addDropped();
+					return;
+				}
+				queue.put(bytes);
+				return;
+			default:
+				queue.put(bytes);
+		}
+	}
+}
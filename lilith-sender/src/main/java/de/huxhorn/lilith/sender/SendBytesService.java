@@ -45,6 +45,19 @@ public interface SendBytesService
 	 */
 	void sendBytes(byte[] bytes);
 
+	/**
+	 * Same as sendBytes(byte[]) but with the level of the event, used by OverflowPolicy.DROP_BELOW_LEVEL.
+	 *
+	 * The default implementation ignores the level.
+	 *
+	 * @param bytes the bytes to send.
+	 * @param level the level of the event.
+	 */
+	default void sendBytes(byte[] bytes, int level)
+	{
+		sendBytes(bytes);
+	}
+
 	void startUp();
 
 	void shutDown();
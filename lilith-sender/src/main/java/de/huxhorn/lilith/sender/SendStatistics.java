@@ -0,0 +1,131 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the events that have been sent or dropped by one or more SendBytesServices.
+ *
+ * An instance can be shared by multiple services, e.g. all SimpleSendBytesServices of a
+ * MultiplexSendBytesService, in which case the counters are the sum of all services.
+ * An event sent to multiple hosts is therefore counted once per host.
+ *
+ * All methods are thread-safe.
+ */
+public class SendStatistics
+	implements SendStatisticsMBean
+{
+	private final AtomicLong sentEvents = new AtomicLong();
+	private final AtomicLong sentBytes = new AtomicLong();
+	private final AtomicLong droppedEvents = new AtomicLong();
+	private final List<Collection<?>> queues = new CopyOnWriteArrayList<>();
+
+	void addSent(long events, long bytes)
+	{
+		sentEvents.addAndGet(events);
+		sentBytes.addAndGet(bytes);
+	}
+
+	void addDropped()
+	{
+		droppedEvents.incrementAndGet();
+	}
+
+	void addQueue(Collection<?> queue)
+	{
+		queues.add(Objects.requireNonNull(queue, "queue must not be null!"));
+	}
+
+	void removeQueue(Collection<?> queue)
+	{
+		queues.remove(queue);
+	}
+
+	/**
+	 * @return the number of events that have been written, excluding heartbeats.
+	 */
+	@Override
+	public long getSentEvents()
+	{
+		return sentEvents.get();
+	}
+
+	/**
+	 * @return the number of bytes of all events that have been written, excluding framing.
+	 */
+	@Override
+	public long getSentBytes()
+	{
+		return sentBytes.get();
+	}
+
+	/**
+	 * @return the number of events that have been dropped because of the OverflowPolicy.
+	 */
+	@Override
+	public long getDroppedEvents()
+	{
+		return droppedEvents.get();
+	}
+
+	/**
+	 * @return the number of events currently waiting in all queues.
+	 */
+	@Override
+	public int getQueueDepth()
+	{
+		int result = 0;
+		for(Collection<?> current : queues)
+		{
+			result += current.size();
+		}
+		return result;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "SendStatistics[sentEvents=" + getSentEvents()
+				+ ", sentBytes=" + getSentBytes()
+				+ ", droppedEvents=" + getDroppedEvents()
+				+ ", queueDepth=" + getQueueDepth()
+				+ "]";
+	}
+}
@@ -41,6 +41,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -54,6 +55,10 @@ public class SimpleSendBytesService
 
 	public static final int DEFAULT_QUEUE_SIZE = 1000;
 
+	/**
+	 * The default time the send thread waits for events before checking for shutdown (100 milliseconds).
+	 * Queued events are sent immediately.
+	 */
 	public static final int DEFAULT_POLL_INTERVAL = 100;
 
 	private final Object lock = new Object();
@@ -71,6 +76,9 @@ public class SimpleSendBytesService
 
 	private SendBytesThread sendBytesThread;
 	private boolean debug;
+	private volatile OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private volatile int dropLevel;
+	private volatile SendStatistics statistics;
 
 	public SimpleSendBytesService(DataOutputStreamFactory dataOutputStreamFactory, WriteByteStrategy writeByteStrategy)
 	{
@@ -101,6 +109,8 @@ public class SimpleSendBytesService
 		this.pollInterval = pollInterval;
 
 		this.localEventBytes = new ArrayBlockingQueue<>(queueSize, true);
+		this.statistics = new SendStatistics();
+		this.statistics.addQueue(localEventBytes);
 	}
 
 	public boolean isDebug()
@@ -118,14 +128,77 @@ public class SimpleSendBytesService
 		return connectionState.get();
 	}
 
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * Defines what happens if bytes should be sent while the queue is full. The default is BLOCK.
+	 *
+	 * @param overflowPolicy the overflow policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+	{
+		this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null!");
+	}
+
+	public int getDropLevel()
+	{
+		return dropLevel;
+	}
+
+	/**
+	 * Events with a level below dropLevel are dropped by OverflowPolicy.DROP_BELOW_LEVEL if the queue is full.
+	 *
+	 * @param dropLevel the drop level.
+	 */
+	public void setDropLevel(int dropLevel)
+	{
+		this.dropLevel = dropLevel;
+	}
+
+	public SendStatistics getStatistics()
+	{
+		return statistics;
+	}
+
+	/**
+	 * Replaces the statistics of this service, e.g. with statistics shared by multiple services.
+	 *
+	 * @param statistics the statistics.
+	 */
+	public void setStatistics(SendStatistics statistics)
+	{
+		Objects.requireNonNull(statistics, "statistics must not be null!");
+		this.statistics.removeQueue(localEventBytes);
+		statistics.addQueue(localEventBytes);
+		this.statistics = statistics;
+	}
+
+	/**
+	 * Removes the queue of this service from the statistics so it doesn't contribute to the queue depth anymore.
+	 * The counters of the statistics are retained.
+	 */
+	void releaseStatistics()
+	{
+		statistics.removeQueue(localEventBytes);
+	}
+
 	@Override
 	public void sendBytes(byte[] bytes)
+	{
+		sendBytes(bytes, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void sendBytes(byte[] bytes, int level)
 	{
 		if(connectionState.get() == ConnectionState.CONNECTED && sendBytesThread != null && bytes != null)
 		{
 			try
 			{
-				localEventBytes.put(bytes);
+				OverflowPolicies.offer(localEventBytes, bytes, level, overflowPolicy, dropLevel, statistics);
 			}
 			catch(InterruptedException e)
 			{
@@ -226,9 +299,11 @@ public class SimpleSendBytesService
 			{
 				try
 				{
-					localEventBytes.drainTo(copy);
-					if(!copy.isEmpty())
+					byte[] first = localEventBytes.poll(pollInterval, TimeUnit.MILLISECONDS);
+					if(first != null)
 					{
+						copy.add(first);
+						localEventBytes.drainTo(copy);
 						DataOutputStream outputStream;
 						synchronized(lock)
 						{
@@ -238,11 +313,9 @@ public class SimpleSendBytesService
 						{
 							try
 							{
-								for(byte[] current : copy)
-								{
-									writeByteStrategy.writeBytes(outputStream, current);
-								}
+								writeByteStrategy.writeBytes(outputStream, copy);
 								outputStream.flush();
+								countSent(copy);
 							}
 							catch(Throwable e)
 							{
@@ -255,7 +328,6 @@ public class SimpleSendBytesService
 					{
 						break;
 					}
-					Thread.sleep(pollInterval);
 				}
 				catch(InterruptedException e)
 				{
@@ -274,6 +346,21 @@ public class SimpleSendBytesService
 			closeConnection();
 		}
 
+		private void countSent(List<byte[]> sent)
+		{
+			long events = 0;
+			long bytes = 0;
+			for(byte[] current : sent)
+			{
+				if(current.length > 0)
+				{
+					events++;
+					bytes += current.length;
+				}
+			}
+			statistics.addSent(events, bytes);
+		}
+
 		private class ReconnectionThread
 			extends Thread
 		{
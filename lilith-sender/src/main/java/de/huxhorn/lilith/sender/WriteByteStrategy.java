@@ -36,6 +36,7 @@ package de.huxhorn.lilith.sender;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.List;
 
 public interface WriteByteStrategy
 {
@@ -48,4 +49,23 @@ public interface WriteByteStrategy
 	 */
 	void writeBytes(DataOutputStream dataOutputStream, byte[] bytes)
 		throws IOException;
+
+	/**
+	 * Writes all given byte arrays to dataOutputStream.
+	 *
+	 * The default implementation calls writeBytes(DataOutputStream, byte[]) for every element.
+	 * Implementations may combine the byte arrays into fewer messages.
+	 *
+	 * @param dataOutputStream the stream the bytes will be written to.
+	 * @param bytesList        the byte arrays that are written
+	 * @throws IOException if an exception is thrown while writing the bytes.
+	 */
+	default void writeBytes(DataOutputStream dataOutputStream, List<byte[]> bytesList)
+		throws IOException
+	{
+		for(byte[] current : bytesList)
+		{
+			writeBytes(dataOutputStream, current);
+		}
+	}
 }
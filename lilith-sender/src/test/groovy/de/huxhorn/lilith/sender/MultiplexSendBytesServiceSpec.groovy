@@ -0,0 +1,84 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender
+
+import java.nio.charset.StandardCharsets
+import spock.lang.AutoCleanup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+class MultiplexSendBytesServiceSpec extends Specification {
+
+	@AutoCleanup
+	ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.loopbackAddress)
+
+	PollingConditions conditions = new PollingConditions(timeout: 10)
+
+	def 'statistics are retained after shutDown.'() {
+		setup:
+		MultiplexSendBytesService instance = new MultiplexSendBytesService('test', [InetAddress.loopbackAddress.hostAddress], serverSocket.localPort, new MessageWriteByteStrategy(), 60_000, 10)
+		instance.startUp()
+		Socket socket = serverSocket.accept()
+		DataInputStream input = new DataInputStream(socket.inputStream)
+		SendStatistics statistics = instance.statistics
+		conditions.eventually {
+			assert instance.senderServices*.connectionState == [ConnectionState.CONNECTED]
+		}
+
+		when:
+		instance.sendBytes('foo'.getBytes(StandardCharsets.UTF_8))
+		int size = input.readInt()
+		byte[] frame = new byte[size]
+		input.readFully(frame)
+
+		then:
+		new String(frame, StandardCharsets.UTF_8) == 'foo'
+		conditions.eventually {
+			assert statistics.sentEvents == 1
+		}
+
+		when:
+		instance.shutDown()
+
+		then:
+		instance.statistics.is(statistics)
+		statistics.sentEvents == 1
+		statistics.sentBytes == 3
+		statistics.queueDepth == 0
+
+		cleanup:
+		socket.close()
+	}
+}
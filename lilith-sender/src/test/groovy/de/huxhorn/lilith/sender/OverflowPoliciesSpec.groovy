@@ -0,0 +1,145 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.TimeUnit
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class OverflowPoliciesSpec extends Specification {
+
+	static final byte[] OLD = [1] as byte[]
+	static final byte[] NEW = [2] as byte[]
+
+	@Unroll
+	def '#policy adds bytes if the queue has room.'() {
+		setup:
+		BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(2)
+		SendStatistics statistics = new SendStatistics()
+
+		when:
+		OverflowPolicies.offer(queue, NEW, 0, policy, 10, statistics)
+
+		then:
+		queue.toList() == [NEW]
+		statistics.droppedEvents == 0
+
+		where:
+		policy << OverflowPolicy.values()
+	}
+
+	def 'DROP_NEWEST drops the new bytes if the queue is full.'() {
+		setup:
+		BlockingQueue<byte[]> queue = fullQueue()
+		SendStatistics statistics = new SendStatistics()
+
+		when:
+		OverflowPolicies.offer(queue, NEW, 0, OverflowPolicy.DROP_NEWEST, 0, statistics)
+
+		then:
+		queue.toList() == [OLD]
+		statistics.droppedEvents == 1
+	}
+
+	def 'DROP_OLDEST drops the oldest bytes if the queue is full.'() {
+		setup:
+		BlockingQueue<byte[]> queue = fullQueue()
+		SendStatistics statistics = new SendStatistics()
+
+		when:
+		OverflowPolicies.offer(queue, NEW, 0, OverflowPolicy.DROP_OLDEST, 0, statistics)
+
+		then:
+		queue.toList() == [NEW]
+		statistics.droppedEvents == 1
+	}
+
+	def 'DROP_BELOW_LEVEL drops bytes below the drop level if the queue is full.'() {
+		setup:
+		BlockingQueue<byte[]> queue = fullQueue()
+		SendStatistics statistics = new SendStatistics()
+
+		when:
+		OverflowPolicies.offer(queue, NEW, 9, OverflowPolicy.DROP_BELOW_LEVEL, 10, statistics)
+
+		then:
+		queue.toList() == [OLD]
+		statistics.droppedEvents == 1
+	}
+
+	@Unroll
+	def '#policy waits for room if the queue is full.'() {
+		setup:
+		BlockingQueue<byte[]> queue = fullQueue()
+		SendStatistics statistics = new SendStatistics()
+		Thread consumer = Thread.start {
+			Thread.sleep(100)
+			queue.take()
+		}
+
+		when:
+		long start = System.nanoTime()
+		OverflowPolicies.offer(queue, NEW, 10, policy, 10, statistics)
+		long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+
+		then:
+		queue.toList() == [NEW]
+		statistics.droppedEvents == 0
+		waited >= 50
+
+		cleanup:
+		consumer.join()
+
+		where:
+		policy << [OverflowPolicy.BLOCK, OverflowPolicy.DROP_BELOW_LEVEL]
+	}
+
+	def 'null policy explodes.'() {
+		when:
+		OverflowPolicies.offer(new ArrayBlockingQueue<byte[]>(1), NEW, 0, null, 0, new SendStatistics())
+
+		then:
+		NullPointerException ex = thrown()
+		ex.message == 'policy must not be null!'
+	}
+
+	private static BlockingQueue<byte[]> fullQueue() {
+		BlockingQueue<byte[]> result = new ArrayBlockingQueue<>(1)
+		result.add(OLD)
+		return result
+	}
+}
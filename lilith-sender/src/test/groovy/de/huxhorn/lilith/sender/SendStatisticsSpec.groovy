@@ -0,0 +1,91 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender
+
+import spock.lang.Specification
+
+class SendStatisticsSpec extends Specification {
+
+	def 'sent events and bytes are summed up.'() {
+		setup:
+		SendStatistics instance = new SendStatistics()
+
+		when:
+		instance.addSent(2, 17)
+		instance.addSent(1, 3)
+		instance.addDropped()
+
+		then:
+		instance.sentEvents == 3
+		instance.sentBytes == 20
+		instance.droppedEvents == 1
+		instance.toString() == 'SendStatistics[sentEvents=3, sentBytes=20, droppedEvents=1, queueDepth=0]'
+	}
+
+	def 'queue depth is the sum of all queues.'() {
+		setup:
+		SendStatistics instance = new SendStatistics()
+		List<String> first = ['a', 'b']
+		List<String> second = ['c']
+
+		when:
+		instance.addQueue(first)
+		instance.addQueue(second)
+
+		then:
+		instance.queueDepth == 3
+
+		when:
+		first.clear()
+
+		then:
+		instance.queueDepth == 1
+
+		when:
+		instance.removeQueue(second)
+
+		then:
+		instance.queueDepth == 0
+	}
+
+	def 'null queue explodes.'() {
+		when:
+		new SendStatistics().addQueue(null)
+
+		then:
+		NullPointerException ex = thrown()
+		ex.message == 'queue must not be null!'
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.sender
+
+import java.nio.charset.StandardCharsets
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+class SimpleSendBytesServiceSpec extends Specification {
+
+	PollingConditions conditions = new PollingConditions(timeout: 10)
+	ByteArrayOutputStream output = new ByteArrayOutputStream()
+	DataOutputStreamFactory factory = { new DataOutputStream(output) } as DataOutputStreamFactory
+
+	def 'queued bytes are sent without waiting for the poll interval.'() {
+		setup:
+		SimpleSendBytesService instance = new SimpleSendBytesService(factory, new MessageWriteByteStrategy(), 10, 60_000, 60_000)
+		instance.startUp()
+		conditions.eventually {
+			assert instance.connectionState == ConnectionState.CONNECTED
+		}
+
+		when:
+		instance.sendBytes(bytes('foo'))
+		instance.sendBytes(new byte[0])
+		instance.sendBytes(bytes('bar'))
+
+		then:
+		conditions.within(5) {
+			assert received() == ['foo', '', 'bar']
+		}
+		instance.statistics.sentEvents == 2
+		instance.statistics.sentBytes == 6
+		instance.statistics.queueDepth == 0
+
+		cleanup:
+		instance.shutDown()
+	}
+
+	def 'shutDown does not wait for the poll interval.'() {
+		setup:
+		SimpleSendBytesService instance = new SimpleSendBytesService(factory, new MessageWriteByteStrategy(), 10, 60_000, 60_000)
+		instance.startUp()
+		conditions.eventually {
+			assert instance.connectionState == ConnectionState.CONNECTED
+		}
+
+		when:
+		long start = System.currentTimeMillis()
+		instance.shutDown()
+
+		then:
+		System.currentTimeMillis() - start < 10_000
+		instance.connectionState == ConnectionState.CANCELED
+	}
+
+	def 'bytes are ignored while not connected.'() {
+		setup:
+		SimpleSendBytesService instance = new SimpleSendBytesService(factory, new MessageWriteByteStrategy(), 10, 60_000, 100)
+
+		when:
+		instance.sendBytes(bytes('foo'))
+
+		then:
+		instance.statistics.queueDepth == 0
+		instance.statistics.droppedEvents == 0
+	}
+
+	def 'invalid pollInterval explodes.'() {
+		when:
+		new SimpleSendBytesService(factory, new MessageWriteByteStrategy(), 10, 60_000, 0)
+
+		then:
+		IllegalArgumentException ex = thrown()
+		ex.message == 'pollInterval must be greater than zero but was 0!'
+	}
+
+	private static byte[] bytes(String value) {
+		return value.getBytes(StandardCharsets.UTF_8)
+	}
+
+	private List<String> received() {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()))
+		List<String> result = []
+		while(input.available() > 0) {
+			byte[] frame = new byte[input.readInt()]
+			input.readFully(frame)
+			result.add(new String(frame, StandardCharsets.UTF_8))
+		}
+		return result
+	}
+}
@@ -25,13 +25,14 @@ import de.huxhorn.lilith.data.logging.xml.LoggingEventReader;
 import de.huxhorn.lilith.data.logging.xml.LoggingEventSchemaConstants;
 import de.huxhorn.lilith.engine.impl.eventproducer.AbstractEventProducer;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.ReceiverThreads;
+import de.huxhorn.lilith.engine.impl.eventproducer.ZeroDelimitedFrameReader;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
@@ -70,9 +71,7 @@ public class LilithXmlStreamLoggingEventProducer
 	@Override
 	public void start()
 	{
-		Thread t = new Thread(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver");
-		t.setDaemon(true);
-		t.start();
+		ReceiverThreads.start(new ReceiverRunnable(), getSourceIdentifier() + "-Receiver", true);
 	}
 
 	@Override
@@ -100,45 +99,21 @@ public class LilithXmlStreamLoggingEventProducer
 		{
 			try
 			{
-				ArrayList<Byte> bytes = new ArrayList<>();
+				ZeroDelimitedFrameReader frameReader = new ZeroDelimitedFrameReader(inputStream);
 				for (;;)
 				{
-					for (;;)
+					int frameLength = frameReader.readFrame();
+					if(frameLength < 0)
 					{
-						int readByte = inputStream.read();
-						if(readByte == -1)
-						{
-							if(logger.isInfoEnabled()) logger.info("Read -1!!");
-							return;
-						}
-						byte current = (byte) readByte;
-						if(current == 0)
-						{
-							break;
-						}
-						bytes.add(current);
+						if(logger.isInfoEnabled()) logger.info("Read -1!!");
+						return;
 					}
-
-					if(!bytes.isEmpty())
-					{
-						byte[] ba = new byte[bytes.size()];
-						for(int i = 0; i < bytes.size(); i++)
-						{
-							ba[i] = bytes.get(i);
-						}
-						bytes.clear();
-						String str = new String(ba, StandardCharsets.UTF_8);
-						if(logger.isDebugEnabled()) logger.debug("Read: {}", str);
-						try(StringReader strr = new StringReader(str))
-						{
-							XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(strr);
-							LoggingEvent event = loggingEventReader.read(reader);
-							addEvent(event);
-						}
-					}
-					else
+					if(logger.isDebugEnabled()) logger.debug("Read: {}", new String(frameReader.getFrameBuffer(), 0, frameLength, StandardCharsets.UTF_8));
+					try(ByteArrayInputStream frameInput = new ByteArrayInputStream(frameReader.getFrameBuffer(), 0, frameLength))
 					{
-						if(logger.isDebugEnabled()) logger.debug("bytes.size()==0!!");
+						XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(frameInput, StandardCharsets.UTF_8.name());
+						LoggingEvent event = loggingEventReader.read(reader);
+						addEvent(event);
 					}
 				}
 			}
@@ -21,12 +21,17 @@ package de.huxhorn.lilith.engine.xml.sourceproducer;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.xml.codec.LoggingXmlCodec;
 import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.lilith.engine.impl.sourceproducer.AbstractServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.xml.eventproducer.LilithXmlMessageLoggingEventProducer;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 
 public class LilithXmlMessageLoggingServerSocketEventSourceProducer
 	extends AbstractServerSocketEventSourceProducer<LoggingEvent>
@@ -36,7 +41,13 @@ public class LilithXmlMessageLoggingServerSocketEventSourceProducer
 	public LilithXmlMessageLoggingServerSocketEventSourceProducer(int port, boolean compressing)
 		throws IOException
 	{
-		super(port);
+		this(port, compressing, null);
+	}
+
+	public LilithXmlMessageLoggingServerSocketEventSourceProducer(int port, boolean compressing, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
 		this.compressing = compressing;
 	}
 
@@ -47,6 +58,12 @@ public class LilithXmlMessageLoggingServerSocketEventSourceProducer
 		return new LilithXmlMessageLoggingEventProducer(id, eventQueue, inputStream, compressing);
 	}
 
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingXmlCodec(compressing), NioEventProducer.Framing.LENGTH_PREFIXED, false, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
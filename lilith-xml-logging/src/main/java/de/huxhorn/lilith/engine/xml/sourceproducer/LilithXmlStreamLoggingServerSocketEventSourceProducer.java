@@ -21,12 +21,17 @@ package de.huxhorn.lilith.engine.xml.sourceproducer;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.xml.codec.LoggingXmlCodec;
 import de.huxhorn.lilith.engine.EventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.lilith.engine.impl.sourceproducer.AbstractServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.xml.eventproducer.LilithXmlStreamLoggingEventProducer;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 import javax.xml.stream.XMLStreamException;
 
 public class LilithXmlStreamLoggingServerSocketEventSourceProducer
@@ -35,7 +40,13 @@ public class LilithXmlStreamLoggingServerSocketEventSourceProducer
 	public LilithXmlStreamLoggingServerSocketEventSourceProducer(int port)
 		throws IOException
 	{
-		super(port);
+		this(port, null);
+	}
+
+	public LilithXmlStreamLoggingServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+		throws IOException
+	{
+		super(port, nioReceiverGroup);
 	}
 
 	@Override
@@ -52,6 +63,12 @@ public class LilithXmlStreamLoggingServerSocketEventSourceProducer
 		}
 	}
 
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new LoggingXmlCodec(false), NioEventProducer.Framing.ZERO_DELIMITED, false, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
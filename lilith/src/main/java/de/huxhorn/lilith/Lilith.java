@@ -64,6 +64,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -433,7 +434,7 @@ public class Lilith
 				printHelp(commander);
 				System.exit(-1);
 			}
-			if(CatCommand.catFile(new File(files.get(0)), cat.pattern, cat.numberOfLines))
+			if(CatCommand.catFile(new File(files.get(0)), cat.pattern, cat.numberOfLines, cat.from, cat.keepRunning, cat.latency))
 			{
 				System.exit(0);
 			}
@@ -447,12 +448,17 @@ public class Lilith
 				initCLILogging();
 			}
 			List<String> files = tail.files;
-			if(files == null || files.size()!=1)
+			if(files == null || files.isEmpty())
 			{
 				printHelp(commander);
 				System.exit(-1);
 			}
-			if(TailCommand.tailFile(new File(files.get(0)), tail.pattern, tail.numberOfLines, tail.keepRunning))
+			List<File> inputFiles = new ArrayList<>(files.size());
+			for(String current : files)
+			{
+				inputFiles.add(new File(current));
+			}
+			if(TailCommand.tailFiles(inputFiles, tail.pattern, tail.numberOfLines, tail.keepRunning, tail.from, tail.latency))
 			{
 				System.exit(0);
 			}
@@ -465,7 +471,7 @@ public class Lilith
 			{
 				initCLILogging();
 			}
-			if(FilterCommand.filterFile(new File(filter.input), new File(filter.output), new File(filter.condition), filter.searchString, filter.pattern, filter.overwrite, filter.keepRunning, filter.exclusive))
+			if(FilterCommand.filterFile(new File(filter.input), new File(filter.output), new File(filter.condition), filter.searchString, filter.pattern, filter.overwrite, filter.keepRunning, filter.exclusive, filter.from, filter.latency))
 			{
 				System.exit(0);
 			}
@@ -1,6 +1,6 @@
 /*
  * Lilith - a log event viewer.
- * Copyright (C) 2007-2017 Joern Huxhorn
+ * Copyright (C) 2007-2021 Joern Huxhorn
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -20,20 +20,22 @@ package de.huxhorn.lilith;
 
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
+import de.huxhorn.lilith.engine.impl.sourcemanager.ConcurrentRingQueue;
+import de.huxhorn.lilith.engine.impl.sourcemanager.OverflowPolicy;
 import de.huxhorn.lilith.prefs.LilithPreferences;
 import de.huxhorn.lilith.swing.ApplicationPreferences;
-import de.huxhorn.sulky.buffers.BlockingCircularBuffer;
+import java.io.File;
 import java.io.Serializable;
 import java.util.List;
 
 public class LilithBuffer<T extends Serializable>
-	extends BlockingCircularBuffer<EventWrapper<T>>
+	extends ConcurrentRingQueue<EventWrapper<T>>
 {
 	private final ApplicationPreferences applicationPreferences;
 
-	public LilithBuffer(ApplicationPreferences applicationPreferences, int bufferSize, int congestionDelay)
+	public LilithBuffer(ApplicationPreferences applicationPreferences, int bufferSize, OverflowPolicy overflowPolicy, File spillDirectory)
 	{
-		super(bufferSize, congestionDelay);
+		super(bufferSize, overflowPolicy, spillDirectory);
 		this.applicationPreferences = applicationPreferences;
 	}
 
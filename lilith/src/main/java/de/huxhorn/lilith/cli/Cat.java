@@ -20,6 +20,7 @@ package de.huxhorn.lilith.cli;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import de.huxhorn.lilith.tools.FileFollower;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -29,12 +30,21 @@ public class Cat
 {
 	public static final String NAME = "cat";
 
+	@Parameter(names = { "-f", "--keep-running" }, description = "keep printing entries appended to the given Lilith logfile.")
+	public boolean keepRunning = false;
+
+	@Parameter(names = { "--latency" }, description = "maximum time in milliseconds between a change of the file and printing appended entries if --keep-running is used.")
+	public long latency = FileFollower.DEFAULT_LATENCY;
+
 	@Parameter(names = { "-n", "--number-of-lines" }, description = "number of entries printed by 'cat'.")
 	public Integer numberOfLines = -1;
 
 	@Parameter(names = { "-p", "--pattern" }, description = "pattern used by 'cat'. See http://logback.qos.ch/manual/layouts.html#ClassicPatternLayout and http://logback.qos.ch/manual/layouts.html#AccessPatternLayout")
 	public String pattern;
 
+	@Parameter(names = { "--from" }, description = "print events starting with the first one at or after the given time, e.g. 2021-12-24T14:03:27 or milliseconds since epoch.")
+	public String from;
+
 	@Parameter(description = "'cat' the given Lilith logfile.")
 	public List<String> files=new ArrayList<>();
 }
@@ -19,6 +19,7 @@ package de.huxhorn.lilith.cli;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import de.huxhorn.lilith.tools.FileFollower;
 
 @Parameters(commandDescription = "Filter the given file.")
 public class Filter
@@ -28,6 +29,9 @@ public class Filter
 	@Parameter(names = { "-f", "--keep-running" }, description = "keep filtering the given Lilith logfile.")
 	public boolean keepRunning = false;
 
+	@Parameter(names = { "--latency" }, description = "maximum time in milliseconds between a change of the file and filtering appended entries if --keep-running is used.")
+	public long latency = FileFollower.DEFAULT_LATENCY;
+
 	@Parameter(names = { "-e", "--exclusive" }, description = "open input in exclusive read mode.")
 	public boolean exclusive = false;
 
@@ -46,6 +50,9 @@ public class Filter
 	@Parameter(names = { "-c", "--condition-file" }, description = "The condition file to be used for filtering.", required = true)
 	public String condition;
 
+	@Parameter(names = { "--from" }, description = "filter events starting with the first one at or after the given time, e.g. 2021-12-24T14:03:27 or milliseconds since epoch.")
+	public String from;
+
 	@Parameter(names = { "-s", "--search-string" }, description = "search string to be used in case of Script (in contrast to Condition instance) in condition file.")
 	public String searchString;
 }
@@ -20,6 +20,7 @@ package de.huxhorn.lilith.cli;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import de.huxhorn.lilith.tools.FileFollower;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,12 +33,18 @@ public class Tail
 	@Parameter(names = { "-f", "--keep-running" }, description = "keep tailing the given Lilith logfile.")
 	public boolean keepRunning = false;
 
+	@Parameter(names = { "--latency" }, description = "maximum time in milliseconds between a change of the file and printing appended entries if --keep-running is used.")
+	public long latency = FileFollower.DEFAULT_LATENCY;
+
 	@Parameter(names = { "-n", "--number-of-lines" }, description = "number of entries printed by 'tail'.")
 	public Integer numberOfLines = 20;
 
 	@Parameter(names = { "-p", "--pattern" }, description = "pattern used by 'tail'. See http://logback.qos.ch/manual/layouts.html#ClassicPatternLayout and http://logback.qos.ch/manual/layouts.html#AccessPatternLayout")
 	public String pattern;
 
-	@Parameter(description = "'tail' the given Lilith logfile.")
+	@Parameter(names = { "--from" }, description = "print events starting with the first one at or after the given time instead of the last entries, e.g. 2021-12-24T14:03:27 or milliseconds since epoch.")
+	public String from;
+
+	@Parameter(description = "'tail' the given Lilith logfiles.")
 	public List<String> files=new ArrayList<>();
 }
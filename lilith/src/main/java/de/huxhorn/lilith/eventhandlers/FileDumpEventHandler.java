@@ -20,8 +20,11 @@ package de.huxhorn.lilith.eventhandlers;
 
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.engine.EventHandler;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndexWriter;
 import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.buffers.FileBuffer;
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
@@ -35,12 +38,33 @@ public class FileDumpEventHandler<T extends Serializable>
 	private final Logger logger = LoggerFactory.getLogger(FileDumpEventHandler.class);
 
 	private final FileBuffer<EventWrapper<T>> fileBuffer;
+	private TimeIndexWriter timeIndexWriter;
 	private boolean enabled;
 
 	public FileDumpEventHandler(FileBuffer<EventWrapper<T>> fileBuffer)
+	{
+		this(fileBuffer, null);
+	}
+
+	/**
+	 * @param fileBuffer the buffer events are written to.
+	 * @param timeIndexFile the TimeIndex of fileBuffer that is written along with the events, may be null.
+	 */
+	public FileDumpEventHandler(FileBuffer<EventWrapper<T>> fileBuffer, File timeIndexFile)
 	{
 		this.fileBuffer = Objects.requireNonNull(fileBuffer, "fileBuffer must not be null!");
 		enabled = true;
+		if(timeIndexFile != null)
+		{
+			try
+			{
+				timeIndexWriter = TimeIndexWriter.open(timeIndexFile, fileBuffer);
+			}
+			catch(IOException ex)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Couldn't open time index {}!", timeIndexFile.getAbsolutePath(), ex);
+			}
+		}
 	}
 
 	@Override
@@ -71,10 +95,36 @@ public class FileDumpEventHandler<T extends Serializable>
 		if (!sanitized.isEmpty())
 		{
 			fileBuffer.addAll(sanitized);
+			writeTimeIndex(sanitized);
 			if (logger.isInfoEnabled()) logger.info("Wrote {} events to file.", events.size());
 		}
 	}
 
+	private void writeTimeIndex(List<EventWrapper<T>> events)
+	{
+		if(timeIndexWriter == null)
+		{
+			return;
+		}
+		try
+		{
+			timeIndexWriter.addAll(events, fileBuffer);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while writing time index!", ex);
+			try
+			{
+				timeIndexWriter.close();
+			}
+			catch(IOException closeEx)
+			{
+				if(logger.isDebugEnabled()) logger.debug("Exception while closing time index!", closeEx);
+			}
+			timeIndexWriter = null;
+		}
+	}
+
 	public Buffer<EventWrapper<T>> getBuffer()
 	{
 		return fileBuffer;
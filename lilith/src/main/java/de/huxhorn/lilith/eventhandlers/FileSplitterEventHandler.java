@@ -22,21 +22,47 @@ import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.engine.EventHandler;
 import de.huxhorn.lilith.engine.FileBufferFactory;
+import de.huxhorn.lilith.engine.IndexWriter;
+import de.huxhorn.lilith.engine.LogFileFactory;
 import de.huxhorn.lilith.engine.SourceManager;
 import de.huxhorn.lilith.engine.impl.EventSourceImpl;
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndexWriter;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndexWriter;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndexWriter;
 import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.Flush;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Writes events into one FileBuffer per source.
+ *
+ * If more than one writer thread is configured, the events of different sources are written in
+ * parallel. All events of a source are always written by the same thread so the order of events
+ * is retained per source. Sources are added to and removed from the SourceManager on the thread
+ * calling handle.
+ *
+ * A TimeIndex is written next to every file. A FieldIndex and a TextIndex are written, too, if enabled.
+ */
 public class FileSplitterEventHandler<T extends Serializable>
 	implements EventHandler<T>
 {
@@ -45,12 +71,96 @@ public class FileSplitterEventHandler<T extends Serializable>
 	private final FileBufferFactory<T> fileBufferFactory;
 	private final SourceManager<T> sourceManager;
 	private final ConcurrentMap<SourceIdentifier, FileBuffer<EventWrapper<T>>> fileBuffers;
+	private final ConcurrentMap<SourceIdentifier, WriteStatistics> writeStatistics;
+	private final ConcurrentMap<SourceIdentifier, List<OpenIndex>> indexWriters;
+	private final List<IndexType<T>> indexTypes;
+	private final boolean fieldIndexEnabled;
+	private final boolean textIndexEnabled;
+	private final ExecutorService[] writers;
 
 	public FileSplitterEventHandler(FileBufferFactory<T> fileBufferFactory, SourceManager<T> sourceManager)
+	{
+		this(fileBufferFactory, sourceManager, 1);
+	}
+
+	/**
+	 * @param fileBufferFactory the factory used to create the buffers of the sources.
+	 * @param sourceManager the SourceManager that is notified about added and removed sources.
+	 * @param writerThreads the number of threads used to write events. If it's 1, all events are written on the thread calling handle.
+	 */
+	public FileSplitterEventHandler(FileBufferFactory<T> fileBufferFactory, SourceManager<T> sourceManager, int writerThreads)
+	{
+		this(fileBufferFactory, sourceManager, writerThreads, false);
+	}
+
+	/**
+	 * @param fileBufferFactory the factory used to create the buffers of the sources.
+	 * @param sourceManager the SourceManager that is notified about added and removed sources.
+	 * @param writerThreads the number of threads used to write events. If it's 1, all events are written on the thread calling handle.
+	 * @param fieldIndexEnabled true, if a FieldIndex should be written next to every file.
+	 */
+	public FileSplitterEventHandler(FileBufferFactory<T> fileBufferFactory, SourceManager<T> sourceManager, int writerThreads, boolean fieldIndexEnabled)
+	{
+		this(fileBufferFactory, sourceManager, writerThreads, fieldIndexEnabled, false);
+	}
+
+	/**
+	 * @param fileBufferFactory the factory used to create the buffers of the sources.
+	 * @param sourceManager the SourceManager that is notified about added and removed sources.
+	 * @param writerThreads the number of threads used to write events. If it's 1, all events are written on the thread calling handle.
+	 * @param fieldIndexEnabled true, if a FieldIndex should be written next to every file.
+	 * @param textIndexEnabled true, if a TextIndex should be written next to every file.
+	 */
+	public FileSplitterEventHandler(FileBufferFactory<T> fileBufferFactory, SourceManager<T> sourceManager, int writerThreads, boolean fieldIndexEnabled, boolean textIndexEnabled)
 	{
 		this.fileBufferFactory = Objects.requireNonNull(fileBufferFactory, "fileBufferFactory must not be null!");
 		this.sourceManager = Objects.requireNonNull(sourceManager, "sourceManager must not be null!");
+		if(writerThreads <= 0)
+		{
+			throw new IllegalArgumentException("writerThreads must be greater than zero but was " + writerThreads + "!");
+		}
 		fileBuffers = new ConcurrentHashMap<>();
+		writeStatistics = new ConcurrentHashMap<>();
+		indexWriters = new ConcurrentHashMap<>();
+		indexTypes = new ArrayList<>(3);
+		indexTypes.add(new IndexType<>("time index", LogFileFactory::getTimeIndexFile, TimeIndexWriter::open));
+		if(fieldIndexEnabled)
+		{
+			indexTypes.add(new IndexType<>("field index", LogFileFactory::getFieldIndexFile, FieldIndexWriter::open));
+		}
+		if(textIndexEnabled)
+		{
+			indexTypes.add(new IndexType<>("text index", LogFileFactory::getTextIndexFile, TextIndexWriter::open));
+		}
+		this.fieldIndexEnabled = fieldIndexEnabled;
+		this.textIndexEnabled = textIndexEnabled;
+		if(writerThreads == 1)
+		{
+			writers = null;
+		}
+		else
+		{
+			writers = new ExecutorService[writerThreads];
+			for(int i = 0; i < writerThreads; i++)
+			{
+				writers[i] = Executors.newSingleThreadExecutor(new WriterThreadFactory("FileSplitter-Writer-" + i)); // NOPMD - AvoidInstantiatingObjectsInLoops
+			}
+		}
+	}
+
+	public int getWriterThreads()
+	{
+		return writers == null ? 1 : writers.length;
+	}
+
+	public boolean isFieldIndexEnabled()
+	{
+		return fieldIndexEnabled;
+	}
+
+	public boolean isTextIndexEnabled()
+	{
+		return textIndexEnabled;
 	}
 
 	@Override
@@ -75,35 +185,161 @@ public class FileSplitterEventHandler<T extends Serializable>
 		}
 		if(logger.isInfoEnabled()) logger.info("Split {} events to {} sources.", events.size(), splitEvents.size());
 
+		Map<SourceIdentifier, Future<?>> pendingWrites = new HashMap<>();
 		for(Map.Entry<SourceIdentifier, List<EventWrapper<T>>> entry : splitEvents.entrySet())
 		{
 			SourceIdentifier si = entry.getKey();
 			List<EventWrapper<T>> value = entry.getValue();
-			int valueCount = value.size();
-			// we know that valueCount is > 0 because otherwise it wouldn't exist.
-			EventWrapper<T> lastEvent = value.get(valueCount - 1);
-			boolean close = lastEvent.getEvent() == null;
 			// resolveBuffer is also creating the view
 			FileBuffer<EventWrapper<T>> buffer = resolveBuffer(si);
-			buffer.addAll(value);
-			if (logger.isInfoEnabled()) logger.info("Wrote {} events for source '{}'.", valueCount, si);
+			Runnable write = () -> write(si, buffer, value);
+			if(writers == null)
+			{
+				write.run();
+			}
+			else
+			{
+				ExecutorService writer = writers[Math.floorMod(si.hashCode(), writers.length)];
+				pendingWrites.put(si, writer.submit(write));
+			}
+		}
 
-			if(close)
+		for(Map.Entry<SourceIdentifier, Future<?>> entry : pendingWrites.entrySet())
+		{
+			try
 			{
-				if(sourceManager != null)
-				{
-					sourceManager.removeSource(si);
-				}
+				entry.getValue().get();
+			}
+			catch(InterruptedException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Interrupted while waiting for events of source '{}' to be written!", entry.getKey());
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch(ExecutionException e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Exception while writing events of source '{}'!", entry.getKey(), e.getCause());
+			}
+		}
 
-				File activeFile = fileBufferFactory.getLogFileFactory().getActiveFile(si);
+		for(Map.Entry<SourceIdentifier, List<EventWrapper<T>>> entry : splitEvents.entrySet())
+		{
+			List<EventWrapper<T>> value = entry.getValue();
+			// we know that value isn't empty because otherwise it wouldn't exist.
+			EventWrapper<T> lastEvent = value.get(value.size() - 1);
+			if(lastEvent.getEvent() == null)
+			{
+				closeSource(entry.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Returns the write statistics of all active sources.
+	 *
+	 * @return the write statistics of all active sources.
+	 */
+	public Map<SourceIdentifier, WriteStatistics> getWriteStatistics()
+	{
+		return new HashMap<>(writeStatistics);
+	}
 
-				if(activeFile.delete())
+	private void write(SourceIdentifier si, FileBuffer<EventWrapper<T>> buffer, List<EventWrapper<T>> value)
+	{
+		long start = System.nanoTime();
+		buffer.addAll(value);
+		List<OpenIndex> indexes = indexWriters.get(si);
+		if(indexes != null)
+		{
+			for(Iterator<OpenIndex> iterator = indexes.iterator(); iterator.hasNext(); )
+			{
+				OpenIndex index = iterator.next();
+				try
+				{
+					index.writer.addAll(value, buffer);
+				}
+				catch(IOException ex)
 				{
-					if(logger.isDebugEnabled()) logger.debug("Deleted active file {}.", activeFile.getAbsolutePath()); // NOPMD
+					if(logger.isWarnEnabled()) logger.warn("Exception while writing {} of source '{}'!", index.name, si, ex);
+					iterator.remove();
+					closeIndex(si, index);
 				}
-				fileBuffers.remove(si);
 			}
 		}
+		long nanos = System.nanoTime() - start;
+		writeStatistics.computeIfAbsent(si, key -> new WriteStatistics()).add(value.size(), nanos);
+		if(logger.isInfoEnabled()) logger.info("Wrote {} events for source '{}' in {} microseconds.", value.size(), si, TimeUnit.NANOSECONDS.toMicros(nanos));
+	}
+
+	private void closeSource(SourceIdentifier si)
+	{
+		if(sourceManager != null)
+		{
+			sourceManager.removeSource(si);
+		}
+
+		File activeFile = fileBufferFactory.getLogFileFactory().getActiveFile(si);
+
+		if(activeFile.delete())
+		{
+			if(logger.isDebugEnabled()) logger.debug("Deleted active file {}.", activeFile.getAbsolutePath()); // NOPMD
+		}
+		FileBuffer<EventWrapper<T>> buffer = fileBuffers.remove(si);
+		// write events still pending in a block-compressed buffer
+		Flush.flush(buffer);
+		writeStatistics.remove(si);
+		closeIndexes(si);
+	}
+
+	private void openIndexes(SourceIdentifier si, FileBuffer<EventWrapper<T>> buffer)
+	{
+		LogFileFactory logFileFactory = fileBufferFactory.getLogFileFactory();
+		List<OpenIndex> indexes = new ArrayList<>(indexTypes.size());
+		for(IndexType<T> indexType : indexTypes)
+		{
+			File indexFile = indexType.fileResolver.apply(logFileFactory, si);
+			if(indexFile == null)
+			{
+				continue;
+			}
+			try
+			{
+				indexes.add(new OpenIndex(indexType.name, indexType.opener.open(indexFile, buffer))); // NOPMD - AvoidInstantiatingObjectsInLoops
+			}
+			catch(IOException ex)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Couldn't open {} {}!", indexType.name, indexFile.getAbsolutePath(), ex);
+			}
+		}
+		if(!indexes.isEmpty())
+		{
+			indexWriters.put(si, indexes);
+		}
+	}
+
+	private void closeIndexes(SourceIdentifier si)
+	{
+		List<OpenIndex> indexes = indexWriters.remove(si);
+		if(indexes == null)
+		{
+			return;
+		}
+		for(OpenIndex index : indexes)
+		{
+			closeIndex(si, index);
+		}
+	}
+
+	private void closeIndex(SourceIdentifier si, OpenIndex index)
+	{
+		try
+		{
+			index.writer.close();
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while closing {} of source '{}'!", index.name, si, ex);
+		}
 	}
 
 	private FileBuffer<EventWrapper<T>> resolveBuffer(SourceIdentifier si)
@@ -117,11 +353,130 @@ public class FileSplitterEventHandler<T extends Serializable>
 			{
 				result = contained;
 			}
-			else if(sourceManager != null)
+			else
 			{
-				sourceManager.addSource(new EventSourceImpl<>(si, result, false));
+				openIndexes(si, result);
+				if(sourceManager != null)
+				{
+					sourceManager.addSource(new EventSourceImpl<>(si, result, false));
+				}
 			}
 		}
 		return result;
 	}
+
+	public static class WriteStatistics
+	{
+		private final AtomicLong writes = new AtomicLong();
+		private final AtomicLong events = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		void add(int eventCount, long nanos)
+		{
+			writes.incrementAndGet();
+			events.addAndGet(eventCount);
+			totalNanos.addAndGet(nanos);
+			for(;;)
+			{
+				long max = maxNanos.get();
+				if(nanos <= max || maxNanos.compareAndSet(max, nanos))
+				{
+					return;
+				}
+			}
+		}
+
+		public long getWrites()
+		{
+			return writes.get();
+		}
+
+		public long getEvents()
+		{
+			return events.get();
+		}
+
+		public long getTotalNanos()
+		{
+			return totalNanos.get();
+		}
+
+		public long getMaxNanos()
+		{
+			return maxNanos.get();
+		}
+
+		@Override
+		public String toString()
+		{
+			long writeCount = getWrites();
+			long total = getTotalNanos();
+			long average = writeCount == 0 ? 0 : total / writeCount;
+			return "WriteStatistics[writes=" + writeCount
+					+ ", events=" + getEvents()
+					+ ", totalMillis=" + TimeUnit.NANOSECONDS.toMillis(total)
+					+ ", averageMicros=" + TimeUnit.NANOSECONDS.toMicros(average)
+					+ ", maxMicros=" + TimeUnit.NANOSECONDS.toMicros(getMaxNanos())
+					+ "]";
+		}
+	}
+
+	private interface IndexOpener<T extends Serializable>
+	{
+		IndexWriter open(File indexFile, FileBuffer<EventWrapper<T>> buffer)
+			throws IOException;
+	}
+
+	/**
+	 * Describes an index that is written next to the file of every source.
+	 */
+	private static class IndexType<T extends Serializable>
+	{
+		private final String name;
+		private final BiFunction<LogFileFactory, SourceIdentifier, File> fileResolver;
+		private final IndexOpener<T> opener;
+
+		IndexType(String name, BiFunction<LogFileFactory, SourceIdentifier, File> fileResolver, IndexOpener<T> opener)
+		{
+			this.name = name;
+			this.fileResolver = fileResolver;
+			this.opener = opener;
+		}
+	}
+
+	/**
+	 * An index writer of a source. The list of writers of a source is only accessed by the thread
+	 * writing the events of that source or after all pending writes have finished.
+	 */
+	private static class OpenIndex
+	{
+		private final String name;
+		private final IndexWriter writer;
+
+		OpenIndex(String name, IndexWriter writer)
+		{
+			this.name = name;
+			this.writer = writer;
+		}
+	}
+
+	private static class WriterThreadFactory
+		implements ThreadFactory
+	{
+		private final String name;
+
+		WriterThreadFactory(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, name);
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
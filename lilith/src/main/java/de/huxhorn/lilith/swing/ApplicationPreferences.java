@@ -36,11 +36,14 @@ import de.huxhorn.lilith.conditions.ThreadGroupNameCondition;
 import de.huxhorn.lilith.conditions.ThreadNameCondition;
 import de.huxhorn.lilith.conditions.ThrowableCondition;
 import de.huxhorn.lilith.data.access.HttpStatus;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.engine.impl.sourcemanager.OverflowPolicy;
 import de.huxhorn.lilith.prefs.LilithPreferences;
 import de.huxhorn.lilith.swing.filefilters.GroovyConditionFileFilter;
 import de.huxhorn.lilith.swing.preferences.SavedCondition;
 import de.huxhorn.lilith.swing.table.ColorScheme;
+import de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer;
 import de.huxhorn.sulky.conditions.Condition;
 import de.huxhorn.sulky.swing.PersistentTableColumnModel;
 import java.awt.Color;
@@ -146,6 +149,17 @@ public class ApplicationPreferences
 	static final String RECENT_FILES_PROPERTY = "recentFiles";
 	static final String SHOWING_FULL_RECENT_PATH_PROPERTY="showingFullRecentPath";
 	private static final String DEFAULT_CONDITION_NAME_PROPERTY = "defaultConditionName";
+	static final String FILE_SPLITTER_WRITER_THREADS_PROPERTY = "fileSplitterWriterThreads";
+	static final String EVENT_QUEUE_OVERFLOW_POLICY_PROPERTY = "eventQueueOverflowPolicy";
+	static final String NIO_RECEIVERS_ENABLED_PROPERTY = "nioReceiversEnabled";
+	static final String VIRTUAL_THREAD_RECEIVERS_ENABLED_PROPERTY = "virtualThreadReceiversEnabled";
+	static final String FIELD_INDEX_ENABLED_PROPERTY = "fieldIndexEnabled";
+	static final String TEXT_INDEX_ENABLED_PROPERTY = "textIndexEnabled";
+	static final String MEMORY_MAPPED_FILES_ENABLED_PROPERTY = "memoryMappedFilesEnabled";
+	static final String BLOCK_COMPRESSION_ENABLED_PROPERTY = "blockCompressionEnabled";
+	static final String DEDUPLICATION_ENABLED_PROPERTY = "deduplicationEnabled";
+	static final String VIEW_CACHE_SIZE_PROPERTY = "viewCacheSize";
+	static final String INTERN_POOL_SIZE_PROPERTY = "internPoolSize";
 
 
 	public static final String LOGGING_LAYOUT_GLOBAL_XML_FILENAME = "loggingLayoutGlobal.xml";
@@ -2038,6 +2052,253 @@ public class ApplicationPreferences
 		return PREFERENCES.getDouble(SCALE_FACTOR_PROPERTY, 1.0d);
 	}
 
+	/**
+	 * Sets the number of threads used to write the events of different sources in parallel.
+	 * Changes take effect after restart.
+	 *
+	 * @param fileSplitterWriterThreads the number of writer threads.
+	 */
+	public void setFileSplitterWriterThreads(int fileSplitterWriterThreads)
+	{
+		if(fileSplitterWriterThreads <= 0)
+		{
+			throw new IllegalArgumentException("fileSplitterWriterThreads must be greater than zero but was " + fileSplitterWriterThreads + "!");
+		}
+		Object oldValue = getFileSplitterWriterThreads();
+		PREFERENCES.putInt(FILE_SPLITTER_WRITER_THREADS_PROPERTY, fileSplitterWriterThreads);
+		Object newValue = getFileSplitterWriterThreads();
+		propertyChangeSupport.firePropertyChange(FILE_SPLITTER_WRITER_THREADS_PROPERTY, oldValue, newValue);
+	}
+
+	public int getFileSplitterWriterThreads()
+	{
+		int defaultValue = Math.min(4, Runtime.getRuntime().availableProcessors());
+		int result = PREFERENCES.getInt(FILE_SPLITTER_WRITER_THREADS_PROPERTY, defaultValue);
+		if(result <= 0)
+		{
+			return defaultValue;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the policy used if the queue of incoming events is full.
+	 * Changes take effect after restart.
+	 *
+	 * @param eventQueueOverflowPolicy the overflow policy.
+	 */
+	public void setEventQueueOverflowPolicy(OverflowPolicy eventQueueOverflowPolicy)
+	{
+		Objects.requireNonNull(eventQueueOverflowPolicy, "eventQueueOverflowPolicy must not be null!");
+		Object oldValue = getEventQueueOverflowPolicy();
+		PREFERENCES.put(EVENT_QUEUE_OVERFLOW_POLICY_PROPERTY, eventQueueOverflowPolicy.toString());
+		Object newValue = getEventQueueOverflowPolicy();
+		propertyChangeSupport.firePropertyChange(EVENT_QUEUE_OVERFLOW_POLICY_PROPERTY, oldValue, newValue);
+	}
+
+	public OverflowPolicy getEventQueueOverflowPolicy()
+	{
+		String value = PREFERENCES.get(EVENT_QUEUE_OVERFLOW_POLICY_PROPERTY, OverflowPolicy.BLOCK.toString());
+		try
+		{
+			return OverflowPolicy.valueOf(value);
+		}
+		catch(IllegalArgumentException e)
+		{
+			return OverflowPolicy.BLOCK;
+		}
+	}
+
+	/**
+	 * Enables receiving events using non-blocking channels handled by a few selector threads
+	 * instead of threads per connection. Changes take effect after restart.
+	 *
+	 * @param nioReceiversEnabled true to enable NIO receivers.
+	 */
+	public void setNioReceiversEnabled(boolean nioReceiversEnabled)
+	{
+		Object oldValue = isNioReceiversEnabled();
+		PREFERENCES.putBoolean(NIO_RECEIVERS_ENABLED_PROPERTY, nioReceiversEnabled);
+		Object newValue = isNioReceiversEnabled();
+		propertyChangeSupport.firePropertyChange(NIO_RECEIVERS_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	public boolean isNioReceiversEnabled()
+	{
+		return PREFERENCES.getBoolean(NIO_RECEIVERS_ENABLED_PROPERTY, false);
+	}
+
+	/**
+	 * Enables the execution of event receivers by virtual threads if supported by the running JVM.
+	 * Changes take effect after restart.
+	 *
+	 * @param virtualThreadReceiversEnabled true to use virtual threads.
+	 */
+	public void setVirtualThreadReceiversEnabled(boolean virtualThreadReceiversEnabled)
+	{
+		Object oldValue = isVirtualThreadReceiversEnabled();
+		PREFERENCES.putBoolean(VIRTUAL_THREAD_RECEIVERS_ENABLED_PROPERTY, virtualThreadReceiversEnabled);
+		Object newValue = isVirtualThreadReceiversEnabled();
+		propertyChangeSupport.firePropertyChange(VIRTUAL_THREAD_RECEIVERS_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	public boolean isVirtualThreadReceiversEnabled()
+	{
+		return PREFERENCES.getBoolean(VIRTUAL_THREAD_RECEIVERS_ENABLED_PROPERTY, false);
+	}
+
+	/**
+	 * Enables writing an index of level, logger, thread name, markers and MDC next to every logging event file.
+	 * Filtering and find skip events that can't match according to that index.
+	 * Changes take effect after restart.
+	 *
+	 * @param fieldIndexEnabled true to write the index.
+	 */
+	public void setFieldIndexEnabled(boolean fieldIndexEnabled)
+	{
+		Object oldValue = isFieldIndexEnabled();
+		PREFERENCES.putBoolean(FIELD_INDEX_ENABLED_PROPERTY, fieldIndexEnabled);
+		Object newValue = isFieldIndexEnabled();
+		propertyChangeSupport.firePropertyChange(FIELD_INDEX_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	public boolean isFieldIndexEnabled()
+	{
+		return PREFERENCES.getBoolean(FIELD_INDEX_ENABLED_PROPERTY, false);
+	}
+
+	/**
+	 * Enables writing a trigram index of the text of logging events next to every logging event file.
+	 * Files opened later are indexed in the background. Text searches only check events containing
+	 * all trigrams of the search string according to that index.
+	 * Changes take effect after restart for active sources.
+	 *
+	 * @param textIndexEnabled true to write the index.
+	 */
+	public void setTextIndexEnabled(boolean textIndexEnabled)
+	{
+		Object oldValue = isTextIndexEnabled();
+		PREFERENCES.putBoolean(TEXT_INDEX_ENABLED_PROPERTY, textIndexEnabled);
+		Object newValue = isTextIndexEnabled();
+		propertyChangeSupport.firePropertyChange(TEXT_INDEX_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	public boolean isTextIndexEnabled()
+	{
+		return PREFERENCES.getBoolean(TEXT_INDEX_ENABLED_PROPERTY, false);
+	}
+
+	public void setMemoryMappedFilesEnabled(boolean memoryMappedFilesEnabled)
+	{
+		Object oldValue = isMemoryMappedFilesEnabled();
+		PREFERENCES.putBoolean(MEMORY_MAPPED_FILES_ENABLED_PROPERTY, memoryMappedFilesEnabled);
+		Object newValue = isMemoryMappedFilesEnabled();
+		propertyChangeSupport.firePropertyChange(MEMORY_MAPPED_FILES_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	public boolean isMemoryMappedFilesEnabled()
+	{
+		return PREFERENCES.getBoolean(MEMORY_MAPPED_FILES_ENABLED_PROPERTY, true);
+	}
+
+	public void setBlockCompressionEnabled(boolean blockCompressionEnabled)
+	{
+		Object oldValue = isBlockCompressionEnabled();
+		PREFERENCES.putBoolean(BLOCK_COMPRESSION_ENABLED_PROPERTY, blockCompressionEnabled);
+		Object newValue = isBlockCompressionEnabled();
+		propertyChangeSupport.firePropertyChange(BLOCK_COMPRESSION_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	/**
+	 * Returns whether new Lilith files are stored using FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS.
+	 *
+	 * Changes take effect after a restart.
+	 *
+	 * @return true if new files are block-compressed.
+	 */
+	public boolean isBlockCompressionEnabled()
+	{
+		return PREFERENCES.getBoolean(BLOCK_COMPRESSION_ENABLED_PROPERTY, false);
+	}
+
+	public void setDeduplicationEnabled(boolean deduplicationEnabled)
+	{
+		Object oldValue = isDeduplicationEnabled();
+		PREFERENCES.putBoolean(DEDUPLICATION_ENABLED_PROPERTY, deduplicationEnabled);
+		Object newValue = isDeduplicationEnabled();
+		propertyChangeSupport.firePropertyChange(DEDUPLICATION_ENABLED_PROPERTY, oldValue, newValue);
+	}
+
+	/**
+	 * Returns whether throwables and call stacks of new logging files are stored only once per file,
+	 * using FileConstants.DEDUPLICATION_VALUE_CONTENT_HASH.
+	 *
+	 * Changes take effect after a restart.
+	 *
+	 * @return true if throwables and call stacks of new logging files are deduplicated.
+	 */
+	public boolean isDeduplicationEnabled()
+	{
+		return PREFERENCES.getBoolean(DEDUPLICATION_ENABLED_PROPERTY, false);
+	}
+
+	/**
+	 * Sets the budget in bytes of the event cache of every view.
+	 * Changes take effect for views created afterwards.
+	 *
+	 * @param viewCacheSize the estimated size of the cached events in bytes.
+	 */
+	public void setViewCacheSize(long viewCacheSize)
+	{
+		if(viewCacheSize <= 0)
+		{
+			throw new IllegalArgumentException("viewCacheSize must be greater than zero but was " + viewCacheSize + "!");
+		}
+		Object oldValue = getViewCacheSize();
+		PREFERENCES.putLong(VIEW_CACHE_SIZE_PROPERTY, viewCacheSize);
+		Object newValue = getViewCacheSize();
+		propertyChangeSupport.firePropertyChange(VIEW_CACHE_SIZE_PROPERTY, oldValue, newValue);
+	}
+
+	public long getViewCacheSize()
+	{
+		long result = PREFERENCES.getLong(VIEW_CACHE_SIZE_PROPERTY, ReadAheadCachingBuffer.DEFAULT_BYTE_BUDGET);
+		if(result <= 0)
+		{
+			return ReadAheadCachingBuffer.DEFAULT_BYTE_BUDGET;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the maximum number of Strings and stack frames shared by decoded events.
+	 *
+	 * Changes take effect after a restart.
+	 *
+	 * @param internPoolSize the maximum size of the pool, 0 disables the pool.
+	 */
+	public void setInternPoolSize(int internPoolSize)
+	{
+		if(internPoolSize < 0)
+		{
+			throw new IllegalArgumentException("internPoolSize must not be negative but was " + internPoolSize + "!");
+		}
+		Object oldValue = getInternPoolSize();
+		PREFERENCES.putInt(INTERN_POOL_SIZE_PROPERTY, internPoolSize);
+		Object newValue = getInternPoolSize();
+		propertyChangeSupport.firePropertyChange(INTERN_POOL_SIZE_PROPERTY, oldValue, newValue);
+	}
+
+	public int getInternPoolSize()
+	{
+		int result = PREFERENCES.getInt(INTERN_POOL_SIZE_PROPERTY, InternPool.DEFAULT_MAX_SIZE);
+		if(result < 0)
+		{
+			return InternPool.DEFAULT_MAX_SIZE;
+		}
+		return result;
+	}
+
 	public void setMute(boolean mute)
 	{
 		Object oldValue = isMute();
@@ -322,6 +322,7 @@ public abstract class ComboPaneViewContainer<T extends Serializable>
 			if(logger.isDebugEnabled()) logger.debug("Removed view {}.", view);
 			if(dispose)
 			{
+				rememberFilterResult(view);
 				view.dispose();
 				Buffer<EventWrapper<T>> buffer = view.getEventSource().getBuffer();
 				Dispose.dispose(buffer);
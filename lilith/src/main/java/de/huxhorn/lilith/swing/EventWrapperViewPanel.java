@@ -27,16 +27,18 @@ import de.huxhorn.lilith.engine.EventSource;
 import de.huxhorn.lilith.swing.callables.CallableMetaData;
 import de.huxhorn.lilith.swing.callables.FindNextCallable;
 import de.huxhorn.lilith.swing.callables.FindPreviousCallable;
+import de.huxhorn.lilith.swing.callables.GoToTimeCallable;
 import de.huxhorn.lilith.swing.linklistener.OpenUrlLinkListener;
 import de.huxhorn.lilith.swing.table.EventWrapperViewTable;
+import de.huxhorn.lilith.swing.table.model.EventWrapperSizeEstimator;
 import de.huxhorn.lilith.swing.table.model.EventWrapperTableModel;
+import de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer;
 import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.buffers.DisposeOperation;
+import de.huxhorn.sulky.buffers.FileBuffer;
 import de.huxhorn.sulky.buffers.Flush;
 import de.huxhorn.sulky.buffers.FlushOperation;
-import de.huxhorn.sulky.buffers.SoftReferenceCachingBuffer;
 import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
-import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer;
 import de.huxhorn.sulky.conditions.And;
 import de.huxhorn.sulky.conditions.Condition;
 import de.huxhorn.sulky.formatting.HumanReadable;
@@ -142,9 +144,9 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 	private final SelectionHighlighter.CopyAction copyAction;
 	private final JScrollPane tableScrollPane;
 	private final FindPanel<T> findPanel;
-	private final SoftReferenceCachingBuffer<EventWrapper<T>> cachedBuffer;
 
 	private EventSource<T> eventSource;
+	private ReadAheadCachingBuffer<EventWrapper<T>> cachedBuffer;
 	private LoggingViewState state;
 	private boolean showingFilters;
 	private Condition filterCondition;
@@ -441,9 +443,15 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 		if(logger.isDebugEnabled()) logger.debug("Validate");
 	}
 
-	private SoftReferenceCachingBuffer<EventWrapper<T>> createCachedBuffer(Buffer<EventWrapper<T>> buffer)
+	private ReadAheadCachingBuffer<EventWrapper<T>> createCachedBuffer(Buffer<EventWrapper<T>> buffer)
 	{
-		return new SoftReferenceCachingBuffer<>(buffer);
+		long byteBudget = mainFrame.getApplicationPreferences().getViewCacheSize();
+		return new ReadAheadCachingBuffer<>(buffer, EventWrapperSizeEstimator::estimate, byteBudget);
+	}
+
+	ReadAheadCachingBuffer<EventWrapper<T>> getCachedBuffer()
+	{
+		return cachedBuffer;
 	}
 
 	void setEventSource(EventSource<T> eventSource)
@@ -451,7 +459,7 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 		Objects.requireNonNull(eventSource, "eventSource must not be null!");
 		EventSource oldValue = this.eventSource;
 		this.eventSource = eventSource;
-		SoftReferenceCachingBuffer<EventWrapper<T>> cachedBuffer = createCachedBuffer(eventSource.getBuffer());
+		cachedBuffer = createCachedBuffer(eventSource.getBuffer());
 		tableModel.setBuffer(cachedBuffer);
 		EventSource newValue = this.eventSource;
 		if(logger.isDebugEnabled()) logger.debug("EventSource\nOld: {}\nNew: {}", oldValue, newValue);
@@ -870,6 +878,11 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 
 	public void clear()
 	{
+		ViewContainer<T> container = resolveContainer();
+		if(container != null)
+		{
+			container.clearFilterResults();
+		}
 		tableModel.clear();
 		table.requestFocusInWindow();
 	}
@@ -906,6 +919,12 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 		}
 	}
 
+	void goToTime(long timestamp)
+	{
+		ProgressingCallable<Long> callable = new GoToTimeCallable<>(this, timestamp);
+		executeFind(callable, "Go to time", getSelectedRow(), null);
+	}
+
 	private void setSelectedRow(int row)
 	{
 		if(row > -1)
@@ -959,10 +978,10 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 	private long getSizeOnDisk()
 	{
 		Buffer buffer = getEventSource().getBuffer();
-		if(buffer instanceof CodecFileBuffer)
+		if(buffer instanceof FileBuffer)
 		{
-			CodecFileBuffer cfb = (CodecFileBuffer) buffer;
-			return cfb.getDataFile().length();
+			FileBuffer fileBuffer = (FileBuffer) buffer;
+			return fileBuffer.getDataFile().length();
 		}
 		return -1;
 	}
@@ -1386,8 +1405,11 @@ public abstract class EventWrapperViewPanel<T extends Serializable>
 
 		String description = "Executing '" + name + "'  on " +
 				metaData.get(CallableMetaData.FIND_TASK_META_SOURCE_IDENTIFIER) +
-				" starting at row " + currentRow + ".\n\n" +
-				metaData.get(CallableMetaData.FIND_TASK_META_CONDITION);
+				" starting at row " + currentRow + ".";
+		if(condition != null)
+		{
+			description = description + "\n\n" + metaData.get(CallableMetaData.FIND_TASK_META_CONDITION);
+		}
 
 		findResultListener.setCallable(callable);
 		Task<Long> task = taskManager.startTask(callable, name, description, metaData);
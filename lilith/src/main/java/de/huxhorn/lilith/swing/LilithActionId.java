@@ -71,6 +71,7 @@ public enum LilithActionId
 	FOCUS_EVENTS("Focus events", 'e', "Focus the table containing the events."),
 	FOCUS_MESSAGE("Focus message", 'm', "Focus detailed message view."),
 	GO_TO_SOURCE("Go to source", 'g', "Show source in IDE if Lilith plugin is installed."),
+	GO_TO_TIME("Go to time…", 't', "Select the first event at or after a given time."),
 	HELP("Help", 'h', null),
 	HELP_TOPICS("Help Topics…", 'h', null),
 	IMPORT("Import…", 'i', null),
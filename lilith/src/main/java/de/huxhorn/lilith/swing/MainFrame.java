@@ -32,6 +32,7 @@ import de.huxhorn.lilith.data.converter.ConverterRegistry;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.logback.converter.LogbackLoggingConverter;
 import de.huxhorn.lilith.debug.DebugDialog;
@@ -46,9 +47,17 @@ import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
 import de.huxhorn.lilith.engine.SourceManager;
 import de.huxhorn.lilith.engine.impl.EventSourceImpl;
 import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
+import de.huxhorn.lilith.engine.impl.blocks.BlockFormat;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
+import de.huxhorn.lilith.engine.impl.eventproducer.ReceiverThreads;
+import de.huxhorn.lilith.engine.impl.sourcemanager.ConcurrentRingQueue;
+import de.huxhorn.lilith.engine.impl.sourcemanager.DispatchStatistics;
+import de.huxhorn.lilith.engine.impl.sourcemanager.OverflowPolicy;
 import de.huxhorn.lilith.engine.impl.sourcemanager.SourceManagerImpl;
+import de.huxhorn.lilith.engine.impl.sourceproducer.AccessEventProtobufBatchServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.impl.sourceproducer.AccessEventProtobufServerSocketEventSourceProducer;
+import de.huxhorn.lilith.engine.impl.sourceproducer.LoggingEventProtobufBatchServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.impl.sourceproducer.LoggingEventProtobufServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.impl.sourceproducer.SerializableServerSocketEventSourceProducer;
 import de.huxhorn.lilith.engine.json.sourceproducer.LilithJsonMessageLoggingServerSocketEventSourceProducer;
@@ -85,6 +94,7 @@ import de.huxhorn.lilith.swing.callables.CleanAllInactiveCallable;
 import de.huxhorn.lilith.swing.callables.CleanObsoleteCallable;
 import de.huxhorn.lilith.swing.callables.ExportCallable;
 import de.huxhorn.lilith.swing.callables.IndexingCallable;
+import de.huxhorn.lilith.swing.callables.TextIndexingCallable;
 import de.huxhorn.lilith.swing.filefilters.DirectoryFilter;
 import de.huxhorn.lilith.swing.filefilters.LilithFileFilter;
 import de.huxhorn.lilith.swing.filefilters.LogFileFilter;
@@ -108,9 +118,9 @@ import de.huxhorn.lilith.swing.uiprocessors.ViewContainerProcessor;
 import de.huxhorn.lilith.swing.uiprocessors.VisibleContainerProcessor;
 import de.huxhorn.lilith.tray.TraySupport;
 import de.huxhorn.sulky.buffers.AppendOperation;
-import de.huxhorn.sulky.buffers.BlockingCircularBuffer;
 import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.Flush;
 import de.huxhorn.sulky.buffers.Reset;
 import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer;
 import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
@@ -159,6 +169,7 @@ import java.nio.file.Files;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -169,6 +180,7 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import javax.swing.Icon;
@@ -213,6 +225,11 @@ public class MainFrame
 	private static final ViewContainerProcessor RESET_CONTAINER_PROCESSOR = new ResetContainerProcessor();
 	private static final double SCALE_FACTOR = 0.05d;
 	private static final int EXPORT_WARNING_SIZE = 20_000;
+	private static final int EVENT_DISPATCH_MAX_BATCH_SIZE = 1000;
+	private static final int EVENT_DISPATCH_MAX_LINGER_MILLIS = 10;
+	private static final int EVENT_DISPATCH_PIPELINE_CAPACITY = 16;
+	private static final int EVENT_QUEUE_CAPACITY = 1024;
+	private static final String EVENT_QUEUE_SPILL_DIRECTORY = "queueSpill";
 	private static final boolean IS_MAC;
 	private static final boolean IS_WINDOWS;
 
@@ -257,6 +274,7 @@ public class MainFrame
 	private final ApplicationPreferences applicationPreferences;
 	private final DebugDialog debugDialog;
 	private final TaskManager<Long> longTaskManager;
+	private final ForkJoinPool filterPool;
 	private final ViewActions viewActions;
 	private final OpenPreviousDialog openInactiveLogsDialog;
 	private final HelpFrame helpFrame;
@@ -288,6 +306,11 @@ public class MainFrame
 	private boolean coloringWholeRow;
 	private FileDumpEventHandler<LoggingEvent> loggingFileDump;
 	private FileDumpEventHandler<AccessEvent> accessFileDump;
+	private FileSplitterEventHandler<LoggingEvent> fileSplitterLoggingEventHandler;
+	private FileSplitterEventHandler<AccessEvent> fileSplitterAccessEventHandler;
+	private LilithBuffer<LoggingEvent> loggingEventQueue;
+	private LilithBuffer<AccessEvent> accessEventQueue;
+	private NioReceiverGroup nioReceiverGroup;
 	private Condition findActiveCondition;
 	private TraySupport traySupport; // may be null
 	private boolean usingThymeleaf;
@@ -342,6 +365,9 @@ public class MainFrame
 		longTaskManager.setUsingEventQueue(true);
 		longTaskManager.startUp();
 		longTaskManager.addTaskListener(new MainTaskListener());
+		filterPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		int internPoolSize = this.applicationPreferences.getInternPoolSize();
+		InternPool.setShared(internPoolSize > 0 ? new InternPool(internPoolSize) : null);
 
 		startupApplicationPath = this.applicationPreferences.getStartupApplicationPath();
 
@@ -351,16 +377,20 @@ public class MainFrame
 		Map<String, String> loggingMetaData = new HashMap<>();
 		loggingMetaData.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_LOGGING);
 		loggingMetaData.put(FileConstants.CONTENT_FORMAT_KEY, FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF);
-		loggingMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
-		// TODO: configurable format and compressed
+		putCompression(loggingMetaData, this.applicationPreferences.isBlockCompressionEnabled());
+		if(this.applicationPreferences.isDeduplicationEnabled())
+		{
+			loggingMetaData.put(FileConstants.DEDUPLICATION_KEY, FileConstants.DEDUPLICATION_VALUE_CONTENT_HASH);
+		}
+		// TODO: configurable format
 
 		loggingFileBufferFactory = new LoggingFileBufferFactory(loggingFileFactory, loggingMetaData);
 
 		Map<String, String> accessMetaData = new HashMap<>();
 		accessMetaData.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_ACCESS);
 		accessMetaData.put(FileConstants.CONTENT_FORMAT_KEY, FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF);
-		accessMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
-		// TODO: configurable format and compressed
+		putCompression(accessMetaData, this.applicationPreferences.isBlockCompressionEnabled());
+		// TODO: configurable format
 
 		accessFileBufferFactory = new AccessFileBufferFactory(accessFileFactory, accessMetaData);
 
@@ -555,15 +585,22 @@ public class MainFrame
 		setSplashStatusText("Creating global views…");
 		SourceIdentifier globalSourceIdentifier = new SourceIdentifier(GLOBAL_SOURCE_IDENTIFIER_NAME, null);
 
-		loggingFileDump = new FileDumpEventHandler<>(loggingFileBufferFactory.createActiveBuffer(globalSourceIdentifier));
-		accessFileDump = new FileDumpEventHandler<>(accessFileBufferFactory.createActiveBuffer(globalSourceIdentifier));
+		loggingFileDump = new FileDumpEventHandler<>(loggingFileBufferFactory.createActiveBuffer(globalSourceIdentifier), loggingFileFactory.getTimeIndexFile(globalSourceIdentifier));
+		accessFileDump = new FileDumpEventHandler<>(accessFileBufferFactory.createActiveBuffer(globalSourceIdentifier), accessFileFactory.getTimeIndexFile(globalSourceIdentifier));
 
 		setGlobalLoggingEnabled(applicationPreferences.isGlobalLoggingEnabled());
 
-		BlockingCircularBuffer<EventWrapper<LoggingEvent>> loggingEventQueue = new LilithBuffer<>(applicationPreferences, 1000);
-		BlockingCircularBuffer<EventWrapper<AccessEvent>> accessEventQueue = new LilithBuffer<>(applicationPreferences, 1000);
+		OverflowPolicy overflowPolicy = applicationPreferences.getEventQueueOverflowPolicy();
+		File spillDirectory = new File(startupApplicationPath, EVENT_QUEUE_SPILL_DIRECTORY);
+		if(logger.isInfoEnabled()) logger.info("Using event queue overflow policy {}.", overflowPolicy);
+		loggingEventQueue = new LilithBuffer<>(applicationPreferences, EVENT_QUEUE_CAPACITY, overflowPolicy, new File(spillDirectory, "logging"));
+		accessEventQueue = new LilithBuffer<>(applicationPreferences, EVENT_QUEUE_CAPACITY, overflowPolicy, new File(spillDirectory, "access"));
 
 		SourceManagerImpl<LoggingEvent> lsm = new SourceManagerImpl<>(loggingEventQueue);
+		lsm.setMaxBatchSize(EVENT_DISPATCH_MAX_BATCH_SIZE);
+		lsm.setMaxLingerMillis(EVENT_DISPATCH_MAX_LINGER_MILLIS);
+		lsm.setPipelineCapacity(EVENT_DISPATCH_PIPELINE_CAPACITY);
+		lsm.setPipelined(true);
 		// add global view
 		EventSource<LoggingEvent> globalLoggingEventSource = new EventSourceImpl<>(globalSourceIdentifier, loggingFileDump.getBuffer(), true);
 		lsm.addSource(globalLoggingEventSource);
@@ -576,6 +613,10 @@ public class MainFrame
 		setLoggingEventSourceManager(lsm);
 
 		SourceManagerImpl<AccessEvent> asm = new SourceManagerImpl<>(accessEventQueue);
+		asm.setMaxBatchSize(EVENT_DISPATCH_MAX_BATCH_SIZE);
+		asm.setMaxLingerMillis(EVENT_DISPATCH_MAX_LINGER_MILLIS);
+		asm.setPipelineCapacity(EVENT_DISPATCH_PIPELINE_CAPACITY);
+		asm.setPipelined(true);
 		// add global view
 		EventSource<AccessEvent> globalAccessEventSource = new EventSourceImpl<>(globalSourceIdentifier, accessFileDump.getBuffer(), true);
 		asm.addSource(globalAccessEventSource);
@@ -591,6 +632,14 @@ public class MainFrame
 
 		setSplashStatusText("Starting event receivers…");
 
+		ReceiverThreads.setVirtualThreadsEnabled(applicationPreferences.isVirtualThreadReceiversEnabled());
+
+		if(applicationPreferences.isNioReceiversEnabled())
+		{
+			nioReceiverGroup = new NioReceiverGroup();
+			if(logger.isInfoEnabled()) logger.info("Using {} for event receivers.", nioReceiverGroup);
+		}
+
 		try
 		{
 			EventSourceProducer<LoggingEvent> producer
@@ -617,7 +666,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LoggingEventProtobufServerSocketEventSourceProducer
-				(ClassicMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true);
+				(ClassicMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 			// TODO: senderService.addLoggingProducer(producer);
@@ -631,7 +680,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LoggingEventProtobufServerSocketEventSourceProducer
-				(ClassicMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false);
+				(ClassicMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 			// TODO: senderService.addLoggingProducer(producer);
@@ -641,12 +690,25 @@ public class MainFrame
 			if(logger.isWarnEnabled()) logger.warn("Exception while creating event producer!", ex);
 		}
 
+		try
+		{
+			EventSourceProducer<LoggingEvent> producer
+				= new LoggingEventProtobufBatchServerSocketEventSourceProducer
+				(ClassicMultiplexSocketAppender.BATCHED_DEFAULT_PORT, nioReceiverGroup);
+
+			loggingEventSourceManager.addEventSourceProducer(producer);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while creating event producer!", ex);
+		}
+
 
 		try
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithXmlMessageLoggingServerSocketEventSourceProducer
-				(ClassicXmlMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false);
+				(ClassicXmlMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -659,7 +721,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithXmlMessageLoggingServerSocketEventSourceProducer
-				(ClassicXmlMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true);
+				(ClassicXmlMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -673,7 +735,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithJsonMessageLoggingServerSocketEventSourceProducer
-				(ClassicJsonMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false);
+				(ClassicJsonMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -686,7 +748,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithJsonMessageLoggingServerSocketEventSourceProducer
-				(ClassicJsonMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true);
+				(ClassicJsonMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -699,7 +761,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithXmlStreamLoggingServerSocketEventSourceProducer
-				(ZeroDelimitedClassicXmlMultiplexSocketAppender.DEFAULT_PORT);
+				(ZeroDelimitedClassicXmlMultiplexSocketAppender.DEFAULT_PORT, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -712,7 +774,7 @@ public class MainFrame
 		{
 			EventSourceProducer<LoggingEvent> producer
 				= new LilithJsonStreamLoggingServerSocketEventSourceProducer
-				(ZeroDelimitedClassicJsonMultiplexSocketAppender.DEFAULT_PORT);
+				(ZeroDelimitedClassicJsonMultiplexSocketAppender.DEFAULT_PORT, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -736,7 +798,7 @@ public class MainFrame
 		try
 		{
 			EventSourceProducer<LoggingEvent> producer
-					= new Log4j2JsonServerSocketEventSourceProducer(Log4j2Ports.JSON);
+					= new Log4j2JsonServerSocketEventSourceProducer(Log4j2Ports.JSON, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -748,7 +810,7 @@ public class MainFrame
 		try
 		{
 			EventSourceProducer<LoggingEvent> producer
-					= new Log4j2YamlServerSocketEventSourceProducer(Log4j2Ports.YAML);
+					= new Log4j2YamlServerSocketEventSourceProducer(Log4j2Ports.YAML, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -760,7 +822,7 @@ public class MainFrame
 		try
 		{
 			EventSourceProducer<LoggingEvent> producer
-					= new Log4j2XmlServerSocketEventSourceProducer(Log4j2Ports.XML);
+					= new Log4j2XmlServerSocketEventSourceProducer(Log4j2Ports.XML, nioReceiverGroup);
 
 			loggingEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -783,7 +845,7 @@ public class MainFrame
 		{
 			EventSourceProducer<AccessEvent> producer
 				= new AccessEventProtobufServerSocketEventSourceProducer
-				(AccessMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true);
+				(AccessMultiplexSocketAppender.COMPRESSED_DEFAULT_PORT, true, nioReceiverGroup);
 
 			accessEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -796,7 +858,20 @@ public class MainFrame
 		{
 			EventSourceProducer<AccessEvent> producer
 				= new AccessEventProtobufServerSocketEventSourceProducer
-				(AccessMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false);
+				(AccessMultiplexSocketAppender.UNCOMPRESSED_DEFAULT_PORT, false, nioReceiverGroup);
+
+			accessEventSourceManager.addEventSourceProducer(producer);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while creating event producer!", ex);
+		}
+
+		try
+		{
+			EventSourceProducer<AccessEvent> producer
+				= new AccessEventProtobufBatchServerSocketEventSourceProducer
+				(AccessMultiplexSocketAppender.BATCHED_DEFAULT_PORT, nioReceiverGroup);
 
 			accessEventSourceManager.addEventSourceProducer(producer);
 		}
@@ -810,8 +885,8 @@ public class MainFrame
 		AlarmSoundLoggingEventHandler loggingEventAlarmSound = new AlarmSoundLoggingEventHandler();
 		loggingEventAlarmSound.setSounds(sounds);
 
-		FileSplitterEventHandler<LoggingEvent> fileSplitterLoggingEventHandler =
-			new FileSplitterEventHandler<>(loggingFileBufferFactory, loggingEventSourceManager);
+		fileSplitterLoggingEventHandler =
+			new FileSplitterEventHandler<>(loggingFileBufferFactory, loggingEventSourceManager, applicationPreferences.getFileSplitterWriterThreads(), applicationPreferences.isFieldIndexEnabled(), applicationPreferences.isTextIndexEnabled());
 
 		List<EventHandler<LoggingEvent>> loggingHandlers = new ArrayList<>();
 
@@ -824,8 +899,8 @@ public class MainFrame
 
 		List<EventHandler<AccessEvent>> accessHandlers = new ArrayList<>();
 
-		FileSplitterEventHandler<AccessEvent> fileSplitterAccessEventHandler =
-			new FileSplitterEventHandler<>(accessFileBufferFactory, accessEventSourceManager);
+		fileSplitterAccessEventHandler =
+			new FileSplitterEventHandler<>(accessFileBufferFactory, accessEventSourceManager, applicationPreferences.getFileSplitterWriterThreads());
 		AlarmSoundAccessEventHandler accessEventAlarmSound = new AlarmSoundAccessEventHandler();
 		accessEventAlarmSound.setSounds(sounds);
 		accessHandlers.add(accessEventAlarmSound);
@@ -1470,6 +1545,109 @@ public class MainFrame
 		cleanAllInactiveLogs();
 	}
 
+	/**
+	 * Creates a textual report of the internal statistics, e.g. event dispatching.
+	 *
+	 * @return the statistics report.
+	 */
+	public String createStatisticsReport()
+	{
+		StringBuilder result = new StringBuilder();
+		appendQueueStatistics(result, "Logging", loggingEventQueue);
+		appendQueueStatistics(result, "Access", accessEventQueue);
+		result.append("Receiver threads:\nvirtual=").append(ReceiverThreads.getVirtualThreadCounter())
+				.append(", platform=").append(ReceiverThreads.getPlatformThreadCounter())
+				.append("\n\n");
+		if(nioReceiverGroup != null)
+		{
+			result.append("NIO receivers:\n").append(nioReceiverGroup).append("\n\n");
+		}
+		appendDispatchStatistics(result, "Logging", loggingEventSourceManager);
+		appendDispatchStatistics(result, "Access", accessEventSourceManager);
+		appendWriteStatistics(result, "Logging", fileSplitterLoggingEventHandler);
+		appendWriteStatistics(result, "Access", fileSplitterAccessEventHandler);
+		appendViewCacheStatistics(result, "Logging", getSortedLoggingViews().values());
+		appendViewCacheStatistics(result, "Access", getSortedAccessViews().values());
+		InternPool internPool = InternPool.getShared();
+		if(internPool != null)
+		{
+			result.append("Intern pool:\n").append(internPool).append("\n\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Resets the event dispatching statistics contained in the statistics report.
+	 */
+	public void resetStatistics()
+	{
+		resetDispatchStatistics(loggingEventSourceManager);
+		resetDispatchStatistics(accessEventSourceManager);
+	}
+
+	private static void appendQueueStatistics(StringBuilder builder, String name, ConcurrentRingQueue<?> queue)
+	{
+		if(queue == null)
+		{
+			return;
+		}
+		builder.append(name).append(" event queue:\n").append(queue).append("\n\n");
+	}
+
+	private static void appendWriteStatistics(StringBuilder builder, String name, FileSplitterEventHandler<?> fileSplitter)
+	{
+		if(fileSplitter == null)
+		{
+			return;
+		}
+		builder.append(name).append(" source writing (").append(fileSplitter.getWriterThreads()).append(" threads):\n");
+		for(Map.Entry<SourceIdentifier, FileSplitterEventHandler.WriteStatistics> entry : fileSplitter.getWriteStatistics().entrySet())
+		{
+			builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+		}
+		builder.append('\n');
+	}
+
+	private static void appendViewCacheStatistics(StringBuilder builder, String name, Collection<? extends ViewContainer<?>> viewContainers)
+	{
+		if(viewContainers.isEmpty())
+		{
+			return;
+		}
+		builder.append(name).append(" view caches:\n");
+		for(ViewContainer<?> viewContainer : viewContainers)
+		{
+			for(int i = 0; i < viewContainer.getViewCount(); i++)
+			{
+				EventWrapperViewPanel<?> view = viewContainer.getViewAt(i);
+				builder.append(view.getEventSource().getSourceIdentifier());
+				if(view.getEventSource().getFilter() != null)
+				{
+					builder.append(" (filtered)");
+				}
+				builder.append(": ").append(view.getCachedBuffer()).append('\n');
+			}
+		}
+		builder.append('\n');
+	}
+
+	private static void appendDispatchStatistics(StringBuilder builder, String name, SourceManager<?> sourceManager)
+	{
+		if(sourceManager instanceof SourceManagerImpl)
+		{
+			DispatchStatistics statistics = ((SourceManagerImpl<?>) sourceManager).getDispatchStatistics();
+			builder.append(name).append(" event dispatching:\n").append(statistics).append('\n');
+		}
+	}
+
+	private static void resetDispatchStatistics(SourceManager<?> sourceManager)
+	{
+		if(sourceManager instanceof SourceManagerImpl)
+		{
+			((SourceManagerImpl<?>) sourceManager).resetDispatchStatistics();
+		}
+	}
+
 	public boolean openUriString(String uri)
 	{
 		if(uri.startsWith(HELP_URI_PREFIX))
@@ -1578,10 +1756,10 @@ public class MainFrame
 				if(es != null)
 				{
 					Buffer<EventWrapper<LoggingEvent>> buffer = es.getBuffer();
-					if(buffer instanceof CodecFileBuffer)
+					if(buffer instanceof FileBuffer)
 					{
-						CodecFileBuffer cfb = (CodecFileBuffer) buffer;
-						if(dataFile.equals(cfb.getDataFile()))
+						FileBuffer fileBuffer = (FileBuffer) buffer;
+						if(dataFile.equals(fileBuffer.getDataFile()))
 						{
 							return view;
 						}
@@ -1601,10 +1779,10 @@ public class MainFrame
 				if(es != null)
 				{
 					Buffer<EventWrapper<AccessEvent>> buffer = es.getBuffer();
-					if(buffer instanceof CodecFileBuffer)
+					if(buffer instanceof FileBuffer)
 					{
-						CodecFileBuffer cfb = (CodecFileBuffer) buffer;
-						if(dataFile.equals(cfb.getDataFile()))
+						FileBuffer fileBuffer = (FileBuffer) buffer;
+						if(dataFile.equals(fileBuffer.getDataFile()))
 						{
 							return view;
 						}
@@ -1660,7 +1838,7 @@ public class MainFrame
 			{
 				case FileConstants.CONTENT_TYPE_VALUE_LOGGING:
 				{
-					FileBuffer<EventWrapper<LoggingEvent>> buffer = loggingFileBufferFactory.createBuffer(dataFile, indexFile, usedMetaData);
+					FileBuffer<EventWrapper<LoggingEvent>> buffer = createReadOnlyBuffer(loggingFileBufferFactory, dataFile, indexFile, usedMetaData);
 					EventSource<LoggingEvent> eventSource = new EventSourceImpl<>(si, buffer, false);
 					ViewContainer<LoggingEvent> viewContainer = loggingEventViewManager.retrieveViewContainer(eventSource);
 					EventWrapperViewPanel<LoggingEvent> panel = viewContainer.getDefaultView();
@@ -1675,11 +1853,17 @@ public class MainFrame
 					}
 					showLoggingView(eventSource);
 					applicationPreferences.addRecentFile(dataFile);
+					if(applicationPreferences.isTextIndexEnabled())
+					{
+						String name = "Text indexing Lilith file";
+						String description = "Building text index of '" + dataFile.getAbsolutePath() + "'…";
+						longTaskManager.startTask(new TextIndexingCallable<>(buffer), name, description);
+					}
 					break;
 				}
 				case FileConstants.CONTENT_TYPE_VALUE_ACCESS:
 				{
-					FileBuffer<EventWrapper<AccessEvent>> buffer = accessFileBufferFactory.createBuffer(dataFile, indexFile, usedMetaData);
+					FileBuffer<EventWrapper<AccessEvent>> buffer = createReadOnlyBuffer(accessFileBufferFactory, dataFile, indexFile, usedMetaData);
 					EventSource<AccessEvent> eventSource = new EventSourceImpl<>(si, buffer, false);
 					ViewContainer<AccessEvent> viewContainer = accessEventViewManager.retrieveViewContainer(eventSource);
 					EventWrapperViewPanel<AccessEvent> panel = viewContainer.getDefaultView();
@@ -1827,6 +2011,16 @@ public class MainFrame
 		return longTaskManager;
 	}
 
+	/**
+	 * Returns the pool used to evaluate conditions in parallel.
+	 *
+	 * @return the pool used to evaluate conditions in parallel.
+	 */
+	public ForkJoinPool getFilterPool()
+	{
+		return filterPool;
+	}
+
 	public FileBufferFactory<AccessEvent> getAccessFileBufferFactory()
 	{
 		return accessFileBufferFactory;
@@ -1865,7 +2059,7 @@ public class MainFrame
 
 	void openPreviousLogging(SourceIdentifier si)
 	{
-		FileBuffer<EventWrapper<LoggingEvent>> buffer = loggingFileBufferFactory.createBuffer(si);
+		FileBuffer<EventWrapper<LoggingEvent>> buffer = createReadOnlyBuffer(loggingFileBufferFactory, si);
 		EventSource<LoggingEvent> eventSource = new EventSourceImpl<>(si, buffer, false);
 
 		ViewContainer<LoggingEvent> container = retrieveLoggingViewContainer(eventSource);
@@ -1876,7 +2070,7 @@ public class MainFrame
 
 	void openPreviousAccess(SourceIdentifier si)
 	{
-		FileBuffer<EventWrapper<AccessEvent>> buffer = accessFileBufferFactory.createBuffer(si);
+		FileBuffer<EventWrapper<AccessEvent>> buffer = createReadOnlyBuffer(accessFileBufferFactory, si);
 		EventSource<AccessEvent> eventSource = new EventSourceImpl<>(si, buffer, false);
 
 		ViewContainer<AccessEvent> container = retrieveAccessViewContainer(eventSource);
@@ -1885,6 +2079,52 @@ public class MainFrame
 		showAccessView(eventSource);
 	}
 
+	private static void putCompression(Map<String, String> metaData, boolean blockCompression)
+	{
+		if(blockCompression)
+		{
+			metaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS);
+			metaData.put(FileConstants.BLOCK_SIZE_KEY, String.valueOf(BlockFormat.DEFAULT_BLOCK_SIZE));
+			metaData.put(FileConstants.DICTIONARY_KEY, FileConstants.DICTIONARY_VALUE_FIRST_BLOCK);
+		}
+		else
+		{
+			metaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
+		}
+	}
+
+	/**
+	 * Creates a memory-mapped buffer for a source that isn't written to by Lilith anymore.
+	 *
+	 * Falls back to a CodecFileBuffer if memory-mapped files are disabled or the file header is invalid.
+	 */
+	private <T extends Serializable> FileBuffer<EventWrapper<T>> createReadOnlyBuffer(FileBufferFactory<T> fileBufferFactory, SourceIdentifier si)
+	{
+		LogFileFactory logFileFactory = fileBufferFactory.getLogFileFactory();
+		if(applicationPreferences.isMemoryMappedFilesEnabled())
+		{
+			FileBuffer<EventWrapper<T>> result = fileBufferFactory.createReadOnlyBuffer(logFileFactory.getDataFile(si), logFileFactory.getIndexFile(si));
+			if(result != null)
+			{
+				return result;
+			}
+		}
+		return fileBufferFactory.createBuffer(si);
+	}
+
+	private <T extends Serializable> FileBuffer<EventWrapper<T>> createReadOnlyBuffer(FileBufferFactory<T> fileBufferFactory, File dataFile, File indexFile, Map<String, String> usedMetaData)
+	{
+		if(applicationPreferences.isMemoryMappedFilesEnabled())
+		{
+			FileBuffer<EventWrapper<T>> result = fileBufferFactory.createReadOnlyBuffer(dataFile, indexFile);
+			if(result != null)
+			{
+				return result;
+			}
+		}
+		return fileBufferFactory.createBuffer(dataFile, indexFile, usedMetaData);
+	}
+
 	private void updateStatus()
 	{
 		StringBuilder statusText = new StringBuilder(100);
@@ -2486,6 +2726,35 @@ public class MainFrame
 		}
 	}
 
+	/**
+	 * Writes events that are still pending in block-compressed buffers.
+	 */
+	private void flushSourceBuffers()
+	{
+		if(loggingEventSourceManager != null)
+		{
+			for(EventSource<LoggingEvent> current : loggingEventSourceManager.getSources())
+			{
+				Flush.flush(current.getBuffer());
+			}
+		}
+		if(accessEventSourceManager != null)
+		{
+			for(EventSource<AccessEvent> current : accessEventSourceManager.getSources())
+			{
+				Flush.flush(current.getBuffer());
+			}
+		}
+		if(loggingFileDump != null)
+		{
+			Flush.flush(loggingFileDump.getBuffer());
+		}
+		if(accessFileDump != null)
+		{
+			Flush.flush(accessFileDump.getBuffer());
+		}
+	}
+
 	@SuppressWarnings("PMD.DoNotTerminateVM")
 	public void exit()
 	{
@@ -2510,7 +2779,9 @@ public class MainFrame
 		applicationPreferences.setPreviousExportPath(exportFileChooser.getCurrentDirectory());
 		applicationPreferences.setPreviousOpenPath(openFileChooser.getCurrentDirectory());
 		applicationPreferences.flush();
+		flushSourceBuffers();
 		longTaskManager.shutDown();
+		filterPool.shutdownNow();
 		System.exit(0);
 	}
 
@@ -3061,6 +3332,10 @@ public class MainFrame
 		{
 			File dataFile = fileFactory.getDataFile(si);
 			File indexFile = fileFactory.getIndexFile(si);
+			File timeIndexFile = fileFactory.getTimeIndexFile(si);
+			File fieldIndexFile = fileFactory.getFieldIndexFile(si);
+			File textIndexFile = fileFactory.getTextIndexFile(si);
+			File contentStoreFile = fileFactory.getContentStoreFile(si);
 			if(dataFile.delete())
 			{
 				if(logger.isInfoEnabled()) logger.info("Deleted {}", dataFile); // NOPMD
@@ -3069,6 +3344,22 @@ public class MainFrame
 			{
 				if(logger.isInfoEnabled()) logger.info("Deleted {}", indexFile); // NOPMD
 			}
+			if(timeIndexFile.delete())
+			{
+				if(logger.isInfoEnabled()) logger.info("Deleted {}", timeIndexFile); // NOPMD
+			}
+			if(fieldIndexFile.delete())
+			{
+				if(logger.isInfoEnabled()) logger.info("Deleted {}", fieldIndexFile); // NOPMD
+			}
+			if(textIndexFile.delete())
+			{
+				if(logger.isInfoEnabled()) logger.info("Deleted {}", textIndexFile); // NOPMD
+			}
+			if(contentStoreFile.delete())
+			{
+				if(logger.isInfoEnabled()) logger.info("Deleted {}", contentStoreFile); // NOPMD
+			}
 		}
 	}
 
@@ -27,6 +27,7 @@ import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.engine.EventSource;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex;
 import de.huxhorn.lilith.services.clipboard.AccessRequestHeadersFormatter;
 import de.huxhorn.lilith.services.clipboard.AccessRequestParametersFormatter;
 import de.huxhorn.lilith.services.clipboard.AccessRequestUriFormatter;
@@ -77,6 +78,9 @@ import java.io.File;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -84,6 +88,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.SortedMap;
@@ -99,6 +104,7 @@ import javax.swing.JInternalFrame;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JPopupMenu;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
@@ -124,6 +130,7 @@ public final class ViewActions
 
 	private static final char ALT_SYMBOL = '\u2325';
 	private static final char COMMAND_SYMBOL = '\u2318';
+	private static final DateTimeFormatter GO_TO_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).withZone(ZoneId.systemDefault());
 
 	static
 	{
@@ -157,6 +164,7 @@ public final class ViewActions
 	private final FindPreviousActiveAction findPreviousActiveAction;
 	private final FindPreviousActiveAction findPreviousActiveToolBarAction;
 	private final FindNextActiveAction findNextActiveAction;
+	private final GoToTimeAction goToTimeAction;
 	private final FindNextActiveAction findNextActiveToolBarAction;
 	private final ResetFindAction resetFindAction;
 	private final TailAction tailMenuAction;
@@ -291,6 +299,7 @@ public final class ViewActions
 		findNextMenuAction = new FindNextAction(false);
 		findPreviousActiveAction = new FindPreviousActiveAction(false);
 		findNextActiveAction = new FindNextActiveAction(false);
+		goToTimeAction = new GoToTimeAction();
 		resetFindAction = new ResetFindAction();
 
 		// View
@@ -437,6 +446,7 @@ public final class ViewActions
 		searchMenu.add(findNextMenuAction);
 		searchMenu.add(findPreviousActiveAction);
 		searchMenu.add(findNextActiveAction);
+		searchMenu.add(goToTimeAction);
 		searchMenu.addSeparator();
 		searchMenu.add(saveConditionMenuAction);
 		searchMenu.addSeparator();
@@ -647,6 +657,7 @@ public final class ViewActions
 		findPreviousActiveToolBarAction.setEnabled(activeEnabled);
 		findNextActiveAction.setEnabled(activeEnabled);
 		findNextActiveToolBarAction.setEnabled(activeEnabled);
+		goToTimeAction.setEnabled(hasView);
 
 		// View
 		viewMenu.setEnabled(hasView);
@@ -1815,6 +1826,49 @@ public final class ViewActions
 		}
 	}
 
+	private class GoToTimeAction
+			extends AbstractLilithAction
+	{
+		private static final long serialVersionUID = -3360722581457285436L;
+
+		GoToTimeAction()
+		{
+			super(LilithActionId.GO_TO_TIME);
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e)
+		{
+			if(viewContainer == null)
+			{
+				return;
+			}
+			EventWrapperViewPanel eventWrapperViewPanel = viewContainer.getSelectedView();
+			if(eventWrapperViewPanel == null)
+			{
+				return;
+			}
+			long selectedTimestamp = TimeIndex.resolveTimestamp(eventWrapper);
+			if(selectedTimestamp == TimeIndex.NO_TIMESTAMP)
+			{
+				selectedTimestamp = System.currentTimeMillis();
+			}
+			String initialValue = GO_TO_TIME_FORMAT.format(Instant.ofEpochMilli(selectedTimestamp));
+			Object input = JOptionPane.showInputDialog(mainFrame, "Time, e.g. " + initialValue + ", or milliseconds since epoch:", "Go to time", JOptionPane.QUESTION_MESSAGE, null, null, initialValue);
+			if(input == null)
+			{
+				return;
+			}
+			Long timestamp = TimeIndex.parseTimestamp(input.toString());
+			if(timestamp == null)
+			{
+				JOptionPane.showMessageDialog(mainFrame, "Invalid time '" + input + "'!", "Go to time", JOptionPane.ERROR_MESSAGE);
+				return;
+			}
+			eventWrapperViewPanel.goToTime(timestamp);
+		}
+	}
+
 	private class ResetFindAction
 			extends AbstractLilithAction
 	{
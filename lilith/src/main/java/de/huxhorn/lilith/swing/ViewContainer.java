@@ -22,12 +22,14 @@ import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.engine.EventSource;
 import de.huxhorn.lilith.engine.impl.EventSourceImpl;
 import de.huxhorn.lilith.swing.callables.CallableMetaData;
+import de.huxhorn.lilith.swing.callables.FilterResult;
+import de.huxhorn.lilith.swing.callables.FilterResultCache;
+import de.huxhorn.lilith.swing.callables.ParallelFilteringCallable;
 import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.buffers.DisposeOperation;
 import de.huxhorn.sulky.buffers.Flush;
 import de.huxhorn.sulky.buffers.FlushOperation;
 import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
-import de.huxhorn.sulky.buffers.filtering.FilteringCallable;
 import de.huxhorn.sulky.conditions.Condition;
 import de.huxhorn.sulky.tasks.ProgressingCallable;
 import de.huxhorn.sulky.tasks.Task;
@@ -63,12 +65,15 @@ public abstract class ViewContainer<T extends Serializable>
 	static final String SELECTED_EVENT_PROPERTY_NAME = "selectedEvent";
 
 
+	private final Logger logger = LoggerFactory.getLogger(ViewContainer.class);
 	private final List<ChangeListener> changeListeners = new LinkedList<>();
 	private final MainFrame mainFrame;
 	private final EventSource<T> eventSource;
 	private final EventWrapperViewPanel<T> defaultView;
 	private final TaskManager<Long> taskManager;
 	private final Map<Callable<Long>, EventWrapperViewPanel<T>> filterMapping;
+	private final Map<Callable<Long>, Long> filterSourceGenerations;
+	private final FilterResultCache filterResultCache;
 	private final FilterTaskListener filterTaskListener;
 	private final ProgressGlassPane progressPanel;
 	private Component prevGlassPane;
@@ -82,6 +87,8 @@ public abstract class ViewContainer<T extends Serializable>
 		taskManager = mainFrame.getLongWorkManager();
 		progressPanel = new ProgressGlassPane();
 		filterMapping = new HashMap<>();
+		filterSourceGenerations = new HashMap<>();
+		filterResultCache = new FilterResultCache();
 		filterTaskListener = new FilterTaskListener();
 		taskManager.addTaskListener(filterTaskListener);
 		this.defaultView = createViewPanel(eventSource);
@@ -194,13 +201,16 @@ public abstract class ViewContainer<T extends Serializable>
 	{
 		Buffer<EventWrapper<T>> originalBuffer = original.getSourceBuffer();
 		FilteringBuffer<EventWrapper<T>> filteredBuffer = new FilteringBuffer<>(originalBuffer, filter);
-		FilteringCallable<EventWrapper<T>> callable = new FilteringCallable<>(filteredBuffer, 500);
+		long sourceGeneration = filterResultCache.getSourceGeneration(originalBuffer.getSize());
+		FilterResult initialResult = resolveInitialResult(filter, originalBuffer);
+		ParallelFilteringCallable<EventWrapper<T>> callable = new ParallelFilteringCallable<>(filteredBuffer, 500, getMainFrame().getFilterPool(), initialResult);
 		EventSource<T> originalEventSource = original.getEventSource();
 		Map<String, String> metaData = CallableMetaData.createFilteringMetaData(filter, originalEventSource);
 
 		EventSourceImpl<T> newEventSource = new EventSourceImpl<>(originalEventSource.getSourceIdentifier(), filteredBuffer, filter, originalEventSource.isGlobal());
 		EventWrapperViewPanel<T> newViewPanel = createViewPanel(newEventSource);
 		filterMapping.put(callable, newViewPanel);
+		filterSourceGenerations.put(callable, sourceGeneration);
 		addView(newViewPanel);
 		taskManager.startTask(callable, "Filtering", createFilteringMessage(metaData), metaData);
 	}
@@ -226,8 +236,10 @@ public abstract class ViewContainer<T extends Serializable>
 			}
 			if (found != null)
 			{
-				// remove previous and cancel the task
+				// remember the previous result, remove previous and cancel the task
+				rememberFilterResult(found);
 				filterMapping.remove(found);
+				filterSourceGenerations.remove(found);
 				Task<Long> task = taskManager.getTaskByCallable(found);
 				if (task != null)
 				{
@@ -236,7 +248,9 @@ public abstract class ViewContainer<T extends Serializable>
 				// create new EventSource
 				Buffer<EventWrapper<T>> originalBuffer = original.getSourceBuffer();
 				FilteringBuffer<EventWrapper<T>> filteredBuffer = new FilteringBuffer<>(originalBuffer, filter);
-				FilteringCallable<EventWrapper<T>> callable = new FilteringCallable<>(filteredBuffer, 500);
+				long sourceGeneration = filterResultCache.getSourceGeneration(originalBuffer.getSize());
+				FilterResult initialResult = resolveInitialResult(filter, originalBuffer);
+				ParallelFilteringCallable<EventWrapper<T>> callable = new ParallelFilteringCallable<>(filteredBuffer, 500, getMainFrame().getFilterPool(), initialResult);
 				EventSource<T> originalEventSource = original.getEventSource();
 				Map<String, String> metaData = CallableMetaData.createFilteringMetaData(filter, originalEventSource);
 
@@ -244,6 +258,7 @@ public abstract class ViewContainer<T extends Serializable>
 				original.setEventSource(newEventSource);
 				// restore mapping of original view, this time with the new callable
 				filterMapping.put(callable, original);
+				filterSourceGenerations.put(callable, sourceGeneration);
 				// start the new task.
 				taskManager.startTask(callable, "Filtering", createFilteringMessage(metaData), metaData);
 			}
@@ -256,6 +271,91 @@ public abstract class ViewContainer<T extends Serializable>
 
 	}
 
+	/**
+	 * Remembers the current result of the filtered view before it is disposed.
+	 *
+	 * @param view the filtered view.
+	 */
+	@SuppressWarnings("PMD.CompareObjectsWithEquals")
+	void rememberFilterResult(EventWrapperViewPanel<T> view)
+	{
+		for (Map.Entry<Callable<Long>, EventWrapperViewPanel<T>> current : filterMapping.entrySet())
+		{
+			if (current.getValue() == view)
+			{
+				rememberFilterResult(current.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Drops all remembered filter results. Must be called if the source is cleared.
+	 */
+	public void clearFilterResults()
+	{
+		filterResultCache.clear();
+	}
+
+	private void rememberFilterResult(Callable<Long> callable)
+	{
+		Long sourceGeneration = filterSourceGenerations.get(callable);
+		if (sourceGeneration != null && callable instanceof ParallelFilteringCallable)
+		{
+			FilterResult result = FilterResult.create((ParallelFilteringCallable<?>) callable, sourceGeneration);
+			if (result != null)
+			{
+				filterResultCache.put(result);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the best result of a remembered or currently running filter to start filtering with the given condition.
+	 *
+	 * @param filter the new condition.
+	 * @param sourceBuffer the unfiltered buffer.
+	 * @return the result of an equal or narrowed condition, or null if there is none.
+	 */
+	@SuppressWarnings("PMD.CompareObjectsWithEquals")
+	private FilterResult resolveInitialResult(Condition filter, Buffer<EventWrapper<T>> sourceBuffer)
+	{
+		if (!FilterResult.isCacheable(filter))
+		{
+			return null;
+		}
+		List<FilterResult> results = filterResultCache.getResults(sourceBuffer.getSize());
+		long sourceGeneration = filterResultCache.getSourceGeneration(sourceBuffer.getSize());
+		for (Callable<Long> current : filterMapping.keySet())
+		{
+			Long callableGeneration = filterSourceGenerations.get(current);
+			if (callableGeneration == null || callableGeneration != sourceGeneration || !(current instanceof ParallelFilteringCallable))
+			{
+				continue;
+			}
+			ParallelFilteringCallable<?> callable = (ParallelFilteringCallable<?>) current;
+			FilteringBuffer<?> filteringBuffer = callable.getFilteringBuffer();
+			if (filteringBuffer.isDisposed()
+					|| filteringBuffer.getSourceBuffer() != sourceBuffer
+					|| !FilterResult.isNarrowing(filter, filteringBuffer.getCondition()))
+			{
+				continue;
+			}
+			FilterResult result = FilterResult.create(callable, sourceGeneration);
+			if (result != null)
+			{
+				results.add(result);
+			}
+		}
+		FilterResult result = FilterResult.select(filter, results, sourceGeneration);
+		if (result != null)
+		{
+			// mark as recently used
+			filterResultCache.get(result.getCondition());
+			if (logger.isInfoEnabled()) logger.info("Filtering {} starts with {}.", filter, result);
+		}
+		return result;
+	}
+
 	private static String createFilteringMessage(Map<String, String> metaData)
 	{
 		return "Filtering " + metaData.get(CallableMetaData.FIND_TASK_META_SOURCE_IDENTIFIER) + ".\n\n" +
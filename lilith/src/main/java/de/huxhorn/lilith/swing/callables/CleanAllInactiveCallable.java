@@ -70,7 +70,11 @@ public class CleanAllInactiveCallable
 	private long delete(LogFileFactory fileFactory, SourceIdentifier si)
 	{
 		return delete(fileFactory.getDataFile(si)) +
-				delete(fileFactory.getIndexFile(si));
+				delete(fileFactory.getIndexFile(si)) +
+				delete(fileFactory.getTimeIndexFile(si)) +
+				delete(fileFactory.getFieldIndexFile(si)) +
+				delete(fileFactory.getTextIndexFile(si)) +
+				delete(fileFactory.getContentStoreFile(si));
 	}
 
 	private long delete(File file)
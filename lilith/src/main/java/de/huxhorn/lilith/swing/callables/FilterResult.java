@@ -0,0 +1,253 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.lilith.conditions.GroovyCondition;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import de.huxhorn.sulky.conditions.And;
+import de.huxhorn.sulky.conditions.Condition;
+import de.huxhorn.sulky.conditions.ConditionGroup;
+import de.huxhorn.sulky.conditions.ConditionWrapper;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The source indices of the events matching a condition, up to and including lastFilteredElement.
+ *
+ * A FilterResult can be used to start filtering with a condition that narrows its condition,
+ * i.e. a conjunction containing it, by evaluating only the contained source indices.
+ */
+@SuppressWarnings("PMD.MethodReturnsInternalArray")
+public final class FilterResult
+{
+	private final Condition condition;
+	private final long[] sourceIndices;
+	private final long lastFilteredElement;
+	private final long sourceGeneration;
+
+	FilterResult(Condition condition, long[] sourceIndices, long lastFilteredElement)
+	{
+		this(condition, sourceIndices, lastFilteredElement, 0);
+	}
+
+	FilterResult(Condition condition, long[] sourceIndices, long lastFilteredElement, long sourceGeneration)
+	{
+		this.condition = Objects.requireNonNull(condition, "condition must not be null!");
+		this.sourceIndices = Objects.requireNonNull(sourceIndices, "sourceIndices must not be null!");
+		this.lastFilteredElement = lastFilteredElement;
+		this.sourceGeneration = sourceGeneration;
+	}
+
+	/**
+	 * Returns the current result of the given callable.
+	 *
+	 * @param callable the callable.
+	 * @param sourceGeneration the generation of the source when the callable has been started, see FilterResultCache.
+	 * @return the current result or null if the callable hasn't filtered any element yet or its condition isn't cacheable.
+	 */
+	public static FilterResult create(ParallelFilteringCallable<?> callable, long sourceGeneration)
+	{
+		// must be read before the indices, matches up to it have already been added.
+		long lastFilteredElement = callable.getLastFilteredElement();
+		FilteringBuffer<?> filteringBuffer = callable.getFilteringBuffer();
+		Condition condition = filteringBuffer.getCondition();
+		if(lastFilteredElement < 0 || !isCacheable(condition) || filteringBuffer.isDisposed())
+		{
+			return null;
+		}
+		long size = filteringBuffer.getSize();
+		if(size > Integer.MAX_VALUE)
+		{
+			return null;
+		}
+		long[] indices = new long[(int) size];
+		int count = 0;
+		for(long i = 0; i < size; i++)
+		{
+			long sourceIndex = filteringBuffer.getSourceIndex(i);
+			if(sourceIndex < 0 || sourceIndex > lastFilteredElement)
+			{
+				break;
+			}
+			indices[count] = sourceIndex;
+			count++;
+		}
+		if(count != indices.length)
+		{
+			long[] trimmed = new long[count];
+			System.arraycopy(indices, 0, trimmed, 0, count);
+			indices = trimmed;
+		}
+		return new FilterResult(condition, indices, lastFilteredElement, sourceGeneration);
+	}
+
+	/**
+	 * Returns true if the result of the given condition may be reused.
+	 *
+	 * This isn't the case for conditions containing a GroovyCondition since its script can be changed
+	 * at any time.
+	 *
+	 * @param condition the condition.
+	 * @return true if the result of the condition may be reused.
+	 */
+	public static boolean isCacheable(Condition condition)
+	{
+		if(condition == null || condition instanceof GroovyCondition)
+		{
+			return false;
+		}
+		if(condition instanceof ConditionWrapper)
+		{
+			Condition wrapped = ((ConditionWrapper) condition).getCondition();
+			return wrapped == null || isCacheable(wrapped);
+		}
+		if(condition instanceof ConditionGroup)
+		{
+			List<Condition> conditions = ((ConditionGroup) condition).getConditions();
+			if(conditions != null)
+			{
+				for(Condition current : conditions)
+				{
+					if(current != null && !isCacheable(current))
+					{
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if every element matching condition is guaranteed to match previous.
+	 *
+	 * This is the case if both are equal or if condition is an And containing previous or,
+	 * if previous is an And itself, all of its conditions.
+	 *
+	 * @param condition the new condition.
+	 * @param previous the previous condition.
+	 * @return true if condition narrows previous.
+	 */
+	public static boolean isNarrowing(Condition condition, Condition previous)
+	{
+		if(condition == null || previous == null)
+		{
+			return false;
+		}
+		if(condition.equals(previous))
+		{
+			return true;
+		}
+		if(!(condition instanceof And))
+		{
+			return false;
+		}
+		List<Condition> conditions = ((And) condition).getConditions();
+		if(conditions == null || conditions.isEmpty())
+		{
+			return false;
+		}
+		if(conditions.contains(previous))
+		{
+			return true;
+		}
+		if(previous instanceof And)
+		{
+			List<Condition> previousConditions = ((And) previous).getConditions();
+			return previousConditions != null && !previousConditions.isEmpty() && conditions.containsAll(previousConditions);
+		}
+		return false;
+	}
+
+	/**
+	 * Selects the best result to start filtering with the given condition.
+	 *
+	 * A result of an equal condition is preferred, otherwise the narrowed result with the fewest indices is used.
+	 * Results of another generation of the source and results of conditions that aren't cacheable are ignored.
+	 *
+	 * @param condition the new condition.
+	 * @param results the available results.
+	 * @param sourceGeneration the current generation of the source.
+	 * @return the best result or null if no result can be used.
+	 */
+	public static FilterResult select(Condition condition, Collection<FilterResult> results, long sourceGeneration)
+	{
+		if(!isCacheable(condition))
+		{
+			return null;
+		}
+		FilterResult equal = null;
+		FilterResult narrowed = null;
+		for(FilterResult current : results)
+		{
+			if(current == null || current.sourceGeneration != sourceGeneration)
+			{
+				continue;
+			}
+			if(current.condition.equals(condition))
+			{
+				if(equal == null || current.lastFilteredElement > equal.lastFilteredElement)
+				{
+					equal = current;
+				}
+			}
+			else if(isNarrowing(condition, current.condition)
+					&& (narrowed == null || current.sourceIndices.length < narrowed.sourceIndices.length))
+			{
+				narrowed = current;
+			}
+		}
+		if(equal != null)
+		{
+			return equal;
+		}
+		return narrowed;
+	}
+
+	public Condition getCondition()
+	{
+		return condition;
+	}
+
+	public long[] getSourceIndices()
+	{
+		return sourceIndices;
+	}
+
+	public long getLastFilteredElement()
+	{
+		return lastFilteredElement;
+	}
+
+	public long getSourceGeneration()
+	{
+		return sourceGeneration;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "FilterResult[condition=" + condition
+				+ ", matches=" + sourceIndices.length
+				+ ", lastFilteredElement=" + lastFilteredElement
+				+ ", sourceGeneration=" + sourceGeneration
+				+ "]";
+	}
+}
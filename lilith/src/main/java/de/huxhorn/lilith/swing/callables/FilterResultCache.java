@@ -0,0 +1,175 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.sulky.conditions.Condition;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps the results of recently used conditions of a single source.
+ *
+ * The least recently used results are evicted if either maxResults or the total number of
+ * cached indices, maxIndices, is exceeded. All methods are thread-safe.
+ *
+ * The cache also keeps the generation of the source. It is incremented if the source is cleared or if it
+ * has become smaller than before, i.e. it has been reset. Results of other generations are never returned.
+ */
+public class FilterResultCache
+{
+	public static final int DEFAULT_MAX_RESULTS = 8;
+	public static final long DEFAULT_MAX_INDICES = 4L * 1024 * 1024;
+
+	private final int maxResults;
+	private final long maxIndices;
+	private final Map<Condition, FilterResult> results = new LinkedHashMap<>(16, 0.75f, true);
+	private long indexCount;
+	private long sourceGeneration;
+	private long sourceSize;
+
+	public FilterResultCache()
+	{
+		this(DEFAULT_MAX_RESULTS, DEFAULT_MAX_INDICES);
+	}
+
+	public FilterResultCache(int maxResults, long maxIndices)
+	{
+		if(maxResults <= 0)
+		{
+			throw new IllegalArgumentException("maxResults must be greater than zero but was " + maxResults + "!");
+		}
+		this.maxResults = maxResults;
+		this.maxIndices = maxIndices;
+	}
+
+	public synchronized void put(FilterResult result)
+	{
+		Objects.requireNonNull(result, "result must not be null!");
+		if(result.getSourceGeneration() != sourceGeneration || result.getSourceIndices().length > maxIndices)
+		{
+			return;
+		}
+		FilterResult previous = results.get(result.getCondition());
+		if(previous != null && previous.getLastFilteredElement() > result.getLastFilteredElement())
+		{
+			return;
+		}
+		remove(result.getCondition());
+		results.put(result.getCondition(), result);
+		indexCount += result.getSourceIndices().length;
+		Iterator<FilterResult> iterator = results.values().iterator();
+		while(results.size() > maxResults || indexCount > maxIndices)
+		{
+			FilterResult eldest = iterator.next();
+			iterator.remove();
+			indexCount -= eldest.getSourceIndices().length;
+		}
+	}
+
+	public synchronized FilterResult get(Condition condition)
+	{
+		return results.get(condition);
+	}
+
+	/**
+	 * Returns the current generation of the source.
+	 *
+	 * A new generation is started if the source has become smaller since the last call.
+	 *
+	 * @param currentSourceSize the current size of the source.
+	 * @return the current generation of the source.
+	 */
+	public synchronized long getSourceGeneration(long currentSourceSize)
+	{
+		if(currentSourceSize < sourceSize)
+		{
+			startGeneration();
+		}
+		sourceSize = currentSourceSize;
+		return sourceGeneration;
+	}
+
+	/**
+	 * Returns all results that are still valid for a source of the given size.
+	 *
+	 * Results of a previous generation of the source and results that filtered more elements than
+	 * the source contains belong to a previous content of the source and are removed.
+	 *
+	 * @param currentSourceSize the current size of the source.
+	 * @return the valid results.
+	 */
+	public synchronized List<FilterResult> getResults(long currentSourceSize)
+	{
+		long generation = getSourceGeneration(currentSourceSize);
+		List<FilterResult> result = new ArrayList<>(results.size());
+		Iterator<FilterResult> iterator = results.values().iterator();
+		while(iterator.hasNext())
+		{
+			FilterResult current = iterator.next();
+			if(current.getSourceGeneration() != generation || current.getLastFilteredElement() >= currentSourceSize)
+			{
+				iterator.remove();
+				indexCount -= current.getSourceIndices().length;
+				continue;
+			}
+			result.add(current);
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all results and starts a new generation of the source. Must be called if the source is cleared.
+	 */
+	public synchronized void clear()
+	{
+		startGeneration();
+		sourceSize = 0;
+	}
+
+	public synchronized int size()
+	{
+		return results.size();
+	}
+
+	private void startGeneration()
+	{
+		results.clear();
+		indexCount = 0;
+		sourceGeneration++;
+	}
+
+	private void remove(Condition condition)
+	{
+		FilterResult removed = results.remove(condition);
+		if(removed != null)
+		{
+			indexCount -= removed.getSourceIndices().length;
+		}
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "FilterResultCache[results=" + results.size() + ", indices=" + indexCount + "]";
+	}
+}
@@ -21,9 +21,11 @@ package de.huxhorn.lilith.swing.callables;
 import de.huxhorn.lilith.data.eventsource.EventWrapper;
 import de.huxhorn.lilith.swing.EventWrapperViewPanel;
 import de.huxhorn.lilith.swing.table.model.EventWrapperTableModel;
+import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.conditions.Condition;
 import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
 import java.io.Serializable;
+import java.util.concurrent.ForkJoinPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +38,7 @@ public class FindPreviousCallable<T extends Serializable>
 	private final EventWrapperTableModel<T> tableModel;
 	private final int currentRow;
 	private final Condition condition;
+	private final ForkJoinPool pool;
 
 	public FindPreviousCallable(EventWrapperViewPanel<T> viewPanel, int currentRow, Condition condition)
 	{
@@ -44,6 +47,7 @@ public class FindPreviousCallable<T extends Serializable>
 		this.tableModel = viewPanel.getTableModel();
 		this.currentRow = currentRow;
 		this.condition = condition;
+		this.pool = viewPanel.getMainFrame().getFilterPool();
 	}
 
 	public EventWrapperViewPanel<T> getViewPanel()
@@ -60,36 +64,36 @@ public class FindPreviousCallable<T extends Serializable>
 		{
 			row--;
 			if(logger.isInfoEnabled()) logger.info("Searching previous starting at {}.", row);
-			tableModel.getRowCount();
-			int maxCount = row;
-			int numberOfSteps = maxCount - 1;
+
+			int numberOfSteps = row;
 			if(numberOfSteps < 1)
 			{
 				numberOfSteps = 1;
 			}
 			setNumberOfSteps(numberOfSteps);
-			for(int i = 0; i < maxCount; i++)
+			// not the cached buffer of the table model, indexes are resolved using the source buffer.
+			Buffer<EventWrapper<T>> buffer = viewPanel.getEventSource().getBuffer();
+			ParallelSearch<EventWrapper<T>> search = new ParallelSearch<>(buffer, condition, pool);
+			try
 			{
-				setCurrentStep(i);
-				int current = row - i;
-				if(logger.isDebugEnabled()) logger.debug("Processing row {}", current);
-				Object obj = tableModel.getValueAt(current, 0);
-				if(obj == null)
-				{
-					return -1L;
-				}
-				if(obj instanceof EventWrapper)
+				long end = row + 1L;
+				while(end > 0)
 				{
-					if(condition.isTrue(obj))
+					setCurrentStep(row + 1L - end);
+					long start = Math.max(0, end - search.getWindowSize());
+					if(logger.isDebugEnabled()) logger.debug("Processing rows {} to {}", end - 1, start);
+					long found = search.findLast(start, end);
+					if(found > -1)
 					{
-						if(logger.isInfoEnabled()) logger.info("Found previous at {}.", current);
-						return (long) current;
+						if(logger.isInfoEnabled()) logger.info("Found previous at {}.", found);
+						return found;
 					}
+					end = start;
 				}
-				else
-				{
-					if(logger.isWarnEnabled()) logger.warn("Unexpected class! {}", obj.getClass().getName());
-				}
+			}
+			finally
+			{
+				search.close();
 			}
 		}
 		if(logger.isInfoEnabled()) logger.info("Didn't find previous.");
@@ -0,0 +1,105 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex;
+import de.huxhorn.lilith.swing.EventWrapperViewPanel;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
+import java.io.Serializable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Returns the row of the first event at or after the given timestamp or -1 if there is none.
+ *
+ * The TimeIndex of the source buffer is used if available.
+ */
+public class GoToTimeCallable<T extends Serializable>
+	extends AbstractProgressingCallable<Long>
+{
+	private final Logger logger = LoggerFactory.getLogger(GoToTimeCallable.class);
+
+	private final EventWrapperViewPanel<T> viewPanel;
+	private final Buffer<EventWrapper<T>> buffer;
+	private final long timestamp;
+
+	public GoToTimeCallable(EventWrapperViewPanel<T> viewPanel, long timestamp)
+	{
+		this.viewPanel = viewPanel;
+		// not the cached buffer of the table model, the TimeIndex is resolved using the source buffer.
+		this.buffer = viewPanel.getEventSource().getBuffer();
+		this.timestamp = timestamp;
+	}
+
+	public EventWrapperViewPanel<T> getViewPanel()
+	{
+		return viewPanel;
+	}
+
+	@Override
+	public Long call()
+		throws Exception
+	{
+		if(logger.isInfoEnabled()) logger.info("Searching first event at or after {}.", timestamp);
+		setNumberOfSteps(2);
+		if(buffer instanceof FilteringBuffer)
+		{
+			FilteringBuffer<EventWrapper<T>> filteringBuffer = (FilteringBuffer<EventWrapper<T>>) buffer;
+			Buffer<EventWrapper<T>> sourceBuffer = filteringBuffer.getSourceBuffer();
+			long sourceIndex = TimeIndex.findFirstAtOrAfter(sourceBuffer, TimeIndex.resolveTimeIndexFile(sourceBuffer), timestamp);
+			setCurrentStep(1);
+			if(sourceIndex < 0)
+			{
+				return -1L;
+			}
+			// source indices of a FilteringBuffer are ascending
+			long low = 0;
+			long high = filteringBuffer.getSize();
+			while(low < high)
+			{
+				long mid = (low + high) >>> 1;
+				if(filteringBuffer.getSourceIndex(mid) < sourceIndex)
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			setCurrentStep(2);
+			// events aren't necessarily ordered by time
+			long size = filteringBuffer.getSize();
+			for(long i = low; i < size; i++)
+			{
+				if(TimeIndex.resolveTimestamp(filteringBuffer.get(i)) >= timestamp)
+				{
+					return i;
+				}
+			}
+			return -1L;
+		}
+		long result = TimeIndex.findFirstAtOrAfter(buffer, TimeIndex.resolveTimeIndexFile(buffer), timestamp);
+		setCurrentStep(2);
+		return result;
+	}
+}
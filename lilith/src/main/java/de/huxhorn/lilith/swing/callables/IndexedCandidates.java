@@ -0,0 +1,383 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.lilith.conditions.EventContainsCondition;
+import de.huxhorn.lilith.conditions.FormattedMessageContainsCondition;
+import de.huxhorn.lilith.conditions.LevelCondition;
+import de.huxhorn.lilith.conditions.LoggerStartsWithCondition;
+import de.huxhorn.lilith.conditions.MDCContainsCondition;
+import de.huxhorn.lilith.conditions.MarkerContainsCondition;
+import de.huxhorn.lilith.conditions.MessagePatternContainsCondition;
+import de.huxhorn.lilith.conditions.ThreadNameCondition;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndex;
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndexReader;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndex;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndexReader;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import de.huxhorn.sulky.conditions.And;
+import de.huxhorn.sulky.conditions.Condition;
+import de.huxhorn.sulky.conditions.Or;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The events that may match a condition according to the FieldIndex and TextIndex of a file.
+ *
+ * LevelCondition, LoggerStartsWithCondition, ThreadNameCondition, MarkerContainsCondition and
+ * MDCContainsCondition are resolved using the FieldIndex, EventContainsCondition,
+ * FormattedMessageContainsCondition and MessagePatternContainsCondition using the TextIndex.
+ * They may be combined by And and Or. Events that aren't covered by the used indexes yet may always
+ * match. The condition must still be evaluated for candidates.
+ */
+final class IndexedCandidates
+{
+	private final long[] sourceIndices;
+	private final long indexedCount;
+	private final FilteringBuffer<?> filteringBuffer;
+
+	private IndexedCandidates(long[] sourceIndices, long indexedCount, FilteringBuffer<?> filteringBuffer)
+	{
+		this.sourceIndices = sourceIndices;
+		this.indexedCount = indexedCount;
+		this.filteringBuffer = filteringBuffer;
+	}
+
+	/**
+	 * Returns the candidates of the given buffer.
+	 *
+	 * If buffer is a FilteringBuffer, rows are indices of the FilteringBuffer.
+	 *
+	 * @param buffer the buffer, either a FileBuffer or a FilteringBuffer of a FileBuffer.
+	 * @param condition the condition.
+	 * @return the candidates or null if every event may match.
+	 */
+	static IndexedCandidates create(Buffer<?> buffer, Condition condition)
+	{
+		if(condition == null)
+		{
+			return null;
+		}
+		FilteringBuffer<?> filteringBuffer = null;
+		Buffer<?> sourceBuffer = buffer;
+		if(buffer instanceof FilteringBuffer)
+		{
+			filteringBuffer = (FilteringBuffer<?>) buffer;
+			sourceBuffer = filteringBuffer.getSourceBuffer();
+		}
+		if(!(sourceBuffer instanceof FileBuffer))
+		{
+			return null;
+		}
+		File dataFile = ((FileBuffer<?>) sourceBuffer).getDataFile();
+		if(dataFile == null)
+		{
+			return null;
+		}
+		Indexes indexes = new Indexes(FieldIndex.resolveFieldIndexFile(dataFile), TextIndex.resolveTextIndexFile(dataFile));
+		long[] postings = resolvePostings(indexes, condition);
+		if(postings == null)
+		{
+			return null;
+		}
+		long indexedCount = indexes.getIndexedCount();
+		if(indexedCount == 0)
+		{
+			return null;
+		}
+		return new IndexedCandidates(postings, indexedCount, filteringBuffer);
+	}
+
+	/**
+	 * Returns false if the event at the given row can't match.
+	 *
+	 * @param row the row.
+	 * @return false if the event at row can't match.
+	 */
+	boolean mayMatch(long row)
+	{
+		long sourceIndex = filteringBuffer == null ? row : filteringBuffer.getSourceIndex(row);
+		if(sourceIndex < 0 || sourceIndex >= indexedCount)
+		{
+			return true;
+		}
+		return Arrays.binarySearch(sourceIndices, sourceIndex) >= 0;
+	}
+
+	/**
+	 * Returns the ascending indices of all indexed events that may match the condition.
+	 *
+	 * The result is only valid for events below indexes.getIndexedCount().
+	 *
+	 * @param indexes the indexes.
+	 * @param condition the condition.
+	 * @return the indices or null if the condition can't be resolved using the indexes.
+	 */
+	static long[] resolvePostings(Indexes indexes, Condition condition)
+	{
+		if(condition instanceof EventContainsCondition)
+		{
+			return resolveCandidates(indexes, TextIndex.Field.EVENT, ((EventContainsCondition) condition).getSearchString());
+		}
+		if(condition instanceof FormattedMessageContainsCondition)
+		{
+			return resolveCandidates(indexes, TextIndex.Field.MESSAGE, ((FormattedMessageContainsCondition) condition).getSearchString());
+		}
+		if(condition instanceof MessagePatternContainsCondition)
+		{
+			return resolveCandidates(indexes, TextIndex.Field.MESSAGE_PATTERN, ((MessagePatternContainsCondition) condition).getSearchString());
+		}
+		if(condition instanceof And || condition instanceof Or)
+		{
+			return resolveGroupPostings(indexes, condition);
+		}
+		if(!(condition instanceof LevelCondition || condition instanceof LoggerStartsWithCondition
+				|| condition instanceof ThreadNameCondition || condition instanceof MarkerContainsCondition
+				|| condition instanceof MDCContainsCondition))
+		{
+			return null;
+		}
+		FieldIndexReader reader = indexes.getFieldIndexReader();
+		if(reader == null)
+		{
+			return null;
+		}
+		if(condition instanceof LevelCondition)
+		{
+			LoggingEvent.Level level = ((LevelCondition) condition).getLevel();
+			if(level == null)
+			{
+				return new long[0];
+			}
+			List<long[]> postings = new ArrayList<>();
+			for(LoggingEvent.Level current : LoggingEvent.Level.values())
+			{
+				if(level.compareTo(current) <= 0)
+				{
+					postings.add(reader.getPostings(FieldIndex.levelTerm(current)));
+				}
+			}
+			return FieldIndex.union(postings);
+		}
+		if(condition instanceof LoggerStartsWithCondition)
+		{
+			String searchString = ((LoggerStartsWithCondition) condition).getSearchString();
+			if(searchString == null)
+			{
+				return new long[0];
+			}
+			if(searchString.isEmpty())
+			{
+				return null;
+			}
+			List<long[]> postings = new ArrayList<>();
+			for(String term : reader.getTerms(FieldIndex.LOGGER_PREFIX))
+			{
+				String logger = term.substring(FieldIndex.LOGGER_PREFIX.length()).replace('$', '.');
+				if(logger.startsWith(searchString))
+				{
+					postings.add(reader.getPostings(term));
+				}
+			}
+			return FieldIndex.union(postings);
+		}
+		if(condition instanceof ThreadNameCondition)
+		{
+			String searchString = ((ThreadNameCondition) condition).getSearchString();
+			if(searchString == null || searchString.isEmpty())
+			{
+				// matches any event with thread info, including the ones without name
+				return null;
+			}
+			return reader.getPostings(FieldIndex.threadNameTerm(searchString));
+		}
+		if(condition instanceof MarkerContainsCondition)
+		{
+			String searchString = ((MarkerContainsCondition) condition).getSearchString();
+			if(searchString == null)
+			{
+				return new long[0];
+			}
+			if(searchString.isEmpty())
+			{
+				return null;
+			}
+			return reader.getPostings(FieldIndex.markerTerm(searchString));
+		}
+		if(condition instanceof MDCContainsCondition)
+		{
+			MDCContainsCondition mdcCondition = (MDCContainsCondition) condition;
+			String key = mdcCondition.getKey();
+			if(key == null)
+			{
+				return new long[0];
+			}
+			String value = mdcCondition.getValue();
+			if(value == null)
+			{
+				return reader.getPostings(FieldIndex.mdcKeyTerm(key));
+			}
+			return reader.getPostings(FieldIndex.mdcEntryTerm(key, value));
+		}
+		return null;
+	}
+
+	private static long[] resolveGroupPostings(Indexes indexes, Condition condition)
+	{
+		if(condition instanceof And)
+		{
+			long[] result = null;
+			List<Condition> conditions = ((And) condition).getConditions();
+			if(conditions == null)
+			{
+				return null;
+			}
+			for(Condition current : conditions)
+			{
+				long[] postings = resolvePostings(indexes, current);
+				if(postings != null)
+				{
+					result = result == null ? postings : FieldIndex.intersect(result, postings);
+				}
+			}
+			return result;
+		}
+		if(condition instanceof Or)
+		{
+			List<Condition> conditions = ((Or) condition).getConditions();
+			if(conditions == null || conditions.isEmpty())
+			{
+				return null;
+			}
+			List<long[]> postings = new ArrayList<>(conditions.size());
+			for(Condition current : conditions)
+			{
+				long[] currentPostings = resolvePostings(indexes, current);
+				if(currentPostings == null)
+				{
+					return null;
+				}
+				postings.add(currentPostings);
+			}
+			return FieldIndex.union(postings);
+		}
+		return null;
+	}
+
+	private static long[] resolveCandidates(Indexes indexes, TextIndex.Field field, String searchString)
+	{
+		if(searchString == null)
+		{
+			return new long[0];
+		}
+		if(searchString.length() < TextIndex.NGRAM_LENGTH)
+		{
+			return null;
+		}
+		TextIndexReader reader = indexes.getTextIndexReader();
+		if(reader == null)
+		{
+			return null;
+		}
+		try
+		{
+			return reader.getCandidates(field, searchString);
+		}
+		catch(IOException ex)
+		{
+			final Logger logger = LoggerFactory.getLogger(IndexedCandidates.class);
+			if(logger.isWarnEnabled()) logger.warn("Exception while reading text index!", ex);
+			return null;
+		}
+	}
+
+	/**
+	 * The indexes of a file, read on demand.
+	 *
+	 * Keeps track of the number of events covered by all indexes used so far.
+	 */
+	static final class Indexes
+	{
+		private final File fieldIndexFile;
+		private final File textIndexFile;
+		private FieldIndexReader fieldIndexReader;
+		private TextIndexReader textIndexReader;
+		private boolean fieldIndexResolved;
+		private boolean textIndexResolved;
+		private long indexedCount = Long.MAX_VALUE;
+
+		Indexes(File fieldIndexFile, File textIndexFile)
+		{
+			this.fieldIndexFile = fieldIndexFile;
+			this.textIndexFile = textIndexFile;
+		}
+
+		FieldIndexReader getFieldIndexReader()
+		{
+			if(!fieldIndexResolved)
+			{
+				fieldIndexResolved = true;
+				if(fieldIndexFile != null)
+				{
+					fieldIndexReader = FieldIndexReader.get(fieldIndexFile);
+				}
+				if(fieldIndexReader != null)
+				{
+					indexedCount = Math.min(indexedCount, fieldIndexReader.getEventCount());
+				}
+			}
+			return fieldIndexReader;
+		}
+
+		TextIndexReader getTextIndexReader()
+		{
+			if(!textIndexResolved)
+			{
+				textIndexResolved = true;
+				if(textIndexFile != null)
+				{
+					textIndexReader = TextIndexReader.get(textIndexFile);
+				}
+				if(textIndexReader != null)
+				{
+					indexedCount = Math.min(indexedCount, textIndexReader.getEventCount());
+				}
+			}
+			return textIndexReader;
+		}
+
+		/**
+		 * Returns the number of events covered by all indexes used so far.
+		 *
+		 * @return the number of events covered by all indexes used so far.
+		 */
+		long getIndexedCount()
+		{
+			return indexedCount == Long.MAX_VALUE ? 0 : indexedCount;
+		}
+	}
+}
@@ -18,6 +18,10 @@
 
 package de.huxhorn.lilith.swing.callables;
 
+import de.huxhorn.lilith.engine.impl.blocks.BlockFormat;
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndex;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndex;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex;
 import de.huxhorn.sulky.codec.filebuffer.DefaultDataStrategy;
 import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
 import de.huxhorn.sulky.codec.filebuffer.DefaultIndexStrategy;
@@ -30,6 +34,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,6 +44,8 @@ import org.slf4j.LoggerFactory;
 public class IndexingCallable
 	extends AbstractProgressingCallable<Long>
 {
+	private static final int INDEX_ENTRY_SIZE = 8;
+
 	private final Logger logger = LoggerFactory.getLogger(IndexingCallable.class);
 
 	private File dataFile;
@@ -90,6 +97,24 @@ public class IndexingCallable
 
 		FileHeaderStrategy fhs = new DefaultFileHeaderStrategy();
 		FileHeader fileHeader = fhs.readFileHeader(dataFile);
+		if(fileHeader != null && BlockFormat.isBlockCompressed(fileHeader.getMetaData()))
+		{
+			long counter;
+			try
+			{
+				counter = indexBlocks(fileHeader, fileSize);
+			}
+			catch(IOException | InterruptedException ex)
+			{
+				if(!indexFile.delete())
+				{
+					if(logger.isWarnEnabled()) logger.warn("Failed to delete index file '{}'!", indexFile.getAbsolutePath()); // NOPMD
+				}
+				throw ex; // rethrow
+			}
+			if(logger.isInfoEnabled()) logger.info("File '{}' has {} entries.", dataFile.getAbsolutePath(), counter);
+			return counter;
+		}
 		if(fileHeader != null)
 		{
 			boolean sparse = fileHeader.getMetaData().isSparse();
@@ -127,27 +152,34 @@ public class IndexingCallable
 
 				if(deleteIndex)
 				{
+					deleteDerivedIndexes();
 					indexRAFile.setLength(0);
 					counter = 0;
 					offset = fileHeader.getDataOffset();
 				}
 
-				while(offset < fileSize)
+				long headerSize = sparse ? SparseDataStrategy.DATA_LENGTH_SIZE + SparseDataStrategy.INDEX_SIZE : DefaultDataStrategy.DATA_LENGTH_SIZE;
+				while(offset + headerSize <= fileSize)
 				{
 					dataRAFile.seek(offset);
 
 					int dataSize = dataRAFile.readInt();
+					long nextOffset = offset + headerSize + dataSize;
+					if(nextOffset > fileSize)
+					{
+						// the last event is still being written, it will be indexed by the next reindexing
+						break;
+					}
 					if(!sparse)
 					{
 						indexStrategy.setOffset(indexRAFile, counter, offset);
-						offset = offset + dataSize + DefaultDataStrategy.DATA_LENGTH_SIZE;
 					}
 					else
 					{
 						long index = dataRAFile.readLong();
 						indexStrategy.setOffset(indexRAFile, index, offset);
-						offset = offset + dataSize + SparseDataStrategy.DATA_LENGTH_SIZE + SparseDataStrategy.INDEX_SIZE;
 					}
+					offset = nextOffset;
 					counter++;
 					setCurrentStep(offset);
 				}
@@ -169,6 +201,83 @@ public class IndexingCallable
 		}
 	}
 
+	/**
+	 * Indexes a file using BlockFormat, continuing with the block of the last indexed event if reindexing.
+	 */
+	private long indexBlocks(FileHeader fileHeader, long fileSize)
+		throws IOException, InterruptedException
+	{
+		long counter = 0;
+		long offset = fileHeader.getDataOffset();
+		try(RandomAccessFile dataRAFile = new RandomAccessFile(dataFile, "r");
+			RandomAccessFile indexRAFile = new RandomAccessFile(indexFile, "rw"))
+		{
+			boolean deleteIndex = true;
+			long indexSize = indexRAFile.length() / INDEX_ENTRY_SIZE;
+			if(reindexing && indexSize > 0)
+			{
+				indexRAFile.seek((indexSize - 1) * INDEX_ENTRY_SIZE);
+				long lastEntry = indexRAFile.readLong();
+				long blockOffset = BlockFormat.blockOffset(lastEntry);
+				counter = indexSize - 1 - BlockFormat.position(lastEntry);
+				// same heuristic as above
+				deleteIndex = counter < 0 || blockOffset < offset || blockOffset > fileSize;
+				offset = blockOffset;
+			}
+
+			if(deleteIndex)
+			{
+				deleteDerivedIndexes();
+				counter = 0;
+				offset = fileHeader.getDataOffset();
+			}
+			indexRAFile.setLength(counter * INDEX_ENTRY_SIZE);
+
+			for(;;)
+			{
+				BlockFormat.RecordHeader recordHeader = BlockFormat.readRecordHeader(dataRAFile, offset);
+				if(recordHeader == null)
+				{
+					break;
+				}
+				if(!recordHeader.isDictionary())
+				{
+					int entryCount = recordHeader.getEntryCount();
+					ByteBuffer entries = ByteBuffer.allocate(entryCount * INDEX_ENTRY_SIZE); // NOPMD - AvoidInstantiatingObjectsInLoops
+					for(int i = 0; i < entryCount; i++)
+					{
+						entries.putLong(BlockFormat.indexEntry(offset, i));
+					}
+					indexRAFile.seek(counter * INDEX_ENTRY_SIZE);
+					indexRAFile.write(entries.array());
+					counter += entryCount;
+				}
+				offset = recordHeader.getEnd();
+				setCurrentStep(offset);
+			}
+		}
+		return counter;
+	}
+
+	private void deleteDerivedIndexes()
+	{
+		File timeIndexFile = TimeIndex.resolveTimeIndexFile(dataFile);
+		if(timeIndexFile.isFile() && !timeIndexFile.delete())
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't delete outdated time index '{}'!", timeIndexFile.getAbsolutePath());
+		}
+		File fieldIndexFile = FieldIndex.resolveFieldIndexFile(dataFile);
+		if(fieldIndexFile.isFile() && !fieldIndexFile.delete())
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't delete outdated field index '{}'!", fieldIndexFile.getAbsolutePath());
+		}
+		File textIndexFile = TextIndex.resolveTextIndexFile(dataFile);
+		if(textIndexFile.isFile() && !textIndexFile.delete())
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't delete outdated text index '{}'!", textIndexFile.getAbsolutePath());
+		}
+	}
+
 	public File getDataFile()
 	{
 		return dataFile;
@@ -0,0 +1,332 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer;
+import de.huxhorn.sulky.conditions.Condition;
+import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replacement of FilteringCallable that evaluates the condition in parallel.
+ *
+ * The source buffer is processed in windows of consecutive events. Each window is split into chunks
+ * that are read and evaluated by the given ForkJoinPool. Matching indices of a window are added to the
+ * FilteringBuffer in order before the next window is started, so results are published progressively.
+ *
+ * Like FilteringCallable, this callable keeps following the source buffer until it is cancelled or
+ * the FilteringBuffer is disposed.
+ *
+ * Every worker thread evaluates its own clone of the condition. If the source buffer has a FieldIndex or TextIndex,
+ * only events that may match according to the indexes are read.
+ *
+ * If an initial FilterResult is given, its indices are used as they are if its condition is equal. If the
+ * condition narrows the condition of the result, only its indices are evaluated. Filtering of the source
+ * buffer continues after the last element filtered by the result.
+ */
+public class ParallelFilteringCallable<E>
+	extends AbstractProgressingCallable<Long>
+{
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	private static final long[] NO_MATCHES = new long[0];
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final Logger logger = LoggerFactory.getLogger(ParallelFilteringCallable.class);
+
+	private final FilteringBuffer<E> filteringBuffer;
+	private final int filterDelay;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final int windowChunks;
+	private final FilterResult initialResult;
+	private volatile long lastFilteredElement = -1;
+
+	public ParallelFilteringCallable(FilteringBuffer<E> filteringBuffer, int filterDelay, ForkJoinPool pool)
+	{
+		this(filteringBuffer, filterDelay, pool, DEFAULT_CHUNK_SIZE, null);
+	}
+
+	public ParallelFilteringCallable(FilteringBuffer<E> filteringBuffer, int filterDelay, ForkJoinPool pool, FilterResult initialResult)
+	{
+		this(filteringBuffer, filterDelay, pool, DEFAULT_CHUNK_SIZE, initialResult);
+	}
+
+	public ParallelFilteringCallable(FilteringBuffer<E> filteringBuffer, int filterDelay, ForkJoinPool pool, int chunkSize)
+	{
+		this(filteringBuffer, filterDelay, pool, chunkSize, null);
+	}
+
+	public ParallelFilteringCallable(FilteringBuffer<E> filteringBuffer, int filterDelay, ForkJoinPool pool, int chunkSize, FilterResult initialResult)
+	{
+		this.filteringBuffer = Objects.requireNonNull(filteringBuffer, "filteringBuffer must not be null!");
+		this.pool = Objects.requireNonNull(pool, "pool must not be null!");
+		if(chunkSize < 1)
+		{
+			throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize + "!");
+		}
+		this.filterDelay = filterDelay;
+		this.chunkSize = chunkSize;
+		this.windowChunks = pool.getParallelism() * CHUNKS_PER_THREAD;
+		this.initialResult = initialResult;
+	}
+
+	public FilteringBuffer<E> getFilteringBuffer()
+	{
+		return filteringBuffer;
+	}
+
+	/**
+	 * Returns the index of the last source element that has been filtered.
+	 *
+	 * All matches up to and including this element have been added to the FilteringBuffer.
+	 *
+	 * @return the index of the last filtered source element or -1 if none has been filtered yet.
+	 */
+	public long getLastFilteredElement()
+	{
+		return lastFilteredElement;
+	}
+
+	@Override
+	public Long call()
+		throws Exception
+	{
+		Buffer<E> sourceBuffer = filteringBuffer.getSourceBuffer();
+		Condition condition = filteringBuffer.getCondition();
+		ThreadConditions conditions = condition == null ? null : new ThreadConditions(condition);
+		try
+		{
+			if(initialResult != null && conditions != null && !applyInitialResult(sourceBuffer, condition, conditions))
+			{
+				return lastFilteredElement;
+			}
+			for(;;)
+			{
+				if(filteringBuffer.isDisposed())
+				{
+					break;
+				}
+				long size = sourceBuffer.getSize();
+				long start = lastFilteredElement + 1;
+				if(start > size)
+				{
+					// source buffer has been reset
+					start = 0;
+					lastFilteredElement = -1;
+					filteringBuffer.clearFilteredIndices();
+				}
+				setNumberOfSteps(size);
+				setCurrentStep(start);
+				if(conditions != null)
+				{
+					IndexedCandidates candidates = IndexedCandidates.create(sourceBuffer, condition);
+					while(start < size)
+					{
+						if(filteringBuffer.isDisposed() || Thread.currentThread().isInterrupted())
+						{
+							return lastFilteredElement;
+						}
+						long windowSize = Math.min((long) chunkSize * windowChunks, size - start);
+						filterWindow(sourceBuffer, conditions, candidates, null, start, windowSize);
+						start += windowSize;
+						lastFilteredElement = start - 1;
+						setCurrentStep(start);
+					}
+				}
+				else
+				{
+					lastFilteredElement = size - 1;
+				}
+				try
+				{
+					Thread.sleep(filterDelay);
+				}
+				catch(InterruptedException e)
+				{
+					if(logger.isDebugEnabled()) logger.debug("Interrupted...", e);
+					return lastFilteredElement;
+				}
+			}
+		}
+		finally
+		{
+			if(conditions != null)
+			{
+				conditions.clear();
+			}
+		}
+		if(logger.isDebugEnabled()) logger.debug("Callable finished.");
+		return lastFilteredElement;
+	}
+
+	/**
+	 * Adds the matches of initialResult to the FilteringBuffer.
+	 *
+	 * @return false if filtering has been stopped.
+	 */
+	private boolean applyInitialResult(Buffer<E> sourceBuffer, Condition condition, ThreadConditions conditions)
+		throws InterruptedException
+	{
+		long size = sourceBuffer.getSize();
+		if(initialResult.getLastFilteredElement() >= size)
+		{
+			// source buffer has been reset
+			return true;
+		}
+		long[] indices = initialResult.getSourceIndices();
+		setNumberOfSteps(size);
+		if(condition.equals(initialResult.getCondition()))
+		{
+			for(long index : indices)
+			{
+				filteringBuffer.addFilteredIndex(index);
+			}
+		}
+		else
+		{
+			IndexedCandidates candidates = IndexedCandidates.create(sourceBuffer, condition);
+			int start = 0;
+			while(start < indices.length)
+			{
+				if(filteringBuffer.isDisposed() || Thread.currentThread().isInterrupted())
+				{
+					return false;
+				}
+				int windowSize = (int) Math.min((long) chunkSize * windowChunks, indices.length - start);
+				filterWindow(sourceBuffer, conditions, candidates, indices, start, windowSize);
+				start += windowSize;
+				// elements between the indices of the result can't match.
+				lastFilteredElement = indices[start - 1];
+				setCurrentStep(lastFilteredElement + 1);
+			}
+		}
+		lastFilteredElement = initialResult.getLastFilteredElement();
+		return true;
+	}
+
+	/**
+	 * Filters windowSize elements starting at start.
+	 *
+	 * If indices isn't null, start and windowSize refer to positions in indices instead of source indices.
+	 */
+	private void filterWindow(Buffer<E> sourceBuffer, ThreadConditions conditions, IndexedCandidates candidates, long[] indices, long start, long windowSize)
+	{
+		int chunks = (int) ((windowSize + chunkSize - 1) / chunkSize);
+		long[][] matches = new long[chunks][];
+		pool.invoke(new ChunkAction(sourceBuffer, conditions, candidates, indices, start, start + windowSize, 0, chunks, matches));
+		conditions.removeTerminated();
+		for(long[] current : matches)
+		{
+			for(long index : current)
+			{
+				filteringBuffer.addFilteredIndex(index);
+			}
+		}
+	}
+
+	private class ChunkAction
+		extends RecursiveAction
+	{
+		private static final long serialVersionUID = -6118627467519035284L;
+
+		private final transient Buffer<E> sourceBuffer;
+		private final transient ThreadConditions conditions;
+		private final transient IndexedCandidates candidates;
+		private final long[] indices;
+		private final long start;
+		private final long end;
+		private final int firstChunk;
+		private final int lastChunk;
+		private final long[][] matches;
+
+		ChunkAction(Buffer<E> sourceBuffer, ThreadConditions conditions, IndexedCandidates candidates, long[] indices, long start, long end, int firstChunk, int lastChunk, long[][] matches)
+		{
+			this.sourceBuffer = sourceBuffer;
+			this.conditions = conditions;
+			this.candidates = candidates;
+			this.indices = indices;
+			this.start = start;
+			this.end = end;
+			this.firstChunk = firstChunk;
+			this.lastChunk = lastChunk;
+			this.matches = matches;
+		}
+
+		@Override
+		protected void compute()
+		{
+			int chunkCount = lastChunk - firstChunk;
+			if(chunkCount > 1)
+			{
+				int middleChunk = firstChunk + chunkCount / 2;
+				long middle = start + (long) (middleChunk - firstChunk) * chunkSize;
+				invokeAll(new ChunkAction(sourceBuffer, conditions, candidates, indices, start, middle, firstChunk, middleChunk, matches),
+						new ChunkAction(sourceBuffer, conditions, candidates, indices, middle, end, middleChunk, lastChunk, matches));
+				return;
+			}
+			matches[firstChunk] = filterChunk();
+		}
+
+		private long[] filterChunk()
+		{
+			if(filteringBuffer.isDisposed())
+			{
+				return NO_MATCHES;
+			}
+			Condition condition = conditions.get();
+			long[] result = null;
+			int count = 0;
+			for(long i = start; i < end; i++)
+			{
+				long sourceIndex = indices == null ? i : indices[(int) i];
+				if(candidates != null && !candidates.mayMatch(sourceIndex))
+				{
+					continue;
+				}
+				E element = sourceBuffer.get(sourceIndex);
+				if(element != null && condition.isTrue(element))
+				{
+					if(result == null)
+					{
+						result = new long[(int) (end - start)];
+					}
+					result[count] = sourceIndex;
+					count++;
+				}
+			}
+			if(result == null)
+			{
+				return NO_MATCHES;
+			}
+			if(count == result.length)
+			{
+				return result;
+			}
+			long[] trimmed = new long[count];
+			System.arraycopy(result, 0, trimmed, 0, count);
+			return trimmed;
+		}
+	}
+}
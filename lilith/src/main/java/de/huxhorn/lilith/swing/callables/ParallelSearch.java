@@ -0,0 +1,210 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.conditions.Condition;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Searches a window of a buffer for the element nearest to its start that matches a condition.
+ *
+ * The window is split into chunks that are searched in parallel. As soon as a match is found,
+ * chunks farther away stop searching. The result is confirmed once all nearer chunks are done.
+ *
+ * If the buffer has a FieldIndex or TextIndex, only elements that may match according to the indexes are read.
+ */
+final class ParallelSearch<E>
+{
+	static final int DEFAULT_CHUNK_SIZE = 256;
+
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final Buffer<E> buffer;
+	private final ThreadConditions conditions;
+	private final IndexedCandidates candidates;
+	private final ForkJoinPool pool;
+	private final int chunkSize;
+	private final int windowSize;
+
+	ParallelSearch(Buffer<E> buffer, Condition condition, ForkJoinPool pool)
+	{
+		this(buffer, condition, pool, DEFAULT_CHUNK_SIZE);
+	}
+
+	ParallelSearch(Buffer<E> buffer, Condition condition, ForkJoinPool pool, int chunkSize)
+	{
+		this.buffer = Objects.requireNonNull(buffer, "buffer must not be null!");
+		this.conditions = new ThreadConditions(condition);
+		this.candidates = IndexedCandidates.create(buffer, condition);
+		this.pool = Objects.requireNonNull(pool, "pool must not be null!");
+		if(chunkSize < 1)
+		{
+			throw new IllegalArgumentException("chunkSize must be positive but was " + chunkSize + "!");
+		}
+		this.chunkSize = chunkSize;
+		this.windowSize = chunkSize * pool.getParallelism() * CHUNKS_PER_THREAD;
+	}
+
+	int getWindowSize()
+	{
+		return windowSize;
+	}
+
+	/**
+	 * Returns the smallest index in [start, end) of an element matching the condition.
+	 *
+	 * @param start the first index, inclusive.
+	 * @param end the last index, exclusive.
+	 * @return the smallest matching index or -1 if no element matches.
+	 */
+	long findFirst(long start, long end)
+	{
+		AtomicLong found = new AtomicLong(Long.MAX_VALUE);
+		search(start, end, true, found);
+		long result = found.get();
+		return result == Long.MAX_VALUE ? -1 : result;
+	}
+
+	/**
+	 * Returns the biggest index in [start, end) of an element matching the condition.
+	 *
+	 * @param start the first index, inclusive.
+	 * @param end the last index, exclusive.
+	 * @return the biggest matching index or -1 if no element matches.
+	 */
+	long findLast(long start, long end)
+	{
+		AtomicLong found = new AtomicLong(-1);
+		search(start, end, false, found);
+		return found.get();
+	}
+
+	void close()
+	{
+		conditions.clear();
+	}
+
+	private void search(long start, long end, boolean forward, AtomicLong found)
+	{
+		if(start >= end)
+		{
+			return;
+		}
+		pool.invoke(new SearchAction(start, end, forward, found));
+		conditions.removeTerminated();
+	}
+
+	private class SearchAction
+		extends RecursiveAction
+	{
+		private static final long serialVersionUID = 2393950218318546014L;
+
+		private final long start;
+		private final long end;
+		private final boolean forward;
+		private final AtomicLong found;
+
+		SearchAction(long start, long end, boolean forward, AtomicLong found)
+		{
+			this.start = start;
+			this.end = end;
+			this.forward = forward;
+			this.found = found;
+		}
+
+		@Override
+		protected void compute()
+		{
+			long size = end - start;
+			if(size > chunkSize)
+			{
+				long chunks = (size + chunkSize - 1) / chunkSize;
+				long middle = start + chunks / 2 * chunkSize;
+				// the farther half is forked, the nearer half is searched by this thread
+				if(forward)
+				{
+					invokeAll(new SearchAction(start, middle, true, found), new SearchAction(middle, end, true, found));
+				}
+				else
+				{
+					invokeAll(new SearchAction(middle, end, false, found), new SearchAction(start, middle, false, found));
+				}
+				return;
+			}
+			if(forward)
+			{
+				searchForward();
+			}
+			else
+			{
+				searchBackward();
+			}
+		}
+
+		private void searchForward()
+		{
+			Condition condition = conditions.get();
+			for(long i = start; i < end; i++)
+			{
+				if(i > found.get())
+				{
+					// a nearer match has already been found
+					return;
+				}
+				if(candidates != null && !candidates.mayMatch(i))
+				{
+					continue;
+				}
+				E element = buffer.get(i);
+				if(element != null && condition.isTrue(element))
+				{
+					found.accumulateAndGet(i, Math::min);
+					return;
+				}
+			}
+		}
+
+		private void searchBackward()
+		{
+			Condition condition = conditions.get();
+			for(long i = end - 1; i >= start; i--)
+			{
+				if(i < found.get())
+				{
+					// a nearer match has already been found
+					return;
+				}
+				if(candidates != null && !candidates.mayMatch(i))
+				{
+					continue;
+				}
+				E element = buffer.get(i);
+				if(element != null && condition.isTrue(element))
+				{
+					found.accumulateAndGet(i, Math::max);
+					return;
+				}
+			}
+		}
+	}
+}
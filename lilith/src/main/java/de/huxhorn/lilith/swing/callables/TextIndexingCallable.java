@@ -0,0 +1,95 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndex;
+import de.huxhorn.lilith.engine.impl.textindex.TextIndexWriter;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adds the events of a file that aren't contained in its TextIndex yet.
+ *
+ * Nothing is done if the TextIndex is currently written by someone else.
+ * Events indexed before cancellation are kept.
+ */
+public class TextIndexingCallable<T extends Serializable>
+	extends AbstractProgressingCallable<Long>
+{
+	private final Logger logger = LoggerFactory.getLogger(TextIndexingCallable.class);
+
+	private final FileBuffer<EventWrapper<T>> buffer;
+
+	public TextIndexingCallable(FileBuffer<EventWrapper<T>> buffer)
+	{
+		this.buffer = Objects.requireNonNull(buffer, "buffer must not be null!");
+	}
+
+	public FileBuffer<EventWrapper<T>> getBuffer()
+	{
+		return buffer;
+	}
+
+	@Override
+	public Long call()
+		throws Exception
+	{
+		File dataFile = buffer.getDataFile();
+		if(dataFile == null)
+		{
+			return 0L;
+		}
+		File textIndexFile = TextIndex.resolveTextIndexFile(dataFile);
+		long size = buffer.getSize();
+		setNumberOfSteps(size);
+		TextIndexWriter writer;
+		try
+		{
+			writer = TextIndexWriter.open(textIndexFile, buffer, false);
+		}
+		catch(IOException ex)
+		{
+			if(logger.isInfoEnabled()) logger.info("Not updating text index {}: {}", textIndexFile.getAbsolutePath(), ex.getMessage());
+			return 0L;
+		}
+		long added = 0;
+		try
+		{
+			for(long i = writer.getEventCount(); i < size; i++)
+			{
+				setCurrentStep(i);
+				writer.add(buffer.get(i));
+				added++;
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+		if(logger.isDebugEnabled()) logger.debug("Added {} events to text index {}.", added, textIndexFile.getAbsolutePath());
+		return added;
+	}
+}
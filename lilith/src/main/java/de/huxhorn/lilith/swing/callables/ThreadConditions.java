@@ -0,0 +1,105 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables;
+
+import de.huxhorn.sulky.conditions.Condition;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Provides a clone of a condition for every thread evaluating it.
+ *
+ * Conditions aren't required to be thread-safe. A condition that can't be cloned is evaluated
+ * by one thread at a time instead.
+ */
+final class ThreadConditions
+{
+	private final Logger logger = LoggerFactory.getLogger(ThreadConditions.class);
+
+	private final Condition condition;
+	private final Map<Thread, Condition> conditions = new ConcurrentHashMap<>();
+
+	ThreadConditions(Condition condition)
+	{
+		this.condition = Objects.requireNonNull(condition, "condition must not be null!");
+	}
+
+	Condition get()
+	{
+		return conditions.computeIfAbsent(Thread.currentThread(), thread -> cloneCondition());
+	}
+
+	/**
+	 * Removes the clones of threads that have terminated, e.g. idle pool threads.
+	 */
+	void removeTerminated()
+	{
+		conditions.keySet().removeIf(thread -> !thread.isAlive());
+	}
+
+	void clear()
+	{
+		conditions.clear();
+	}
+
+	private Condition cloneCondition()
+	{
+		try
+		{
+			return condition.clone();
+		}
+		catch(CloneNotSupportedException e)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Couldn't clone {}! Evaluating it serially.", condition, e);
+			return new SynchronizedCondition(condition);
+		}
+	}
+
+	private static final class SynchronizedCondition
+		implements Condition
+	{
+		private static final long serialVersionUID = 3785233541862766406L;
+
+		private final Condition condition;
+
+		SynchronizedCondition(Condition condition)
+		{
+			this.condition = condition;
+		}
+
+		@Override
+		public boolean isTrue(Object element)
+		{
+			synchronized(condition)
+			{
+				return condition.isTrue(element);
+			}
+		}
+
+		@Override
+		public SynchronizedCondition clone()
+			throws CloneNotSupportedException
+		{
+			return (SynchronizedCondition) super.clone();
+		}
+	}
+}
@@ -70,6 +70,8 @@ public class TroubleshootingPanel
 		buttonPanel.add(new JButton(new DeleteAllLogsAction()));
 		buttonPanel.add(new JButton(new CopySystemPropertiesAction()));
 		buttonPanel.add(new JButton(new CopyThreadsAction()));
+		buttonPanel.add(new JButton(new CopyStatisticsAction()));
+		buttonPanel.add(new JButton(new ResetStatisticsAction()));
 		buttonPanel.add(new JButton(new GarbageCollectionAction()));
 
 		JPanel messagePanel = new JPanel(new GridLayout(1,1));
@@ -227,6 +229,42 @@ public class TroubleshootingPanel
 		}
 	}
 
+	public class CopyStatisticsAction
+		extends AbstractAction
+	{
+		private static final long serialVersionUID = 3190843270184728601L;
+
+		CopyStatisticsAction()
+		{
+			super("Copy statistics");
+			putValue(SHORT_DESCRIPTION, "Copy internal statistics, e.g. event dispatching, to the clipboard.");
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent actionEvent)
+		{
+			MainFrame.copyText(preferencesDialog.getMainFrame().createStatisticsReport());
+		}
+	}
+
+	public class ResetStatisticsAction
+		extends AbstractAction
+	{
+		private static final long serialVersionUID = -2467925134061309482L;
+
+		ResetStatisticsAction()
+		{
+			super("Reset statistics");
+			putValue(SHORT_DESCRIPTION, "Reset the event dispatching statistics, e.g. before reproducing a problem.");
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent actionEvent)
+		{
+			preferencesDialog.getMainFrame().resetStatistics();
+		}
+	}
+
 	public class CopyThreadsAction
 		extends AbstractAction
 	{
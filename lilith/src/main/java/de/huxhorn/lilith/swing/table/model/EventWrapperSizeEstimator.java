@@ -0,0 +1,179 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.table.model;
+
+import de.huxhorn.lilith.data.access.AccessEvent;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.data.logging.Message;
+import de.huxhorn.lilith.data.logging.ThrowableInfo;
+import de.huxhorn.lilith.data.logging.protobuf.LazyLoggingEvent;
+import java.util.Map;
+
+/**
+ * Roughly estimates the heap size of events, used as the cost of cached events.
+ */
+public final class EventWrapperSizeEstimator
+{
+	private static final int WRAPPER_SIZE = 160;
+	private static final int EVENT_SIZE = 256;
+	private static final int STRING_SIZE = 40;
+	private static final int STACK_TRACE_ELEMENT_SIZE = 160;
+	private static final int MAP_ENTRY_SIZE = 48;
+	private static final int MAX_THROWABLE_DEPTH = 32;
+	private static final long LAZY_EXPANSION_FACTOR = 3;
+
+	static
+	{
+		new EventWrapperSizeEstimator(); // stfu
+	}
+
+	private EventWrapperSizeEstimator() {}
+
+	public static int estimate(EventWrapper<?> wrapper)
+	{
+		if(wrapper == null)
+		{
+			return 0;
+		}
+		long result = WRAPPER_SIZE;
+		Object event = wrapper.getEvent();
+		if(event instanceof LoggingEvent)
+		{
+			result += estimate((LoggingEvent) event);
+		}
+		else if(event instanceof AccessEvent)
+		{
+			result += estimate((AccessEvent) event);
+		}
+		return (int) Math.min(Integer.MAX_VALUE, result);
+	}
+
+	private static long estimate(LoggingEvent event)
+	{
+		if(event instanceof LazyLoggingEvent)
+		{
+			// don't convert all fields just to estimate their size.
+			// the encoding is kept until then and the converted fields are usually bigger.
+			return EVENT_SIZE + LAZY_EXPANSION_FACTOR * ((LazyLoggingEvent) event).getEncodedLength();
+		}
+		long result = EVENT_SIZE;
+		result += estimate(event.getLogger());
+		result += estimate(event.getMessage());
+		Message[] ndc = event.getNdc();
+		if(ndc != null)
+		{
+			for(Message current : ndc)
+			{
+				result += estimate(current);
+			}
+		}
+		result += estimate(event.getMdc());
+		result += estimate(event.getCallStack());
+		ThrowableInfo throwable = event.getThrowable();
+		for(int i = 0; throwable != null && i < MAX_THROWABLE_DEPTH; i++)
+		{
+			result += STRING_SIZE + estimate(throwable.getName()) + estimate(throwable.getMessage());
+			result += estimate(throwable.getStackTrace());
+			throwable = throwable.getCause();
+		}
+		return result;
+	}
+
+	private static long estimate(AccessEvent event)
+	{
+		long result = EVENT_SIZE;
+		result += estimate(event.getRequestURI());
+		result += estimate(event.getRequestURL());
+		result += estimate(event.getRemoteHost());
+		result += estimate(event.getRemoteUser());
+		result += estimate(event.getRemoteAddress());
+		result += estimate(event.getServerName());
+		result += estimate(event.getRequestHeaders());
+		result += estimate(event.getResponseHeaders());
+		Map<String, String[]> parameters = event.getRequestParameters();
+		if(parameters != null)
+		{
+			for(Map.Entry<String, String[]> current : parameters.entrySet())
+			{
+				result += MAP_ENTRY_SIZE + estimate(current.getKey());
+				String[] values = current.getValue();
+				if(values != null)
+				{
+					for(String value : values)
+					{
+						result += estimate(value);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private static long estimate(Message message)
+	{
+		if(message == null)
+		{
+			return 0;
+		}
+		long result = STRING_SIZE + estimate(message.getMessagePattern());
+		String[] arguments = message.getArguments();
+		if(arguments != null)
+		{
+			for(String current : arguments)
+			{
+				result += estimate(current);
+			}
+		}
+		return result;
+	}
+
+	private static long estimate(Map<String, String> map)
+	{
+		if(map == null)
+		{
+			return 0;
+		}
+		long result = 0;
+		for(Map.Entry<String, String> current : map.entrySet())
+		{
+			result += MAP_ENTRY_SIZE + estimate(current.getKey()) + estimate(current.getValue());
+		}
+		return result;
+	}
+
+	private static long estimate(ExtendedStackTraceElement[] stackTrace)
+	{
+		if(stackTrace == null)
+		{
+			return 0;
+		}
+		return (long) stackTrace.length * STACK_TRACE_ELEMENT_SIZE;
+	}
+
+	private static long estimate(String string)
+	{
+		if(string == null)
+		{
+			return 0;
+		}
+		return STRING_SIZE + string.length();
+	}
+}
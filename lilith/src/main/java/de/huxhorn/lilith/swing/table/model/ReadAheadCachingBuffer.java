@@ -0,0 +1,473 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.table.model;
+
+import de.huxhorn.sulky.buffers.BasicBufferIterator;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.Dispose;
+import de.huxhorn.sulky.buffers.DisposeOperation;
+import de.huxhorn.sulky.buffers.Flush;
+import de.huxhorn.sulky.buffers.FlushOperation;
+import de.huxhorn.sulky.buffers.Reset;
+import de.huxhorn.sulky.buffers.ResetOperation;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the elements of a wrapped buffer up to a budget of estimated bytes.
+ *
+ * The least recently used elements are evicted first. Cache misses are used to detect the direction of
+ * scrolling and the following elements are read ahead by a background thread. The read-ahead window
+ * doubles while the misses stay sequential and falls back to its minimum after a jump.
+ *
+ * @param <E> the type of the cached elements.
+ */
+public class ReadAheadCachingBuffer<E>
+	implements Buffer<E>, ResetOperation, DisposeOperation, FlushOperation
+{
+	public static final long DEFAULT_BYTE_BUDGET = 32L * 1024 * 1024;
+	public static final int MIN_READ_AHEAD = 64;
+	public static final int MAX_READ_AHEAD = 2048;
+
+	private static final ExecutorService READ_AHEAD_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "ReadAheadCachingBuffer-ReadAhead");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MIN_PRIORITY);
+		return thread;
+	});
+
+	private final Logger logger = LoggerFactory.getLogger(ReadAheadCachingBuffer.class);
+
+	private final Buffer<E> buffer;
+	private final ToIntFunction<? super E> sizeEstimator;
+	private final long byteBudget;
+	private final Executor executor;
+	private final Object lock = new Object();
+	private final Map<Long, CacheEntry<E>> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong readAheadElements = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private long cachedBytes;
+	private int direction = 1;
+	private int window = MIN_READ_AHEAD;
+	private long lastMissIndex = -1;
+	private long frontier = -1;
+	private long requestedStart;
+	private long requestedEnd;
+	private long pendingStart = -1;
+	private long pendingEnd = -1;
+	private int pendingDirection;
+	private long generation;
+	private boolean readAheadScheduled;
+	private volatile boolean disposed;
+
+	public ReadAheadCachingBuffer(Buffer<E> buffer, ToIntFunction<? super E> sizeEstimator, long byteBudget)
+	{
+		this(buffer, sizeEstimator, byteBudget, READ_AHEAD_EXECUTOR);
+	}
+
+	ReadAheadCachingBuffer(Buffer<E> buffer, ToIntFunction<? super E> sizeEstimator, long byteBudget, Executor executor)
+	{
+		this.buffer = Objects.requireNonNull(buffer, "buffer must not be null!");
+		this.sizeEstimator = Objects.requireNonNull(sizeEstimator, "sizeEstimator must not be null!");
+		this.executor = Objects.requireNonNull(executor, "executor must not be null!");
+		if(byteBudget <= 0)
+		{
+			throw new IllegalArgumentException("byteBudget must be greater than zero but was " + byteBudget + "!");
+		}
+		this.byteBudget = byteBudget;
+	}
+
+	Buffer<E> getWrappedBuffer()
+	{
+		return buffer;
+	}
+
+	@Override
+	public E get(long index)
+	{
+		if(disposed)
+		{
+			return null;
+		}
+		CacheEntry<E> entry;
+		boolean schedule;
+		long readGeneration;
+		synchronized(lock)
+		{
+			entry = cache.get(index);
+			if(entry != null)
+			{
+				hits.incrementAndGet();
+				schedule = checkFrontier(index);
+			}
+			else
+			{
+				misses.incrementAndGet();
+				schedule = registerMiss(index);
+			}
+			// registerMiss may start a new generation itself
+			readGeneration = generation;
+		}
+		if(schedule)
+		{
+			executor.execute(this::readAhead);
+		}
+		if(entry != null)
+		{
+			return entry.value;
+		}
+		E result = buffer.get(index);
+		if(result != null)
+		{
+			synchronized(lock)
+			{
+				// the element might be stale if the cache has been cleared in the meantime
+				if(readGeneration == generation)
+				{
+					put(index, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public long getSize()
+	{
+		return buffer.getSize();
+	}
+
+	@Override
+	public Iterator<E> iterator()
+	{
+		return new BasicBufferIterator<>(this);
+	}
+
+	@Override
+	public void reset()
+	{
+		Reset.reset(buffer);
+		clear();
+	}
+
+	@Override
+	public void dispose()
+	{
+		disposed = true;
+		clear();
+		Dispose.dispose(buffer);
+	}
+
+	@Override
+	public boolean isDisposed()
+	{
+		return disposed;
+	}
+
+	@Override
+	public void flush()
+	{
+		Flush.flush(buffer);
+		clear();
+	}
+
+	public long getByteBudget()
+	{
+		return byteBudget;
+	}
+
+	public long getCachedBytes()
+	{
+		synchronized(lock)
+		{
+			return cachedBytes;
+		}
+	}
+
+	public int getCachedElements()
+	{
+		synchronized(lock)
+		{
+			return cache.size();
+		}
+	}
+
+	public int getReadAheadWindow()
+	{
+		synchronized(lock)
+		{
+			return window;
+		}
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Returns the number of elements that have been read by the background thread.
+	 *
+	 * @return the number of elements read ahead.
+	 */
+	public long getReadAheadElements()
+	{
+		return readAheadElements.get();
+	}
+
+	public long getEvictions()
+	{
+		return evictions.get();
+	}
+
+	private void clear()
+	{
+		synchronized(lock)
+		{
+			cache.clear();
+			cachedBytes = 0;
+			lastMissIndex = -1;
+			frontier = -1;
+			pendingStart = -1;
+			pendingEnd = -1;
+			window = MIN_READ_AHEAD;
+			generation++;
+		}
+	}
+
+	private void put(long index, E value)
+	{
+		int size = Math.max(1, sizeEstimator.applyAsInt(value));
+		CacheEntry<E> previous = cache.put(index, new CacheEntry<>(value, size));
+		if(previous != null)
+		{
+			cachedBytes -= previous.size;
+		}
+		cachedBytes += size;
+		Iterator<CacheEntry<E>> iterator = cache.values().iterator();
+		while(cachedBytes > byteBudget && cache.size() > 1)
+		{
+			CacheEntry<E> eldest = iterator.next();
+			iterator.remove();
+			cachedBytes -= eldest.size;
+			evictions.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Reads further ahead if a hit comes close to the end of the elements that have been read ahead.
+	 *
+	 * @return true if a read-ahead task has to be executed.
+	 */
+	private boolean checkFrontier(long index)
+	{
+		if(frontier < 0)
+		{
+			return false;
+		}
+		int threshold = window / 2;
+		if(direction > 0)
+		{
+			if(index < frontier && frontier - index <= threshold)
+			{
+				return requestReadAhead(frontier, index + 1 + window, 1);
+			}
+		}
+		else if(index >= frontier && index - frontier <= threshold && frontier > 0)
+		{
+			return requestReadAhead(Math.max(0, index - window), frontier, -1);
+		}
+		return false;
+	}
+
+	/**
+	 * Updates direction and window using the given miss and requests the elements following it.
+	 *
+	 * Tables request their rows top to bottom, so a miss directly following the previous one
+	 * doesn't change the direction.
+	 *
+	 * @return true if a read-ahead task has to be executed.
+	 */
+	private boolean registerMiss(long index)
+	{
+		long previousMissIndex = lastMissIndex;
+		lastMissIndex = index;
+		if(previousMissIndex >= 0 && index >= requestedStart && index < requestedEnd)
+		{
+			// still being read ahead
+			return false;
+		}
+		long delta = previousMissIndex < 0 ? 0 : index - previousMissIndex;
+		if(previousMissIndex < 0 || Math.abs(delta) > 2L * window)
+		{
+			window = MIN_READ_AHEAD;
+			generation++;
+		}
+		else if(delta != 1 && delta != 0)
+		{
+			int newDirection = delta > 0 ? 1 : -1;
+			if(newDirection == direction)
+			{
+				window = Math.min(window * 2, MAX_READ_AHEAD);
+			}
+			else
+			{
+				direction = newDirection;
+				window = MIN_READ_AHEAD;
+			}
+		}
+		if(direction > 0)
+		{
+			return requestReadAhead(index + 1, index + 1 + window, 1);
+		}
+		return requestReadAhead(Math.max(0, index - window), index, -1);
+	}
+
+	private boolean requestReadAhead(long start, long end, int readDirection)
+	{
+		if(start >= end)
+		{
+			return false;
+		}
+		requestedStart = start;
+		requestedEnd = end;
+		frontier = readDirection > 0 ? end : start;
+		pendingStart = start;
+		pendingEnd = end;
+		pendingDirection = readDirection;
+		if(readAheadScheduled)
+		{
+			return false;
+		}
+		readAheadScheduled = true;
+		return true;
+	}
+
+	private void readAhead()
+	{
+		for(;;)
+		{
+			long start;
+			long end;
+			int readDirection;
+			long currentGeneration;
+			long size = buffer.getSize();
+			synchronized(lock)
+			{
+				if(disposed || pendingStart < 0)
+				{
+					readAheadScheduled = false;
+					return;
+				}
+				start = pendingStart;
+				end = Math.min(pendingEnd, size);
+				readDirection = pendingDirection;
+				currentGeneration = generation;
+				pendingStart = -1;
+				pendingEnd = -1;
+			}
+			long count = end - start;
+			for(long i = 0; i < count; i++)
+			{
+				long index = readDirection > 0 ? start + i : end - 1 - i;
+				synchronized(lock)
+				{
+					if(disposed || generation != currentGeneration || pendingStart >= 0)
+					{
+						// superseded by a newer request
+						break;
+					}
+					if(cache.containsKey(index))
+					{
+						continue;
+					}
+				}
+				E value;
+				try
+				{
+					value = buffer.get(index);
+				}
+				catch(RuntimeException ex)
+				{
+					if(logger.isWarnEnabled()) logger.warn("Exception while reading ahead element {}!", index, ex);
+					break;
+				}
+				if(value == null)
+				{
+					continue;
+				}
+				synchronized(lock)
+				{
+					if(generation == currentGeneration)
+					{
+						put(index, value);
+						readAheadElements.incrementAndGet();
+					}
+				}
+			}
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		long hitCount = getHits();
+		long missCount = getMisses();
+		long total = hitCount + missCount;
+		return "ReadAheadCachingBuffer[hits=" + hitCount
+				+ ", misses=" + missCount
+				+ ", hitRate=" + (total == 0 ? 0 : hitCount * 100 / total) + "%"
+				+ ", readAhead=" + getReadAheadElements()
+				+ ", evictions=" + getEvictions()
+				+ ", elements=" + getCachedElements()
+				+ ", bytes=" + getCachedBytes()
+				+ ", byteBudget=" + byteBudget
+				+ ", window=" + getReadAheadWindow()
+				+ "]";
+	}
+
+	private static class CacheEntry<E>
+	{
+		final E value;
+		final int size;
+
+		CacheEntry(E value, int size)
+		{
+			this.value = value;
+			this.size = size;
+		}
+	}
+}
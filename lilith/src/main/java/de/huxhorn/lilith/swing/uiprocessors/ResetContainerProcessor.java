@@ -39,6 +39,7 @@ public class ResetContainerProcessor
 			return;
 		}
 		Buffer<?> buffer = eventSource.getBuffer();
+		container.clearFilterResults();
 		Reset.reset(buffer);
 	}
 }
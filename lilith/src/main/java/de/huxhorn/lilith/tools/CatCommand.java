@@ -26,6 +26,7 @@ import de.huxhorn.lilith.engine.AccessFileBufferFactory;
 import de.huxhorn.lilith.engine.LogFileFactory;
 import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
 import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
+import de.huxhorn.lilith.engine.impl.mapped.MappedCodecFileBuffer;
 import de.huxhorn.lilith.tools.formatters.AccessFormatter;
 import de.huxhorn.lilith.tools.formatters.Formatter;
 import de.huxhorn.lilith.tools.formatters.LoggingFormatter;
@@ -44,6 +45,8 @@ import org.slf4j.LoggerFactory;
 
 public final class CatCommand
 {
+	private static final int RANGE_SIZE = 1000;
+
 	static
 	{
 		new CatCommand(); // stfu
@@ -52,6 +55,27 @@ public final class CatCommand
 	private CatCommand() {}
 
 	public static boolean catFile(File inputFile, String pattern, int amount)
+	{
+		return catFile(inputFile, pattern, amount, null);
+	}
+
+	public static boolean catFile(File inputFile, String pattern, int amount, String from)
+	{
+		return catFile(inputFile, pattern, amount, from, false, FileFollower.DEFAULT_LATENCY);
+	}
+
+	/**
+	 * Prints the entries of the given file and keeps printing appended entries if keepRunning is true.
+	 *
+	 * @param inputFile the file.
+	 * @param pattern the pattern used to format the entries.
+	 * @param amount the maximum number of entries printed initially, all if less than 1.
+	 * @param from if not null, entries are printed starting with the first one at or after the given time.
+	 * @param keepRunning whether entries appended after the initial ones should be printed, too.
+	 * @param latency the maximum time in milliseconds between a change notification and printing appended entries.
+	 * @return true, if the file could be read.
+	 */
+	public static boolean catFile(File inputFile, String pattern, int amount, String from, boolean keepRunning, long latency)
 	{
 		final Logger logger = LoggerFactory.getLogger(CatCommand.class);
 
@@ -130,11 +154,15 @@ public final class CatCommand
 				loggingMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
 
 				LoggingFileBufferFactory fileBufferFactory = new LoggingFileBufferFactory(logFileFactory, loggingMetaData);
-				FileBuffer<EventWrapper<LoggingEvent>> inputBuffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+				FileBuffer<EventWrapper<LoggingEvent>> inputBuffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 				LoggingFormatter formatter = new LoggingFormatter();
 				formatter.setPattern(pattern);
 
-				printContent(inputBuffer, formatter, amount);
+				long next = printContent(inputBuffer, formatter, FileHelper.resolveFirstIndex(inputBuffer, inputDataFile, from), amount);
+				if(keepRunning)
+				{
+					return followFile(inputBuffer, formatter, inputDataFile, inputIndexFile, next, latency);
+				}
 				return true;
 			}
 			else if (FileConstants.CONTENT_TYPE_VALUE_ACCESS.equals(contentType))
@@ -145,11 +173,15 @@ public final class CatCommand
 				accessMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
 
 				AccessFileBufferFactory fileBufferFactory = new AccessFileBufferFactory(logFileFactory, accessMetaData);
-				FileBuffer<EventWrapper<AccessEvent>> buffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+				FileBuffer<EventWrapper<AccessEvent>> buffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 				AccessFormatter formatter = new AccessFormatter();
 				formatter.setPattern(pattern);
 
-				printContent(buffer, formatter, amount);
+				long next = printContent(buffer, formatter, FileHelper.resolveFirstIndex(buffer, inputDataFile, from), amount);
+				if(keepRunning)
+				{
+					return followFile(buffer, formatter, inputDataFile, inputIndexFile, next, latency);
+				}
 				return true;
 			}
 			else
@@ -168,25 +200,75 @@ public final class CatCommand
 		return false;
 	}
 
-	@SuppressWarnings("PMD.SystemPrintln")
-	private static <T extends Serializable> void printContent(FileBuffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, long amount)
+	/**
+	 * Prints amount entries starting at start.
+	 *
+	 * @return the size of the buffer before printing, i.e. the index of the first entry appended afterwards.
+	 */
+	private static <T extends Serializable> long printContent(FileBuffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, long start, long amount)
 	{
 		long bufferSize=buffer.getSize();
-		if(amount < 1 || amount > bufferSize)
+		if(start < 0)
+		{
+			return bufferSize;
+		}
+		if(amount < 1 || amount > bufferSize - start)
 		{
-			amount = bufferSize;
+			amount = bufferSize - start;
 		}
-		for (long i = 0; i < amount; i++)
+		long end = start + amount;
+		if(buffer instanceof MappedCodecFileBuffer)
 		{
-			EventWrapper<T> current = buffer.get(i);
-			if (current != null)
+			MappedCodecFileBuffer<EventWrapper<T>> mappedBuffer = (MappedCodecFileBuffer<EventWrapper<T>>) buffer;
+			for (long i = start; i < end; i += RANGE_SIZE)
 			{
-				String msg = formatter.format(current);
-				if (msg != null)
+				for (EventWrapper<T> current : mappedBuffer.getRange(i, (int) Math.min(RANGE_SIZE, end - i)))
+				{
+					print(current, formatter);
+				}
+			}
+			return bufferSize;
+		}
+		for (long i = start; i < end; i++)
+		{
+			print(buffer.get(i), formatter);
+		}
+		return bufferSize;
+	}
+
+	private static <T extends Serializable> boolean followFile(FileBuffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, File dataFile, File indexFile, long index, long latency)
+	{
+		final Logger logger = LoggerFactory.getLogger(CatCommand.class);
+
+		long[] nextIndex = {index};
+		try(FileFollower follower = new FileFollower(latency))
+		{
+			follower.follow(dataFile, indexFile, file -> {
+				for(;nextIndex[0] < buffer.getSize();nextIndex[0]++)
 				{
-					System.out.print(msg);
-					System.out.flush();
+					print(buffer.get(nextIndex[0]), formatter);
 				}
+			});
+			follower.run();
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while following '{}'!", dataFile.getAbsolutePath(), ex);
+			return false;
+		}
+		return true;
+	}
+
+	@SuppressWarnings("PMD.SystemPrintln")
+	private static <T extends Serializable> void print(EventWrapper<T> current, Formatter<EventWrapper<T>> formatter)
+	{
+		if (current != null)
+		{
+			String msg = formatter.format(current);
+			if (msg != null)
+			{
+				System.out.print(msg);
+				System.out.flush();
 			}
 		}
 	}
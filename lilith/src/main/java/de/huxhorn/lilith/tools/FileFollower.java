@@ -0,0 +1,301 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.tools;
+
+import de.huxhorn.lilith.swing.callables.IndexingCallable;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Follows any number of Lilith files, reindexing only the appended part of a file whenever
+ * the file system reports a change.
+ *
+ * Changes are reported to the Listener of the file at most latency milliseconds after the
+ * notification. Bursts of writes within that time are handled by a single reindexing.
+ * Since notifications may get lost, e.g. on network file systems, the size of all files is
+ * also checked every FALLBACK_INTERVAL milliseconds.
+ *
+ * Instances are not thread-safe. follow and processChanges must be called by the same thread.
+ */
+public class FileFollower
+	implements Closeable
+{
+	public static final long DEFAULT_LATENCY = 100;
+	public static final long FALLBACK_INTERVAL = 5000;
+
+	private final Logger logger = LoggerFactory.getLogger(FileFollower.class);
+
+	private final long latency;
+	private final WatchService watchService;
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+	private final List<FollowedFile> followedFiles = new ArrayList<>();
+	private long lastUpdate;
+	private long lastFallbackCheck;
+
+	public FileFollower()
+		throws IOException
+	{
+		this(DEFAULT_LATENCY);
+	}
+
+	public FileFollower(long latency)
+		throws IOException
+	{
+		if(latency < 0)
+		{
+			throw new IllegalArgumentException("latency must not be negative!");
+		}
+		this.latency = latency;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		this.lastFallbackCheck = System.currentTimeMillis();
+	}
+
+	public long getLatency()
+	{
+		return latency;
+	}
+
+	/**
+	 * Starts following the given file. Its index is expected to be up to date.
+	 *
+	 * @param dataFile the data file.
+	 * @param indexFile the index file.
+	 * @param listener the listener that is notified after events have been appended and indexed.
+	 * @throws IOException if the directory of dataFile can't be watched.
+	 */
+	public void follow(File dataFile, File indexFile, Listener listener)
+		throws IOException
+	{
+		Objects.requireNonNull(dataFile, "dataFile must not be null!");
+		Objects.requireNonNull(indexFile, "indexFile must not be null!");
+		Objects.requireNonNull(listener, "listener must not be null!");
+		File absoluteDataFile = dataFile.getAbsoluteFile();
+		Path directory = absoluteDataFile.getParentFile().toPath();
+		if(!directories.containsValue(directory))
+		{
+			WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			directories.put(key, directory);
+		}
+		followedFiles.add(new FollowedFile(absoluteDataFile, indexFile, listener));
+	}
+
+	public int getFollowedFileCount()
+	{
+		return followedFiles.size();
+	}
+
+	/**
+	 * Processes changes until the current thread is interrupted or this follower is closed.
+	 */
+	public void run()
+	{
+		try
+		{
+			for(;;)
+			{
+				processChanges(FALLBACK_INTERVAL);
+			}
+		}
+		catch(InterruptedException e)
+		{
+			if(logger.isInfoEnabled()) logger.info("Interrupted...");
+			Thread.currentThread().interrupt();
+		}
+		catch(ClosedWatchServiceException e)
+		{
+			if(logger.isDebugEnabled()) logger.debug("Closed.");
+		}
+	}
+
+	/**
+	 * Waits at most timeout milliseconds for changes of the followed files, reindexes the changed files
+	 * and notifies their listeners.
+	 *
+	 * @param timeout the maximum time to wait for a notification in milliseconds.
+	 * @return the number of files with appended events.
+	 * @throws InterruptedException if the current thread was interrupted.
+	 */
+	public int processChanges(long timeout)
+		throws InterruptedException
+	{
+		long now = System.currentTimeMillis();
+		long fallbackTimeout = lastFallbackCheck + FALLBACK_INTERVAL - now;
+		WatchKey key = watchService.poll(Math.max(0, Math.min(timeout, fallbackTimeout)), TimeUnit.MILLISECONDS);
+		boolean checkAll = false;
+		if(key != null)
+		{
+			long delay = lastUpdate + latency - System.currentTimeMillis();
+			if(delay > 0)
+			{
+				// collect the remaining writes of a burst
+				Thread.sleep(delay);
+			}
+			while(key != null)
+			{
+				checkAll |= markChanged(key);
+				key = watchService.poll();
+			}
+		}
+		now = System.currentTimeMillis();
+		if(now - lastFallbackCheck >= FALLBACK_INTERVAL)
+		{
+			checkAll = true;
+		}
+		if(checkAll)
+		{
+			lastFallbackCheck = now;
+		}
+
+		int result = 0;
+		for(FollowedFile current : followedFiles)
+		{
+			if((checkAll || current.changed) && current.update())
+			{
+				result++;
+			}
+		}
+		if(result > 0)
+		{
+			lastUpdate = System.currentTimeMillis();
+		}
+		return result;
+	}
+
+	/**
+	 * Marks the followed files mentioned in the events of the given key as changed.
+	 *
+	 * @return true, if events were lost and all files have to be checked.
+	 */
+	private boolean markChanged(WatchKey key)
+	{
+		boolean result = false;
+		Path directory = directories.get(key);
+		for(WatchEvent<?> event : key.pollEvents())
+		{
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+			{
+				result = true;
+				continue;
+			}
+			Object context = event.context();
+			if(directory == null || !(context instanceof Path))
+			{
+				continue;
+			}
+			File file = directory.resolve((Path) context).toFile();
+			for(FollowedFile current : followedFiles)
+			{
+				if(current.dataFile.equals(file))
+				{
+					current.changed = true;
+				}
+			}
+		}
+		if(!key.reset())
+		{
+			if(logger.isWarnEnabled()) logger.warn("Directory '{}' can't be watched anymore!", directory);
+			directories.remove(key);
+			result = true;
+		}
+		return result;
+	}
+
+	@Override
+	public void close()
+		throws IOException
+	{
+		watchService.close();
+	}
+
+	public interface Listener
+	{
+		/**
+		 * Called after events have been appended to dataFile and the index was updated.
+		 *
+		 * @param dataFile the data file.
+		 */
+		void eventsAppended(File dataFile);
+	}
+
+	private class FollowedFile
+	{
+		private final File dataFile;
+		private final File indexFile;
+		private final Listener listener;
+		private long length;
+		private boolean changed;
+
+		FollowedFile(File dataFile, File indexFile, Listener listener)
+		{
+			this.dataFile = dataFile;
+			this.indexFile = indexFile;
+			this.listener = listener;
+			this.length = dataFile.length();
+		}
+
+		/**
+		 * Reindexes the appended part of the file, if any, and notifies the listener.
+		 *
+		 * @return true, if the listener was notified.
+		 */
+		boolean update()
+			throws InterruptedException
+		{
+			changed = false;
+			long currentLength = dataFile.length();
+			if(currentLength == length)
+			{
+				return false;
+			}
+			length = currentLength;
+			IndexingCallable callable = new IndexingCallable(dataFile, indexFile, true);
+			try
+			{
+				callable.call();
+			}
+			catch(InterruptedException e)
+			{
+				throw e;
+			}
+			catch(Exception e)
+			{
+				if(logger.isWarnEnabled()) logger.warn("Exception while reindexing '{}'!", dataFile.getAbsolutePath(), e);
+				return false;
+			}
+			listener.eventsAppended(dataFile);
+			return true;
+		}
+	}
+}
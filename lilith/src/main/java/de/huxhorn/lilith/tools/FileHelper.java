@@ -19,8 +19,17 @@
 package de.huxhorn.lilith.tools;
 
 import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.engine.FileBufferFactory;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex;
+import de.huxhorn.sulky.buffers.Buffer;
+import de.huxhorn.sulky.buffers.FileBuffer;
 import java.io.File;
+import java.io.Serializable;
 import java.util.Locale;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 final class FileHelper
 {
@@ -60,4 +69,47 @@ final class FileHelper
 		}
 		return new File(fileStr + FileConstants.INDEX_FILE_EXTENSION);
 	}
+
+	/**
+	 * Returns the index of the first event at or after the given time, using the TimeIndex of dataFile if available.
+	 *
+	 * @param buffer the buffer of dataFile.
+	 * @param dataFile the data file.
+	 * @param from the time as accepted by TimeIndex.parseTimestamp.
+	 * @return the index of the first event, 0 if from is null or -1 if from is invalid or no event was found.
+	 */
+	static <T extends Serializable> long resolveFirstIndex(Buffer<EventWrapper<T>> buffer, File dataFile, String from)
+	{
+		if(from == null)
+		{
+			return 0;
+		}
+		final Logger logger = LoggerFactory.getLogger(FileHelper.class);
+		Long timestamp = TimeIndex.parseTimestamp(from);
+		if(timestamp == null)
+		{
+			if(logger.isErrorEnabled()) logger.error("Invalid time '{}'!", from);
+			return -1;
+		}
+		return TimeIndex.findFirstAtOrAfter(buffer, TimeIndex.resolveTimeIndexFile(dataFile), timestamp);
+	}
+
+	/**
+	 * Returns a memory-mapped buffer of the given files, falling back to a CodecFileBuffer if that fails.
+	 *
+	 * @param fileBufferFactory the factory.
+	 * @param dataFile the data file.
+	 * @param indexFile the index file.
+	 * @param metaData the meta data used if the fallback has to create the file.
+	 * @return the buffer.
+	 */
+	static <T extends Serializable> FileBuffer<EventWrapper<T>> createReadOnlyBuffer(FileBufferFactory<T> fileBufferFactory, File dataFile, File indexFile, Map<String, String> metaData)
+	{
+		FileBuffer<EventWrapper<T>> result = fileBufferFactory.createReadOnlyBuffer(dataFile, indexFile);
+		if(result != null)
+		{
+			return result;
+		}
+		return fileBufferFactory.createBuffer(dataFile, indexFile, metaData);
+	}
 }
@@ -27,13 +27,14 @@ import de.huxhorn.lilith.engine.AccessFileBufferFactory;
 import de.huxhorn.lilith.engine.LogFileFactory;
 import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
 import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
-import de.huxhorn.lilith.swing.callables.IndexingCallable;
+import de.huxhorn.lilith.engine.impl.blocks.BlockFormat;
 import de.huxhorn.lilith.tools.formatters.AccessFormatter;
 import de.huxhorn.lilith.tools.formatters.Formatter;
 import de.huxhorn.lilith.tools.formatters.LoggingFormatter;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import de.huxhorn.sulky.buffers.Buffer;
 import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.buffers.Flush;
 import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
 import de.huxhorn.sulky.codec.filebuffer.FileHeader;
 import de.huxhorn.sulky.codec.filebuffer.FileHeaderStrategy;
@@ -57,6 +58,16 @@ public final class FilterCommand
 	private FilterCommand() {}
 
 	public static boolean filterFile(File inputFile, File outputFile, File conditionFile, String searchString, String pattern, boolean overwrite, boolean keepRunning, boolean exclusive)
+	{
+		return filterFile(inputFile, outputFile, conditionFile, searchString, pattern, overwrite, keepRunning, exclusive, null);
+	}
+
+	public static boolean filterFile(File inputFile, File outputFile, File conditionFile, String searchString, String pattern, boolean overwrite, boolean keepRunning, boolean exclusive, String from)
+	{
+		return filterFile(inputFile, outputFile, conditionFile, searchString, pattern, overwrite, keepRunning, exclusive, from, FileFollower.DEFAULT_LATENCY);
+	}
+
+	public static boolean filterFile(File inputFile, File outputFile, File conditionFile, String searchString, String pattern, boolean overwrite, boolean keepRunning, boolean exclusive, String from, long latency)
 	{
 		final Logger logger = LoggerFactory.getLogger(FilterCommand.class);
 
@@ -182,15 +193,15 @@ public final class FilterCommand
 
 				LoggingFileBufferFactory fileBufferFactory = new LoggingFileBufferFactory(logFileFactory, loggingMetaData);
 				Buffer<EventWrapper<LoggingEvent>> inputBuffer;
-				if(exclusive)
+				if(exclusive && !BlockFormat.isBlockCompressed(metaData))
 				{
 					ReadOnlyExclusiveCodecFileBuffer<EventWrapper<LoggingEvent>> input = new ReadOnlyExclusiveCodecFileBuffer<>(inputDataFile, inputIndexFile);
-					input.setCodec(fileBufferFactory.resolveCodec(metaData));
+					input.setCodec(fileBufferFactory.resolveCodec(metaData, inputDataFile));
 					inputBuffer = input;
 				}
 				else
 				{
-					inputBuffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+					inputBuffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 				}
 				FileBuffer<EventWrapper<LoggingEvent>> outputBuffer = fileBufferFactory.createBuffer(outputDataFile, outputIndexFile, data);
 
@@ -201,10 +212,11 @@ public final class FilterCommand
 					formatter.setPattern(pattern);
 				}
 
-				long firstUnfiltered=filterContent(inputBuffer, outputBuffer, groovyCondition, formatter);
+				long firstUnfiltered=filterContent(inputBuffer, outputBuffer, groovyCondition, formatter, FileHelper.resolveFirstIndex(inputBuffer, inputDataFile, from));
+				Flush.flush(outputBuffer);
 				if(keepRunning)
 				{
-					pollFile(inputBuffer, outputBuffer, groovyCondition, formatter, inputDataFile, inputIndexFile, firstUnfiltered);
+					return followFile(inputBuffer, outputBuffer, groovyCondition, formatter, inputDataFile, inputIndexFile, firstUnfiltered, latency);
 				}
 				return true;
 			}
@@ -217,15 +229,15 @@ public final class FilterCommand
 
 				AccessFileBufferFactory fileBufferFactory = new AccessFileBufferFactory(logFileFactory, accessMetaData);
 				Buffer<EventWrapper<AccessEvent>> inputBuffer;
-				if(exclusive)
+				if(exclusive && !BlockFormat.isBlockCompressed(metaData))
 				{
 					ReadOnlyExclusiveCodecFileBuffer<EventWrapper<AccessEvent>> input = new ReadOnlyExclusiveCodecFileBuffer<>(inputDataFile, inputIndexFile);
-					input.setCodec(fileBufferFactory.resolveCodec(metaData));
+					input.setCodec(fileBufferFactory.resolveCodec(metaData, inputDataFile));
 					inputBuffer = input;
 				}
 				else
 				{
-					inputBuffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+					inputBuffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 				}
 				FileBuffer<EventWrapper<AccessEvent>> outputBuffer = fileBufferFactory.createBuffer(outputDataFile, outputIndexFile, data);
 
@@ -236,10 +248,11 @@ public final class FilterCommand
 					formatter.setPattern(pattern);
 				}
 
-				long firstUnfiltered=filterContent(inputBuffer, outputBuffer, groovyCondition, formatter);
+				long firstUnfiltered=filterContent(inputBuffer, outputBuffer, groovyCondition, formatter, FileHelper.resolveFirstIndex(inputBuffer, inputDataFile, from));
+				Flush.flush(outputBuffer);
 				if(keepRunning)
 				{
-					pollFile(inputBuffer, outputBuffer, groovyCondition, formatter, inputDataFile, inputIndexFile, firstUnfiltered);
+					return followFile(inputBuffer, outputBuffer, groovyCondition, formatter, inputDataFile, inputIndexFile, firstUnfiltered, latency);
 				}
 				return true;
 			}
@@ -260,11 +273,16 @@ public final class FilterCommand
 	}
 
 	@SuppressWarnings("PMD.SystemPrintln")
-	private static <T extends Serializable> long filterContent(Buffer<EventWrapper<T>> inputBuffer, AppendOperation<EventWrapper<T>> outputBuffer, GroovyCondition groovyCondition, Formatter<EventWrapper<T>>  formatter)
+	private static <T extends Serializable> long filterContent(Buffer<EventWrapper<T>> inputBuffer, AppendOperation<EventWrapper<T>> outputBuffer, GroovyCondition groovyCondition, Formatter<EventWrapper<T>>  formatter, long start)
 	{
 		long bufferSize=inputBuffer.getSize();
+		if(start < 0)
+		{
+			// no event at or after the given time, yet
+			return bufferSize;
+		}
 		long i;
-		for (i = 0; i < bufferSize; i++)
+		for (i = start; i < bufferSize; i++)
 		{
 			EventWrapper<T> current = inputBuffer.get(i);
 			if (current != null && groovyCondition.isTrue(current))
@@ -284,55 +302,24 @@ public final class FilterCommand
 		return i;
 	}
 
-	@SuppressWarnings("PMD.SystemPrintln")
-	private static <T extends Serializable> void pollFile(Buffer<EventWrapper<T>> inputBuffer, AppendOperation<EventWrapper<T>> outputBuffer, GroovyCondition groovyCondition, Formatter<EventWrapper<T>>  formatter, File inputDataFile, File inputIndexFile, long index)
+	private static <T extends Serializable> boolean followFile(Buffer<EventWrapper<T>> inputBuffer, AppendOperation<EventWrapper<T>> outputBuffer, GroovyCondition groovyCondition, Formatter<EventWrapper<T>>  formatter, File inputDataFile, File inputIndexFile, long index, long latency)
 	{
 		final Logger logger = LoggerFactory.getLogger(FilterCommand.class);
 
-		for(;;)
+		long[] nextIndex = {index};
+		try(FileFollower follower = new FileFollower(latency))
 		{
-			long dataModified = inputDataFile.lastModified();
-			long indexModified = inputIndexFile.lastModified();
-			if (indexModified < dataModified)
-			{
-				// Index file is outdated.
-				IndexingCallable callable=new IndexingCallable(inputDataFile, inputIndexFile, true); // NOPMD - AvoidInstantiatingObjectsInLoops
-				try
-				{
-					callable.call();
-				}
-				catch(Exception e)
-				{
-					if(logger.isWarnEnabled()) logger.warn("Exception while reindexing!", e);
-					break;
-				}
-				for(;index < inputBuffer.getSize();index++)
-				{
-					EventWrapper<T> current = inputBuffer.get(index);
-					if (current != null && groovyCondition.isTrue(current))
-					{
-						if(formatter != null)
-						{
-							String msg = formatter.format(current);
-							if (msg != null)
-							{
-								System.out.print(msg);
-								System.out.flush();
-							}
-						}
-						outputBuffer.add(current);
-					}
-				}
-			}
-			try
-			{
-				Thread.sleep(5000);
-			}
-			catch(InterruptedException e)
-			{
-				if(logger.isInfoEnabled()) logger.info("Interrupted...");
-				break;
-			}
+			follower.follow(inputDataFile, inputIndexFile, dataFile -> {
+				nextIndex[0] = filterContent(inputBuffer, outputBuffer, groovyCondition, formatter, nextIndex[0]);
+				Flush.flush(outputBuffer);
+			});
+			follower.run();
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while following '{}'!", inputDataFile.getAbsolutePath(), ex);
+			return false;
 		}
+		return true;
 	}
 }
@@ -18,11 +18,27 @@
 
 package de.huxhorn.lilith.tools;
 
+import de.huxhorn.lilith.api.FileConstants;
+import de.huxhorn.lilith.data.access.AccessEvent;
+import de.huxhorn.lilith.data.eventsource.EventWrapper;
+import de.huxhorn.lilith.data.logging.LoggingEvent;
+import de.huxhorn.lilith.engine.AccessFileBufferFactory;
+import de.huxhorn.lilith.engine.LogFileFactory;
+import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
+import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex;
 import de.huxhorn.lilith.swing.callables.IndexingCallable;
+import de.huxhorn.sulky.buffers.FileBuffer;
+import de.huxhorn.sulky.codec.filebuffer.DefaultFileHeaderStrategy;
+import de.huxhorn.sulky.codec.filebuffer.FileHeader;
+import de.huxhorn.sulky.codec.filebuffer.MetaData;
 import de.huxhorn.sulky.tasks.ProgressingCallable;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -66,6 +82,7 @@ public class IndexCommand
 		{
 			long count = callable.call();
 			if(logger.isInfoEnabled()) logger.info("Finished indexing {}. Number of events: {}", inputDataFileStr, count);
+			rebuildTimeIndex(inputDataFile, inputIndexFile);
 			return true;
 		}
 		catch(Exception e)
@@ -75,6 +92,50 @@ public class IndexCommand
 		return false;
 	}
 
+	private static void rebuildTimeIndex(File dataFile, File indexFile)
+		throws IOException
+	{
+		final Logger logger = LoggerFactory.getLogger(IndexCommand.class);
+
+		FileHeader header = new DefaultFileHeaderStrategy().readFileHeader(dataFile);
+		if(header == null || header.getMagicValue() != FileConstants.MAGIC_VALUE)
+		{
+			return;
+		}
+		MetaData metaData = header.getMetaData();
+		if(metaData == null || metaData.getData() == null)
+		{
+			return;
+		}
+		Map<String, String> data = metaData.getData();
+		String contentType = data.get(FileConstants.CONTENT_TYPE_KEY);
+		File timeIndexFile = TimeIndex.resolveTimeIndexFile(dataFile);
+
+		LogFileFactory logFileFactory = new LogFileFactoryImpl(new File("."));
+		Map<String, String> defaultMetaData = new HashMap<>();
+		defaultMetaData.put(FileConstants.CONTENT_FORMAT_KEY, FileConstants.CONTENT_FORMAT_VALUE_PROTOBUF);
+		defaultMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
+		if(FileConstants.CONTENT_TYPE_VALUE_LOGGING.equals(contentType))
+		{
+			defaultMetaData.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_LOGGING);
+			LoggingFileBufferFactory fileBufferFactory = new LoggingFileBufferFactory(logFileFactory, defaultMetaData);
+			FileBuffer<EventWrapper<LoggingEvent>> buffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, dataFile, indexFile, data);
+			TimeIndex.rebuild(buffer, timeIndexFile);
+		}
+		else if(FileConstants.CONTENT_TYPE_VALUE_ACCESS.equals(contentType))
+		{
+			defaultMetaData.put(FileConstants.CONTENT_TYPE_KEY, FileConstants.CONTENT_TYPE_VALUE_ACCESS);
+			AccessFileBufferFactory fileBufferFactory = new AccessFileBufferFactory(logFileFactory, defaultMetaData);
+			FileBuffer<EventWrapper<AccessEvent>> buffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, dataFile, indexFile, data);
+			TimeIndex.rebuild(buffer, timeIndexFile);
+		}
+		else
+		{
+			return;
+		}
+		if(logger.isInfoEnabled()) logger.info("Finished writing time index {}.", timeIndexFile.getAbsolutePath());
+	}
+
 	private static class IndexingChangeListener
 		implements PropertyChangeListener
 	{
@@ -26,7 +26,6 @@ import de.huxhorn.lilith.engine.AccessFileBufferFactory;
 import de.huxhorn.lilith.engine.LogFileFactory;
 import de.huxhorn.lilith.engine.LoggingFileBufferFactory;
 import de.huxhorn.lilith.engine.impl.LogFileFactoryImpl;
-import de.huxhorn.lilith.swing.callables.IndexingCallable;
 import de.huxhorn.lilith.tools.formatters.AccessFormatter;
 import de.huxhorn.lilith.tools.formatters.Formatter;
 import de.huxhorn.lilith.tools.formatters.LoggingFormatter;
@@ -39,7 +38,10 @@ import de.huxhorn.sulky.codec.filebuffer.MetaData;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +56,68 @@ public final class TailCommand
 	private TailCommand() {}
 
 	public static boolean tailFile(File inputFile, String pattern, long amount, boolean keepRunning)
+	{
+		return tailFile(inputFile, pattern, amount, keepRunning, null);
+	}
+
+	public static boolean tailFile(File inputFile, String pattern, long amount, boolean keepRunning, String from)
+	{
+		return tailFiles(Collections.singletonList(inputFile), pattern, amount, keepRunning, from, FileFollower.DEFAULT_LATENCY);
+	}
+
+	/**
+	 * Prints the last entries of all given files and keeps printing appended entries if keepRunning is true.
+	 *
+	 * If more than one file is given, a header containing the file name is printed before the entries of a file.
+	 *
+	 * @param inputFiles the files.
+	 * @param pattern the pattern used to format the entries.
+	 * @param amount the number of entries printed for every file.
+	 * @param keepRunning whether appended entries should be printed, too.
+	 * @param from if not null, entries are printed starting with the first one at or after the given time instead.
+	 * @param latency the maximum time in milliseconds between a change notification and printing appended entries.
+	 * @return true, if all files could be read.
+	 */
+	public static boolean tailFiles(List<File> inputFiles, String pattern, long amount, boolean keepRunning, String from, long latency)
+	{
+		final Logger logger = LoggerFactory.getLogger(TailCommand.class);
+
+		Output output = new Output(inputFiles.size() > 1);
+		List<TailTarget<?>> targets = new ArrayList<>(inputFiles.size());
+		for(File inputFile : inputFiles)
+		{
+			TailTarget<?> target = openFile(inputFile, pattern, output);
+			if(target == null)
+			{
+				return false;
+			}
+			targets.add(target);
+		}
+		for(TailTarget<?> target : targets)
+		{
+			target.printContent(amount, from);
+		}
+		if(!keepRunning)
+		{
+			return true;
+		}
+		try(FileFollower follower = new FileFollower(latency))
+		{
+			for(TailTarget<?> target : targets)
+			{
+				follower.follow(target.dataFile, target.indexFile, target);
+			}
+			follower.run();
+		}
+		catch(IOException ex)
+		{
+			if(logger.isWarnEnabled()) logger.warn("Exception while following files!", ex);
+			return false;
+		}
+		return true;
+	}
+
+	private static TailTarget<?> openFile(File inputFile, String pattern, Output output)
 	{
 		final Logger logger = LoggerFactory.getLogger(TailCommand.class);
 
@@ -63,12 +127,12 @@ public final class TailCommand
 		if (!inputDataFile.isFile())
 		{
 			if (logger.isErrorEnabled()) logger.error("'{}' is not a file!", inputDataFileStr);
-			return false;
+			return null;
 		}
 		if (!inputDataFile.canRead())
 		{
 			if (logger.isErrorEnabled()) logger.error("Can't read '{}'!", inputDataFileStr);
-			return false;
+			return null;
 		}
 
 		File inputIndexFile = FileHelper.resolveIndexFile(inputFile);
@@ -103,12 +167,12 @@ public final class TailCommand
 				{
 					logger.warn("Couldn't read file header from '{}'!", inputDataFileStr);
 				}
-				return false;
+				return null;
 			}
 			if (header.getMagicValue() != FileConstants.MAGIC_VALUE)
 			{
 				if (logger.isWarnEnabled()) logger.warn("Invalid magic value! {}", Integer.toHexString(header.getMagicValue()));
-				return false;
+				return null;
 			}
 			MetaData metaData = header.getMetaData();
 			if (metaData == null || metaData.getData() == null)
@@ -117,7 +181,7 @@ public final class TailCommand
 				{
 					logger.warn("Couldn't read meta data from '{}'!", inputDataFileStr);
 				}
-				return false;
+				return null;
 			}
 			Map<String, String> data = metaData.getData();
 			String contentType = data.get(FileConstants.CONTENT_TYPE_KEY);
@@ -133,17 +197,12 @@ public final class TailCommand
 				loggingMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
 
 				LoggingFileBufferFactory fileBufferFactory = new LoggingFileBufferFactory(logFileFactory, loggingMetaData);
-				FileBuffer<EventWrapper<LoggingEvent>> inputBuffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+				FileBuffer<EventWrapper<LoggingEvent>> inputBuffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 
 				LoggingFormatter formatter = new LoggingFormatter();
 				formatter.setPattern(pattern);
 
-				long firstUnprinted=printContent(inputBuffer, formatter, amount);
-				if(keepRunning)
-				{
-					pollFile(inputBuffer, formatter, inputDataFile, inputIndexFile, firstUnprinted);
-				}
-				return true;
+				return new TailTarget<>(inputBuffer, formatter, inputDataFile, inputIndexFile, output);
 			}
 			else if (FileConstants.CONTENT_TYPE_VALUE_ACCESS.equals(contentType))
 			{
@@ -153,22 +212,17 @@ public final class TailCommand
 				accessMetaData.put(FileConstants.COMPRESSION_KEY, FileConstants.COMPRESSION_VALUE_GZIP);
 
 				AccessFileBufferFactory fileBufferFactory = new AccessFileBufferFactory(logFileFactory, accessMetaData);
-				FileBuffer<EventWrapper<AccessEvent>> inputBuffer = fileBufferFactory.createBuffer(inputDataFile, inputIndexFile, data);
+				FileBuffer<EventWrapper<AccessEvent>> inputBuffer = FileHelper.createReadOnlyBuffer(fileBufferFactory, inputDataFile, inputIndexFile, data);
 
 				AccessFormatter formatter = new AccessFormatter();
 				formatter.setPattern(pattern);
 
-				long firstUnprinted=printContent(inputBuffer, formatter, amount);
-				if(keepRunning)
-				{
-					pollFile(inputBuffer, formatter, inputDataFile, inputIndexFile, firstUnprinted);
-				}
-				return true;
+				return new TailTarget<>(inputBuffer, formatter, inputDataFile, inputIndexFile, output);
 			}
 			else
 			{
 				if (logger.isWarnEnabled()) logger.warn("Unexpected content type {}.", contentType);
-				return false;
+				return null;
 			}
 		}
 		catch (IOException ex)
@@ -178,80 +232,100 @@ public final class TailCommand
 				logger.warn("Exception while reading from file '{}'!", inputDataFileStr, ex);
 			}
 		}
-		return false;
+		return null;
 	}
 
-	@SuppressWarnings("PMD.SystemPrintln")
-	private static <T extends Serializable> void pollFile(Buffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, File dataFile, File indexFile, long index)
+	private static final class TailTarget<T extends Serializable>
+		implements FileFollower.Listener
 	{
-		final Logger logger = LoggerFactory.getLogger(TailCommand.class);
+		private final Buffer<EventWrapper<T>> buffer;
+		private final Formatter<EventWrapper<T>> formatter;
+		private final File dataFile;
+		private final File indexFile;
+		private final Output output;
+		private long index;
 
-		for(;;)
+		TailTarget(Buffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, File dataFile, File indexFile, Output output)
 		{
-			long dataModified = dataFile.lastModified();
-			long indexModified = indexFile.lastModified();
-			if (indexModified < dataModified)
+			this.buffer = buffer;
+			this.formatter = formatter;
+			this.dataFile = dataFile;
+			this.indexFile = indexFile;
+			this.output = output;
+		}
+
+		void printContent(long amount, String from)
+		{
+			long bufferSize=buffer.getSize();
+			long start;
+			if(from != null)
 			{
-				// Index file is outdated.
-				IndexingCallable callable=new IndexingCallable(dataFile, indexFile, true); // NOPMD - AvoidInstantiatingObjectsInLoops
-				try
-				{
-					callable.call();
-				}
-				catch(Exception e)
-				{
-					if(logger.isWarnEnabled()) logger.warn("Exception while reindexing!", e);
-					break;
-				}
-				for(;index < buffer.getSize();index++)
+				start = FileHelper.resolveFirstIndex(buffer, dataFile, from);
+				if(start < 0)
 				{
-					EventWrapper<T> current = buffer.get(index);
-					if (current != null)
-					{
-						String msg = formatter.format(current);
-						if (msg != null)
-						{
-							System.out.print(msg);
-							System.out.flush();
-						}
-					}
+					// nothing to print yet
+					start = bufferSize;
 				}
 			}
-			try
+			else
 			{
-				Thread.sleep(5000);
+				if(amount < 1 || amount > bufferSize)
+				{
+					amount = 1;
+				}
+				start = bufferSize - amount;
 			}
-			catch(InterruptedException e)
+			index = start;
+			printAppended();
+		}
+
+		@Override
+		public void eventsAppended(File dataFile)
+		{
+			printAppended();
+		}
+
+		private void printAppended()
+		{
+			for(;index < buffer.getSize();index++)
 			{
-				if(logger.isInfoEnabled()) logger.info("Interrupted...");
-				break;
+				EventWrapper<T> current = buffer.get(index);
+				if (current != null)
+				{
+					output.print(this, formatter.format(current));
+				}
 			}
 		}
 	}
 
-	@SuppressWarnings("PMD.SystemPrintln")
-	private static <T extends Serializable> long printContent(Buffer<EventWrapper<T>> buffer, Formatter<EventWrapper<T>> formatter, long amount)
+	private static final class Output
 	{
-		long bufferSize=buffer.getSize();
-		if(amount < 1 || amount > bufferSize)
+		private final boolean printHeaders;
+		private TailTarget<?> previousTarget;
+
+		Output(boolean printHeaders)
 		{
-			amount = 1;
+			this.printHeaders = printHeaders;
 		}
 
-		long i;
-		for (i = bufferSize-amount; i < bufferSize; i++)
+		@SuppressWarnings("PMD.SystemPrintln")
+		void print(TailTarget<?> target, String msg)
 		{
-			EventWrapper<T> current = buffer.get(i);
-			if (current != null)
+			if (msg == null)
+			{
+				return;
+			}
+			if(printHeaders && previousTarget != target)
 			{
-				String msg = formatter.format(current);
-				if (msg != null)
+				if(previousTarget != null)
 				{
-					System.out.print(msg);
-					System.out.flush();
+					System.out.println();
 				}
+				System.out.println("==> " + target.dataFile.getAbsolutePath() + " <==");
+				previousTarget = target;
 			}
+			System.out.print(msg);
+			System.out.flush();
 		}
-		return i;
 	}
 }
@@ -148,7 +148,7 @@ logger('de.huxhorn.lilith.tools.CreateMd5Command', INFO)
 logger('de.huxhorn.lilith.tools.ImportExportCommand', INFO)
 logger('de.huxhorn.lilith.tray', WARN)
 logger('de.huxhorn.sulky', INFO)
-logger('de.huxhorn.sulky.buffers.SoftReferenceCachingBuffer', WARN)
+logger('de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer', WARN)
 logger('de.huxhorn.sulky.buffers.filtering.FilteringBuffer', INFO)
 logger('de.huxhorn.sulky.groovy', WARN)
 logger('de.huxhorn.sulky.logging.LoggingPropertyChangeListener', DEBUG)
@@ -119,7 +119,7 @@ logger('de.huxhorn.lilith.swing.xhtml', DEBUG)
 logger('de.huxhorn.lilith.tools', DEBUG)
 logger('de.huxhorn.lilith.tray', WARN)
 logger('de.huxhorn.sulky', INFO)
-logger('de.huxhorn.sulky.buffers.SoftReferenceCachingBuffer', WARN)
+logger('de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer', WARN)
 logger('de.huxhorn.sulky.buffers.filtering.FilteringBuffer', INFO)
 logger('de.huxhorn.sulky.groovy', INFO)
 logger('de.huxhorn.sulky.logging.LoggingPropertyChangeListener', DEBUG)
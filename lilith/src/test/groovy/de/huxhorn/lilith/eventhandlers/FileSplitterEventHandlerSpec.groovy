@@ -0,0 +1,130 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.eventhandlers
+
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier
+import de.huxhorn.lilith.engine.FileBufferFactory
+import de.huxhorn.lilith.engine.LogFileFactory
+import de.huxhorn.lilith.engine.SourceManager
+import de.huxhorn.lilith.engine.impl.textindex.TextIndexWriter
+import de.huxhorn.sulky.buffers.FileBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FileSplitterEventHandlerSpec extends Specification {
+
+	@Unroll
+	def 'events are written in order per source using #writerThreads writer threads.'() {
+		setup:
+		File tempDir = File.createTempDir()
+		Map<SourceIdentifier, List<Integer>> written = new ConcurrentHashMap<>()
+		LogFileFactory logFileFactory = Mock(LogFileFactory)
+		logFileFactory.getActiveFile(_) >> { SourceIdentifier si -> new File(tempDir, si.identifier + '.active') }
+		FileBufferFactory<Integer> fileBufferFactory = Mock(FileBufferFactory)
+		fileBufferFactory.getLogFileFactory() >> logFileFactory
+		fileBufferFactory.createActiveBuffer(_) >> { SourceIdentifier si ->
+			List<Integer> events = new CopyOnWriteArrayList<>()
+			written.put(si, events)
+			FileBuffer<EventWrapper<Integer>> buffer = Mock(FileBuffer)
+			buffer.addAll(_ as List) >> { args -> events.addAll(args[0]*.event) }
+			buffer
+		}
+		SourceManager<Integer> sourceManager = Mock(SourceManager)
+		FileSplitterEventHandler<Integer> instance = new FileSplitterEventHandler<>(fileBufferFactory, sourceManager, writerThreads)
+
+		List<SourceIdentifier> sources = (1..5).collect { new SourceIdentifier('source-' + it) }
+
+		when:
+		for(int batch = 0; batch < 10; batch++) {
+			List<EventWrapper<Integer>> events = []
+			for(int i = 0; i < 20; i++) {
+				int value = batch * 20 + i
+				events.add(new EventWrapper<Integer>(sources[value % sources.size()], value, value))
+			}
+			instance.handle(events)
+		}
+		instance.handle([new EventWrapper<Integer>(sources[0], 1000, null)])
+
+		then:
+		5 * sourceManager.addSource(_)
+		1 * sourceManager.removeSource(sources[0])
+		sources.each { SourceIdentifier si ->
+			List<Integer> values = written[si]
+			assert values.size() == (si == sources[0] ? 41 : 40)
+			List<Integer> nonNull = values.findAll { it != null }
+			assert nonNull == nonNull.sort(false)
+		}
+		instance.writeStatistics.size() == 4
+		instance.writeStatistics[sources[1]].events == 40
+
+		cleanup:
+		tempDir.deleteDir()
+
+		where:
+		writerThreads << [1, 3]
+	}
+
+	@Unroll
+	def 'enabled indexes are written and closed with the source (fieldIndex=#fieldIndex, textIndex=#textIndex).'() {
+		setup:
+		File tempDir = File.createTempDir()
+		LogFileFactory logFileFactory = Mock(LogFileFactory)
+		logFileFactory.getActiveFile(_) >> { SourceIdentifier si -> new File(tempDir, si.identifier + '.active') }
+		logFileFactory.getTimeIndexFile(_) >> { SourceIdentifier si -> new File(tempDir, si.identifier + '.time') }
+		logFileFactory.getFieldIndexFile(_) >> { SourceIdentifier si -> new File(tempDir, si.identifier + '.field') }
+		logFileFactory.getTextIndexFile(_) >> { SourceIdentifier si -> new File(tempDir, si.identifier + '.text') }
+		List<EventWrapper<Integer>> written = new CopyOnWriteArrayList<>()
+		FileBuffer<EventWrapper<Integer>> buffer = Mock(FileBuffer)
+		buffer.addAll(_ as List) >> { args -> written.addAll(args[0]) }
+		buffer.getSize() >> { written.size() }
+		buffer.get(_ as Long) >> { long index -> written[(int) index] }
+		FileBufferFactory<Integer> fileBufferFactory = Mock(FileBufferFactory)
+		fileBufferFactory.getLogFileFactory() >> logFileFactory
+		fileBufferFactory.createActiveBuffer(_) >> buffer
+		FileSplitterEventHandler<Integer> instance = new FileSplitterEventHandler<>(fileBufferFactory, Mock(SourceManager), 1, fieldIndex, textIndex)
+		SourceIdentifier si = new SourceIdentifier('source')
+
+		when:
+		instance.handle([new EventWrapper<Integer>(si, 1, 17), new EventWrapper<Integer>(si, 2, 42)])
+		instance.handle([new EventWrapper<Integer>(si, 3, null)])
+
+		then:
+		new File(tempDir, 'source.time').isFile()
+		new File(tempDir, 'source.field').isFile() == fieldIndex
+		new File(tempDir, 'source.text').isFile() == textIndex
+
+		when: 'the text index is opened again'
+		TextIndexWriter reopened = textIndex ? TextIndexWriter.open(new File(tempDir, 'source.text'), buffer) : null
+
+		then: 'it has been unlocked by closing the source'
+		noExceptionThrown()
+
+		cleanup:
+		reopened?.close()
+		tempDir.deleteDir()
+
+		where:
+		fieldIndex | textIndex
+		false      | false
+		true       | true
+	}
+}
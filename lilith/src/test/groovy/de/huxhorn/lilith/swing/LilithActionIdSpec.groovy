@@ -201,6 +201,7 @@ class LilithActionIdSpec extends Specification {
 				LilithActionId.FIND_NEXT,
 				LilithActionId.FIND_PREVIOUS_ACTIVE,
 				LilithActionId.FIND_NEXT_ACTIVE,
+				LilithActionId.GO_TO_TIME,
 
 				LilithActionId.SAVE_CONDITION,
 
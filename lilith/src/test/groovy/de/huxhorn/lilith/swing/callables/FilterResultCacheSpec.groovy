@@ -0,0 +1,135 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.conditions.LoggerEqualsCondition
+import spock.lang.Specification
+
+class FilterResultCacheSpec extends Specification {
+	private static FilterResult result(String logger, int matches, long lastFilteredElement) {
+		long[] indices = new long[matches]
+		for(int i = 0; i < matches; i++) {
+			indices[i] = i
+		}
+		return new FilterResult(new LoggerEqualsCondition(logger), indices, lastFilteredElement)
+	}
+
+	def 'least recently used results are evicted if there are too many.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache(2, 1000)
+
+		when:
+		instance.put(result('a', 1, 10))
+		instance.put(result('b', 1, 10))
+		instance.get(new LoggerEqualsCondition('a'))
+		instance.put(result('c', 1, 10))
+
+		then:
+		instance.size() == 2
+		instance.get(new LoggerEqualsCondition('a')) != null
+		instance.get(new LoggerEqualsCondition('b')) == null
+		instance.get(new LoggerEqualsCondition('c')) != null
+	}
+
+	def 'least recently used results are evicted if there are too many indices.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache(10, 100)
+
+		when:
+		instance.put(result('a', 60, 100))
+		instance.put(result('b', 60, 100))
+		instance.put(result('c', 101, 200))
+
+		then:
+		instance.size() == 1
+		instance.get(new LoggerEqualsCondition('b')) != null
+		instance.toString() == 'FilterResultCache[results=1, indices=60]'
+	}
+
+	def 'a result is only replaced by a more recent one.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache()
+		FilterResult newer = result('a', 2, 20)
+
+		when:
+		instance.put(newer)
+		instance.put(result('a', 1, 10))
+
+		then:
+		instance.get(new LoggerEqualsCondition('a')).is(newer)
+	}
+
+	def 'results of a previous content of the source are removed.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache()
+		FilterResult valid = result('a', 2, 9)
+		instance.put(valid)
+		instance.put(result('b', 2, 10))
+
+		when:
+		List<FilterResult> results = instance.getResults(10)
+
+		then:
+		results == [valid]
+		instance.size() == 1
+
+		when:
+		instance.clear()
+
+		then:
+		instance.size() == 0
+		instance.getResults(10) == []
+	}
+
+	def 'a new source generation is started if the source is cleared or has become smaller.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache()
+
+		expect:
+		instance.getSourceGeneration(10) == 0
+		instance.getSourceGeneration(20) == 0
+
+		when:
+		instance.put(result('a', 2, 9))
+
+		then: 'the source has been reset and refilled'
+		instance.getResults(15) == []
+		instance.getSourceGeneration(15) == 1
+
+		when:
+		instance.clear()
+
+		then:
+		instance.getSourceGeneration(30) == 2
+	}
+
+	def 'results of a previous source generation are ignored.'() {
+		given:
+		FilterResultCache instance = new FilterResultCache()
+		instance.clear()
+
+		when:
+		instance.put(new FilterResult(new LoggerEqualsCondition('a'), [1L] as long[], 5, 0))
+		instance.put(new FilterResult(new LoggerEqualsCondition('b'), [1L] as long[], 5, 1))
+
+		then:
+		instance.size() == 1
+		instance.getResults(10)*.condition == [new LoggerEqualsCondition('b')]
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.conditions.GroovyCondition
+import de.huxhorn.lilith.conditions.LevelCondition
+import de.huxhorn.lilith.conditions.LoggerEqualsCondition
+import de.huxhorn.sulky.buffers.OverwritingCircularBuffer
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer
+import de.huxhorn.sulky.conditions.And
+import de.huxhorn.sulky.conditions.Condition
+import de.huxhorn.sulky.conditions.Not
+import de.huxhorn.sulky.conditions.Or
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class FilterResultSpec extends Specification {
+	private static And and(Condition... conditions) {
+		And result = new And()
+		result.conditions = conditions as List
+		return result
+	}
+
+	private static Or or(Condition... conditions) {
+		Or result = new Or()
+		result.conditions = conditions as List
+		return result
+	}
+
+	private static final Condition LOGGER = new LoggerEqualsCondition('foo.Bar')
+	private static final Condition LEVEL = new LevelCondition('WARN')
+	private static final Condition OTHER_LOGGER = new LoggerEqualsCondition('foo.Baz')
+	private static final Condition GROOVY = new GroovyCondition()
+
+	@Unroll
+	'isNarrowing(#condition, #previous) == #expected'() {
+		expect:
+		FilterResult.isNarrowing(condition, previous) == expected
+
+		where:
+		condition                                  | previous           | expected
+		LOGGER                                     | LOGGER             | true
+		new LoggerEqualsCondition('foo.Bar')       | LOGGER             | true
+		and(LOGGER, LEVEL)                         | LOGGER             | true
+		and(LOGGER, LEVEL, OTHER_LOGGER)           | and(LOGGER, LEVEL) | true
+		and(LEVEL, LOGGER)                         | and(LOGGER, LEVEL) | true
+		and(LOGGER, OTHER_LOGGER)                  | and(LOGGER, LEVEL) | false
+		LOGGER                                     | and(LOGGER, LEVEL) | false
+		LEVEL                                      | LOGGER             | false
+		or(LOGGER, LEVEL)                          | LOGGER             | false
+		new Not(and(LOGGER, LEVEL))                | LOGGER             | false
+		and()                                      | and()              | true
+		and()                                      | LOGGER             | false
+		null                                       | LOGGER             | false
+		LOGGER                                     | null               | false
+	}
+
+	def 'select prefers an equal result and the smallest narrowed result otherwise.'() {
+		given:
+		FilterResult logger = new FilterResult(LOGGER, [1L, 2L, 3L] as long[], 10)
+		FilterResult loggerAndLevel = new FilterResult(and(LOGGER, LEVEL), [2L] as long[], 10)
+		FilterResult level = new FilterResult(LEVEL, [2L, 4L] as long[], 10)
+
+		expect:
+		FilterResult.select(and(LOGGER, LEVEL, OTHER_LOGGER), [logger, loggerAndLevel, level], 0).is(loggerAndLevel)
+		FilterResult.select(and(LOGGER, LEVEL), [logger, level, loggerAndLevel], 0).is(loggerAndLevel)
+		FilterResult.select(and(LOGGER, OTHER_LOGGER), [logger, loggerAndLevel, level], 0).is(logger)
+		FilterResult.select(OTHER_LOGGER, [logger, loggerAndLevel, level], 0) == null
+		FilterResult.select(LOGGER, [], 0) == null
+	}
+
+	@Unroll
+	'isCacheable(#condition) == #expected'() {
+		expect:
+		FilterResult.isCacheable(condition) == expected
+
+		where:
+		condition                                         | expected
+		LOGGER                                            | true
+		and(LOGGER, new Not(or(LEVEL, OTHER_LOGGER)))     | true
+		new Not()                                         | true
+		GROOVY                                            | false
+		and(LOGGER, GROOVY)                               | false
+		new Not(or(LEVEL, and(LOGGER, GROOVY)))           | false
+		null                                              | false
+	}
+
+	def 'select ignores results of other source generations and conditions that are not cacheable.'() {
+		given:
+		FilterResult current = new FilterResult(LOGGER, [1L, 2L, 3L] as long[], 10, 1)
+		FilterResult previous = new FilterResult(and(LOGGER, LEVEL), [2L] as long[], 10, 0)
+		FilterResult groovy = new FilterResult(and(LOGGER, GROOVY), [2L] as long[], 10, 1)
+
+		expect:
+		FilterResult.select(and(LOGGER, LEVEL), [current, previous], 1).is(current)
+		FilterResult.select(and(LOGGER, LEVEL), [current, previous], 0).is(previous)
+		FilterResult.select(and(LOGGER, GROOVY), [current, groovy], 1) == null
+		FilterResult.select(and(LOGGER, GROOVY, LEVEL), [groovy], 1) == null
+	}
+
+	def 'create returns the matches up to the last filtered element.'() {
+		given:
+		ForkJoinPool pool = new ForkJoinPool(1)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+		OverwritingCircularBuffer<Integer> source = new OverwritingCircularBuffer<>(10)
+		Condition condition = new ParallelFilteringCallableSpec.DivisibleCondition(3)
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, condition)
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool)
+
+		expect: 'nothing has been filtered yet'
+		FilterResult.create(callable, 3) == null
+
+		when:
+		source.addAll([0, 1, 2, 3, 4, 5, 6, 7, 8, 9])
+		Future<Long> future = executor.submit(callable)
+		long timeout = System.currentTimeMillis() + 10_000
+		while (callable.lastFilteredElement < 9 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10)
+		}
+		FilterResult result = FilterResult.create(callable, 3)
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		result.condition.is(condition)
+		result.sourceIndices == [0L, 3L, 6L, 9L] as long[]
+		result.lastFilteredElement == 9
+		result.sourceGeneration == 3
+
+		cleanup:
+		executor.shutdownNow()
+		pool.shutdownNow()
+	}
+}
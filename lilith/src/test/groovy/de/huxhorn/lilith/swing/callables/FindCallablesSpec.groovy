@@ -0,0 +1,96 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.conditions.LevelCondition
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.engine.impl.EventSourceImpl
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndex
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndexWriter
+import de.huxhorn.lilith.swing.EventWrapperViewPanel
+import de.huxhorn.lilith.swing.MainFrame
+import de.huxhorn.lilith.swing.table.model.EventWrapperTableModel
+import de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer
+import java.util.concurrent.ForkJoinPool
+import java.util.function.ToIntFunction
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class FindCallablesSpec extends Specification {
+	private static final int EVENT_COUNT = 1_000
+	private static final int MATCHING_EVENT = 900
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private ForkJoinPool pool
+	private GoToTimeCallableSpec.CountingFileBuffer buffer
+	private ReadAheadCachingBuffer<EventWrapper<LoggingEvent>> cachedBuffer
+	private EventWrapperViewPanel<LoggingEvent> viewPanel
+
+	def setup() {
+		pool = new ForkJoinPool(2)
+		File dataFile = new File(folder.root, 'events.lilith')
+		buffer = new GoToTimeCallableSpec.CountingFileBuffer(dataFile, new File(folder.root, 'events.idx'))
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			LoggingEvent.Level level = i == MATCHING_EVENT ? LoggingEvent.Level.ERROR : LoggingEvent.Level.INFO
+			buffer.add(new EventWrapper<LoggingEvent>(event: new LoggingEvent(logger: 'foo', level: level), localId: i))
+		}
+		FieldIndexWriter.open(FieldIndex.resolveFieldIndexFile(dataFile), buffer).close()
+		buffer.reads.set(0)
+
+		cachedBuffer = new ReadAheadCachingBuffer<>(buffer, { 1 } as ToIntFunction, 1024 * 1024)
+		MainFrame mainFrame = Stub(MainFrame) {
+			getFilterPool() >> pool
+		}
+		viewPanel = Stub(EventWrapperViewPanel) {
+			getMainFrame() >> mainFrame
+			getEventSource() >> new EventSourceImpl<LoggingEvent>(new SourceIdentifier('foo'), buffer, false)
+			getTableModel() >> new EventWrapperTableModel<LoggingEvent>(cachedBuffer)
+		}
+	}
+
+	def cleanup() {
+		cachedBuffer.dispose()
+		pool.shutdownNow()
+	}
+
+	def 'FindNextCallable uses the field index of the source of a view with a cached table model.'() {
+		when:
+		long result = new FindNextCallable<LoggingEvent>(viewPanel, 0, new LevelCondition('ERROR')).call()
+
+		then:
+		result == MATCHING_EVENT
+		buffer.reads.get() == 1
+		cachedBuffer.misses == 0
+	}
+
+	def 'FindPreviousCallable uses the field index of the source of a view with a cached table model.'() {
+		when:
+		long result = new FindPreviousCallable<LoggingEvent>(viewPanel, EVENT_COUNT - 1, new LevelCondition('ERROR')).call()
+
+		then:
+		result == MATCHING_EVENT
+		buffer.reads.get() == 1
+		cachedBuffer.misses == 0
+	}
+}
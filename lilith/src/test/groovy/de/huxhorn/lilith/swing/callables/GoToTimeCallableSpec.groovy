@@ -0,0 +1,83 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.api.FileConstants
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.eventsource.SourceIdentifier
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.engine.impl.EventSourceImpl
+import de.huxhorn.lilith.engine.impl.timeindex.TimeIndex
+import de.huxhorn.lilith.swing.EventWrapperViewPanel
+import de.huxhorn.lilith.swing.table.model.EventWrapperTableModel
+import de.huxhorn.lilith.swing.table.model.ReadAheadCachingBuffer
+import de.huxhorn.sulky.codec.SerializableCodec
+import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.ToIntFunction
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class GoToTimeCallableSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	def 'the time index of the source is used by a view with a cached table model.'() {
+		given:
+		File dataFile = new File(folder.root, 'events.lilith')
+		CountingFileBuffer buffer = new CountingFileBuffer(dataFile, new File(folder.root, 'events.idx'))
+		for (int i = 0; i < 1_000; i++) {
+			buffer.add(new EventWrapper<LoggingEvent>(event: new LoggingEvent(logger: 'foo', timeStamp: 1_000L + i), localId: i))
+		}
+		TimeIndex.rebuild(buffer, TimeIndex.resolveTimeIndexFile(dataFile))
+		buffer.reads.set(0)
+
+		ReadAheadCachingBuffer<EventWrapper<LoggingEvent>> cachedBuffer = new ReadAheadCachingBuffer<>(buffer, { 1 } as ToIntFunction, 1024 * 1024)
+		EventWrapperViewPanel<LoggingEvent> viewPanel = Stub(EventWrapperViewPanel) {
+			getEventSource() >> new EventSourceImpl<LoggingEvent>(new SourceIdentifier('foo'), buffer, false)
+			getTableModel() >> new EventWrapperTableModel<LoggingEvent>(cachedBuffer)
+		}
+
+		when:
+		long result = new GoToTimeCallable<LoggingEvent>(viewPanel, 1_600L).call()
+
+		then:
+		result == 600
+		buffer.reads.get() < TimeIndex.DEFAULT_INTERVAL
+		cachedBuffer.misses == 0
+
+		cleanup:
+		cachedBuffer.dispose()
+	}
+
+	static class CountingFileBuffer extends CodecFileBuffer<EventWrapper<LoggingEvent>> {
+		final AtomicLong reads = new AtomicLong()
+
+		CountingFileBuffer(File dataFile, File indexFile) {
+			super(FileConstants.MAGIC_VALUE, false, null, new SerializableCodec<EventWrapper<LoggingEvent>>(), dataFile, indexFile)
+		}
+
+		@Override
+		EventWrapper<LoggingEvent> get(long index) {
+			reads.incrementAndGet()
+			return super.get(index)
+		}
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.conditions.EventContainsCondition
+import de.huxhorn.lilith.conditions.FormattedMessageContainsCondition
+import de.huxhorn.lilith.conditions.LevelCondition
+import de.huxhorn.lilith.conditions.LoggerStartsWithCondition
+import de.huxhorn.lilith.conditions.MDCContainsCondition
+import de.huxhorn.lilith.conditions.MarkerContainsCondition
+import de.huxhorn.lilith.conditions.MessagePatternContainsCondition
+import de.huxhorn.lilith.conditions.ThreadNameCondition
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Marker
+import de.huxhorn.lilith.data.logging.Message
+import de.huxhorn.lilith.data.logging.ThreadInfo
+import de.huxhorn.lilith.engine.impl.fieldindex.FieldIndexWriter
+import de.huxhorn.lilith.engine.impl.textindex.TextIndexWriter
+import de.huxhorn.sulky.buffers.OverwritingCircularBuffer
+import de.huxhorn.sulky.conditions.And
+import de.huxhorn.sulky.conditions.Condition
+import de.huxhorn.sulky.conditions.Not
+import de.huxhorn.sulky.conditions.Or
+import org.junit.ClassRule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class IndexedCandidatesSpec extends Specification {
+	private static final int EVENT_COUNT = 1_000
+
+	@Shared
+	@ClassRule
+	TemporaryFolder folder = new TemporaryFolder()
+
+	@Shared
+	List<EventWrapper<LoggingEvent>> events = []
+
+	@Shared
+	File fieldIndexFile
+
+	@Shared
+	File textIndexFile
+
+	def setupSpec() {
+		OverwritingCircularBuffer<EventWrapper<LoggingEvent>> buffer = new OverwritingCircularBuffer<>(EVENT_COUNT)
+		for (int i = 0; i < EVENT_COUNT; i++) {
+			LoggingEvent event = new LoggingEvent()
+			event.level = LoggingEvent.Level.values()[i % 5]
+			event.logger = ['com.foo.Bar', 'com.foo.Bar$Inner', 'com.foobar.Baz', 'org.Other'][i % 4]
+			event.threadInfo = new ThreadInfo(null, 'thread' + (i % 3), null, null)
+			event.message = new Message('Processing {}', ['item' + i] as String[])
+			if (i % 6 == 0) {
+				Marker marker = new Marker('parent')
+				marker.add(new Marker('child'))
+				event.marker = marker
+			}
+			if (i % 9 != 0) {
+				event.mdc = [key: 'value' + (i % 2)]
+			}
+			EventWrapper<LoggingEvent> wrapper = new EventWrapper<>(event: event)
+			events.add(wrapper)
+			buffer.add(wrapper)
+		}
+		fieldIndexFile = folder.newFile('events.fidx')
+		FieldIndexWriter.open(fieldIndexFile, buffer).close()
+		textIndexFile = folder.newFile('events.nidx')
+		TextIndexWriter.open(textIndexFile, buffer).close()
+	}
+
+	private long[] resolvePostings(Condition condition) {
+		IndexedCandidates.resolvePostings(new IndexedCandidates.Indexes(fieldIndexFile, textIndexFile), condition)
+	}
+
+	private List<Long> matching(Condition condition) {
+		(0..<EVENT_COUNT).findAll { condition.isTrue(events[it]) }.collect { (long) it }
+	}
+
+	@Unroll
+	'postings of #condition contain exactly the matching events.'() {
+		given:
+		long[] expected = matching(condition) as long[]
+
+		expect:
+		resolvePostings(condition) == expected
+
+		where:
+		condition << [
+				new LevelCondition('INFO'),
+				new LevelCondition('ERROR'),
+				new LevelCondition('TRACE'),
+				new LoggerStartsWithCondition('com.foo'),
+				new LoggerStartsWithCondition('com.foo.Bar.Inner'),
+				new LoggerStartsWithCondition('net'),
+				new LoggerStartsWithCondition(null),
+				new ThreadNameCondition('thread2'),
+				new MarkerContainsCondition('child'),
+				new MarkerContainsCondition('parent'),
+				new MarkerContainsCondition(null),
+				new MDCContainsCondition('key', null),
+				new MDCContainsCondition('key', 'value1'),
+				new MDCContainsCondition('unknown', null),
+				new MDCContainsCondition(null, null),
+				new And([new LevelCondition('WARN'), new ThreadNameCondition('thread0')]),
+				new Or([new LevelCondition('ERROR'), new MarkerContainsCondition('child')]),
+		]
+	}
+
+	def 'unresolved children of And only restrict the candidates by the other children.'() {
+		given:
+		Condition condition = new And([new LevelCondition('WARN'), new Not(new ThreadNameCondition('thread0'))])
+		List<Long> matching = matching(condition)
+		long[] level = (0..<EVENT_COUNT).findAll { it % 5 >= 3 }.collect { (long) it } as long[]
+
+		expect:
+		matching.size() < level.length
+		resolvePostings(condition) == level
+	}
+
+	@Unroll
+	'#condition can not be resolved using the index.'() {
+		expect:
+		resolvePostings(condition) == null
+
+		where:
+		condition << [
+				null,
+				new Not(new LevelCondition('INFO')),
+				new LoggerStartsWithCondition(''),
+				new ThreadNameCondition(''),
+				new MarkerContainsCondition(''),
+				new Or([new LevelCondition('ERROR'), new Not(new MarkerContainsCondition('child'))]),
+				new And([new Not(new LevelCondition('INFO'))]),
+				new EventContainsCondition('it'),
+				new FormattedMessageContainsCondition(''),
+		]
+	}
+
+	@Unroll
+	'candidates of #condition contain all matching events.'() {
+		given:
+		List<Long> expected = matching(condition)
+		long[] candidates = resolvePostings(condition)
+
+		expect:
+		candidates.toList().containsAll(expected)
+		candidates.length <= maxCandidates
+
+		where:
+		condition                                                                                     | maxCandidates
+		new EventContainsCondition('item123')                                                         | 2 * 16
+		new EventContainsCondition('com.foobar')                                                      | EVENT_COUNT
+		new EventContainsCondition(null)                                                              | 0
+		new FormattedMessageContainsCondition('Processing item99')                                    | 3 * 16
+		new MessagePatternContainsCondition('Processing {}')                                          | EVENT_COUNT
+		new MessagePatternContainsCondition('item1')                                                  | 0
+		new And([new LevelCondition('ERROR'), new EventContainsCondition('item12')])                  | 11
+		new Or([new MarkerContainsCondition('child'), new FormattedMessageContainsCondition('item7')]) | EVENT_COUNT
+	}
+
+	def 'missing indexes can not be used.'() {
+		given:
+		IndexedCandidates.Indexes indexes = new IndexedCandidates.Indexes(new File(folder.root, 'missing.fidx'), null)
+
+		expect:
+		IndexedCandidates.resolvePostings(indexes, new LevelCondition('INFO')) == null
+		IndexedCandidates.resolvePostings(indexes, new EventContainsCondition('item1')) == null
+		indexes.indexedCount == 0
+	}
+
+	def 'create returns null for buffers without index.'() {
+		expect:
+		IndexedCandidates.create(new OverwritingCircularBuffer<>(10), new LevelCondition('INFO')) == null
+		IndexedCandidates.create(new OverwritingCircularBuffer<>(10), (Condition) null) == null
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.lilith.api.FileConstants
+import de.huxhorn.lilith.engine.impl.blocks.BlockCompressedFileBuffer
+import de.huxhorn.sulky.codec.SerializableCodec
+import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class IndexingCallableSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private File dataFile
+	private File indexFile
+
+	def setup() {
+		dataFile = new File(folder.root, 'events.lilith')
+		indexFile = new File(folder.root, 'events.idx')
+	}
+
+	private BlockCompressedFileBuffer<String> createBuffer() {
+		Map<String, String> metaData = [(FileConstants.COMPRESSION_KEY): FileConstants.COMPRESSION_VALUE_DEFLATE_BLOCKS,
+										(FileConstants.BLOCK_SIZE_KEY) : '10',
+										(FileConstants.DICTIONARY_KEY) : FileConstants.DICTIONARY_VALUE_FIRST_BLOCK]
+		return new BlockCompressedFileBuffer<String>(FileConstants.MAGIC_VALUE, metaData, new SerializableCodec<String>(), dataFile, indexFile)
+	}
+
+	private static List<String> createElements(int from, int to) {
+		List<String> result = []
+		for(int i = from; i < to; i++) {
+			result.add('element ' + i)
+		}
+		return result
+	}
+
+	def 'index of a block-compressed file is rebuilt.'() {
+		given:
+		def buffer = createBuffer()
+		buffer.addAll(createElements(0, 35))
+		buffer.flush()
+		byte[] expected = indexFile.bytes
+		indexFile.delete()
+
+		when:
+		long count = new IndexingCallable(dataFile, indexFile).call()
+
+		then:
+		count == 35
+		indexFile.bytes == expected
+		createBuffer().iterator().collect() == createElements(0, 35)
+	}
+
+	def 'reindexing a block-compressed file continues with the last indexed block.'() {
+		given:
+		def buffer = createBuffer()
+		buffer.addAll(createElements(0, 25))
+		buffer.flush()
+		byte[] partialIndex = indexFile.bytes
+		buffer.addAll(createElements(25, 42))
+		buffer.flush()
+		byte[] expected = indexFile.bytes
+
+		and: 'an index missing the second half of the last block and everything after it'
+		indexFile.bytes = Arrays.copyOf(partialIndex, 22 * 8)
+
+		when:
+		long count = new IndexingCallable(dataFile, indexFile, true).call()
+
+		then:
+		count == 42
+		indexFile.bytes == expected
+	}
+
+	def 'an event that is still being written is not indexed.'() {
+		given:
+		def buffer = new CodecFileBuffer<String>(FileConstants.MAGIC_VALUE, false, null, new SerializableCodec<String>(), dataFile, indexFile)
+		buffer.addAll(createElements(0, 10))
+		dataFile.bytes = Arrays.copyOf(dataFile.bytes, (int) dataFile.length() - 3)
+		indexFile.delete()
+
+		when:
+		long count = new IndexingCallable(dataFile, indexFile).call()
+
+		then:
+		count == 9
+		buffer.size == 9
+		buffer.iterator().collect() == createElements(0, 9)
+	}
+}
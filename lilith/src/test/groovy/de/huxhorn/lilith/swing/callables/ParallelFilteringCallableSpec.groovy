@@ -0,0 +1,282 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.sulky.buffers.BasicBufferIterator
+import de.huxhorn.sulky.buffers.Buffer
+import de.huxhorn.sulky.buffers.OverwritingCircularBuffer
+import de.huxhorn.sulky.buffers.filtering.FilteringBuffer
+import de.huxhorn.sulky.conditions.And
+import de.huxhorn.sulky.conditions.Condition
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicLong
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ParallelFilteringCallableSpec extends Specification {
+
+	@Shared
+	ForkJoinPool pool = new ForkJoinPool(4)
+
+	def cleanupSpec() {
+		pool.shutdownNow()
+	}
+
+	@Unroll
+	'filters #size elements in order with chunkSize #chunkSize.'() {
+		given:
+		OverwritingCircularBuffer<Integer> source = new OverwritingCircularBuffer<>(size + 1)
+		for (int i = 0; i < size; i++) {
+			source.add(i)
+		}
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, new DivisibleCondition(3))
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, chunkSize)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, expectedSize(size))
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		(0..<filteringBuffer.size).collect { filteringBuffer.getSourceIndex(it) } == (0..<size).findAll { it % 3 == 0 }.collect { it as long }
+
+		cleanup:
+		executor.shutdownNow()
+
+		where:
+		size   | chunkSize
+		0      | 10
+		1      | 10
+		100    | 7
+		10_000 | 64
+		10_000 | 10_000
+	}
+
+	def 'follows elements appended while filtering.'() {
+		given:
+		OverwritingCircularBuffer<Integer> source = new OverwritingCircularBuffer<>(2000)
+		for (int i = 0; i < 1000; i++) {
+			source.add(i)
+		}
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, new DivisibleCondition(2))
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, 16)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, 500)
+		for (int i = 1000; i < 1500; i++) {
+			source.add(i)
+		}
+		waitForSize(filteringBuffer, 750)
+		future.cancel(true)
+
+		then:
+		filteringBuffer.size == 750
+		filteringBuffer.getSourceIndex(749) == 1498
+
+		cleanup:
+		executor.shutdownNow()
+	}
+
+	def 'every worker evaluates its own clone of the condition.'() {
+		given:
+		OverwritingCircularBuffer<Integer> source = new OverwritingCircularBuffer<>(10_000)
+		for (int i = 0; i < 10_000; i++) {
+			source.add(i)
+		}
+		ThreadCheckingCondition condition = new ThreadCheckingCondition()
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, condition)
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, 16)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, 10_000)
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		!condition.used
+		!ThreadCheckingCondition.failed
+
+		cleanup:
+		executor.shutdownNow()
+	}
+
+	def 'an equal initial result is used without evaluating it.'() {
+		given:
+		CountingBuffer source = new CountingBuffer(1000)
+		Condition condition = new DivisibleCondition(3)
+		long[] indices = (0..599).findAll { it % 3 == 0 } as long[]
+		FilterResult initialResult = new FilterResult(condition, indices, 599)
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, condition)
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, 16, initialResult)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, expectedSize(1000))
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		(0..<filteringBuffer.size).collect { filteringBuffer.getSourceIndex(it) } == (0..<1000).findAll { it % 3 == 0 }.collect { it as long }
+		source.reads.get() == 400
+		callable.lastFilteredElement == 999
+
+		cleanup:
+		executor.shutdownNow()
+	}
+
+	def 'a narrowing condition only evaluates the indices of the initial result.'() {
+		given:
+		CountingBuffer source = new CountingBuffer(1000)
+		Condition previous = new DivisibleCondition(3)
+		And condition = new And()
+		condition.conditions = [previous, new DivisibleCondition(2)]
+		long[] indices = (0..<1000).findAll { it % 3 == 0 } as long[]
+		FilterResult initialResult = new FilterResult(previous, indices, 999)
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, condition)
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, 16, initialResult)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, 167)
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		(0..<filteringBuffer.size).collect { filteringBuffer.getSourceIndex(it) } == (0..<1000).findAll { it % 6 == 0 }.collect { it as long }
+		source.reads.get() == indices.length
+
+		cleanup:
+		executor.shutdownNow()
+	}
+
+	def 'an initial result of a previous content of the source is ignored.'() {
+		given:
+		CountingBuffer source = new CountingBuffer(1000)
+		Condition condition = new DivisibleCondition(3)
+		FilterResult initialResult = new FilterResult(condition, [0L, 3000L] as long[], 5000)
+		FilteringBuffer<Integer> filteringBuffer = new FilteringBuffer<>(source, condition)
+		ParallelFilteringCallable<Integer> callable = new ParallelFilteringCallable<>(filteringBuffer, 10, pool, 16, initialResult)
+		ExecutorService executor = Executors.newSingleThreadExecutor()
+
+		when:
+		Future<Long> future = executor.submit(callable)
+		waitForSize(filteringBuffer, expectedSize(1000))
+		filteringBuffer.dispose()
+		future.get()
+
+		then:
+		filteringBuffer.size == expectedSize(1000)
+		source.reads.get() == 1000
+
+		cleanup:
+		executor.shutdownNow()
+	}
+
+	private static long expectedSize(int size) {
+		return (size + 2).intdiv(3)
+	}
+
+	private static void waitForSize(FilteringBuffer<?> buffer, long size) {
+		long timeout = System.currentTimeMillis() + 10_000
+		while (buffer.size < size && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10)
+		}
+		// give it a chance to add too much
+		Thread.sleep(50)
+	}
+
+	static class DivisibleCondition implements Condition {
+		private static final long serialVersionUID = 1L
+
+		final int divisor
+
+		DivisibleCondition(int divisor) {
+			this.divisor = divisor
+		}
+
+		boolean isTrue(Object element) {
+			return ((Integer) element) % divisor == 0
+		}
+
+		DivisibleCondition clone() throws CloneNotSupportedException {
+			return (DivisibleCondition) super.clone()
+		}
+	}
+
+	static class ThreadCheckingCondition implements Condition {
+		private static final long serialVersionUID = 1L
+
+		static volatile boolean failed
+		boolean used
+		private transient Thread thread
+
+		boolean isTrue(Object element) {
+			used = true
+			if (thread == null) {
+				thread = Thread.currentThread()
+			} else if (!thread.is(Thread.currentThread())) {
+				failed = true
+			}
+			return true
+		}
+
+		ThreadCheckingCondition clone() throws CloneNotSupportedException {
+			ThreadCheckingCondition result = (ThreadCheckingCondition) super.clone()
+			result.thread = null
+			return result
+		}
+	}
+
+	static class CountingBuffer implements Buffer<Integer> {
+		final AtomicLong reads = new AtomicLong()
+		final long size
+
+		CountingBuffer(long size) {
+			this.size = size
+		}
+
+		Integer get(long index) {
+			if (index < 0 || index >= size) {
+				return null
+			}
+			reads.incrementAndGet()
+			return (int) index
+		}
+
+		long getSize() {
+			return size
+		}
+
+		Iterator<Integer> iterator() {
+			return new BasicBufferIterator<Integer>(this)
+		}
+	}
+}
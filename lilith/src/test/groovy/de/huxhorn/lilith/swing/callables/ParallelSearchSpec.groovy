@@ -0,0 +1,142 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.callables
+
+import de.huxhorn.sulky.buffers.OverwritingCircularBuffer
+import de.huxhorn.sulky.conditions.Condition
+import java.util.concurrent.ForkJoinPool
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ParallelSearchSpec extends Specification {
+
+	@Shared
+	ForkJoinPool pool = new ForkJoinPool(4)
+
+	@Shared
+	OverwritingCircularBuffer<Integer> buffer = new OverwritingCircularBuffer<>(10_000)
+
+	def setupSpec() {
+		for (int i = 0; i < 10_000; i++) {
+			buffer.add(i)
+		}
+	}
+
+	def cleanupSpec() {
+		pool.shutdownNow()
+	}
+
+	@Unroll
+	'findFirst(#start, #end) returns #expected for matches #matches.'() {
+		given:
+		ParallelSearch<Integer> search = new ParallelSearch<>(buffer, new ContainedCondition(matches), pool, 16)
+
+		expect:
+		search.findFirst(start, end) == expected
+
+		cleanup:
+		search.close()
+
+		where:
+		start | end    | matches                 | expected
+		0     | 10_000 | [5_000, 17, 9_999]      | 17
+		18    | 10_000 | [5_000, 17, 9_999]      | 5_000
+		0     | 17     | [5_000, 17, 9_999]      | -1
+		0     | 10_000 | [9_999]                 | 9_999
+		0     | 10_000 | []                      | -1
+		0     | 10_000 | (1_000..<10_000) as Set | 1_000
+		5     | 5      | [5]                     | -1
+	}
+
+	@Unroll
+	'findLast(#start, #end) returns #expected for matches #matches.'() {
+		given:
+		ParallelSearch<Integer> search = new ParallelSearch<>(buffer, new ContainedCondition(matches), pool, 16)
+
+		expect:
+		search.findLast(start, end) == expected
+
+		cleanup:
+		search.close()
+
+		where:
+		start | end    | matches                 | expected
+		0     | 10_000 | [5_000, 17, 9_999]      | 9_999
+		0     | 9_999  | [5_000, 17, 9_999]      | 5_000
+		18    | 5_000  | [5_000, 17, 9_999]      | -1
+		0     | 10_000 | [0]                     | 0
+		0     | 10_000 | []                      | -1
+		0     | 10_000 | (0..<9_000) as Set      | 8_999
+	}
+
+	def 'conditions that can not be cloned are evaluated serially.'() {
+		given:
+		UncloneableCondition condition = new UncloneableCondition()
+		ParallelSearch<Integer> search = new ParallelSearch<>(buffer, condition, pool, 16)
+
+		expect:
+		search.findFirst(0, 10_000) == 9_999
+		condition.maxConcurrent == 1
+
+		cleanup:
+		search.close()
+	}
+
+	static class ContainedCondition implements Condition {
+		private static final long serialVersionUID = 1L
+
+		final Set<Integer> values
+
+		ContainedCondition(Collection<Integer> values) {
+			this.values = new HashSet<>(values)
+		}
+
+		boolean isTrue(Object element) {
+			return values.contains(element)
+		}
+
+		ContainedCondition clone() throws CloneNotSupportedException {
+			return (ContainedCondition) super.clone()
+		}
+	}
+
+	static class UncloneableCondition implements Condition {
+		private static final long serialVersionUID = 1L
+
+		private int concurrent
+		int maxConcurrent
+
+		boolean isTrue(Object element) {
+			synchronized (UncloneableCondition) {
+				concurrent++
+				maxConcurrent = Math.max(concurrent, maxConcurrent)
+			}
+			Thread.yield()
+			synchronized (UncloneableCondition) {
+				concurrent--
+			}
+			return element == 9_999
+		}
+
+		UncloneableCondition clone() throws CloneNotSupportedException {
+			throw new CloneNotSupportedException()
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.table.model
+
+import de.huxhorn.lilith.data.access.AccessEvent
+import de.huxhorn.lilith.data.eventsource.EventWrapper
+import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement
+import de.huxhorn.lilith.data.logging.LoggingEvent
+import de.huxhorn.lilith.data.logging.Message
+import de.huxhorn.lilith.data.logging.ThrowableInfo
+import spock.lang.Specification
+
+class EventWrapperSizeEstimatorSpec extends Specification {
+	def 'null is estimated as zero.'() {
+		expect:
+		EventWrapperSizeEstimator.estimate(null) == 0
+	}
+
+	def 'throwables increase the estimated size of logging events.'() {
+		given:
+		LoggingEvent event = new LoggingEvent(logger: 'foo.Bar', message: new Message('message {}', ['argument'] as String[]))
+		EventWrapper<LoggingEvent> plain = new EventWrapper<>(event: event)
+		LoggingEvent throwableEvent = new LoggingEvent(logger: 'foo.Bar', message: new Message('message {}', ['argument'] as String[]))
+		ExtendedStackTraceElement[] stackTrace = (0..<20).collect { new ExtendedStackTraceElement('foo.Bar', 'method', 'Bar.java', it) } as ExtendedStackTraceElement[]
+		throwableEvent.throwable = new ThrowableInfo(name: 'java.lang.RuntimeException', stackTrace: stackTrace)
+		EventWrapper<LoggingEvent> withThrowable = new EventWrapper<>(event: throwableEvent)
+
+		expect:
+		EventWrapperSizeEstimator.estimate(plain) > 0
+		EventWrapperSizeEstimator.estimate(withThrowable) > EventWrapperSizeEstimator.estimate(plain) + 20 * 100
+	}
+
+	def 'headers increase the estimated size of access events.'() {
+		given:
+		EventWrapper<AccessEvent> plain = new EventWrapper<>(event: new AccessEvent(requestURI: '/index.html'))
+		EventWrapper<AccessEvent> withHeaders = new EventWrapper<>(event: new AccessEvent(requestURI: '/index.html', requestHeaders: ['Accept': 'text/html', 'User-Agent': 'Foo']))
+
+		expect:
+		EventWrapperSizeEstimator.estimate(withHeaders) > EventWrapperSizeEstimator.estimate(plain)
+	}
+}
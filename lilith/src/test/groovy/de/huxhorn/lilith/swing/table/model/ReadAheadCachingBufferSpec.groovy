@@ -0,0 +1,286 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.swing.table.model
+
+import de.huxhorn.sulky.buffers.BasicBufferIterator
+import de.huxhorn.sulky.buffers.Buffer
+import de.huxhorn.sulky.buffers.DisposeOperation
+import de.huxhorn.sulky.buffers.ResetOperation
+import java.util.concurrent.Executor
+import java.util.function.ToIntFunction
+import spock.lang.Specification
+
+class ReadAheadCachingBufferSpec extends Specification {
+	private static final ToIntFunction<String> ONE_BYTE = { 1 } as ToIntFunction<String>
+	private static final Executor DIRECT = { Runnable runnable -> runnable.run() } as Executor
+	private static final Executor NEVER = { Runnable runnable -> } as Executor
+
+	def 'elements are read from the wrapped buffer once.'() {
+		given:
+		def wrapped = new CountingBuffer(10)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 100, NEVER)
+
+		when:
+		def first = instance.get(3)
+		def second = instance.get(3)
+
+		then:
+		first == 'element 3'
+		second == 'element 3'
+		wrapped.reads == 1
+		instance.hits == 1
+		instance.misses == 1
+		instance.size == 10
+	}
+
+	def 'elements following a miss are read ahead.'() {
+		given:
+		def wrapped = new CountingBuffer(1000)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 10000, DIRECT)
+
+		when:
+		instance.get(0)
+		for(int i = 1; i <= ReadAheadCachingBuffer.MIN_READ_AHEAD; i++) {
+			instance.get(i)
+		}
+
+		then:
+		instance.misses == 1
+		instance.hits == ReadAheadCachingBuffer.MIN_READ_AHEAD
+		instance.readAheadElements >= ReadAheadCachingBuffer.MIN_READ_AHEAD
+	}
+
+	def 'elements preceding a miss are read ahead while scrolling backwards.'() {
+		given:
+		def wrapped = new CountingBuffer(2000)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 10000, DIRECT)
+
+		when: 'rows are requested top to bottom'
+		for(int i = 1000; i < 1010; i++) {
+			instance.get(i)
+		}
+		for(int i = 995; i < 1005; i++) {
+			instance.get(i)
+		}
+		long misses = instance.misses
+		for(int i = 995 - ReadAheadCachingBuffer.MIN_READ_AHEAD; i < 995; i++) {
+			instance.get(i)
+		}
+
+		then: 'only the newly visible rows are missed'
+		misses == 6
+		instance.misses == 6
+	}
+
+	def 'a hit close to the end of the read ahead elements continues reading ahead.'() {
+		given:
+		def wrapped = new CountingBuffer(1000)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 10000, DIRECT)
+
+		when:
+		instance.get(0)
+		instance.get(40)
+
+		then:
+		instance.cachedElements == 41 + ReadAheadCachingBuffer.MIN_READ_AHEAD
+	}
+
+	def 'read-ahead stops at the end of the wrapped buffer.'() {
+		given:
+		def wrapped = new CountingBuffer(10)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 10000, DIRECT)
+
+		when:
+		instance.get(5)
+		def outside = instance.get(10)
+
+		then:
+		outside == null
+		instance.cachedElements == 5
+		wrapped.reads == 5
+	}
+
+	def 'window grows with sequential misses and shrinks after a jump.'() {
+		given:
+		def wrapped = new CountingBuffer(100000)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 100000, NEVER)
+
+		when:
+		instance.get(0)
+		instance.get(70)
+		instance.get(200)
+
+		then:
+		instance.readAheadWindow == 4 * ReadAheadCachingBuffer.MIN_READ_AHEAD
+
+		when:
+		instance.get(50000)
+
+		then:
+		instance.readAheadWindow == ReadAheadCachingBuffer.MIN_READ_AHEAD
+	}
+
+	def 'least recently used elements are evicted if the byte budget is exceeded.'() {
+		given:
+		def wrapped = new CountingBuffer(100)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 10, NEVER)
+
+		when:
+		for(int i = 0; i < 20; i++) {
+			instance.get(i * 1000 % 100)
+			instance.get(i)
+		}
+
+		then:
+		instance.cachedElements == 10
+		instance.cachedBytes == 10
+		instance.evictions > 0
+
+		when:
+		long misses = instance.misses
+		instance.get(19)
+		instance.get(0)
+
+		then:
+		instance.misses == misses
+	}
+
+	def 'reset, flush and dispose clear the cache.'() {
+		given:
+		def wrapped = new CountingBuffer(10)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 100, NEVER)
+		instance.get(1)
+
+		when:
+		instance.reset()
+
+		then:
+		wrapped.resetCalled
+		instance.cachedElements == 0
+		instance.cachedBytes == 0
+
+		when:
+		instance.get(1)
+		instance.flush()
+
+		then:
+		instance.cachedElements == 0
+
+		when:
+		instance.dispose()
+
+		then:
+		instance.disposed
+		wrapped.disposed
+		instance.get(1) == null
+	}
+
+	def 'an element read while the cache is cleared is not cached.'() {
+		given:
+		def wrapped = new CountingBuffer(10)
+		def instance = new ReadAheadCachingBuffer<String>(wrapped, ONE_BYTE, 100, NEVER)
+		wrapped.duringGet = { instance.flush() }
+
+		when:
+		def result = instance.get(1)
+
+		then:
+		result == 'element 1'
+		instance.cachedElements == 0
+		instance.cachedBytes == 0
+
+		when:
+		wrapped.duringGet = null
+		instance.get(1)
+		instance.get(1)
+
+		then:
+		wrapped.reads == 2
+		instance.cachedElements == 1
+	}
+
+	def 'toString contains the statistics.'() {
+		given:
+		def instance = new ReadAheadCachingBuffer<String>(new CountingBuffer(10), ONE_BYTE, 100, NEVER)
+		instance.get(1)
+		instance.get(1)
+
+		expect:
+		instance.toString() == 'ReadAheadCachingBuffer[hits=1, misses=1, hitRate=50%, readAhead=0, evictions=0, elements=1, bytes=1, byteBudget=100, window=64]'
+	}
+
+	def 'invalid byte budget is rejected.'() {
+		when:
+		new ReadAheadCachingBuffer<String>(new CountingBuffer(10), ONE_BYTE, 0)
+
+		then:
+		IllegalArgumentException ex = thrown()
+		ex.message == 'byteBudget must be greater than zero but was 0!'
+	}
+
+	private static class CountingBuffer
+		implements Buffer<String>, ResetOperation, DisposeOperation {
+		private final long size
+		int reads
+		boolean resetCalled
+		boolean disposed
+		Runnable duringGet
+
+		CountingBuffer(long size) {
+			this.size = size
+		}
+
+		@Override
+		String get(long index) {
+			if(index < 0 || index >= size) {
+				return null
+			}
+			reads++
+			if(duringGet != null) {
+				duringGet.run()
+			}
+			return 'element ' + index
+		}
+
+		@Override
+		long getSize() {
+			return size
+		}
+
+		@Override
+		Iterator<String> iterator() {
+			return new BasicBufferIterator<String>(this)
+		}
+
+		@Override
+		void reset() {
+			resetCalled = true
+		}
+
+		@Override
+		void dispose() {
+			disposed = true
+		}
+
+		@Override
+		boolean isDisposed() {
+			return disposed
+		}
+	}
+}
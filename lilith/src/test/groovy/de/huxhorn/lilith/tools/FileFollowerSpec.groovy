@@ -0,0 +1,169 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package de.huxhorn.lilith.tools
+
+import de.huxhorn.lilith.api.FileConstants
+import de.huxhorn.sulky.codec.SerializableCodec
+import de.huxhorn.sulky.codec.filebuffer.CodecFileBuffer
+import java.nio.file.Files
+import java.nio.file.StandardOpenOption
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+import spock.lang.Specification
+
+class FileFollowerSpec extends Specification {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder()
+
+	private static CodecFileBuffer<String> createBuffer(File dataFile, File indexFile) {
+		return new CodecFileBuffer<String>(FileConstants.MAGIC_VALUE, false, null, new SerializableCodec<String>(), dataFile, indexFile)
+	}
+
+	/**
+	 * Writes ten elements and truncates the files to the first five elements.
+	 *
+	 * @return the bytes of the remaining five elements.
+	 */
+	private static byte[] prepareFile(File dataFile, File indexFile) {
+		def buffer = createBuffer(dataFile, indexFile)
+		for(int i = 0; i < 5; i++) {
+			buffer.add('element ' + i)
+		}
+		long dataLength = dataFile.length()
+		byte[] index = indexFile.bytes
+		for(int i = 5; i < 10; i++) {
+			buffer.add('element ' + i)
+		}
+		byte[] data = dataFile.bytes
+		dataFile.bytes = Arrays.copyOf(data, (int) dataLength)
+		indexFile.bytes = index
+		return Arrays.copyOfRange(data, (int) dataLength, data.length)
+	}
+
+	private static void append(File file, byte[] bytes) {
+		Files.write(file.toPath(), bytes, StandardOpenOption.APPEND)
+	}
+
+	private static int processUntilChanged(FileFollower follower) {
+		for(int i = 0; i < 20; i++) {
+			int result = follower.processChanges(500)
+			if(result > 0) {
+				return result
+			}
+		}
+		return 0
+	}
+
+	def 'appended events are indexed and reported.'() {
+		given:
+		File dataFile = new File(folder.root, 'events.lilith')
+		File indexFile = new File(folder.root, 'events.idx')
+		byte[] appended = prepareFile(dataFile, indexFile)
+		List<File> reported = []
+		FileFollower follower = new FileFollower(0)
+		follower.follow(dataFile, indexFile, { reported.add(it) } as FileFollower.Listener)
+
+		expect:
+		createBuffer(dataFile, indexFile).size == 5
+
+		when:
+		append(dataFile, appended)
+		int changed = processUntilChanged(follower)
+
+		then:
+		changed == 1
+		reported == [dataFile.absoluteFile]
+		createBuffer(dataFile, indexFile).iterator().collect() == (0..<10).collect { 'element ' + it }
+
+		cleanup:
+		follower?.close()
+	}
+
+	def 'an event that is still being written is reported after it is complete.'() {
+		given:
+		File dataFile = new File(folder.root, 'events.lilith')
+		File indexFile = new File(folder.root, 'events.idx')
+		byte[] appended = prepareFile(dataFile, indexFile)
+		int split = appended.length - 3
+		List<Long> sizes = []
+		FileFollower follower = new FileFollower(0)
+		follower.follow(dataFile, indexFile, { sizes.add(createBuffer(dataFile, indexFile).size) } as FileFollower.Listener)
+
+		when:
+		append(dataFile, Arrays.copyOf(appended, split))
+		processUntilChanged(follower)
+
+		then:
+		sizes == [9L]
+
+		when:
+		append(dataFile, Arrays.copyOfRange(appended, split, appended.length))
+		processUntilChanged(follower)
+
+		then:
+		sizes == [9L, 10L]
+
+		cleanup:
+		follower?.close()
+	}
+
+	def 'files in different directories are followed at once.'() {
+		given:
+		File firstDataFile = new File(folder.newFolder('first'), 'events.lilith')
+		File firstIndexFile = new File(firstDataFile.parentFile, 'events.idx')
+		File secondDataFile = new File(folder.newFolder('second'), 'events.lilith')
+		File secondIndexFile = new File(secondDataFile.parentFile, 'events.idx')
+		byte[] firstAppended = prepareFile(firstDataFile, firstIndexFile)
+		byte[] secondAppended = prepareFile(secondDataFile, secondIndexFile)
+		Set<File> reported = []
+		FileFollower follower = new FileFollower(0)
+		FileFollower.Listener listener = { reported.add(it) } as FileFollower.Listener
+		follower.follow(firstDataFile, firstIndexFile, listener)
+		follower.follow(secondDataFile, secondIndexFile, listener)
+
+		when:
+		append(secondDataFile, secondAppended)
+		processUntilChanged(follower)
+
+		then:
+		reported == [secondDataFile.absoluteFile] as Set
+		createBuffer(firstDataFile, firstIndexFile).size == 5
+		createBuffer(secondDataFile, secondIndexFile).size == 10
+
+		when:
+		append(firstDataFile, firstAppended)
+		processUntilChanged(follower)
+
+		then:
+		reported == [firstDataFile.absoluteFile, secondDataFile.absoluteFile] as Set
+		createBuffer(firstDataFile, firstIndexFile).size == 10
+		follower.followedFileCount == 2
+
+		cleanup:
+		follower?.close()
+	}
+
+	def 'negative latency is rejected.'() {
+		when:
+		new FileFollower(-1)
+
+		then:
+		thrown(IllegalArgumentException)
+	}
+}
@@ -37,6 +37,7 @@ package de.huxhorn.lilith.log4j2.converter;
 import de.huxhorn.lilith.data.converter.Converter;
 import de.huxhorn.lilith.data.eventsource.LoggerContext;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Marker;
 import de.huxhorn.lilith.data.logging.Message;
@@ -195,7 +196,7 @@ public class Log4j2LoggingConverter
 
 		initMarker(log4jEvent, result);
 
-		return result;
+		return InternPool.internShared(result);
 	}
 
 	private void initMarker(org.apache.logging.log4j.core.LogEvent src, LoggingEvent dst)
@@ -40,14 +40,27 @@ import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import de.huxhorn.sulky.tasks.AbstractProgressingCallable;
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.GZIPInputStream;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -56,6 +69,13 @@ import org.apache.commons.io.input.CountingInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Imports a log4j XML file using a pipeline.
+ *
+ * The calling thread reads the file and splits it into chunks of events at the closing event tags.
+ * The chunks are parsed in parallel by a pool of parser threads. A single writer thread appends the
+ * parsed events to the buffer in file order using addAll.
+ */
 @SuppressWarnings({"PMD.ClassNamingConventions", "PMD.CloseResource"})
 public class Log4jImportCallable
 	extends AbstractProgressingCallable<Long>
@@ -71,6 +91,12 @@ public class Log4jImportCallable
 		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_VALIDATING, false);
 	}
 
+	static final int EVENTS_PER_CHUNK = 1000;
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final long OFFER_TIMEOUT_MILLIS = 100;
+	private static final Future<List<LoggingEvent>> END_OF_FILE = CompletableFuture.completedFuture(null);
+
 	private final Logger logger = LoggerFactory.getLogger(Log4jImportCallable.class);
 
 	private static final String CLOSING_LOG4J_EVENT_TAG = "</log4j:event>";
@@ -80,16 +106,33 @@ public class Log4jImportCallable
 
 	private final File inputFile;
 	private final AppendOperation<EventWrapper<LoggingEvent>> buffer;
+	private final int parserThreads;
+	// stateless, shared by all parser threads
 	private final LoggingEventReader instance;
-	private long result;
 
 	public Log4jImportCallable(File inputFile, AppendOperation<EventWrapper<LoggingEvent>> buffer)
 	{
+		this(inputFile, buffer, defaultParserThreads());
+	}
+
+	public Log4jImportCallable(File inputFile, AppendOperation<EventWrapper<LoggingEvent>> buffer, int parserThreads)
+	{
+		if(parserThreads <= 0)
+		{
+			throw new IllegalArgumentException("parserThreads must be greater than zero but was " + parserThreads + "!");
+		}
 		this.buffer = buffer;
 		this.inputFile = inputFile;
+		this.parserThreads = parserThreads;
 		instance = new LoggingEventReader();
 	}
 
+	static int defaultParserThreads()
+	{
+		// leave one core to the reader and one to the writer
+		return Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors() - 2));
+	}
+
 	public AppendOperation<EventWrapper<LoggingEvent>> getBuffer()
 	{
 		return buffer;
@@ -100,6 +143,11 @@ public class Log4jImportCallable
 		return inputFile;
 	}
 
+	public int getParserThreads()
+	{
+		return parserThreads;
+	}
+
 	@Override
 	public Long call()
 		throws Exception
@@ -114,74 +162,153 @@ public class Log4jImportCallable
 		}
 		long fileSize = inputFile.length();
 		setNumberOfSteps(fileSize);
-		InputStream fis = Files.newInputStream(inputFile.toPath());
-		CountingInputStream cis = new CountingInputStream(fis);
 
-		String fileName=inputFile.getName().toLowerCase(Locale.US);
-		BufferedReader br;
-		if(fileName.endsWith(".gz"))
+		SourceIdentifier sourceIdentifier = new SourceIdentifier(inputFile.getAbsolutePath());
+		BlockingQueue<Future<List<LoggingEvent>>> parsedChunks = new ArrayBlockingQueue<>(2 * parserThreads);
+		ExecutorService parsers = Executors.newFixedThreadPool(parserThreads, new ImportThreadFactory("Log4jImport-Parser-"));
+		ExecutorService writer = Executors.newSingleThreadExecutor(new ImportThreadFactory("Log4jImport-Writer-"));
+		try(InputStream fis = Files.newInputStream(inputFile.toPath()))
 		{
-			br = new BufferedReader(new InputStreamReader(new GZIPInputStream(cis), StandardCharsets.UTF_8));
+			Future<Long> written = writer.submit(() -> write(parsedChunks, sourceIdentifier));
+			CountingInputStream cis = new CountingInputStream(fis);
+			String fileName = inputFile.getName().toLowerCase(Locale.US);
+			Reader reader;
+			if(fileName.endsWith(".gz"))
+			{
+				reader = new InputStreamReader(new GZIPInputStream(cis), StandardCharsets.UTF_8);
+			}
+			else
+			{
+				reader = new InputStreamReader(cis, StandardCharsets.UTF_8);
+			}
+			split(reader, cis, parsers, parsedChunks, written);
+			enqueue(parsedChunks, END_OF_FILE, written);
+			return written.get();
 		}
-		else
+		finally
 		{
-			br = new BufferedReader(new InputStreamReader(cis, StandardCharsets.UTF_8));
+			parsers.shutdownNow();
+			writer.shutdownNow();
 		}
+	}
 
-		StringBuilder builder = new StringBuilder();
-
-		result = 0;
+	/**
+	 * Splits the input at the closing event tags and hands chunks of events to the parsers.
+	 */
+	private void split(Reader reader, CountingInputStream cis, ExecutorService parsers, BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<Long> written)
+		throws IOException, InterruptedException, ExecutionException
+	{
+		char[] chars = new char[READ_BUFFER_SIZE];
+		StringBuilder pending = new StringBuilder();
+		List<String> chunk = new ArrayList<>(EVENTS_PER_CHUNK);
+		int searchIndex = 0;
 		for(;;)
 		{
-			String line = br.readLine();
+			int read = reader.read(chars);
 			setCurrentStep(cis.getByteCount());
-			if(line == null)
+			if(read < 0)
 			{
-				evaluate(builder.toString());
 				break;
 			}
+			pending.append(chars, 0, read);
+			int eventStart = 0;
 			for(;;)
 			{
-				int closeIndex = line.indexOf(CLOSING_LOG4J_EVENT_TAG);
-				if(closeIndex >= 0)
+				int closeIndex = pending.indexOf(CLOSING_LOG4J_EVENT_TAG, searchIndex);
+				if(closeIndex < 0)
 				{
-					int endIndex = closeIndex + CLOSING_LOG4J_EVENT_TAG.length();
-					builder.append(line.subSequence(0, endIndex));
-					evaluate(builder.toString());
-					builder.setLength(0);
-					line = line.substring(endIndex);
+					break;
 				}
-				else
+				int endIndex = closeIndex + CLOSING_LOG4J_EVENT_TAG.length();
+				chunk.add(pending.substring(eventStart, endIndex));
+				eventStart = endIndex;
+				searchIndex = endIndex;
+				if(chunk.size() == EVENTS_PER_CHUNK)
 				{
-					builder.append(line).append('\n');
-					break;
+					submit(chunk, parsers, parsedChunks, written);
+					chunk = new ArrayList<>(EVENTS_PER_CHUNK); // NOPMD - AvoidInstantiatingObjectsInLoops
 				}
 			}
+			pending.delete(0, eventStart);
+			// the closing tag may be split between two reads
+			searchIndex = Math.max(0, pending.length() - CLOSING_LOG4J_EVENT_TAG.length() + 1);
+		}
+		// anything after the last closing tag can't be a complete event
+		if(!chunk.isEmpty())
+		{
+			submit(chunk, parsers, parsedChunks, written);
 		}
-		return result;
 	}
 
-	private void evaluate(String eventStr)
+	private void submit(List<String> chunk, ExecutorService parsers, BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<Long> written)
+		throws InterruptedException, ExecutionException
 	{
-		eventStr = prepare(eventStr);
+		enqueue(parsedChunks, parsers.submit(() -> parse(chunk)), written);
+	}
 
-		try
+	/**
+	 * Waits until the writer accepts the parsed chunk, failing if the writer has stopped.
+	 */
+	private static void enqueue(BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, Future<List<LoggingEvent>> parsedChunk, Future<Long> written)
+		throws InterruptedException, ExecutionException
+	{
+		while(!parsedChunks.offer(parsedChunk, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
 		{
-			LoggingEvent event = readEvent(eventStr);
-			if(event != null)
+			if(written.isDone())
 			{
-				result++;
-				EventWrapper<LoggingEvent> wrapper = new EventWrapper<>();
-				wrapper.setEvent(event);
-				SourceIdentifier sourceIdentifier = new SourceIdentifier(inputFile.getAbsolutePath());
-				EventIdentifier eventId = new EventIdentifier(sourceIdentifier, result);
-				wrapper.setEventIdentifier(eventId);
-				buffer.add(wrapper);
+				written.get();
+				throw new IllegalStateException("Writer stopped before the end of the file!");
 			}
 		}
-		catch(XMLStreamException e)
+	}
+
+	private List<LoggingEvent> parse(List<String> chunk)
+	{
+		List<LoggingEvent> result = new ArrayList<>(chunk.size());
+		for(String current : chunk)
 		{
-			// ignore
+			try
+			{
+				LoggingEvent event = readEvent(prepare(current));
+				if(event != null)
+				{
+					result.add(event);
+				}
+			}
+			catch(XMLStreamException e)
+			{
+				// ignore
+			}
+		}
+		return result;
+	}
+
+	private long write(BlockingQueue<Future<List<LoggingEvent>>> parsedChunks, SourceIdentifier sourceIdentifier)
+		throws InterruptedException, ExecutionException
+	{
+		long result = 0;
+		for(;;)
+		{
+			Future<List<LoggingEvent>> parsedChunk = parsedChunks.take();
+			if(parsedChunk == END_OF_FILE)
+			{
+				return result;
+			}
+			List<LoggingEvent> events = parsedChunk.get();
+			if(events.isEmpty())
+			{
+				continue;
+			}
+			List<EventWrapper<LoggingEvent>> wrappers = new ArrayList<>(events.size()); // NOPMD - AvoidInstantiatingObjectsInLoops
+			for(LoggingEvent event : events)
+			{
+				result++;
+				EventWrapper<LoggingEvent> wrapper = new EventWrapper<>(); // NOPMD - AvoidInstantiatingObjectsInLoops
+				wrapper.setEvent(event);
+				wrapper.setEventIdentifier(new EventIdentifier(sourceIdentifier, result)); // NOPMD - AvoidInstantiatingObjectsInLoops
+				wrappers.add(wrapper);
+			}
+			buffer.addAll(wrappers);
 		}
 	}
 
@@ -199,10 +326,34 @@ public class Log4jImportCallable
 	private LoggingEvent readEvent(String eventStr)
 		throws XMLStreamException
 	{
-		byte[] bytes = eventStr.getBytes(StandardCharsets.UTF_8);
+		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(eventStr));
+		try
+		{
+			return instance.read(reader);
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	private static class ImportThreadFactory
+		implements ThreadFactory
+	{
+		private final String prefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		ImportThreadFactory(String prefix)
+		{
+			this.prefix = prefix;
+		}
 
-		ByteArrayInputStream in = new ByteArrayInputStream(bytes);
-		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new InputStreamReader(in, StandardCharsets.UTF_8));
-		return instance.read(reader);
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread t = new Thread(r, prefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
 	}
 }
@@ -35,6 +35,7 @@
 package de.huxhorn.lilith.log4j.xml;
 
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Message;
 import de.huxhorn.lilith.data.logging.ThreadInfo;
@@ -145,7 +146,7 @@ public class LoggingEventReader
 			result.setThrowable(readThrowable(reader));
 			result.setCallStack(readLocationInfo(reader));
 			result.setMdc(readMdc(reader));
-			return result;
+			return InternPool.internShared(result);
 		}
 		return null;
 	}
@@ -41,6 +41,8 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
@@ -106,6 +108,49 @@ public class Log4jImportCallableTest
 		assertEquals(2, buffer.getList().size());
 	}
 
+	@Test
+	public void manyEventsAreImportedInOrder()
+		throws Exception
+	{
+		int eventCount = 3 * Log4jImportCallable.EVENTS_PER_CHUNK + 17;
+		createManyEventsFile(eventCount);
+		AppendOpStub buffer = new AppendOpStub();
+		Log4jImportCallable instance = new Log4jImportCallable(inputFile, buffer, 3);
+		long result = instance.call();
+		assertEquals(eventCount, result);
+		List<EventWrapper<LoggingEvent>> list = buffer.getList();
+		assertEquals(eventCount, list.size());
+		for(int i = 0; i < eventCount; i++)
+		{
+			EventWrapper<LoggingEvent> wrapper = list.get(i);
+			assertEquals(i + 1, wrapper.getEventIdentifier().getLocalId());
+			assertEquals(inputFile.getAbsolutePath(), wrapper.getEventIdentifier().getSourceIdentifier().getIdentifier());
+			assertEquals(Long.valueOf(i), wrapper.getEvent().getTimeStamp());
+			assertEquals("Message " + i, wrapper.getEvent().getMessage().getMessage());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void parserThreadsMustBePositive()
+	{
+		new Log4jImportCallable(new File("foo"), new AppendOpStub(), 0);
+	}
+
+	private void createManyEventsFile(int eventCount)
+		throws IOException
+	{
+		inputFile = File.createTempFile("Import", "test");
+		try(Writer writer = Files.newBufferedWriter(inputFile.toPath(), StandardCharsets.UTF_8))
+		{
+			for(int i = 0; i < eventCount; i++)
+			{
+				writer.write("<log4j:event logger=\"de.huxhorn.lilith.Foo\" timestamp=\"" + i + "\" level=\"INFO\" thread=\"main\">\n");
+				writer.write("<log4j:message><![CDATA[Message " + i + "]]></log4j:message>\n");
+				writer.write("</log4j:event>\n\n");
+			}
+		}
+	}
+
 	public void createTempFile(String resourceName)
 		throws IOException
 	{
@@ -146,7 +191,7 @@ public class Log4jImportCallableTest
 		@Override
 		public void addAll(List<EventWrapper<LoggingEvent>> elements)
 		{
-			throw new UnsupportedOperationException();
+			list.addAll(elements);
 		}
 
 		@Override
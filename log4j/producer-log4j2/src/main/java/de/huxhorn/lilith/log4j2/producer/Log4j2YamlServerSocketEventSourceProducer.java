@@ -39,12 +39,15 @@ import de.huxhorn.lilith.data.eventsource.SourceIdentifier;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.engine.EventProducer;
 import de.huxhorn.lilith.engine.impl.eventproducer.LoggingEventSourceIdentifierUpdater;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioEventProducer;
+import de.huxhorn.lilith.engine.impl.eventproducer.NioReceiverGroup;
 import de.huxhorn.lilith.engine.impl.eventproducer.ZeroDelimitedEventProducer;
 import de.huxhorn.lilith.engine.impl.sourceproducer.AbstractServerSocketEventSourceProducer;
 import de.huxhorn.lilith.log4j2.decoder.Log4j2YamlDecoder;
 import de.huxhorn.sulky.buffers.AppendOperation;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.SocketChannel;
 
 @SuppressWarnings("PMD.ClassNamingConventions")
 public class Log4j2YamlServerSocketEventSourceProducer
@@ -53,7 +56,13 @@ public class Log4j2YamlServerSocketEventSourceProducer
 	public Log4j2YamlServerSocketEventSourceProducer(int port)
 			throws IOException
 	{
-		super(port);
+		this(port, null);
+	}
+
+	public Log4j2YamlServerSocketEventSourceProducer(int port, NioReceiverGroup nioReceiverGroup)
+			throws IOException
+	{
+		super(port, nioReceiverGroup);
 	}
 
 	@Override
@@ -63,6 +72,12 @@ public class Log4j2YamlServerSocketEventSourceProducer
 		return new ZeroDelimitedEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new Log4j2YamlDecoder(), inputStream);
 	}
 
+	@Override
+	protected EventProducer<LoggingEvent> createNioProducer(SourceIdentifier id, AppendOperation<EventWrapper<LoggingEvent>> eventQueue, NioReceiverGroup nioReceiverGroup, SocketChannel channel)
+	{
+		return new NioEventProducer<>(id, eventQueue, new LoggingEventSourceIdentifierUpdater(), new Log4j2YamlDecoder(), NioEventProducer.Framing.ZERO_DELIMITED, false, nioReceiverGroup, channel);
+	}
+
 	@Override
 	public String toString()
 	{
@@ -42,6 +42,7 @@ import ch.qos.logback.classic.spi.ThrowableProxy;
 import de.huxhorn.lilith.data.converter.Converter;
 import de.huxhorn.lilith.data.eventsource.LoggerContext;
 import de.huxhorn.lilith.data.logging.ExtendedStackTraceElement;
+import de.huxhorn.lilith.data.logging.InternPool;
 import de.huxhorn.lilith.data.logging.LoggingEvent;
 import de.huxhorn.lilith.data.logging.Marker;
 import de.huxhorn.lilith.data.logging.Message;
@@ -283,7 +284,7 @@ public class LogbackLoggingConverter
 		}
 		result.setTimeStamp(event.getTimeStamp());
 
-		return result;
+		return InternPool.internShared(result);
 	}
 
 	@Override
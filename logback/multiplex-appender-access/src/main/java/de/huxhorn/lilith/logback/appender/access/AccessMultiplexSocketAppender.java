@@ -38,6 +38,8 @@ import ch.qos.logback.access.spi.AccessEvent;
 import de.huxhorn.lilith.data.access.logback.TransformingEncoder;
 import de.huxhorn.lilith.data.access.protobuf.AccessEventProtobufEncoder;
 import de.huxhorn.lilith.logback.appender.core.MultiplexSocketAppenderBase;
+import de.huxhorn.lilith.sender.BatchedMessageWriteByteStrategy;
+import de.huxhorn.lilith.sender.MessageWriteByteStrategy;
 
 public class AccessMultiplexSocketAppender
 	extends MultiplexSocketAppenderBase<AccessEvent>
@@ -52,7 +54,14 @@ public class AccessMultiplexSocketAppender
 	 */
 	public static final int UNCOMPRESSED_DEFAULT_PORT = 10_011;
 
+	/**
+	 * The default port number of the remote logging server receiving batched events (10012).
+	 */
+	public static final int BATCHED_DEFAULT_PORT = 10_012;
+
 	private boolean usingDefaultPort;
+	private boolean compressing;
+	private boolean batching;
 	private TransformingEncoder transformingEncoder;
 
 	public AccessMultiplexSocketAppender()
@@ -97,10 +106,37 @@ public class AccessMultiplexSocketAppender
 	 */
 	@SuppressWarnings("WeakerAccess")
 	public void setCompressing(boolean compressing)
+	{
+		this.compressing = compressing;
+		updateEncoding();
+	}
+
+	/**
+	 * Sends all events that are queued at the same time as a single batched message if set to true.
+	 *
+	 * If compressing is also enabled, every batch is GZIPed as a whole instead of every single event.
+	 * This requires a Lilith version supporting batched events, i.e. listening on BATCHED_DEFAULT_PORT.
+	 *
+	 * Automatically chooses the correct default port if it was not previously set manually.
+	 *
+	 * @param batching if events will be sent in batches or not.
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public void setBatching(boolean batching)
+	{
+		this.batching = batching;
+		updateEncoding();
+	}
+
+	private void updateEncoding()
 	{
 		if(usingDefaultPort)
 		{
-			if(compressing)
+			if(batching)
+			{
+				setPort(BATCHED_DEFAULT_PORT);
+			}
+			else if(compressing)
 			{
 				setPort(COMPRESSED_DEFAULT_PORT);
 			}
@@ -110,7 +146,16 @@ public class AccessMultiplexSocketAppender
 			}
 			usingDefaultPort = true;
 		}
-		transformingEncoder.setLilithEncoder(new AccessEventProtobufEncoder(compressing));
+		if(batching)
+		{
+			setWriteByteStrategy(new BatchedMessageWriteByteStrategy(compressing));
+			transformingEncoder.setLilithEncoder(new AccessEventProtobufEncoder(false));
+		}
+		else
+		{
+			setWriteByteStrategy(new MessageWriteByteStrategy());
+			transformingEncoder.setLilithEncoder(new AccessEventProtobufEncoder(compressing));
+		}
 	}
 
 	@Override
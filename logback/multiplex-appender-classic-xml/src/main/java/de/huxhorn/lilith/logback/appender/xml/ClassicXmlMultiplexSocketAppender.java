@@ -37,10 +37,10 @@ package de.huxhorn.lilith.logback.appender.xml;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import de.huxhorn.lilith.data.logging.logback.TransformingEncoder;
 import de.huxhorn.lilith.data.logging.xml.codec.LoggingXmlEncoder;
-import de.huxhorn.lilith.logback.appender.core.MultiplexSocketAppenderBase;
+import de.huxhorn.lilith.logback.appender.core.ClassicMultiplexSocketAppenderBase;
 
 public class ClassicXmlMultiplexSocketAppender
-	extends MultiplexSocketAppenderBase<LoggingEvent>
+	extends ClassicMultiplexSocketAppenderBase
 {
 	/**
 	 * The default port number of compressed new-style remote logging server (10020).
@@ -37,7 +37,7 @@ package de.huxhorn.lilith.logback.appender.xml;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import de.huxhorn.lilith.data.logging.logback.TransformingEncoder;
 import de.huxhorn.lilith.data.logging.xml.codec.LoggingXmlEncoder;
-import de.huxhorn.lilith.logback.appender.core.MultiplexSocketAppenderBase;
+import de.huxhorn.lilith.logback.appender.core.ClassicMultiplexSocketAppenderBase;
 import de.huxhorn.lilith.sender.ZeroDelimitedWriteByteStrategy;
 
 /**
@@ -47,7 +47,7 @@ import de.huxhorn.lilith.sender.ZeroDelimitedWriteByteStrategy;
  * The producer is only used for programming languages that are unable to count bytes, i.e. ActionScript... ;)
  */
 public class ZeroDelimitedClassicXmlMultiplexSocketAppender
-	extends MultiplexSocketAppenderBase<LoggingEvent>
+	extends ClassicMultiplexSocketAppenderBase
 {
 	/**
 	 * The default port number of remote logging server (11000).
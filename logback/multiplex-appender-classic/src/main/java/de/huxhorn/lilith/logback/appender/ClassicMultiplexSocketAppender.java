@@ -37,10 +37,12 @@ package de.huxhorn.lilith.logback.appender;
 import ch.qos.logback.classic.spi.LoggingEvent;
 import de.huxhorn.lilith.data.logging.logback.TransformingEncoder;
 import de.huxhorn.lilith.data.logging.protobuf.LoggingEventProtobufCodec;
-import de.huxhorn.lilith.logback.appender.core.MultiplexSocketAppenderBase;
+import de.huxhorn.lilith.logback.appender.core.ClassicMultiplexSocketAppenderBase;
+import de.huxhorn.lilith.sender.BatchedMessageWriteByteStrategy;
+import de.huxhorn.lilith.sender.MessageWriteByteStrategy;
 
 public class ClassicMultiplexSocketAppender
-	extends MultiplexSocketAppenderBase<LoggingEvent>
+	extends ClassicMultiplexSocketAppenderBase
 {
 	/**
 	 * The default port number of compressed new-style remote logging server (10000).
@@ -52,8 +54,15 @@ public class ClassicMultiplexSocketAppender
 	 */
 	public static final int UNCOMPRESSED_DEFAULT_PORT = 10_001;
 
+	/**
+	 * The default port number of the remote logging server receiving batched events (10002).
+	 */
+	public static final int BATCHED_DEFAULT_PORT = 10_002;
+
 	private boolean includeCallerData;
 	private boolean usingDefaultPort;
+	private boolean compressing;
+	private boolean batching;
 	private TransformingEncoder transformingEncoder;
 
 	public ClassicMultiplexSocketAppender()
@@ -98,10 +107,36 @@ public class ClassicMultiplexSocketAppender
 	 * @param compressing if events will be gzipped or not.
 	 */
 	public void setCompressing(boolean compressing)
+	{
+		this.compressing = compressing;
+		updateEncoding();
+	}
+
+	/**
+	 * Sends all events that are queued at the same time as a single batched message if set to true.
+	 *
+	 * If compressing is also enabled, every batch is GZIPed as a whole instead of every single event.
+	 * This requires a Lilith version supporting batched events, i.e. listening on BATCHED_DEFAULT_PORT.
+	 *
+	 * Automatically chooses the correct default port if it was not previously set manually.
+	 *
+	 * @param batching if events will be sent in batches or not.
+	 */
+	public void setBatching(boolean batching)
+	{
+		this.batching = batching;
+		updateEncoding();
+	}
+
+	private void updateEncoding()
 	{
 		if(usingDefaultPort)
 		{
-			if(compressing)
+			if(batching)
+			{
+				setPort(BATCHED_DEFAULT_PORT);
+			}
+			else if(compressing)
 			{
 				setPort(COMPRESSED_DEFAULT_PORT);
 			}
@@ -111,7 +146,16 @@ public class ClassicMultiplexSocketAppender
 			}
 			usingDefaultPort = true;
 		}
-		transformingEncoder.setLilithEncoder(new LoggingEventProtobufCodec(compressing));
+		if(batching)
+		{
+			setWriteByteStrategy(new BatchedMessageWriteByteStrategy(compressing));
+			transformingEncoder.setLilithEncoder(new LoggingEventProtobufCodec(false));
+		}
+		else
+		{
+			setWriteByteStrategy(new MessageWriteByteStrategy());
+			transformingEncoder.setLilithEncoder(new LoggingEventProtobufCodec(compressing));
+		}
 	}
 
 	public void setIncludeCallerData(boolean includeCallerData)
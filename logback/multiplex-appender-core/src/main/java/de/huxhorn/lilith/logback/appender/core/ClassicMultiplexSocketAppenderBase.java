@@ -0,0 +1,83 @@
+/*
+ * Lilith - a log event viewer.
+ * Copyright (C) 2007-2021 Joern Huxhorn
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright 2007-2021 Joern Huxhorn
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package de.huxhorn.lilith.logback.appender.core;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import de.huxhorn.lilith.sender.WriteByteStrategy;
+
+/**
+ * Base class of the appenders for logback-classic LoggingEvents.
+ *
+ * logback-classic is only required at compile time of this module since it's always provided by
+ * the modules containing the actual appenders.
+ */
+public abstract class ClassicMultiplexSocketAppenderBase
+	extends MultiplexSocketAppenderBase<LoggingEvent>
+{
+	public ClassicMultiplexSocketAppenderBase()
+	{
+		super();
+		setDropLevel(Level.WARN_INT);
+	}
+
+	public ClassicMultiplexSocketAppenderBase(WriteByteStrategy writeByteStrategy)
+	{
+		super(writeByteStrategy);
+		setDropLevel(Level.WARN_INT);
+	}
+
+	/**
+	 * Events with a level below the given level are dropped by OverflowPolicy.DROP_BELOW_LEVEL
+	 * if the send queue is full. The default is WARN.
+	 *
+	 * @param level the drop level, e.g. INFO.
+	 */
+	public void setDropBelowLevel(String level)
+	{
+		setDropLevel(Level.toLevel(level, Level.WARN).toInt());
+	}
+
+	@Override
+	protected int getLevel(LoggingEvent event)
+	{
+		Level level = event.getLevel();
+		if(level == null)
+		{
+			return Integer.MAX_VALUE;
+		}
+		return level.toInt();
+	}
+}
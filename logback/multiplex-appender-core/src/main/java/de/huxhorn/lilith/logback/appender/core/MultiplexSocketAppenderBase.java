@@ -38,12 +38,17 @@ import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import de.huxhorn.lilith.sender.HeartbeatRunnable;
 import de.huxhorn.lilith.sender.MessageWriteByteStrategy;
 import de.huxhorn.lilith.sender.MultiplexSendBytesService;
+import de.huxhorn.lilith.sender.OverflowPolicy;
+import de.huxhorn.lilith.sender.SendStatistics;
 import de.huxhorn.lilith.sender.WriteByteStrategy;
 import de.huxhorn.sulky.codec.Encoder;
 import de.huxhorn.sulky.ulid.ULID;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.StringTokenizer;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 public abstract class MultiplexSocketAppenderBase<E>
 	extends UnsynchronizedAppenderBase<E>
@@ -62,6 +67,10 @@ public abstract class MultiplexSocketAppenderBase<E>
 	private boolean debug;
 	private boolean creatingUUID=true;
 	private String uuid;
+	private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	private int dropLevel;
+	private boolean registeringMBean;
+	private ObjectName mBeanName;
 
 	public MultiplexSocketAppenderBase()
 	{
@@ -80,6 +89,88 @@ public abstract class MultiplexSocketAppenderBase<E>
 		remoteHostsList=new ArrayList<>();
 	}
 
+	/**
+	 * Sets the strategy used to write the events. This must be called before the appender is started.
+	 *
+	 * @param writeByteStrategy the strategy used to write the events.
+	 */
+	protected void setWriteByteStrategy(WriteByteStrategy writeByteStrategy)
+	{
+		this.writeByteStrategy = writeByteStrategy;
+	}
+
+	/**
+	 * Defines what happens if an event is appended while the send queue is full.
+	 *
+	 * The default BLOCK blocks the logging thread until there is room in the queue.
+	 *
+	 * @param overflowPolicy the overflow policy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy overflowPolicy)
+	{
+		this.overflowPolicy = overflowPolicy;
+	}
+
+	public OverflowPolicy getOverflowPolicy()
+	{
+		return overflowPolicy;
+	}
+
+	/**
+	 * Events with a level below dropLevel are dropped by OverflowPolicy.DROP_BELOW_LEVEL.
+	 *
+	 * @param dropLevel the level, as returned by getLevel(E).
+	 */
+	protected void setDropLevel(int dropLevel)
+	{
+		this.dropLevel = dropLevel;
+	}
+
+	protected int getDropLevel()
+	{
+		return dropLevel;
+	}
+
+	/**
+	 * Returns the level of the given event, used by OverflowPolicy.DROP_BELOW_LEVEL.
+	 *
+	 * The default implementation returns Integer.MAX_VALUE, i.e. the event is never dropped by DROP_BELOW_LEVEL.
+	 *
+	 * @param e the event.
+	 * @return the level of the event.
+	 */
+	protected int getLevel(E e)
+	{
+		return Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Registers the SendStatistics of this appender as MBean if set to true.
+	 *
+	 * The MBean is named de.huxhorn.lilith:type=MultiplexSocketAppender,name=&lt;name of the appender&gt;.
+	 *
+	 * @param registeringMBean whether the statistics are registered as MBean.
+	 */
+	public void setRegisteringMBean(boolean registeringMBean)
+	{
+		this.registeringMBean = registeringMBean;
+	}
+
+	/**
+	 * Returns the counters of sent and dropped events.
+	 *
+	 * @return the statistics of this appender or null if it isn't started.
+	 */
+	public SendStatistics getStatistics()
+	{
+		MultiplexSendBytesService service = multiplexSendBytes;
+		if(service == null)
+		{
+			return null;
+		}
+		return service.getStatistics();
+	}
+
 	public void setCreatingUUID(boolean creatingUUID)
 	{
 		this.creatingUUID = creatingUUID;
@@ -251,7 +342,16 @@ public abstract class MultiplexSocketAppenderBase<E>
 		}
 		multiplexSendBytes = new MultiplexSendBytesService(name, remoteHostsList, port, writeByteStrategy, reconnectionDelay, queueSize);
 		multiplexSendBytes.setDebug(debug);
+		if(overflowPolicy != null)
+		{
+			multiplexSendBytes.setOverflowPolicy(overflowPolicy);
+		}
+		multiplexSendBytes.setDropLevel(dropLevel);
 		multiplexSendBytes.startUp();
+		if(registeringMBean)
+		{
+			registerMBean(multiplexSendBytes.getStatistics());
+		}
 
 		// TODO: add support for ip.ip.ip.ip:port
 		if(heartbeatThread != null)
@@ -302,15 +402,48 @@ public abstract class MultiplexSocketAppenderBase<E>
 			// this is ok.
 		}
 		heartbeatThread = null;
+		unregisterMBean();
 		multiplexSendBytes.shutDown();
 		multiplexSendBytes = null;
 	}
 
-	private void sendBytes(byte[] bytes)
+	private void registerMBean(SendStatistics statistics)
 	{
-		if(multiplexSendBytes != null)
+		unregisterMBean();
+		try
+		{
+			ObjectName objectName = new ObjectName("de.huxhorn.lilith:type=MultiplexSocketAppender,name=" + ObjectName.quote(String.valueOf(name)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, objectName);
+			mBeanName = objectName;
+		}
+		catch(JMException e)
+		{
+			addWarn("Failed to register statistics MBean of appender " + name + ".", e);
+		}
+	}
+
+	private void unregisterMBean()
+	{
+		if(mBeanName != null)
+		{
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(mBeanName);
+			}
+			catch(JMException e)
+			{
+				addWarn("Failed to unregister statistics MBean of appender " + name + ".", e);
+			}
+			mBeanName = null;
+		}
+	}
+
+	private void sendBytes(byte[] bytes, int level)
+	{
+		MultiplexSendBytesService service = multiplexSendBytes;
+		if(service != null)
 		{
-			multiplexSendBytes.sendBytes(bytes);
+			service.sendBytes(bytes, level);
 		}
 	}
 
@@ -323,7 +456,7 @@ public abstract class MultiplexSocketAppenderBase<E>
 			byte[] serialized = encoder.encode(e);
 			if(serialized != null)
 			{
-				sendBytes(serialized);
+				sendBytes(serialized, getLevel(e));
 			}
 		}
 	}